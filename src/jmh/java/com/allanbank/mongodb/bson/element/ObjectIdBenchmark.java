@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * ObjectIdBenchmark.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.element;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ObjectIdBenchmark measures generating new {@link ObjectId}s from one thread
+ * and from several threads contending for the shared counter.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectIdBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            The command line arguments. Ignored.
+     * @throws RunnerException
+     *             On a failure running the benchmark.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(
+                ObjectIdBenchmark.class.getSimpleName()).build();
+
+        new Runner(options).run();
+    }
+
+    /**
+     * Generates an {@link ObjectId} from a single thread.
+     *
+     * @return The generated {@link ObjectId}.
+     */
+    @Benchmark
+    public ObjectId generate() {
+        return new ObjectId();
+    }
+
+    /**
+     * Generates an {@link ObjectId} from 4 threads.
+     *
+     * @return The generated {@link ObjectId}.
+     */
+    @Benchmark
+    @Threads(4)
+    public ObjectId generateContended() {
+        return new ObjectId();
+    }
+
+    /**
+     * Generates an {@link ObjectId} from 32 threads.
+     *
+     * @return The generated {@link ObjectId}.
+     */
+    @Benchmark
+    @Threads(32)
+    public ObjectId generateHeavilyContended() {
+        return new ObjectId();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * BenchmarkDocuments.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.builder.ArrayBuilder;
+import com.allanbank.mongodb.bson.builder.BuilderFactory;
+import com.allanbank.mongodb.bson.builder.DocumentBuilder;
+import com.allanbank.mongodb.bson.element.ObjectId;
+
+/**
+ * BenchmarkDocuments provides the documents used by the BSON benchmarks.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+/* package */final class BenchmarkDocuments {
+
+    /**
+     * Creates a document with the shape of a typical application record: an
+     * {@link ObjectId}, a handful of scalar fields, a sub-document and an
+     * array of sub-documents.
+     *
+     * @param arrayLength
+     *            The number of sub-documents in the array.
+     * @return The document.
+     */
+    public static Document create(final int arrayLength) {
+        final DocumentBuilder builder = BuilderFactory.start();
+        builder.add("_id", new ObjectId(0x12345678, 0x1234567890L));
+        builder.add("name", "Allanbank Consulting");
+        builder.add("active", true);
+        builder.add("count", 42);
+        builder.add("total", 1234567890123L);
+        builder.add("score", 3.14159);
+        builder.add("created", new Date(1420070400000L));
+        builder.push("address").add("street", "1 Main Street")
+                .add("city", "Springfield").add("zip", "12345");
+
+        final ArrayBuilder items = builder.pushArray("items");
+        for (int i = 0; i < arrayLength; ++i) {
+            items.push().add("sku", "SKU-" + i).add("quantity", i)
+                    .add("price", i * 1.25);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Encodes the document.
+     *
+     * @param document
+     *            The document to encode.
+     * @return The encoded document.
+     * @throws IOException
+     *             On a failure encoding the document.
+     */
+    public static byte[] encode(final Document document) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BsonOutputStream out = new BsonOutputStream(bytes);
+
+        out.writeDocument(document);
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Creates a new BenchmarkDocuments.
+     */
+    private BenchmarkDocuments() {
+        super();
+    }
+}
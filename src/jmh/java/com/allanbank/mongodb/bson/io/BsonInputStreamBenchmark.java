@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * BsonInputStreamBenchmark.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.allanbank.mongodb.bson.Document;
+
+/**
+ * BsonInputStreamBenchmark measures decoding documents with
+ * {@link BsonInputStream#readDocument()}. The stream shares a
+ * {@link StringDecoderCache} across invocations the way a connection does.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BsonInputStreamBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            The command line arguments. Ignored.
+     * @throws RunnerException
+     *             On a failure running the benchmark.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(
+                BsonInputStreamBenchmark.class.getSimpleName()).build();
+
+        new Runner(options).run();
+    }
+
+    /** The number of sub-documents in the document's array. */
+    @Param({ "1", "100" })
+    public int arrayLength;
+
+    /** The cache of decoded strings. */
+    private StringDecoderCache myCache;
+
+    /** The encoded document. */
+    private byte[] myEncoded;
+
+    /**
+     * Decodes the document.
+     *
+     * @return The decoded document.
+     * @throws IOException
+     *             On a failure decoding the document.
+     */
+    @Benchmark
+    public Document readDocument() throws IOException {
+        final BsonInputStream in = new BsonInputStream(
+                new ByteArrayInputStream(myEncoded), myCache);
+
+        return in.readDocument();
+    }
+
+    /**
+     * Encodes the document to decode.
+     *
+     * @throws IOException
+     *             On a failure encoding the document.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        myEncoded = BenchmarkDocuments.encode(BenchmarkDocuments
+                .create(arrayLength));
+        myCache = new StringDecoderCache();
+    }
+}
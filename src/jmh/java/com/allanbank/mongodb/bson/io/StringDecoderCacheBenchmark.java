@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * StringDecoderCacheBenchmark.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * StringDecoderCacheBenchmark measures {@link StringDecoderCache#find} for
+ * strings that are, and are not, in the cache.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringDecoderCacheBenchmark {
+
+    /** The field names to cache. */
+    public static final String[] CACHED = { "_id", "name", "active", "count",
+            "total", "score", "created", "address", "street", "city", "zip",
+            "items", "sku", "quantity", "price" };
+
+    /** The field names never cached. */
+    public static final String[] UNCACHED = { "alpha", "bravo", "charlie",
+            "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet",
+            "kilo", "lima", "mike", "november", "oscar" };
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            The command line arguments. Ignored.
+     * @throws RunnerException
+     *             On a failure running the benchmark.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(
+                StringDecoderCacheBenchmark.class.getSimpleName()).build();
+
+        new Runner(options).run();
+    }
+
+    /**
+     * Returns the encoded, null terminated, strings.
+     *
+     * @param strings
+     *            The strings to encode.
+     * @return The encoded strings.
+     */
+    private static byte[][] encode(final String[] strings) {
+        final byte[][] encoded = new byte[strings.length][];
+        for (int i = 0; i < strings.length; ++i) {
+            final byte[] bytes = strings[i].getBytes(StandardCharsets.UTF_8);
+
+            encoded[i] = new byte[bytes.length + 1];
+            System.arraycopy(bytes, 0, encoded[i], 0, bytes.length);
+        }
+        return encoded;
+    }
+
+    /** The cache to search. */
+    private StringDecoderCache myCache;
+
+    /** The encoded cached strings. */
+    private byte[][] myCached;
+
+    /** The encoded strings that are not cached. */
+    private byte[][] myUncached;
+
+    /**
+     * Finds each of the cached strings.
+     *
+     * @param blackhole
+     *            The sink for the found strings.
+     * @throws IOException
+     *             On a failure decoding the strings.
+     */
+    @Benchmark
+    public void findCached(final Blackhole blackhole) throws IOException {
+        for (final byte[] bytes : myCached) {
+            blackhole.consume(myCache.find(bytes, 0, bytes.length));
+        }
+    }
+
+    /**
+     * Misses on each of the strings that are not cached.
+     *
+     * @param blackhole
+     *            The sink for the found strings.
+     * @throws IOException
+     *             On a failure decoding the strings.
+     */
+    @Benchmark
+    public void findUncached(final Blackhole blackhole) throws IOException {
+        for (final byte[] bytes : myUncached) {
+            blackhole.consume(myCache.find(bytes, 0, bytes.length));
+        }
+    }
+
+    /**
+     * Creates the cache and uses the cached strings enough times for the
+     * cache to be built.
+     *
+     * @throws IOException
+     *             On a failure decoding the strings.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        myCached = encode(CACHED);
+        myUncached = encode(UNCACHED);
+
+        myCache = new StringDecoderCache();
+        myCache.setMaxCacheEntries(CACHED.length);
+        for (int i = 0; (i < 10000)
+                && (myCache.find(myCached[0], 0, myCached[0].length) == null); ++i) {
+            for (int j = 0; j < CACHED.length; ++j) {
+                myCache.used(CACHED[j], myCached[j], 0, myCached[j].length);
+            }
+        }
+
+        if (myCache.find(myCached[0], 0, myCached[0].length) == null) {
+            throw new IllegalStateException("The cache was not built.");
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * JsonParseBenchmark.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.allanbank.mongodb.bson.builder.ArrayBuilder;
+import com.allanbank.mongodb.bson.builder.BuilderFactory;
+import com.allanbank.mongodb.bson.builder.DocumentBuilder;
+import com.allanbank.mongodb.bson.element.ObjectId;
+import com.allanbank.mongodb.bson.io.BufferingBsonOutputStream;
+import com.allanbank.mongodb.bson.io.RandomAccessOutputStream;
+
+/**
+ * JsonParseBenchmark measures converting a JSON document into its BSON
+ * encoding by parsing a {@link com.allanbank.mongodb.bson.Document} and writing
+ * it versus streaming the JSON directly into the BSON encoding.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonParseBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            The command line arguments. Ignored.
+     * @throws RunnerException
+     *             On a failure running the benchmark.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(
+                JsonParseBenchmark.class.getSimpleName()).build();
+
+        new Runner(options).run();
+    }
+
+    /** The number of sub-documents in the document's array. */
+    @Param({ "1", "100" })
+    public int arrayLength;
+
+    /** The buffer under the stream. */
+    private RandomAccessOutputStream myBuffer;
+
+    /** The JSON text of the document. */
+    private String myJson;
+
+    /** The stream to encode the document into. */
+    private BufferingBsonOutputStream myOut;
+
+    /**
+     * Parses the JSON into a document and then encodes the document.
+     *
+     * @return The number of bytes written.
+     * @throws IOException
+     *             On a failure encoding the document.
+     */
+    @Benchmark
+    public long parseThenWrite() throws IOException {
+        myBuffer.reset();
+
+        return myOut.write(Json.parse(myJson));
+    }
+
+    /**
+     * Parses the JSON into a raw document.
+     *
+     * @return The size of the document.
+     */
+    @Benchmark
+    public long parseRaw() {
+        return Json.parseRaw(myJson).size();
+    }
+
+    /**
+     * Creates the JSON text and streams.
+     */
+    @Setup
+    public void setUp() {
+        final DocumentBuilder builder = BuilderFactory.start();
+        builder.add("_id", new ObjectId(0x12345678, 0x1234567890L));
+        builder.add("name", "Allanbank Consulting");
+        builder.add("active", true);
+        builder.add("count", 42);
+        builder.add("total", 1234567890123L);
+        builder.add("score", 3.14159);
+        builder.add("created", new Date(1420070400000L));
+        builder.push("address").add("street", "1 Main Street")
+                .add("city", "Springfield").add("zip", "12345");
+
+        final ArrayBuilder items = builder.pushArray("items");
+        for (int i = 0; i < arrayLength; ++i) {
+            items.push().add("sku", "SKU-" + i).add("quantity", i)
+                    .add("price", i * 1.25);
+        }
+
+        myJson = Json.serialize(builder, Json.Mode.SHELL_ONE_LINE);
+        myBuffer = new RandomAccessOutputStream();
+        myOut = new BufferingBsonOutputStream(myBuffer);
+    }
+
+    /**
+     * Streams the JSON directly into the BSON encoding.
+     *
+     * @return The number of bytes written.
+     */
+    @Benchmark
+    public long stream() {
+        myBuffer.reset();
+
+        return Json.parse(new StringReader(myJson), myOut);
+    }
+}
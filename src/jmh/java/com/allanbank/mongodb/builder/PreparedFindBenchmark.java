@@ -0,0 +1,168 @@
+/*
+ * #%L
+ * PreparedFindBenchmark.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.builder;
+
+import static com.allanbank.mongodb.builder.QueryBuilder.where;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.allanbank.mongodb.ReadPreference;
+import com.allanbank.mongodb.bson.io.BufferingBsonOutputStream;
+import com.allanbank.mongodb.bson.io.RandomAccessOutputStream;
+import com.allanbank.mongodb.client.message.Query;
+
+/**
+ * PreparedFindBenchmark compares building and encoding a {@link Query}
+ * message from a {@link Find} built for each request with one bound from a
+ * {@link PreparedFind}.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedFindBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            The command line arguments. Ignored.
+     * @throws RunnerException
+     *             On a failure running the benchmark.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(
+                PreparedFindBenchmark.class.getSimpleName()).build();
+
+        new Runner(options).run();
+    }
+
+    /** The buffer under the stream. */
+    private RandomAccessOutputStream myBuffer;
+
+    /** The counter to vary the parameter values. */
+    private int myCount;
+
+    /** The stream to encode the messages into. */
+    private BufferingBsonOutputStream myOut;
+
+    /** The prepared find. */
+    private PreparedFind myPrepared;
+
+    /**
+     * Builds the find for each request and encodes the message.
+     *
+     * @return The number of bytes written.
+     * @throws IOException
+     *             On a failure encoding the message.
+     */
+    @Benchmark
+    public long built() throws IOException {
+        myCount += 1;
+
+        final Find find = Find
+                .builder()
+                .query(where("customer.account_name")
+                        .equals("account-" + (myCount & 0xFF))
+                        .and("status").equals("open").and("created_at")
+                        .greaterThan(myCount).and("priority").lessThan(5))
+                .limit(10).build();
+
+        return write(find);
+    }
+
+    /**
+     * Binds the prepared find for each request and encodes the message.
+     *
+     * @return The number of bytes written.
+     * @throws IOException
+     *             On a failure encoding the message.
+     */
+    @Benchmark
+    public long prepared() throws IOException {
+        myCount += 1;
+
+        final Find find = myPrepared.bind("account-" + (myCount & 0xFF),
+                Integer.valueOf(myCount));
+
+        return write(find);
+    }
+
+    /**
+     * Creates the prepared find and stream.
+     */
+    @Setup
+    public void setUp() {
+        myPrepared = PreparedFind
+                .builder()
+                .find(Find
+                        .builder()
+                        .query(where("customer.account_name").equals("")
+                                .and("status").equals("open")
+                                .and("created_at").greaterThan(0)
+                                .and("priority").lessThan(5)).limit(10))
+                .parameters("customer.account_name", "created_at.$gt")
+                .build();
+        myBuffer = new RandomAccessOutputStream();
+        myOut = new BufferingBsonOutputStream(myBuffer);
+    }
+
+    /**
+     * Encodes the {@link Query} message for the find.
+     *
+     * @param find
+     *            The find to encode.
+     * @return The number of bytes written.
+     * @throws IOException
+     *             On a failure encoding the message.
+     */
+    private long write(final Find find) throws IOException {
+        myBuffer.reset();
+
+        final Query message = new Query("db", "collection",
+                find.toQueryRequest(false), find.getProjection(),
+                find.getBatchSize(), find.getLimit(), find.getNumberToSkip(),
+                false, ReadPreference.PRIMARY, false, false, false, false);
+        message.write(1, myOut);
+
+        return myBuffer.getPosition();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * TransportConnectionBenchmark.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.connection.socket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.allanbank.mongodb.MongoClientConfiguration;
+import com.allanbank.mongodb.ReadPreference;
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.builder.BuilderFactory;
+import com.allanbank.mongodb.bson.builder.DocumentBuilder;
+import com.allanbank.mongodb.bson.impl.ImmutableDocument;
+import com.allanbank.mongodb.bson.io.BsonOutputStream;
+import com.allanbank.mongodb.bson.io.StringDecoderCache;
+import com.allanbank.mongodb.bson.io.StringEncoderCache;
+import com.allanbank.mongodb.client.Client;
+import com.allanbank.mongodb.client.ClusterType;
+import com.allanbank.mongodb.client.MockSocketServer;
+import com.allanbank.mongodb.client.callback.FutureReplyCallback;
+import com.allanbank.mongodb.client.message.Query;
+import com.allanbank.mongodb.client.message.Reply;
+import com.allanbank.mongodb.client.metrics.basic.BasicConnectionMetrics;
+import com.allanbank.mongodb.client.metrics.basic.BasicMongoClientMetrics;
+import com.allanbank.mongodb.client.state.Cluster;
+import com.allanbank.mongodb.client.state.Server;
+import com.allanbank.mongodb.client.transport.Transport;
+import com.allanbank.mongodb.client.transport.TransportFactory;
+import com.allanbank.mongodb.client.transport.TransportOutputBuffer;
+import com.allanbank.mongodb.client.transport.bio.one.OneThreadTransportFactory;
+import com.allanbank.mongodb.client.transport.bio.two.TwoThreadTransportFactory;
+import com.allanbank.mongodb.client.transport.nio.NioTransportFactory;
+
+/**
+ * TransportConnectionBenchmark measures the complete round trip of a query
+ * through {@link TransportConnection#send} to the reply's callback against a
+ * {@link MockSocketServer}.
+ * <p>
+ * The mock server polls its socket instead of sleeping between messages so
+ * the benchmark measures the driver and not the mock server's idle time.
+ * </p>
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportConnectionBenchmark {
+
+    /** Update document with the "build info". */
+    private static final Document BUILD_INFO;
+
+    /** The offset of the response to id in the reply's header. */
+    private static final int RESPONSE_TO_OFFSET = 8;
+
+    static {
+        final DocumentBuilder builder = BuilderFactory.start();
+        builder.add(Server.MAX_BSON_OBJECT_SIZE_PROP, Client.MAX_DOCUMENT_SIZE);
+        builder.pushArray("versionArray").add(99).add(99).add(99);
+        BUILD_INFO = new ImmutableDocument(builder);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            The command line arguments. Ignored.
+     * @throws RunnerException
+     *             On a failure running the benchmark.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(
+                TransportConnectionBenchmark.class.getSimpleName()).build();
+
+        new Runner(options).run();
+    }
+
+    /** The transport for the connection. */
+    @Param({ "ONE_THREAD", "TWO_THREAD", "NIO" })
+    public String transport;
+
+    /** The connection being measured. */
+    private TransportConnection myConnection;
+
+    /** The next message id the connection will send. */
+    private int myNextMessageId;
+
+    /** The query to send. */
+    private Query myQuery;
+
+    /** The encoded reply with a response to id of zero. */
+    private byte[] myReply;
+
+    /** The mock server. */
+    private MockSocketServer myServer;
+
+    /**
+     * Sends the query and waits for the reply.
+     *
+     * @return The reply.
+     * @throws ExecutionException
+     *             On a failure receiving the reply.
+     * @throws InterruptedException
+     *             On a failure waiting for the reply.
+     */
+    @Benchmark
+    public Reply roundTrip() throws InterruptedException, ExecutionException {
+        final int messageId = myNextMessageId;
+        myNextMessageId += 1;
+
+        final byte[] reply = myReply.clone();
+        reply[RESPONSE_TO_OFFSET] = (byte) messageId;
+        reply[RESPONSE_TO_OFFSET + 1] = (byte) (messageId >> 8);
+        reply[RESPONSE_TO_OFFSET + 2] = (byte) (messageId >> 16);
+        reply[RESPONSE_TO_OFFSET + 3] = (byte) (messageId >> 24);
+        myServer.setReplies(Collections.singletonList(reply));
+
+        final FutureReplyCallback callback = new FutureReplyCallback();
+        myConnection.send(myQuery, callback);
+
+        return callback.get();
+    }
+
+    /**
+     * Starts the mock server and connects to it.
+     *
+     * @throws IOException
+     *             On a failure starting the server or connecting.
+     */
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        myServer = new MockSocketServer() {
+            @Override
+            protected void sleep() {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(1));
+            }
+        };
+        myServer.start();
+
+        final Document doc = BuilderFactory.start().add("hello", "world")
+                .build();
+        myQuery = new Query("db", "collection", doc, null, 1, 0, 0, false,
+                ReadPreference.PRIMARY, false, false, false, false);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new Reply(0, 0, 0, Collections.singletonList(doc), false, false,
+                false, false).write(0, new BsonOutputStream(bytes));
+        myReply = bytes.toByteArray();
+
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        final Server server = new Cluster(config, ClusterType.STAND_ALONE)
+                .add(myServer.getInetSocketAddress());
+        server.update(BUILD_INFO);
+
+        final TransportFactory factory;
+        if ("ONE_THREAD".equals(transport)) {
+            factory = new OneThreadTransportFactory();
+        }
+        else if ("TWO_THREAD".equals(transport)) {
+            factory = new TwoThreadTransportFactory();
+        }
+        else {
+            factory = new NioTransportFactory();
+        }
+
+        myConnection = new TransportConnection(server, config,
+                new BasicConnectionMetrics(new BasicMongoClientMetrics()));
+        myConnection.setTransport((Transport<TransportOutputBuffer>) factory
+                .createTransport(server, config, new StringEncoderCache(),
+                        new StringDecoderCache(), myConnection));
+        myConnection.start();
+
+        if (!myServer.waitForClient(TimeUnit.SECONDS.toMillis(10))) {
+            throw new IOException("Could not connect to the mock server.");
+        }
+
+        myNextMessageId = 1;
+    }
+
+    /**
+     * Closes the connection and stops the mock server.
+     *
+     * @throws IOException
+     *             On a failure closing the connection or server.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        myConnection.close();
+        myServer.setRunning(false);
+        myServer.close();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * PendingMessageQueueBenchmark.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.message;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.allanbank.mongodb.StandardWaitStrategy;
+
+/**
+ * PendingMessageQueueBenchmark measures the round trip hand-off latency
+ * through a pair of {@link PendingMessageQueue}s for each of the
+ * {@link StandardWaitStrategy wait strategies}.
+ * <p>
+ * The benchmark thread puts a message on the request queue. An echo thread
+ * takes it and puts it on the response queue where the benchmark thread takes
+ * it. The {@link StandardWaitStrategy#BLOCKING} and
+ * {@link StandardWaitStrategy#LOW_LATENCY_SPIN} strategies reproduce the
+ * previous {@link com.allanbank.mongodb.LockType#MUTEX} and
+ * {@link com.allanbank.mongodb.LockType#LOW_LATENCY_SPIN} queue behavior.
+ * </p>
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PendingMessageQueueBenchmark {
+
+    /** The size of the queues. */
+    public static final int QUEUE_SIZE = 1024;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            The command line arguments. Ignored.
+     * @throws RunnerException
+     *             On a failure running the benchmark.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(
+                PendingMessageQueueBenchmark.class.getSimpleName()).build();
+
+        new Runner(options).run();
+    }
+
+    /** The wait strategy for the queues. */
+    @Param({ "BLOCKING", "LOW_LATENCY_SPIN", "PARK_WITH_BACKOFF", "YIELD",
+            "BUSY_SPIN" })
+    public StandardWaitStrategy strategy;
+
+    /** The thread echoing requests back as responses. */
+    private Thread myEcho;
+
+    /** The message to receive the response. */
+    private final PendingMessage myMessage = new PendingMessage();
+
+    /** The queue of requests to the echo thread. */
+    private PendingMessageQueue myRequests;
+
+    /** The queue of responses from the echo thread. */
+    private PendingMessageQueue myResponses;
+
+    /**
+     * Hands a message to the echo thread and waits for it to be returned.
+     *
+     * @return The message returned.
+     * @throws InterruptedException
+     *             On a failure waiting for the response.
+     */
+    @Benchmark
+    public PendingMessage roundTrip() throws InterruptedException {
+        myRequests.put(null, null);
+        myResponses.take(myMessage);
+
+        return myMessage;
+    }
+
+    /**
+     * Starts the echo thread.
+     */
+    @Setup
+    public void setUp() {
+        myRequests = new PendingMessageQueue(QUEUE_SIZE, strategy);
+        myResponses = new PendingMessageQueue(QUEUE_SIZE, strategy);
+
+        myEcho = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final PendingMessage message = new PendingMessage();
+                try {
+                    while (true) {
+                        myRequests.take(message);
+                        myResponses.put(message);
+                    }
+                }
+                catch (final InterruptedException ie) {
+                    // Done.
+                }
+            }
+        }, "PendingMessageQueueBenchmark Echo");
+        myEcho.setDaemon(true);
+        myEcho.start();
+    }
+
+    /**
+     * Stops the echo thread.
+     *
+     * @throws InterruptedException
+     *             On a failure waiting for the echo thread to stop.
+     */
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        myEcho.interrupt();
+        myEcho.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
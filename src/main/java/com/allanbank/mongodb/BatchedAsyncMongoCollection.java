@@ -20,6 +20,7 @@
 package com.allanbank.mongodb;
 
 import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -63,6 +64,19 @@ import com.allanbank.mongodb.builder.BatchedWriteMode;
  * restriction.
  * </p>
  *
+ * <h4>Write-Behind</h4>
+ * <p>
+ * The collection can be shared by many threads. Capturing an operation does
+ * not block the other threads adding operations to the batch. By default the
+ * batch is only sent on an explicit {@link #flush()} or {@link #close()}. The
+ * batch can also be flushed automatically once the pending writes reach the
+ * server's limit on the number of operations or the size of a batch (see
+ * {@link #setAutoFlush(boolean)}) and once the oldest pending operation has
+ * waited for a maximum delay (see {@link #setMaxFlushDelay(long, TimeUnit)}).
+ * Each operation's {@link java.util.concurrent.Future} or {@link Callback}
+ * receives that operation's own result.
+ * </p>
+ *
  * @api.yes This interface is part of the driver's API. Public and protected
  *          members will be deprecated for at least 1 non-bugfix release
  *          (version numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;)
@@ -115,6 +129,25 @@ public interface BatchedAsyncMongoCollection
      */
     public void flush() throws MongoDbException;
 
+    /**
+     * Sets if the batch should be flushed automatically once the pending
+     * writes reach the smallest limit of the servers in the cluster on the
+     * number of operations in a batched write or the size of a BSON document.
+     * <p>
+     * The flush happens on the thread adding the operation that reached the
+     * limit. If another thread is already flushing the batch then the
+     * operation is left for the next flush.
+     * </p>
+     * <p>
+     * Defaults to false.
+     * </p>
+     *
+     * @param autoFlush
+     *            Set to true to flush the batch automatically.
+     * @since 2.1.0
+     */
+    public void setAutoFlush(boolean autoFlush);
+
     /**
      * Sets if deletes should be batched. Set to true to batch deletes.
      * <p>
@@ -153,6 +186,29 @@ public interface BatchedAsyncMongoCollection
      */
     public void setBatchUpdates(boolean batchUpdates);
 
+    /**
+     * Sets the maximum time an operation should wait in the batch before the
+     * batch is flushed automatically.
+     * <p>
+     * A positive delay starts a background thread that flushes the batch once
+     * the oldest pending operation has waited for the delay. The thread is
+     * stopped by setting the delay to zero or by {@link #close() closing} the
+     * collection. Users that set a delay must close the collection when it is
+     * no longer used.
+     * </p>
+     * <p>
+     * Defaults to zero: the batch is not flushed on a deadline.
+     * </p>
+     *
+     * @param delay
+     *            The maximum time an operation should wait in the batch. Zero
+     *            disables flushing the batch on a deadline.
+     * @param units
+     *            The units for the delay.
+     * @since 2.1.0
+     */
+    public void setMaxFlushDelay(long delay, TimeUnit units);
+
     /**
      * Sets the default mode for batching of writes. This is only applicable to
      * situations where the server supports the MongoDB write command (i.e.,
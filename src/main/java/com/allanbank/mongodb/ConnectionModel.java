@@ -22,6 +22,7 @@ package com.allanbank.mongodb;
 import com.allanbank.mongodb.client.transport.TransportFactory;
 import com.allanbank.mongodb.client.transport.bio.one.OneThreadTransportFactory;
 import com.allanbank.mongodb.client.transport.bio.two.TwoThreadTransportFactory;
+import com.allanbank.mongodb.client.transport.nio.NioTransportFactory;
 
 /**
  * ConnectionModel provides an enumeration of the connection models that the
@@ -68,7 +69,29 @@ public enum ConnectionModel {
      *
      * @since 1.0.0
      */
-    SENDER_RECEIVER_THREAD(new TwoThreadTransportFactory());
+    SENDER_RECEIVER_THREAD(new TwoThreadTransportFactory()),
+
+    /**
+     * Each connection uses a non-blocking socket channel. A small, fixed pool
+     * of selector threads (one per available processor) is shared by all of
+     * the connections to receive the replies. Like {@link #RECEIVER_THREAD}
+     * each sender thread writes the message to the connection directly.
+     * <p>
+     * This {@code ConnectionModel} is most useful for applications with a
+     * large number of connections, e.g., to a large sharded cluster, where a
+     * thread per connection consumes a significant amount of resources.
+     * </p>
+     * <p>
+     * Non-blocking channels cannot be created via a
+     * {@link javax.net.SocketFactory}. If the
+     * {@link MongoClientConfiguration#getSocketFactory() socket factory} has
+     * been customized (e.g., to use SSL) then connections will use the
+     * {@link #RECEIVER_THREAD} model.
+     * </p>
+     *
+     * @since 2.1.0
+     */
+    SHARED_SELECTOR_THREADS(new NioTransportFactory());
 
     /** The {@link TransportFactory} implementing the connection model. */
     private transient final TransportFactory myFactory;
@@ -94,6 +94,12 @@ public class MongoClientConfiguration
      */
     public static final String METRICS_LOGGER_NAME = "com.allanbank.mongodb.metrics";
 
+    /**
+     * The name of the logger used to log the operations that take longer than
+     * the {@link #setSlowOperationThreshold(int) slow operation threshold}.
+     */
+    public static final String SLOW_OPERATION_LOGGER_NAME = "com.allanbank.mongodb.slow";
+
     /** The ASCII character encoding. */
     public static final Charset UTF8 = Charset.forName("UTF-8");
 
@@ -113,6 +119,17 @@ public class MongoClientConfiguration
     /** The serialization version for the class. */
     private static final long serialVersionUID = 2964127883934086500L;
 
+    /**
+     * Determines if new connections are opened by a background thread while
+     * the application's threads continue to use the existing connections. If
+     * false then the thread sending the request that triggers a new connection
+     * opens the connection before sending the request.
+     * <p>
+     * Defaults to false, e.g., connections are opened by the sending thread.
+     * </p>
+     */
+    private boolean myAsyncConnectionGrowthEnabled = false;
+
     /**
      * Determines if additional servers are auto discovered or if connections
      * are limited to the ones manually configured.
@@ -130,6 +147,16 @@ public class MongoClientConfiguration
      */
     private ConnectionModel myConnectionModel = ConnectionModel.RECEIVER_THREAD;
 
+    /**
+     * Determines if the client opens the
+     * {@link #getMinConnectionCount() minimum number of connections} when it
+     * is created instead of on the first requests.
+     * <p>
+     * Defaults to false, e.g., connections are opened on demand.
+     * </p>
+     */
+    private boolean myConnectionWarmUpEnabled = false;
+
     /**
      * Determines how long to wait (in milliseconds) for a socket connection to
      * complete.
@@ -179,6 +206,16 @@ public class MongoClientConfiguration
      */
     private Credential myLegacyCredential;
 
+    /**
+     * The percentile of the recent reply latencies from each server used to
+     * route requests. If zero the requests are routed on the average latency
+     * from the periodic pings of the servers.
+     * <p>
+     * Defaults to 0 or routing on the average latency.
+     * </p>
+     */
+    private double myLatencyPercentile = 0.0D;
+
     /**
      * Determines the type of hand off lock to use between threads in the core
      * of the driver.
@@ -321,6 +358,17 @@ public class MongoClientConfiguration
      */
     private PropertyChangeSupport myPropSupport;
 
+    /**
+     * Determines if documents received from the server are returned as
+     * {@link com.allanbank.mongodb.bson.impl.RawDocument}s that hold the
+     * encoded bytes and only decode elements as they are accessed.
+     * <p>
+     * Defaults to false, e.g., all elements are decoded when the reply is
+     * received.
+     * </p>
+     */
+    private boolean myRawDocumentsEnabled = false;
+
     /**
      * Determines how long to wait (in milliseconds) for a socket read to
      * complete.
@@ -339,15 +387,66 @@ public class MongoClientConfiguration
      */
     private int myReconnectTimeout = 0;
 
+    /**
+     * The maximum number of replies queued for each of the reply dispatch
+     * threads. When a queue is full the thread receiving replies runs the
+     * callback itself, or hands it to the {@link #getExecutor() executor}.
+     * <p>
+     * Defaults to 1024.
+     * </p>
+     */
+    private int myReplyDispatchQueueSize = 1024;
+
+    /**
+     * The number of threads dedicated to running the callbacks for replies.
+     * Replies for the same cursor or stream are always delivered, in order, by
+     * the same thread.
+     * <p>
+     * Defaults to 0 which runs the callbacks on the receive thread or the
+     * {@link #getExecutor() executor}.
+     * </p>
+     */
+    private int myReplyDispatchThreads = 0;
+
+    /**
+     * Determines how the server for each request is picked from the servers
+     * that match the request's {@link ReadPreference}.
+     * <p>
+     * Defaults to {@link ServerSelectionStrategy#LATENCY}.
+     * </p>
+     */
+    private ServerSelectionStrategy myServerSelectionStrategy = ServerSelectionStrategy.LATENCY;
+
     /**
      * The list of servers to initially attempt to connect to. This should be
      * final but for support for the clone() method.
      */
     private List<InetSocketAddress> myServers = new ArrayList<InetSocketAddress>();
 
+    /**
+     * The time (in milliseconds) an operation may take before the time spent
+     * in each stage of the operation is logged. Slow operations are logged at
+     * the INFO level on the logger {@value #SLOW_OPERATION_LOGGER_NAME}.
+     * <p>
+     * Defaults to 0 which disables the slow operation log.
+     * </p>
+     */
+    private int mySlowOperationThreshold = 0;
+
     /** The socket factory for creating sockets. */
     private transient SocketFactory mySocketFactory = null;
 
+    /**
+     * Determines if the documents from a streaming cursor's replies are passed
+     * to the application's callback as each document is decoded. The
+     * callback is called on the connection's receive thread.
+     * <p>
+     * Defaults to false, e.g., the complete reply is decoded before any of the
+     * documents are passed to the callback.
+     * </p>
+     */
+    private boolean myStreamingRepliesEnabled = false;
+
     /** The factory for creating threads to handle connections. */
     private transient ThreadFactory myThreadFactory = null;
 
@@ -363,6 +462,16 @@ public class MongoClientConfiguration
      */
     private boolean myUsingSoKeepalive = true;
 
+    /**
+     * The strategy used by threads in the core of the driver while waiting for
+     * a message to be handed off.
+     * <p>
+     * Defaults to <code>null</code> which uses the {@link StandardWaitStrategy}
+     * matching the {@link #getLockType() lock type}.
+     * </p>
+     */
+    private WaitStrategy myWaitStrategy = null;
+
     /**
      * Creates a new MongoClientConfiguration.
      */
@@ -398,13 +507,16 @@ public class MongoClientConfiguration
     public MongoClientConfiguration(final MongoClientConfiguration other) {
         this();
 
+        myAsyncConnectionGrowthEnabled = other.isAsyncConnectionGrowthEnabled();
         myAutoDiscoverServers = other.isAutoDiscoverServers();
         myConnectionModel = other.getConnectionModel();
+        myConnectionWarmUpEnabled = other.isConnectionWarmUpEnabled();
         myConnectTimeout = other.getConnectTimeout();
         myDefaultDatabase = other.getDefaultDatabase();
         myDefaultDurability = other.getDefaultDurability();
         myDefaultReadPreference = other.getDefaultReadPreference();
         myExecutor = other.getExecutor();
+        myLatencyPercentile = other.getLatencyPercentile();
         myLockType = other.getLockType();
         myMaxCachedStringEntries = other.getMaxCachedStringEntries();
         myMaxCachedStringLength = other.getMaxCachedStringLength();
@@ -414,11 +526,18 @@ public class MongoClientConfiguration
                 .getMaxPendingOperationsPerConnection();
         myMaxSecondaryLag = other.getMaxSecondaryLag();
         myMinConnectionCount = other.getMinConnectionCount();
+        myRawDocumentsEnabled = other.isRawDocumentsEnabled();
         myReadTimeout = other.getReadTimeout();
         myReconnectTimeout = other.getReconnectTimeout();
+        myReplyDispatchQueueSize = other.getReplyDispatchQueueSize();
+        myReplyDispatchThreads = other.getReplyDispatchThreads();
+        myServerSelectionStrategy = other.getServerSelectionStrategy();
+        mySlowOperationThreshold = other.getSlowOperationThreshold();
         mySocketFactory = other.getSocketFactory();
+        myStreamingRepliesEnabled = other.isStreamingRepliesEnabled();
         myThreadFactory = other.getThreadFactory();
         myUsingSoKeepalive = other.isUsingSoKeepalive();
+        myWaitStrategy = other.myWaitStrategy;
 
         for (final Credential credential : other.getCredentials()) {
             addCredential(credential);
@@ -914,6 +1033,24 @@ public class MongoClientConfiguration
         return myExecutor;
     }
 
+    /**
+     * Returns the percentile of the recent reply latencies from each server
+     * used to route requests. e.g., 50 routes on the median latency and 99 on
+     * the 99th percentile latency of the replies over the last minute. If
+     * zero the requests are routed on the average latency from the periodic
+     * pings of the servers.
+     * <p>
+     * Defaults to 0 or routing on the average latency.
+     * </p>
+     *
+     * @return The percentile of the recent reply latencies used to route
+     *         requests.
+     * @since 2.1.0
+     */
+    public double getLatencyPercentile() {
+        return myLatencyPercentile;
+    }
+
     /**
      * Returns the type of hand off lock to use between threads in the core of
      * the driver.
@@ -1122,6 +1259,39 @@ public class MongoClientConfiguration
         return myReconnectTimeout;
     }
 
+    /**
+     * Returns the maximum number of replies queued for each of the reply
+     * dispatch threads. When a queue is full the thread receiving replies runs
+     * the callback itself, or hands it to the {@link #getExecutor() executor}.
+     * <p>
+     * Defaults to 1024.
+     * </p>
+     *
+     * @return The maximum number of replies queued for each of the reply
+     *         dispatch threads.
+     * @since 2.1.0
+     */
+    public int getReplyDispatchQueueSize() {
+        return myReplyDispatchQueueSize;
+    }
+
+    /**
+     * Returns the number of threads dedicated to running the callbacks for
+     * replies. Replies for the same cursor or stream are always delivered, in
+     * order, by the same thread.
+     * <p>
+     * Defaults to 0 which runs the callbacks on the receive thread or the
+     * {@link #getExecutor() executor}.
+     * </p>
+     *
+     * @return The number of threads dedicated to running the callbacks for
+     *         replies.
+     * @since 2.1.0
+     */
+    public int getReplyDispatchThreads() {
+        return myReplyDispatchThreads;
+    }
+
     /**
      * Returns the list of servers to initially attempt to connect to.
      *
@@ -1131,6 +1301,20 @@ public class MongoClientConfiguration
         return Collections.unmodifiableList(myServers);
     }
 
+    /**
+     * Returns how the server for each request is picked from the servers that
+     * match the request's {@link ReadPreference}.
+     * <p>
+     * Defaults to {@link ServerSelectionStrategy#LATENCY}.
+     * </p>
+     *
+     * @return The strategy for picking the server for each request.
+     * @since 2.1.0
+     */
+    public ServerSelectionStrategy getServerSelectionStrategy() {
+        return myServerSelectionStrategy;
+    }
+
     /**
      * Returns the list of servers to initially attempt to connect to.
      *
@@ -1144,6 +1328,22 @@ public class MongoClientConfiguration
         return servers;
     }
 
+    /**
+     * Returns the time (in milliseconds) an operation may take before the time
+     * spent in each stage of the operation is logged. Slow operations are
+     * logged at the INFO level on the logger {@value #SLOW_OPERATION_LOGGER_NAME}.
+     * <p>
+     * Defaults to 0 which disables the slow operation log.
+     * </p>
+     *
+     * @return The time (in milliseconds) an operation may take before it is
+     *         logged.
+     * @since 2.1.0
+     */
+    public int getSlowOperationThreshold() {
+        return mySlowOperationThreshold;
+    }
+
     /**
      * Returns the socket factory to use in making connections to the MongoDB
      * server.
@@ -1206,6 +1406,26 @@ public class MongoClientConfiguration
         return null;
     }
 
+    /**
+     * Returns the strategy used by threads in the core of the driver while
+     * waiting for a message to be handed off.
+     * <p>
+     * Defaults to the {@link StandardWaitStrategy} matching the
+     * {@link #getLockType() lock type}: {@link StandardWaitStrategy#BLOCKING}
+     * for {@link LockType#MUTEX} and
+     * {@link StandardWaitStrategy#LOW_LATENCY_SPIN} for
+     * {@link LockType#LOW_LATENCY_SPIN}.
+     * </p>
+     *
+     * @return The strategy used while waiting for a message to be handed off.
+     */
+    public WaitStrategy getWaitStrategy() {
+        if (myWaitStrategy == null) {
+            return StandardWaitStrategy.forLockType(myLockType);
+        }
+        return myWaitStrategy;
+    }
+
     /**
      * Returns true if the user should authenticate as an administrative user.
      *
@@ -1229,6 +1449,25 @@ public class MongoClientConfiguration
         return !myCredentials.isEmpty();
     }
 
+    /**
+     * Returns true if new connections are opened by a background thread while
+     * the application's threads continue to use the existing connections. If
+     * false then the thread sending the request that triggers a new connection
+     * opens the connection before sending the request.
+     * <p>
+     * The first connection is always opened by the sending thread since there
+     * is no other connection to use while it is being opened.
+     * </p>
+     * <p>
+     * Defaults to false, e.g., connections are opened by the sending thread.
+     * </p>
+     *
+     * @return True if new connections are opened by a background thread.
+     */
+    public boolean isAsyncConnectionGrowthEnabled() {
+        return myAsyncConnectionGrowthEnabled;
+    }
+
     /**
      * Returns if additional servers are auto discovered or if connections are
      * limited to the ones manually configured.
@@ -1242,6 +1481,22 @@ public class MongoClientConfiguration
         return myAutoDiscoverServers;
     }
 
+    /**
+     * Returns true if the client opens the
+     * {@link #getMinConnectionCount() minimum number of connections} (at least
+     * one) when it is created instead of on the first requests. The warm-up
+     * is started by {@link MongoFactory#createClient(MongoClientConfiguration)}
+     * once the client has been created.
+     * <p>
+     * Defaults to false, e.g., connections are opened on demand.
+     * </p>
+     *
+     * @return True if the client opens the connections when it is created.
+     */
+    public boolean isConnectionWarmUpEnabled() {
+        return myConnectionWarmUpEnabled;
+    }
+
     /**
      * Returns true if the driver logs each message that is sent or received by
      * the client. Logged messages will be at the DEBUG level on the logger
@@ -1287,6 +1542,47 @@ public class MongoClientConfiguration
         return myMetricsEnabled;
     }
 
+    /**
+     * Returns true if documents received from the server are returned as
+     * {@link com.allanbank.mongodb.bson.impl.RawDocument}s that hold the
+     * encoded bytes and only decode elements as they are accessed. Raw
+     * documents are also written back to the server by copying their bytes.
+     * This reduces the cost of reading only a few fields of each document or
+     * of copying documents from one collection to another.
+     * <p>
+     * Defaults to false, e.g., all elements are decoded when the reply is
+     * received.
+     * </p>
+     *
+     * @return True if documents received from the server are returned as
+     *         {@link com.allanbank.mongodb.bson.impl.RawDocument}s.
+     */
+    public boolean isRawDocumentsEnabled() {
+        return myRawDocumentsEnabled;
+    }
+
+    /**
+     * Returns true if the documents from a streaming cursor's replies are
+     * passed to the application's callback as each document is decoded.
+     * <p>
+     * This reduces the time to the first document and the memory used for
+     * each batch of documents but the callback is called on the connection's
+     * receive thread and no other replies are received on the connection until
+     * the callback returns.
+     * </p>
+     * <p>
+     * Defaults to false, e.g., the complete reply is decoded before any of the
+     * documents are passed to the callback.
+     * </p>
+     *
+     * @return True if the documents from a streaming cursor's replies are
+     *         passed to the application's callback as each document is
+     *         decoded.
+     */
+    public boolean isStreamingRepliesEnabled() {
+        return myStreamingRepliesEnabled;
+    }
+
     /**
      * Returns if the {@link java.net.Socket#setKeepAlive(boolean) SO_KEEPALIVE}
      * socket option is set.
@@ -1330,6 +1626,34 @@ public class MongoClientConfiguration
         myPropSupport.removePropertyChangeListener(propertyName, listener);
     }
 
+    /**
+     * Sets if new connections are opened by a background thread while the
+     * application's threads continue to use the existing connections. If
+     * false then the thread sending the request that triggers a new connection
+     * opens the connection before sending the request.
+     * <p>
+     * Enabling asynchronous growth avoids stalling every sender behind a slow
+     * connection handshake when the client is adding connections, e.g., after
+     * a reconnect.
+     * </p>
+     * <p>
+     * Defaults to false, e.g., connections are opened by the sending thread.
+     * </p>
+     *
+     * @param asyncConnectionGrowthEnabled
+     *            The new value for if connections are opened by a background
+     *            thread.
+     */
+    public void setAsyncConnectionGrowthEnabled(
+            final boolean asyncConnectionGrowthEnabled) {
+        final boolean old = myAsyncConnectionGrowthEnabled;
+
+        myAsyncConnectionGrowthEnabled = asyncConnectionGrowthEnabled;
+
+        myPropSupport.firePropertyChange("asyncConnectionGrowthEnabled", old,
+                myAsyncConnectionGrowthEnabled);
+    }
+
     /**
      * Sets if additional servers are auto discovered or if connections are
      * limited to the ones manually configured.
@@ -1374,6 +1698,30 @@ public class MongoClientConfiguration
                 myConnectionModel);
     }
 
+    /**
+     * Sets if the client opens the {@link #getMinConnectionCount() minimum
+     * number of connections} (at least one) when it is created instead of on
+     * the first requests. The warm-up is started by
+     * {@link MongoFactory#createClient(MongoClientConfiguration)} once the
+     * client has been created.
+     * <p>
+     * Defaults to false, e.g., connections are opened on demand.
+     * </p>
+     *
+     * @param connectionWarmUpEnabled
+     *            The new value for if the client opens the connections when it
+     *            is created.
+     */
+    public void setConnectionWarmUpEnabled(
+            final boolean connectionWarmUpEnabled) {
+        final boolean old = myConnectionWarmUpEnabled;
+
+        myConnectionWarmUpEnabled = connectionWarmUpEnabled;
+
+        myPropSupport.firePropertyChange("connectionWarmUpEnabled", old,
+                myConnectionWarmUpEnabled);
+    }
+
     /**
      * Sets how long to wait (in milliseconds) for a socket connection to
      * complete.
@@ -1519,6 +1867,34 @@ public class MongoClientConfiguration
         myPropSupport.firePropertyChange("executor", old, myExecutor);
     }
 
+    /**
+     * Sets the percentile of the recent reply latencies from each server used
+     * to route requests. e.g., 50 routes on the median latency and 99 on the
+     * 99th percentile latency of the replies over the last minute. If zero the
+     * requests are routed on the average latency from the periodic pings of
+     * the servers.
+     * <p>
+     * The value is used when each server is first seen by the client. Set
+     * this value before creating the client.
+     * </p>
+     * <p>
+     * Defaults to 0 or routing on the average latency.
+     * </p>
+     *
+     * @param latencyPercentile
+     *            The new value for the percentile of the recent reply
+     *            latencies used to route requests.
+     * @since 2.1.0
+     */
+    public void setLatencyPercentile(final double latencyPercentile) {
+        final double old = myLatencyPercentile;
+
+        myLatencyPercentile = latencyPercentile;
+
+        myPropSupport.firePropertyChange("latencyPercentile",
+                Double.valueOf(old), Double.valueOf(myLatencyPercentile));
+    }
+
     /**
      * Sets the type of hand off lock to use between threads in the core of the
      * driver.
@@ -1766,6 +2142,28 @@ public class MongoClientConfiguration
                 myMinConnectionCount);
     }
 
+    /**
+     * Sets if documents received from the server are returned as
+     * {@link com.allanbank.mongodb.bson.impl.RawDocument}s that hold the
+     * encoded bytes and only decode elements as they are accessed.
+     * <p>
+     * Defaults to false, e.g., all elements are decoded when the reply is
+     * received.
+     * </p>
+     *
+     * @param rawDocumentsEnabled
+     *            The new value for if documents received from the server are
+     *            returned as raw documents.
+     */
+    public void setRawDocumentsEnabled(final boolean rawDocumentsEnabled) {
+        final boolean old = myRawDocumentsEnabled;
+
+        myRawDocumentsEnabled = rawDocumentsEnabled;
+
+        myPropSupport.firePropertyChange("rawDocumentsEnabled", old,
+                myRawDocumentsEnabled);
+    }
+
     /**
      * @param readTimeout
      *            The time to wait (in milliseconds) for a socket read to
@@ -1796,6 +2194,72 @@ public class MongoClientConfiguration
                 myReconnectTimeout);
     }
 
+    /**
+     * Sets the maximum number of replies queued for each of the reply dispatch
+     * threads. When a queue is full the thread receiving replies runs the
+     * callback itself, or hands it to the {@link #getExecutor() executor}.
+     * <p>
+     * Defaults to 1024.
+     * </p>
+     *
+     * @param replyDispatchQueueSize
+     *            The new maximum number of replies queued for each of the
+     *            reply dispatch threads.
+     * @since 2.1.0
+     */
+    public void setReplyDispatchQueueSize(final int replyDispatchQueueSize) {
+        final int old = myReplyDispatchQueueSize;
+
+        myReplyDispatchQueueSize = replyDispatchQueueSize;
+
+        myPropSupport.firePropertyChange("replyDispatchQueueSize", old,
+                myReplyDispatchQueueSize);
+    }
+
+    /**
+     * Sets the number of threads dedicated to running the callbacks for
+     * replies. Replies for the same cursor or stream are always delivered, in
+     * order, by the same thread.
+     * <p>
+     * Defaults to 0 which runs the callbacks on the receive thread or the
+     * {@link #getExecutor() executor}.
+     * </p>
+     *
+     * @param replyDispatchThreads
+     *            The new number of threads dedicated to running the callbacks
+     *            for replies.
+     * @since 2.1.0
+     */
+    public void setReplyDispatchThreads(final int replyDispatchThreads) {
+        final int old = myReplyDispatchThreads;
+
+        myReplyDispatchThreads = replyDispatchThreads;
+
+        myPropSupport.firePropertyChange("replyDispatchThreads", old,
+                myReplyDispatchThreads);
+    }
+
+    /**
+     * Sets how the server for each request is picked from the servers that
+     * match the request's {@link ReadPreference}.
+     * <p>
+     * Defaults to {@link ServerSelectionStrategy#LATENCY}.
+     * </p>
+     *
+     * @param serverSelectionStrategy
+     *            The new strategy for picking the server for each request.
+     * @since 2.1.0
+     */
+    public void setServerSelectionStrategy(
+            final ServerSelectionStrategy serverSelectionStrategy) {
+        final ServerSelectionStrategy old = myServerSelectionStrategy;
+
+        myServerSelectionStrategy = serverSelectionStrategy;
+
+        myPropSupport.firePropertyChange("serverSelectionStrategy", old,
+                myServerSelectionStrategy);
+    }
+
     /**
      * Sets the servers to initially attempt to connect to.
      *
@@ -1817,6 +2281,28 @@ public class MongoClientConfiguration
                 Collections.unmodifiableList(myServers));
     }
 
+    /**
+     * Sets the time (in milliseconds) an operation may take before the time
+     * spent in each stage of the operation is logged. Slow operations are
+     * logged at the INFO level on the logger {@value #SLOW_OPERATION_LOGGER_NAME}.
+     * <p>
+     * Defaults to 0 which disables the slow operation log.
+     * </p>
+     *
+     * @param slowOperationThreshold
+     *            The new time (in milliseconds) an operation may take before
+     *            it is logged. Zero or less disables the log.
+     * @since 2.1.0
+     */
+    public void setSlowOperationThreshold(final int slowOperationThreshold) {
+        final int old = mySlowOperationThreshold;
+
+        mySlowOperationThreshold = slowOperationThreshold;
+
+        myPropSupport.firePropertyChange("slowOperationThreshold", old,
+                mySlowOperationThreshold);
+    }
+
     /**
      * Sets the socket factory to use in making connections to the MongoDB
      * server. Setting the SocketFactory to null resets the factory to the
@@ -1887,6 +2373,27 @@ public class MongoClientConfiguration
         myPropSupport.firePropertyChange("socketFactory", old, mySocketFactory);
     }
 
+    /**
+     * Sets if the documents from a streaming cursor's replies are passed to
+     * the application's callback as each document is decoded.
+     * <p>
+     * Defaults to false, e.g., the complete reply is decoded before any of the
+     * documents are passed to the callback.
+     * </p>
+     *
+     * @param streamingRepliesEnabled
+     *            The new value for if the documents from a streaming cursor's
+     *            replies are passed to the callback as they are decoded.
+     */
+    public void setStreamingRepliesEnabled(final boolean streamingRepliesEnabled) {
+        final boolean old = myStreamingRepliesEnabled;
+
+        myStreamingRepliesEnabled = streamingRepliesEnabled;
+
+        myPropSupport.firePropertyChange("streamingRepliesEnabled", old,
+                myStreamingRepliesEnabled);
+    }
+
     /**
      * Sets the thread factory for managing connections to the new value.
      *
@@ -1940,6 +2447,27 @@ public class MongoClientConfiguration
                 myUsingSoKeepalive);
     }
 
+    /**
+     * Sets the strategy used by threads in the core of the driver while
+     * waiting for a message to be handed off.
+     * <p>
+     * Defaults to the {@link StandardWaitStrategy} matching the
+     * {@link #getLockType() lock type}. Setting the value to <code>null</code>
+     * restores the default.
+     * </p>
+     *
+     * @param waitStrategy
+     *            The new value for the strategy used while waiting for a
+     *            message to be handed off.
+     */
+    public void setWaitStrategy(final WaitStrategy waitStrategy) {
+        final WaitStrategy old = myWaitStrategy;
+
+        myWaitStrategy = waitStrategy;
+
+        myPropSupport.firePropertyChange("waitStrategy", old, myWaitStrategy);
+    }
+
     /**
      * Reads the serialized configuration and sets the transient field to known
      * values.
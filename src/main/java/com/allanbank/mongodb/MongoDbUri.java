@@ -75,11 +75,17 @@ import com.allanbank.mongodb.bson.element.UuidElement;
  * The current set of auto-mapped fields is listed below. See the linked
  * documentation for details on the fields values.
  * <ul>
+ * <li>{@link MongoClientConfiguration#setAsyncConnectionGrowthEnabled(boolean)
+ * asyncConnectionGrowthEnabled}</li>
  * <li>{@link MongoClientConfiguration#setAutoDiscoverServers(boolean)
  * autoDiscoverServers}</li>
  * <li>{@link MongoClientConfiguration#setConnectionModel(ConnectionModel)
  * connectionModel}</li>
+ * <li>{@link MongoClientConfiguration#setConnectionWarmUpEnabled(boolean)
+ * connectionWarmUpEnabled}</li>
  * <li>{@link MongoClientConfiguration#setConnectTimeout(int) connectTimeout}</li>
+ * <li>{@link MongoClientConfiguration#setLatencyPercentile(double)
+ * latencyPercentile}</li>
  * <li>{@link MongoClientConfiguration#setLockType(LockType) lockType}</li>
  * <li>{@link MongoClientConfiguration#setMaxCachedStringEntries(int)
  * maxCachedStringEntries}</li>
@@ -97,13 +103,29 @@ import com.allanbank.mongodb.bson.element.UuidElement;
  * <li>
  * {@link MongoClientConfiguration#setMinConnectionCount(int)
  * minConnectionCount}</li>
+ * <li>{@link MongoClientConfiguration#setRawDocumentsEnabled(boolean)
+ * rawDocumentsEnabled}</li>
  * <li>
  * {@link MongoClientConfiguration#setReadTimeout(int) readTimeout}</li>
  * <li>
  * {@link MongoClientConfiguration#setReconnectTimeout(int) reconnectTimeout}</li>
+ * <li>{@link MongoClientConfiguration#setReplyDispatchQueueSize(int)
+ * replyDispatchQueueSize}</li>
+ * <li>{@link MongoClientConfiguration#setReplyDispatchThreads(int)
+ * replyDispatchThreads}</li>
+ * <li>
+ * {@link MongoClientConfiguration#setServerSelectionStrategy(ServerSelectionStrategy)
+ * serverSelectionStrategy}</li>
+ * <li>{@link MongoClientConfiguration#setSlowOperationThreshold(int)
+ * slowOperationThreshold}</li>
+ * <li>{@link MongoClientConfiguration#setStreamingRepliesEnabled(boolean)
+ * streamingRepliesEnabled}</li>
  * <li>
  * {@link MongoClientConfiguration#setUsingSoKeepalive(boolean)
  * usingSoKeepalive}</li>
+ * <li>
+ * {@link MongoClientConfiguration#setWaitStrategy(WaitStrategy) waitStrategy}
+ * </li>
  * </ul>
  * </p>
  * <p>
@@ -93,6 +93,12 @@ public class MongoFactory {
     /**
      * Creates a new {@link MongoClient} instance using the
      * {@link MongoClientConfiguration}.
+     * <p>
+     * If the configuration has
+     * {@link MongoClientConfiguration#isConnectionWarmUpEnabled() connection
+     * warm-up enabled} then the warm-up is started, in the background, before
+     * the client is returned.
+     * </p>
      *
      * @param config
      *            The configuration for the connection to MongoDB.
@@ -100,7 +106,11 @@ public class MongoFactory {
      *         MongoDB.
      */
     public static MongoClient createClient(final MongoClientConfiguration config) {
-        return new MongoClientImpl(config);
+        final MongoClientImpl client = new MongoClientImpl(config);
+        if (config.isConnectionWarmUpEnabled()) {
+            client.warmUp();
+        }
+        return client;
     }
 
     /**
@@ -45,6 +45,47 @@ import javax.annotation.concurrent.NotThreadSafe;
 public interface MongoIterator<T>
         extends Iterator<T>, Iterable<T>, MongoCursorControl,
         ClosableIterator<T> {
+    /**
+     * Returns the number of times the iterator has had to block waiting for a
+     * batch of documents to be received from the server. A consistently
+     * increasing value indicates that the iteration is outpacing the network
+     * and a larger {@link #setReadAhead read ahead} may help.
+     *
+     * @return The number of times the iterator has blocked waiting for a
+     *         batch of documents.
+     * @since 2.1.0
+     */
+    long getBlockedCount();
+
+    /**
+     * Returns the number of batches of documents the iterator will request
+     * from the server ahead of the iteration.
+     *
+     * @return The number of batches of documents the iterator will request
+     *         from the server ahead of the iteration.
+     * @since 2.1.0
+     */
+    int getReadAhead();
+
+    /**
+     * Sets the number of batches of documents the iterator will request from
+     * the server ahead of the iteration.
+     * <p>
+     * Requests for batches are still sent one at a time as the server's
+     * cursors do not support concurrent requests but the next batch is
+     * requested as soon as the previous batch is received. Requests stop once
+     * the number of batches waiting to be iterated over reaches the read
+     * ahead or the size of those batches exceeds the iterator's byte limit.
+     * Values less than 1 are treated as 1.
+     * </p>
+     *
+     * @param batches
+     *            The number of batches of documents to request from the
+     *            server ahead of the iteration.
+     * @since 2.1.0
+     */
+    void setReadAhead(int batches);
+
     /**
      * Consumes all of the elements in the iterator and returns them in a single
      * array.
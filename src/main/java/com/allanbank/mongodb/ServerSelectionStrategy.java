@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * ServerSelectionStrategy.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb;
+
+/**
+ * ServerSelectionStrategy provides an enumeration for the strategies used to
+ * pick the server (a secondary in a replica set or a mongos router in a
+ * sharded cluster) each request is sent to.
+ *
+ * @api.yes This interface is part of the driver's API. Public and protected
+ *          members will be deprecated for at least 1 non-bugfix release
+ *          (version numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;)
+ *          before being removed or modified.
+ * @since 2.1.0
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public enum ServerSelectionStrategy {
+
+    /**
+     * Pick a server at random weighted by the average latency to each server.
+     * The average latency is a long running average, mostly of the periodic
+     * pings of the servers.
+     */
+    LATENCY,
+
+    /**
+     * Pick two servers at random and use the one with the lower load. The load
+     * is the number of requests outstanding against the server times the
+     * recent latency of the replies from the server.
+     * <p>
+     * This strategy reacts to a server that has stalled (e.g., for a long
+     * garbage collection) within a few requests instead of waiting for the
+     * average latency to catch up.
+     * </p>
+     * <p>
+     * For a sharded cluster this strategy also spreads the requests across the
+     * mongos routers the connection is already connected to instead of sending
+     * all requests for a connection to a single router. No new connections are
+     * opened to pick a router so the number of sockets is not increased.
+     * </p>
+     */
+    POWER_OF_TWO_CHOICES;
+}
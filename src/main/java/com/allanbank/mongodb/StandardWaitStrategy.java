@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * StandardWaitStrategy.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * StandardWaitStrategy provides the standard {@link WaitStrategy}
+ * implementations.
+ *
+ * @api.yes This enumeration is part of the driver's API. Public and protected
+ *          members will be deprecated for at least 1 non-bugfix release
+ *          (version numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;)
+ *          before being removed or modified.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ * @since 2.1.0
+ */
+public enum StandardWaitStrategy
+        implements WaitStrategy {
+
+    /**
+     * Block on a standard Java mutex immediately. This uses the least CPU and
+     * is the behavior of {@link LockType#MUTEX}.
+     */
+    BLOCKING {
+        @Override
+        public boolean idle(final int attempt, final long waitStartNanos) {
+            return false;
+        }
+    },
+
+    /**
+     * Spin without pausing and never block. This produces the lowest latency
+     * hand-off but each waiting thread will consume a complete CPU.
+     */
+    BUSY_SPIN {
+        @Override
+        public boolean idle(final int attempt, final long waitStartNanos) {
+            return true;
+        }
+    },
+
+    /**
+     * Spin for {@value #SPIN_ITERATIONS} checks and then spin and yield for
+     * up to 1/2 millisecond before blocking. This is the behavior of
+     * {@link LockType#LOW_LATENCY_SPIN}.
+     */
+    LOW_LATENCY_SPIN {
+        @Override
+        public boolean idle(final int attempt, final long waitStartNanos) {
+            if (attempt < SPIN_ITERATIONS) {
+                return true;
+            }
+
+            final long waited = System.nanoTime() - waitStartNanos;
+            if (waited < SPIN_TIME_NS) {
+                return true;
+            }
+            else if (waited < YIELD_TIME_NS) {
+                Thread.yield();
+                return true;
+            }
+            return false;
+        }
+    },
+
+    /**
+     * Spin and then yield briefly before parking the thread with an
+     * exponential back-off up to {@link #MAX_PARK_TIME_NS 1 millisecond}. The
+     * thread never blocks so the hand-off latency is bounded by the back-off
+     * but an idle thread will wake up to 1,000 times per second.
+     */
+    PARK_WITH_BACKOFF {
+        @Override
+        public boolean idle(final int attempt, final long waitStartNanos) {
+            if (attempt < BACKOFF_SPIN_ITERATIONS) {
+                return true;
+            }
+            else if (attempt < (2 * BACKOFF_SPIN_ITERATIONS)) {
+                Thread.yield();
+                return true;
+            }
+
+            final int shift = Math.min(attempt - (2 * BACKOFF_SPIN_ITERATIONS),
+                    MAX_PARK_SHIFT);
+            LockSupport.parkNanos(Math.min(MIN_PARK_TIME_NS << shift,
+                    MAX_PARK_TIME_NS));
+            return true;
+        }
+    },
+
+    /**
+     * Yield to other threads between each check and never block. This is less
+     * aggressive than {@link #BUSY_SPIN} but still keeps the waiting thread
+     * runnable.
+     */
+    YIELD {
+        @Override
+        public boolean idle(final int attempt, final long waitStartNanos) {
+            Thread.yield();
+            return true;
+        }
+    };
+
+    /** The longest time to park a thread: 1 millisecond. */
+    public static final long MAX_PARK_TIME_NS = TimeUnit.MILLISECONDS
+            .toNanos(1);
+
+    /** Amount of time to spin before yielding. Set to 1/100 of a millisecond. */
+    public static final long SPIN_TIME_NS = TimeUnit.MILLISECONDS.toNanos(1) / 100;
+
+    /** Amount of time to spin/yield before waiting. Set to 1/2 millisecond. */
+    public static final long YIELD_TIME_NS = TimeUnit.MILLISECONDS.toNanos(1) >> 1;
+
+    /** Number of times to spin before checking the time. */
+    public static final int SPIN_ITERATIONS = 10000;
+
+    /** Number of times to spin, and then yield, before parking. */
+    private static final int BACKOFF_SPIN_ITERATIONS = 100;
+
+    /** The largest shift of the park time. */
+    private static final int MAX_PARK_SHIFT = 10;
+
+    /** The shortest time to park a thread: 1 microsecond. */
+    private static final long MIN_PARK_TIME_NS = TimeUnit.MICROSECONDS
+            .toNanos(1);
+
+    /**
+     * Returns the wait strategy matching the behavior of the {@link LockType}
+     * .
+     *
+     * @param lockType
+     *            The lock type to match.
+     * @return The matching wait strategy.
+     */
+    public static StandardWaitStrategy forLockType(final LockType lockType) {
+        if (lockType == LockType.LOW_LATENCY_SPIN) {
+            return LOW_LATENCY_SPIN;
+        }
+        return BLOCKING;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * WaitStrategy.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb;
+
+import java.io.Serializable;
+
+/**
+ * WaitStrategy provides the interface for the strategy used by a thread in the
+ * core of the driver while it waits for another thread to hand off a message.
+ * <p>
+ * The waiting thread repeatedly checks for the message. Each time the check
+ * fails the thread calls {@link #idle(int, long)}. The strategy can spin,
+ * yield or park the thread before returning <code>true</code> to have the
+ * thread check again, or can return <code>false</code> to have the thread
+ * block until it is notified by the thread handing off the message.
+ * </p>
+ * <p>
+ * The {@link StandardWaitStrategy} provides the common strategies.
+ * Implementations are shared across threads and must be thread safe. The
+ * strategy is serialized with the {@link MongoClientConfiguration} so
+ * implementations must also be serializable.
+ * </p>
+ *
+ * @api.yes This interface is part of the driver's API. Public and protected
+ *          members will be deprecated for at least 1 non-bugfix release
+ *          (version numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;)
+ *          before being removed or modified.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ * @since 2.1.0
+ */
+public interface WaitStrategy
+        extends Serializable {
+
+    /**
+     * Called by the waiting thread each time its check for a message fails.
+     *
+     * @param attempt
+     *            The number of checks that have already failed, less one.
+     *            Zero for the first call of each wait.
+     * @param waitStartNanos
+     *            The {@link System#nanoTime()} when the wait started.
+     * @return True if the thread should check for the message again, false if
+     *         the thread should block until notified.
+     */
+    public boolean idle(int attempt, long waitStartNanos);
+}
@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * WaitStrategyEditor.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb;
+
+import java.beans.PropertyEditorSupport;
+import java.lang.reflect.InvocationTargetException;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * WaitStrategyEditor provides the ability to parse a {@link WaitStrategy}
+ * from a string. The string can be the name of one of the
+ * {@link StandardWaitStrategy} values (case insensitive) or the fully
+ * qualified name of a {@link WaitStrategy} implementation with a public no
+ * argument constructor.
+ *
+ * @api.yes This class is part of the driver's API. Public and protected members
+ *          will be deprecated for at least 1 non-bugfix release (version
+ *          numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;) before being
+ *          removed or modified.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ * @since 2.1.0
+ */
+@NotThreadSafe
+public class WaitStrategyEditor
+        extends PropertyEditorSupport {
+
+    /**
+     * Creates a new WaitStrategyEditor.
+     */
+    public WaitStrategyEditor() {
+        super();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to parse a string to a {@link WaitStrategy}.
+     * </p>
+     *
+     * @throws IllegalArgumentException
+     *             If the string cannot be parsed into a {@link WaitStrategy}.
+     */
+    @Override
+    public void setAsText(final String waitStrategyString)
+            throws IllegalArgumentException {
+        final String trimmed = waitStrategyString.trim();
+        for (final StandardWaitStrategy strategy : StandardWaitStrategy
+                .values()) {
+            if (strategy.name().equalsIgnoreCase(trimmed)) {
+                setValue(strategy);
+                return;
+            }
+        }
+
+        try {
+            final Class<?> clazz = Class.forName(trimmed);
+            if (WaitStrategy.class.isAssignableFrom(clazz)) {
+                setValue(clazz.getDeclaredConstructor().newInstance());
+                return;
+            }
+        }
+        catch (final ClassNotFoundException e) {
+            // Fall through to the error.
+        }
+        catch (final NoSuchMethodException e) {
+            // Fall through to the error.
+        }
+        catch (final InstantiationException e) {
+            // Fall through to the error.
+        }
+        catch (final IllegalAccessException e) {
+            // Fall through to the error.
+        }
+        catch (final InvocationTargetException e) {
+            // Fall through to the error.
+        }
+
+        throw new IllegalArgumentException("Could not determine the wait "
+                + "strategy for '" + waitStrategyString + "'.");
+    }
+}
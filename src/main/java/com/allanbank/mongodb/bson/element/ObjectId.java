@@ -53,9 +53,29 @@ public class ObjectId
     /** The current process's machine id. */
     public static final long MACHINE_ID;
 
-    /** The counter to add to the machine id. */
+    /**
+     * The number of counter values each thread reserves from the shared
+     * counter at a time.
+     */
+    /* package */static final int COUNTER_BLOCK_SIZE = 256;
+
+    /** The mask for the counter portion of the machine id. */
+    private static final long COUNTER_MASK = 0xFFFFFFL;
+
+    /**
+     * The counter to add to the machine id. Threads reserve blocks of
+     * {@link #COUNTER_BLOCK_SIZE} values from the counter.
+     */
     private static final AtomicLong COUNTER;
 
+    /** The per thread state for generating new object ids. */
+    private static final ThreadLocal<IdGenerator> GENERATORS = new ThreadLocal<IdGenerator>() {
+        @Override
+        protected IdGenerator initialValue() {
+            return new IdGenerator();
+        }
+    };
+
     /** Serialization version for the class. */
     private static final long serialVersionUID = -3035334151717895487L;
 
@@ -136,28 +156,7 @@ public class ObjectId
         value += (processId & 0xFF);
 
         MACHINE_ID = (value << 24);
-        COUNTER = new AtomicLong(rand.nextLong() & 0xFFFFFFL);
-    }
-
-    /**
-     * Generates the current timestamp value. This is the number of
-     * <b>seconds</b> since the Unix Epoch.
-     *
-     * @return The unique object id value.
-     */
-    private static int now() {
-        return (int) TimeUnit.MILLISECONDS
-                .toSeconds(System.currentTimeMillis());
-    }
-
-    /**
-     * Generates the current timestamp value. This is the number of
-     * <b>seconds</b> since the Unix Epoch.
-     *
-     * @return The unique object id value.
-     */
-    private static long processId() {
-        return MACHINE_ID + (COUNTER.incrementAndGet() & 0xFFFFFFL);
+        COUNTER = new AtomicLong(rand.nextLong() & COUNTER_MASK);
     }
 
     /** The BSON Object Id's machine identifier. */
@@ -170,7 +169,7 @@ public class ObjectId
      * Constructs a new {@link ObjectId}.
      */
     public ObjectId() {
-        this(now(), processId());
+        this(GENERATORS.get());
     }
 
     /**
@@ -186,6 +185,17 @@ public class ObjectId
         myMachineId = machineId;
     }
 
+    /**
+     * Constructs a new {@link ObjectId} from the thread's generator.
+     *
+     * @param generator
+     *            The thread's generator for the timestamp and counter.
+     */
+    private ObjectId(final IdGenerator generator) {
+        myTimestamp = generator.now();
+        myMachineId = MACHINE_ID + generator.nextCount();
+    }
+
     /**
      * Constructs a new {@link ObjectId}.
      *
@@ -356,4 +366,86 @@ public class ObjectId
 
         return builder.toString();
     }
+
+    /**
+     * IdGenerator provides the per thread state for generating object ids.
+     * <p>
+     * Each thread reserves a block of counter values from the shared
+     * {@link ObjectId#COUNTER} with a single atomic add and then hands out the
+     * values in the block without any further contention. The values remain
+     * unique across the process until the 3 byte counter wraps, the same as
+     * when each value is taken from the shared counter, and increase for each
+     * id generated by a thread.
+     * </p>
+     * <p>
+     * The generator also caches the current second along with the wall clock
+     * window for that second so that generating an id only needs to read the
+     * clock and compare it to the window. The conversion to seconds is only
+     * done once the clock moves out of the window.
+     * </p>
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static final class IdGenerator {
+
+        /** The number of milliseconds in a second. */
+        private static final long MILLIS_PER_SECOND = TimeUnit.SECONDS
+                .toMillis(1);
+
+        /** The number of counter values remaining in the reserved block. */
+        private int myRemaining;
+
+        /** The cached number of seconds since the Unix Epoch. */
+        private int mySeconds;
+
+        /** The wall clock time, in milliseconds, that the second ends. */
+        private long mySecondEnd = Long.MIN_VALUE;
+
+        /** The wall clock time, in milliseconds, that the second starts. */
+        private long mySecondStart = Long.MAX_VALUE;
+
+        /** The next counter value to use from the reserved block. */
+        private long myNextCount;
+
+        /**
+         * Creates a new IdGenerator.
+         */
+        public IdGenerator() {
+            super();
+        }
+
+        /**
+         * Returns the next counter value for the thread, reserving a new
+         * block from the shared counter if needed.
+         *
+         * @return The next counter value.
+         */
+        public long nextCount() {
+            if (myRemaining == 0) {
+                myNextCount = COUNTER.getAndAdd(COUNTER_BLOCK_SIZE);
+                myRemaining = COUNTER_BLOCK_SIZE;
+            }
+
+            myRemaining -= 1;
+            return (myNextCount++ & COUNTER_MASK);
+        }
+
+        /**
+         * Returns the current timestamp value. This is the number of
+         * <b>seconds</b> since the Unix Epoch.
+         *
+         * @return The current timestamp value.
+         */
+        public int now() {
+            final long millis = System.currentTimeMillis();
+            if ((millis < mySecondStart) || (mySecondEnd <= millis)) {
+                final long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+
+                mySeconds = (int) seconds;
+                mySecondStart = seconds * MILLIS_PER_SECOND;
+                mySecondEnd = mySecondStart + MILLIS_PER_SECOND;
+            }
+            return mySeconds;
+        }
+    }
 }
@@ -0,0 +1,566 @@
+/*
+ * #%L
+ * CompactDocument.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.DocumentAssignable;
+import com.allanbank.mongodb.bson.Element;
+import com.allanbank.mongodb.bson.ElementType;
+import com.allanbank.mongodb.bson.element.BooleanElement;
+import com.allanbank.mongodb.bson.element.DoubleElement;
+import com.allanbank.mongodb.bson.element.IntegerElement;
+import com.allanbank.mongodb.bson.element.LongElement;
+import com.allanbank.mongodb.bson.element.MongoTimestampElement;
+import com.allanbank.mongodb.bson.element.NullElement;
+import com.allanbank.mongodb.bson.element.ObjectId;
+import com.allanbank.mongodb.bson.element.ObjectIdElement;
+import com.allanbank.mongodb.bson.element.StringElement;
+import com.allanbank.mongodb.bson.element.TimestampElement;
+
+/**
+ * CompactDocument provides an immutable document that stores its elements in
+ * parallel arrays instead of as a list of {@link Element} objects.
+ * <p>
+ * The names of the elements are interned and held in a {@link String} array,
+ * the type of each element is held in a {@code byte} array and the values of
+ * the primitive elements ({@code int}, {@code long}, {@code double},
+ * {@code boolean}, timestamps, {@code null} and {@link ObjectId}s) are packed
+ * into a {@code long} array. String values are held directly and all other
+ * elements are held as the original {@link Element}. A document of 100
+ * numeric fields is then a handful of arrays instead of well over 100
+ * objects, which makes this class useful for documents that are held in
+ * long-lived caches.
+ * </p>
+ * <p>
+ * {@link Element}s are only created when they are requested via
+ * {@link #get(String)}, {@link #getElements()}, {@link #iterator()} or one of
+ * the find methods. They are not retained by the document. The typed
+ * accessors, e.g., {@link #getLong(String, long)}, read the packed values
+ * directly and do not allocate.
+ * </p>
+ * <p>
+ * The intended usage is to compact a document as it is added to a cache:
+ * <blockquote>
+ *
+ * <pre>
+ * <code>
+ * Document document = ...;
+ * 
+ * cache.put(key, new CompactDocument(document));
+ * </code>
+ * </pre>
+ *
+ * </blockquote>
+ *
+ * @api.yes This class is part of the driver's API. Public and protected members
+ *          will be deprecated for at least 1 non-bugfix release (version
+ *          numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;) before being
+ *          removed or modified.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ * @since 2.1.0
+ */
+@Immutable
+@ThreadSafe
+public class CompactDocument
+        extends AbstractDocument {
+
+    /** The type tag for an element held as the original {@link Element}. */
+    private static final byte OTHER = 0;
+
+    /** Serialization version for the class. */
+    private static final long serialVersionUID = 3203412645328934478L;
+
+    /**
+     * Returns the number of slots in the name index for the number of
+     * elements. This is the smallest power of 2 at least twice the number of
+     * elements.
+     *
+     * @param count
+     *            The number of elements.
+     * @return The number of slots in the name index.
+     */
+    private static int indexSlots(final int count) {
+        int slots = 2;
+        while (slots < (count << 1)) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the type tag to use when storing the element. Only the exact
+     * element classes are packed so that the materialized element is equal
+     * to the original element.
+     *
+     * @param element
+     *            The element to store.
+     * @return The type tag for the element or {@link #OTHER} if the element
+     *         is held as is.
+     */
+    private static byte tag(final Element element) {
+        final Class<?> clazz = element.getClass();
+        if ((clazz == IntegerElement.class) || (clazz == LongElement.class)
+                || (clazz == DoubleElement.class)
+                || (clazz == BooleanElement.class)
+                || (clazz == TimestampElement.class)
+                || (clazz == MongoTimestampElement.class)
+                || (clazz == NullElement.class)
+                || (clazz == StringElement.class)
+                || (clazz == ObjectIdElement.class)) {
+            return element.getType().getToken();
+        }
+        return OTHER;
+    }
+
+    /**
+     * The index from the hash of an element's name to the element's position
+     * plus 1. Zero is an empty slot.
+     */
+    private final int[] myIndex;
+
+    /** The names of the elements. */
+    private final String[] myNames;
+
+    /**
+     * The non-primitive values: the {@link String} values for string elements
+     * and the original {@link Element} for all other non-primitive elements.
+     * Null if the document has no non-primitive elements.
+     */
+    private final Object[] myObjects;
+
+    /**
+     * The timestamp of each {@link ObjectId} value. Null if the document has no
+     * {@link ObjectIdElement}s.
+     */
+    private final int[] myObjectIdTimestamps;
+
+    /** The size of the document when encoded as bytes. */
+    private final long mySize;
+
+    /** The type tag of each element. */
+    private final byte[] myTypes;
+
+    /**
+     * The packed primitive values. Doubles are stored as their raw bits,
+     * booleans as 0 or 1 and {@link ObjectId}s as the machine id.
+     */
+    private final long[] myValues;
+
+    /**
+     * Constructs a new {@link CompactDocument}.
+     *
+     * @param document
+     *            The document to compact.
+     */
+    public CompactDocument(final DocumentAssignable document) {
+        final Document source = document.asDocument();
+        final List<Element> elements = source.getElements();
+        final int count = elements.size();
+
+        myNames = new String[count];
+        myTypes = new byte[count];
+        myValues = new long[count];
+        myIndex = new int[indexSlots(count)];
+
+        Object[] objects = null;
+        int[] timestamps = null;
+        for (int i = 0; i < count; ++i) {
+            final Element element = elements.get(i);
+            final byte type = tag(element);
+
+            myNames[i] = element.getName().intern();
+            myTypes[i] = type;
+            index(i);
+
+            if (type == OTHER) {
+                if (objects == null) {
+                    objects = new Object[count];
+                }
+                objects[i] = element;
+                continue;
+            }
+
+            switch (ElementType.valueOf(type)) {
+            case INTEGER: {
+                myValues[i] = ((IntegerElement) element).getValue();
+                break;
+            }
+            case LONG: {
+                myValues[i] = ((LongElement) element).getValue();
+                break;
+            }
+            case DOUBLE: {
+                myValues[i] = Double
+                        .doubleToRawLongBits(((DoubleElement) element)
+                                .getValue());
+                break;
+            }
+            case BOOLEAN: {
+                myValues[i] = ((BooleanElement) element).getValue() ? 1 : 0;
+                break;
+            }
+            case UTC_TIMESTAMP: {
+                myValues[i] = ((TimestampElement) element).getTime();
+                break;
+            }
+            case MONGO_TIMESTAMP: {
+                myValues[i] = ((MongoTimestampElement) element).getTime();
+                break;
+            }
+            case NULL: {
+                break;
+            }
+            case OBJECT_ID: {
+                final ObjectId id = ((ObjectIdElement) element).getId();
+                if (timestamps == null) {
+                    timestamps = new int[count];
+                }
+                timestamps[i] = id.getTimestamp();
+                myValues[i] = id.getMachineId();
+                break;
+            }
+            default: { // STRING
+                if (objects == null) {
+                    objects = new Object[count];
+                }
+                objects[i] = ((StringElement) element).getValue();
+                break;
+            }
+            }
+        }
+
+        myObjects = objects;
+        myObjectIdTimestamps = timestamps;
+        mySize = source.size();
+    }
+
+    /**
+     * Returns true if the document contains an element with the specified name.
+     * Uses the name index.
+     *
+     * @see Document#contains(String)
+     */
+    @Override
+    public boolean contains(final String name) {
+        return 0 <= find(name);
+    }
+
+    /**
+     * Returns the element with the specified name or null if no element with
+     * that name exists. The element is created on each call.
+     *
+     * @see Document#get(String)
+     */
+    @Override
+    public Element get(final String name) {
+        final int position = find(name);
+        if (0 <= position) {
+            return element(position);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the boolean value of the named element. If the element is not a
+     * {@link BooleanElement} then the default value is returned.
+     *
+     * @param name
+     *            The name of the element.
+     * @param defaultValue
+     *            The value to return if there is no boolean element with the
+     *            name.
+     * @return The value of the element or the default value.
+     */
+    public boolean getBoolean(final String name, final boolean defaultValue) {
+        final int position = find(name);
+        if ((0 <= position)
+                && (myTypes[position] == ElementType.BOOLEAN.getToken())) {
+            return myValues[position] != 0;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the double value of the named element. If the element is not a
+     * numeric element then the default value is returned.
+     *
+     * @param name
+     *            The name of the element.
+     * @param defaultValue
+     *            The value to return if there is no numeric element with the
+     *            name.
+     * @return The value of the element or the default value.
+     */
+    public double getDouble(final String name, final double defaultValue) {
+        final int position = find(name);
+        if (0 <= position) {
+            final byte type = myTypes[position];
+            if (type == ElementType.DOUBLE.getToken()) {
+                return Double.longBitsToDouble(myValues[position]);
+            }
+            else if ((type == ElementType.INTEGER.getToken())
+                    || (type == ElementType.LONG.getToken())) {
+                return myValues[position];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the elements in the document. The elements are created on each
+     * call.
+     *
+     * @return The elements in the document.
+     */
+    @Override
+    public List<Element> getElements() {
+        final int count = myNames.length;
+        if (count == 0) {
+            return EMPTY_ELEMENTS;
+        }
+
+        final List<Element> elements = new ArrayList<Element>(count);
+        for (int i = 0; i < count; ++i) {
+            elements.add(element(i));
+        }
+        return Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Returns the integer value of the named element. If the element is not a
+     * numeric element then the default value is returned. Long and double
+     * values are narrowed the same as {@link IntegerElement#getIntValue()}.
+     *
+     * @param name
+     *            The name of the element.
+     * @param defaultValue
+     *            The value to return if there is no numeric element with the
+     *            name.
+     * @return The value of the element or the default value.
+     */
+    public int getInt(final String name, final int defaultValue) {
+        final int position = find(name);
+        if (0 <= position) {
+            final byte type = myTypes[position];
+            if (type == ElementType.DOUBLE.getToken()) {
+                return (int) Double.longBitsToDouble(myValues[position]);
+            }
+            else if ((type == ElementType.INTEGER.getToken())
+                    || (type == ElementType.LONG.getToken())) {
+                return (int) myValues[position];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the long value of the named element. If the element is not a
+     * numeric element then the default value is returned.
+     *
+     * @param name
+     *            The name of the element.
+     * @param defaultValue
+     *            The value to return if there is no numeric element with the
+     *            name.
+     * @return The value of the element or the default value.
+     */
+    public long getLong(final String name, final long defaultValue) {
+        final int position = find(name);
+        if (0 <= position) {
+            final byte type = myTypes[position];
+            if (type == ElementType.DOUBLE.getToken()) {
+                return (long) Double.longBitsToDouble(myValues[position]);
+            }
+            else if ((type == ElementType.INTEGER.getToken())
+                    || (type == ElementType.LONG.getToken())) {
+                return myValues[position];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the string value of the named element. If the element is not a
+     * {@link StringElement} then the default value is returned.
+     *
+     * @param name
+     *            The name of the element.
+     * @param defaultValue
+     *            The value to return if there is no string element with the
+     *            name.
+     * @return The value of the element or the default value.
+     */
+    public String getString(final String name, final String defaultValue) {
+        final int position = find(name);
+        if ((0 <= position)
+                && (myTypes[position] == ElementType.STRING.getToken())) {
+            return (String) myObjects[position];
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the time value of the named element. If the element is not a
+     * {@link TimestampElement} then the default value is returned.
+     *
+     * @param name
+     *            The name of the element.
+     * @param defaultValue
+     *            The value to return if there is no timestamp element with the
+     *            name.
+     * @return The milliseconds since the UNIX epoch of the element or the
+     *         default value.
+     */
+    public long getTime(final String name, final long defaultValue) {
+        final int position = find(name);
+        if ((0 <= position)
+                && (myTypes[position] == ElementType.UTC_TIMESTAMP.getToken())) {
+            return myValues[position];
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the size of the document when encoded as bytes.
+     *
+     * @return The size of the document when encoded as bytes.
+     */
+    @Override
+    public long size() {
+        return mySize;
+    }
+
+    /**
+     * Returns a map from the element names to the elements in the document.
+     * The map is created on each call.
+     *
+     * @return The element name to element mapping.
+     */
+    @Override
+    protected Map<String, Element> getElementMap() {
+        final Map<String, Element> mapping = new HashMap<String, Element>(
+                myNames.length << 1);
+        for (int i = 0; i < myNames.length; ++i) {
+            mapping.put(myNames[i], element(i));
+        }
+        return mapping;
+    }
+
+    /**
+     * Creates the element at the position.
+     *
+     * @param position
+     *            The position of the element.
+     * @return The element.
+     */
+    private Element element(final int position) {
+        final String name = myNames[position];
+        final byte type = myTypes[position];
+        if (type == OTHER) {
+            return (Element) myObjects[position];
+        }
+
+        final long value = myValues[position];
+        switch (ElementType.valueOf(type)) {
+        case INTEGER: {
+            return new IntegerElement(name, (int) value);
+        }
+        case LONG: {
+            return new LongElement(name, value);
+        }
+        case DOUBLE: {
+            return new DoubleElement(name, Double.longBitsToDouble(value));
+        }
+        case BOOLEAN: {
+            return new BooleanElement(name, value != 0);
+        }
+        case UTC_TIMESTAMP: {
+            return new TimestampElement(name, value);
+        }
+        case MONGO_TIMESTAMP: {
+            return new MongoTimestampElement(name, value);
+        }
+        case NULL: {
+            return new NullElement(name);
+        }
+        case OBJECT_ID: {
+            return new ObjectIdElement(name, new ObjectId(
+                    myObjectIdTimestamps[position], value));
+        }
+        default: { // STRING
+            return new StringElement(name, (String) myObjects[position]);
+        }
+        }
+    }
+
+    /**
+     * Locates the position of the element with the name. If there is more than
+     * one element with the name then the last is returned, matching the other
+     * document implementations.
+     *
+     * @param name
+     *            The name of the element.
+     * @return The position of the element or -1 if there is no element with
+     *         the name.
+     */
+    private int find(final String name) {
+        final int mask = myIndex.length - 1;
+        int slot = name.hashCode() & mask;
+        int entry;
+        while ((entry = myIndex[slot]) != 0) {
+            if (name.equals(myNames[entry - 1])) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the element at the position to the name index. A later element with
+     * the same name replaces the earlier element.
+     *
+     * @param position
+     *            The position of the element.
+     */
+    private void index(final int position) {
+        final String name = myNames[position];
+        final int mask = myIndex.length - 1;
+        int slot = name.hashCode() & mask;
+        int entry;
+        while ((entry = myIndex[slot]) != 0) {
+            if (name.equals(myNames[entry - 1])) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        myIndex[slot] = position + 1;
+    }
+}
@@ -0,0 +1,587 @@
+/*
+ * #%L
+ * DocumentTemplate.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.allanbank.mongodb.bson.DocumentAssignable;
+import com.allanbank.mongodb.bson.ElementType;
+import com.allanbank.mongodb.bson.element.ObjectId;
+import com.allanbank.mongodb.bson.io.BsonInputStream;
+import com.allanbank.mongodb.bson.io.BsonOutputStream;
+import com.allanbank.mongodb.bson.io.EndianUtils;
+import com.allanbank.mongodb.bson.io.StringDecoderCache;
+
+/**
+ * DocumentTemplate provides a document that has been encoded once with a set
+ * of named parameter slots whose values are replaced each time the template is
+ * bound.
+ * <p>
+ * A parameter is named by the path of its element in the document: the names
+ * of the enclosing elements joined with a '.', e.g., {@code "a.$gt"} or
+ * {@code "$or.1.b"}. The value in the document when the template is created
+ * fixes the type of the parameter. Only {@link ElementType#BOOLEAN},
+ * {@link ElementType#DOUBLE}, {@link ElementType#INTEGER},
+ * {@link ElementType#LONG}, {@link ElementType#OBJECT_ID},
+ * {@link ElementType#STRING} and {@link ElementType#UTC_TIMESTAMP} parameters
+ * are supported.
+ * </p>
+ * <p>
+ * Binding the template copies the encoded bytes around the slots and writes
+ * the parameter values into them. Only the lengths of the documents enclosing
+ * a {@link ElementType#STRING} parameter need to be adjusted. The result is a
+ * {@link RawDocument} that is written to the server by copying its bytes.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@Immutable
+@ThreadSafe
+public class DocumentTemplate {
+
+    /** UTF-8 Character set for encoding strings. */
+    private static final Charset UTF8 = BsonInputStream.UTF8;
+
+    /**
+     * Reads a little-endian integer from the bytes.
+     *
+     * @param bytes
+     *            The bytes to read from.
+     * @param offset
+     *            The offset of the integer.
+     * @return The integer value.
+     */
+    private static int readInt(final byte[] bytes, final int offset) {
+        int result = (bytes[offset] & 0xFF);
+        result += (bytes[offset + 1] & 0xFF) << 8;
+        result += (bytes[offset + 2] & 0xFF) << 16;
+        result += (bytes[offset + 3] & 0xFF) << 24;
+        return result;
+    }
+
+    /**
+     * Writes the integer value to the bytes in little-endian byte order.
+     *
+     * @param bytes
+     *            The bytes to write to.
+     * @param offset
+     *            The offset to write the value at.
+     * @param value
+     *            The value to write.
+     */
+    private static void writeInt(final byte[] bytes, final int offset,
+            final int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+
+    /**
+     * Writes the long value to the bytes in little-endian byte order.
+     *
+     * @param bytes
+     *            The bytes to write to.
+     * @param offset
+     *            The offset to write the value at.
+     * @param value
+     *            The value to write.
+     */
+    private static void writeLong(final byte[] bytes, final int offset,
+            final long value) {
+        writeInt(bytes, offset, (int) value);
+        writeInt(bytes, offset + 4, (int) (value >> 32));
+    }
+
+    /** The cache for decoding strings from the bound documents. */
+    private final StringDecoderCache myDecoderCache;
+
+    /**
+     * The offset of each top level element's type token followed by the offset
+     * of the document's terminal null byte in the template.
+     */
+    private final int[] myIndex;
+
+    /** The names of the parameters in the order they are bound. */
+    private final List<String> myParameterNames;
+
+    /** The parameter slots in the order they are bound. */
+    private final Slot[] myParameters;
+
+    /** The parameter slots in the order they appear in the template. */
+    private final Slot[] mySlots;
+
+    /** The encoded document with the initial parameter values. */
+    private final byte[] myTemplate;
+
+    /**
+     * Creates a new DocumentTemplate.
+     *
+     * @param document
+     *            The document to encode. The value of each parameter's
+     *            element determines the parameter's type.
+     * @param parameterNames
+     *            The path to the element for each parameter. The values are
+     *            provided to {@link #bind(Object...)} in the same order.
+     * @throws IllegalArgumentException
+     *             If a parameter is not found in the document, is repeated or
+     *             is not a supported type.
+     */
+    public DocumentTemplate(final DocumentAssignable document,
+            final String... parameterNames) throws IllegalArgumentException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new BsonOutputStream(out).writeDocument(document.asDocument());
+        }
+        catch (final IOException ioe) {
+            throw new IllegalArgumentException(
+                    "Could not encode the template's document.", ioe);
+        }
+
+        final Map<String, Integer> positions = new HashMap<String, Integer>(
+                (parameterNames.length * 2) + 1);
+        for (int i = 0; i < parameterNames.length; ++i) {
+            if (positions.put(parameterNames[i], Integer.valueOf(i)) != null) {
+                throw new IllegalArgumentException("The parameter '"
+                        + parameterNames[i] + "' is repeated.");
+            }
+        }
+
+        myTemplate = out.toByteArray();
+        myParameters = new Slot[parameterNames.length];
+
+        final List<Integer> index = new ArrayList<Integer>();
+        final List<Slot> slots = new ArrayList<Slot>(parameterNames.length);
+        try {
+            scan(0, "", new int[] { 0 }, positions, index, slots);
+        }
+        catch (final StreamCorruptedException sce) {
+            throw new IllegalArgumentException(
+                    "Could not scan the template's document.", sce);
+        }
+
+        for (int i = 0; i < parameterNames.length; ++i) {
+            if (myParameters[i] == null) {
+                throw new IllegalArgumentException("The parameter '"
+                        + parameterNames[i]
+                        + "' was not found in the document.");
+            }
+        }
+
+        myIndex = new int[index.size()];
+        for (int i = 0; i < myIndex.length; ++i) {
+            myIndex[i] = index.get(i).intValue();
+        }
+        mySlots = slots.toArray(new Slot[slots.size()]);
+        myParameterNames = Collections.unmodifiableList(Arrays
+                .asList(parameterNames.clone()));
+        myDecoderCache = new StringDecoderCache();
+    }
+
+    /**
+     * Binds the values to the parameters and returns the resulting document.
+     *
+     * @param values
+     *            The value for each parameter in the order the parameters were
+     *            named when the template was created.
+     * @return The document with the parameter values.
+     * @throws IllegalArgumentException
+     *             If the number of values does not match the number of
+     *             parameters or a value cannot be written as its parameter's
+     *             type.
+     */
+    public RawDocument bind(final Object... values)
+            throws IllegalArgumentException {
+        if (values.length != myParameters.length) {
+            throw new IllegalArgumentException("Expected "
+                    + myParameters.length + " parameter values but received "
+                    + values.length + ".");
+        }
+
+        // Determine the size of each value.
+        byte[][] strings = null;
+        boolean resized = false;
+        int size = myTemplate.length;
+        for (int i = 0; i < myParameters.length; ++i) {
+            final Slot slot = myParameters[i];
+            final Object value = values[i];
+            if (!slot.accepts(value)) {
+                throw new IllegalArgumentException("The value for the '"
+                        + myParameterNames.get(i) + "' parameter must be a "
+                        + slot.myType.name() + " not " + value + ".");
+            }
+            if (slot.myType == ElementType.STRING) {
+                if (strings == null) {
+                    strings = new byte[myParameters.length][];
+                }
+                strings[i] = ((String) value).getBytes(UTF8);
+
+                final int length = strings[i].length + 5;
+                size += length - slot.myLength;
+                resized |= (length != slot.myLength);
+            }
+        }
+
+        // Copy the template around each slot.
+        final byte[] bytes = new byte[size];
+        final int[] deltas = resized ? new int[mySlots.length] : null;
+        int from = 0;
+        int to = 0;
+        for (int i = 0; i < mySlots.length; ++i) {
+            final Slot slot = mySlots[i];
+            final int before = slot.myOffset - from;
+            System.arraycopy(myTemplate, from, bytes, to, before);
+            to += before;
+
+            final int length = slot.write(bytes, to, values[slot.myPosition],
+                    (strings != null) ? strings[slot.myPosition] : null);
+            to += length;
+            from = slot.myOffset + slot.myLength;
+
+            if (deltas != null) {
+                deltas[i] = length - slot.myLength;
+            }
+        }
+        System.arraycopy(myTemplate, from, bytes, to, myTemplate.length - from);
+
+        if (deltas == null) {
+            return new RawDocument(bytes, myIndex, myDecoderCache);
+        }
+
+        // Adjust the lengths of the documents enclosing the strings.
+        for (int i = 0; i < mySlots.length; ++i) {
+            if (deltas[i] != 0) {
+                for (final int lengthOffset : mySlots[i].myEnclosing) {
+                    final int offset = shift(lengthOffset, deltas);
+                    writeInt(bytes, offset,
+                            readInt(bytes, offset) + deltas[i]);
+                }
+            }
+        }
+
+        final int[] index = new int[myIndex.length];
+        for (int i = 0; i < index.length; ++i) {
+            index[i] = shift(myIndex[i], deltas);
+        }
+        return new RawDocument(bytes, index, myDecoderCache);
+    }
+
+    /**
+     * Returns the names of the parameters in the order they are bound.
+     *
+     * @return The names of the parameters in the order they are bound.
+     */
+    public List<String> getParameterNames() {
+        return myParameterNames;
+    }
+
+    /**
+     * Returns the type of each parameter in the order they are bound.
+     *
+     * @return The type of each parameter in the order they are bound.
+     */
+    public List<ElementType> getParameterTypes() {
+        final List<ElementType> types = new ArrayList<ElementType>(
+                myParameters.length);
+        for (final Slot slot : myParameters) {
+            types.add(slot.myType);
+        }
+        return types;
+    }
+
+    /**
+     * Scans the elements of the document starting at the offset for the
+     * parameters.
+     *
+     * @param offset
+     *            The offset of the document's length.
+     * @param path
+     *            The path to the document. The empty string for the top level
+     *            document.
+     * @param enclosing
+     *            The offsets of the lengths of the document and all of the
+     *            documents enclosing it.
+     * @param positions
+     *            The position of each parameter by name.
+     * @param index
+     *            The index of the top level elements to update.
+     * @param slots
+     *            The slots found in the order they appear.
+     * @throws StreamCorruptedException
+     *             If the document is not valid.
+     * @throws IllegalArgumentException
+     *             If a parameter is not a supported type.
+     */
+    private void scan(final int offset, final String path,
+            final int[] enclosing, final Map<String, Integer> positions,
+            final List<Integer> index, final List<Slot> slots)
+            throws StreamCorruptedException, IllegalArgumentException {
+        final boolean top = (enclosing.length == 1);
+
+        int element = offset + 4;
+        while (myTemplate[element] != 0) {
+            if (top) {
+                index.add(Integer.valueOf(element));
+            }
+
+            int value = element + 1;
+            while (myTemplate[value] != 0) {
+                value += 1;
+            }
+            final String name = new String(myTemplate, element + 1, value
+                    - element - 1, UTF8);
+            final String elementPath = top ? name : (path + "." + name);
+            value += 1; // The name's null byte.
+
+            final int next = RawDocument.skipElement(myTemplate, element);
+            final ElementType type = ElementType.valueOf(myTemplate[element]);
+            final Integer position = positions.get(elementPath);
+            if (position != null) {
+                if (!Slot.isSupported(type)) {
+                    throw new IllegalArgumentException("The parameter '"
+                            + elementPath + "' has an unsupported type: "
+                            + type + ".");
+                }
+
+                final Slot slot = new Slot(type, position.intValue(), value,
+                        next - value, enclosing);
+                myParameters[position.intValue()] = slot;
+                slots.add(slot);
+            }
+            else if ((type == ElementType.DOCUMENT)
+                    || (type == ElementType.ARRAY)) {
+                final int[] nested = Arrays.copyOf(enclosing,
+                        enclosing.length + 1);
+                nested[enclosing.length] = value;
+
+                scan(value, elementPath, nested, positions, index, slots);
+            }
+
+            element = next;
+        }
+
+        if (top) {
+            index.add(Integer.valueOf(element));
+        }
+    }
+
+    /**
+     * Returns the offset in the bound document of the offset in the template.
+     *
+     * @param offset
+     *            The offset in the template. Must not be within a slot.
+     * @param deltas
+     *            The change in the length of each slot.
+     * @return The offset in the bound document.
+     */
+    private int shift(final int offset, final int[] deltas) {
+        int shifted = offset;
+        for (int i = 0; (i < mySlots.length)
+                && (mySlots[i].myOffset < offset); ++i) {
+            shifted += deltas[i];
+        }
+        return shifted;
+    }
+
+    /**
+     * Slot provides the location and type of a parameter's value within the
+     * template.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    @Immutable
+    private static final class Slot {
+
+        /**
+         * Returns true if the type is supported as a parameter.
+         *
+         * @param type
+         *            The type to check.
+         * @return True if the type is supported as a parameter.
+         */
+        public static boolean isSupported(final ElementType type) {
+            switch (type) {
+            case BOOLEAN:
+            case DOUBLE:
+            case INTEGER:
+            case LONG:
+            case OBJECT_ID:
+            case STRING:
+            case UTC_TIMESTAMP: {
+                return true;
+            }
+            default: {
+                return false;
+            }
+            }
+        }
+
+        /** The offsets of the lengths of the documents enclosing the slot. */
+        protected final int[] myEnclosing;
+
+        /** The length of the value in the template. */
+        protected final int myLength;
+
+        /** The offset of the value in the template. */
+        protected final int myOffset;
+
+        /** The position of the parameter in the bound values. */
+        protected final int myPosition;
+
+        /** The type of the parameter. */
+        protected final ElementType myType;
+
+        /**
+         * Creates a new Slot.
+         *
+         * @param type
+         *            The type of the parameter.
+         * @param position
+         *            The position of the parameter in the bound values.
+         * @param offset
+         *            The offset of the value in the template.
+         * @param length
+         *            The length of the value in the template.
+         * @param enclosing
+         *            The offsets of the lengths of the documents enclosing the
+         *            slot.
+         */
+        public Slot(final ElementType type, final int position,
+                final int offset, final int length, final int[] enclosing) {
+            myType = type;
+            myPosition = position;
+            myOffset = offset;
+            myLength = length;
+            myEnclosing = enclosing;
+        }
+
+        /**
+         * Returns true if the value can be written as the slot's type.
+         *
+         * @param value
+         *            The value to check.
+         * @return True if the value can be written as the slot's type.
+         */
+        public boolean accepts(final Object value) {
+            switch (myType) {
+            case BOOLEAN: {
+                return value instanceof Boolean;
+            }
+            case DOUBLE: {
+                return value instanceof Number;
+            }
+            case INTEGER: {
+                return (value instanceof Integer) || (value instanceof Short)
+                        || (value instanceof Byte);
+            }
+            case LONG: {
+                return (value instanceof Long) || (value instanceof Integer)
+                        || (value instanceof Short) || (value instanceof Byte);
+            }
+            case OBJECT_ID: {
+                return value instanceof ObjectId;
+            }
+            case STRING: {
+                return value instanceof String;
+            }
+            default: { // UTC_TIMESTAMP
+                return (value instanceof Date) || (value instanceof Long);
+            }
+            }
+        }
+
+        /**
+         * Writes the value into the bytes.
+         *
+         * @param bytes
+         *            The bytes to write to.
+         * @param offset
+         *            The offset to write the value at.
+         * @param value
+         *            The value to write.
+         * @param encoded
+         *            The UTF-8 encoding of a string value.
+         * @return The number of bytes written.
+         */
+        public int write(final byte[] bytes, final int offset,
+                final Object value, final byte[] encoded) {
+            switch (myType) {
+            case BOOLEAN: {
+                bytes[offset] = ((Boolean) value).booleanValue() ? (byte) 1
+                        : (byte) 0;
+                return 1;
+            }
+            case DOUBLE: {
+                writeLong(bytes, offset, Double
+                        .doubleToLongBits(((Number) value).doubleValue()));
+                return 8;
+            }
+            case INTEGER: {
+                writeInt(bytes, offset, ((Number) value).intValue());
+                return 4;
+            }
+            case LONG: {
+                writeLong(bytes, offset, ((Number) value).longValue());
+                return 8;
+            }
+            case OBJECT_ID: {
+                // Just to be complicated the Object ID is big endian.
+                final ObjectId id = (ObjectId) value;
+                writeInt(bytes, offset, EndianUtils.swap(id.getTimestamp()));
+                writeLong(bytes, offset + 4,
+                        EndianUtils.swap(id.getMachineId()));
+                return 12;
+            }
+            case STRING: {
+                writeInt(bytes, offset, encoded.length + 1);
+                System.arraycopy(encoded, 0, bytes, offset + 4,
+                        encoded.length);
+                bytes[offset + 4 + encoded.length] = 0;
+                return encoded.length + 5;
+            }
+            default: { // UTC_TIMESTAMP
+                final long millis = (value instanceof Date) ? ((Date) value)
+                        .getTime() : ((Long) value).longValue();
+                writeLong(bytes, offset, millis);
+                return 8;
+            }
+            }
+        }
+    }
+}
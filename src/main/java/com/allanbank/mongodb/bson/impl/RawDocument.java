@@ -0,0 +1,512 @@
+/*
+ * #%L
+ * RawDocument.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.impl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.Element;
+import com.allanbank.mongodb.bson.ElementType;
+import com.allanbank.mongodb.bson.io.BsonInputStream;
+import com.allanbank.mongodb.bson.io.StringDecoderCache;
+
+/**
+ * RawDocument provides a document that holds the encoded bytes of the document
+ * and only decodes elements when they are accessed.
+ * <p>
+ * When constructed the document scans the bytes to build an index of the
+ * offset of each element. Accessing a single element by name with
+ * {@link #get(String)} or {@link #contains(String)} uses the index and only
+ * decodes the matching element. Any access that needs all of the elements,
+ * e.g., iteration or a {@link com.allanbank.mongodb.bson.Visitor}, decodes all
+ * of the elements once.
+ * </p>
+ * <p>
+ * The {@link com.allanbank.mongodb.bson.io.BsonOutputStream} and
+ * {@link com.allanbank.mongodb.bson.io.BufferingBsonOutputStream} write the
+ * document by copying the bytes.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@ThreadSafe
+public class RawDocument
+        extends AbstractDocument {
+
+    /** UTF-8 Character set for encoding strings. */
+    private static final Charset UTF8 = BsonInputStream.UTF8;
+
+    /** Serialization version for the class. */
+    private static final long serialVersionUID = 2160582604185939420L;
+
+    /**
+     * Scans the element list of the document and returns the offset of each
+     * element followed by the offset of the terminal null byte.
+     *
+     * @param bytes
+     *            The encoded document.
+     * @return The offsets of the elements and the terminal null byte.
+     * @throws StreamCorruptedException
+     *             If the bytes are not a valid document.
+     */
+    private static int[] index(final byte[] bytes)
+            throws StreamCorruptedException {
+        if ((bytes.length < 5) || (readInt(bytes, 0) != bytes.length)
+                || (bytes[bytes.length - 1] != 0)) {
+            throw new StreamCorruptedException("Invalid document length.");
+        }
+
+        int[] offsets = new int[8];
+        int count = 0;
+        int offset = 4;
+        while (bytes[offset] != 0) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count + count);
+            }
+            offsets[count] = offset;
+            count += 1;
+
+            offset = skipElement(bytes, offset);
+            if ((offset <= offsets[count - 1]) || (bytes.length <= offset)) {
+                throw new StreamCorruptedException(
+                        "Element extends past the end of the document.");
+            }
+        }
+        if (offset != (bytes.length - 1)) {
+            throw new StreamCorruptedException(
+                    "Document ends before the terminal null byte.");
+        }
+
+        final int[] index = Arrays.copyOf(offsets, count + 1);
+        index[count] = offset;
+
+        return index;
+    }
+
+    /**
+     * Reads a little-endian integer from the bytes.
+     *
+     * @param bytes
+     *            The bytes to read from.
+     * @param offset
+     *            The offset of the integer.
+     * @return The integer value.
+     * @throws StreamCorruptedException
+     *             If the integer extends past the end of the bytes.
+     */
+    private static int readInt(final byte[] bytes, final int offset)
+            throws StreamCorruptedException {
+        if ((offset < 0) || (bytes.length < (offset + 4))) {
+            throw new StreamCorruptedException(
+                    "Value extends past the end of the document.");
+        }
+
+        int result = (bytes[offset] & 0xFF);
+        result += (bytes[offset + 1] & 0xFF) << 8;
+        result += (bytes[offset + 2] & 0xFF) << 16;
+        result += (bytes[offset + 3] & 0xFF) << 24;
+
+        return result;
+    }
+
+    /**
+     * Returns the offset just past the null byte terminating the C string
+     * starting at the offset.
+     *
+     * @param bytes
+     *            The bytes to scan.
+     * @param offset
+     *            The offset of the start of the C string.
+     * @return The offset just past the terminal null byte.
+     * @throws StreamCorruptedException
+     *             If the string is not terminated.
+     */
+    private static int skipCString(final byte[] bytes, final int offset)
+            throws StreamCorruptedException {
+        for (int i = offset; i < bytes.length; ++i) {
+            if (bytes[i] == 0) {
+                return i + 1;
+            }
+        }
+        throw new StreamCorruptedException("Unterminated string.");
+    }
+
+    /**
+     * Returns the offset of the element following the element at the offset.
+     *
+     * @param bytes
+     *            The encoded document.
+     * @param offset
+     *            The offset of the element's type token.
+     * @return The offset of the next element.
+     * @throws StreamCorruptedException
+     *             If the element is not valid.
+     */
+    @SuppressWarnings("deprecation")
+    /* package */static int skipElement(final byte[] bytes, final int offset)
+            throws StreamCorruptedException {
+        final ElementType type = ElementType.valueOf(bytes[offset]);
+        if (type == null) {
+            throw new StreamCorruptedException("Unknown element type: 0x"
+                    + Integer.toHexString(bytes[offset] & 0xFF) + ".");
+        }
+
+        final int value = skipCString(bytes, offset + 1);
+        switch (type) {
+        case MAX_KEY:
+        case MIN_KEY:
+        case NULL: {
+            return value;
+        }
+        case BOOLEAN: {
+            return value + 1;
+        }
+        case INTEGER: {
+            return value + 4;
+        }
+        case OBJECT_ID: {
+            return value + 12;
+        }
+        case DOUBLE:
+        case LONG:
+        case MONGO_TIMESTAMP:
+        case UTC_TIMESTAMP: {
+            return value + 8;
+        }
+        case JAVA_SCRIPT:
+        case STRING:
+        case SYMBOL: {
+            return value + 4 + readInt(bytes, value);
+        }
+        case ARRAY:
+        case DOCUMENT:
+        case JAVA_SCRIPT_WITH_SCOPE: {
+            return value + readInt(bytes, value);
+        }
+        case BINARY: {
+            return value + 4 + 1 + readInt(bytes, value);
+        }
+        case DB_POINTER: {
+            return value + 4 + readInt(bytes, value) + 12;
+        }
+        case REGEX: {
+            return skipCString(bytes, skipCString(bytes, value));
+        }
+        }
+
+        throw new StreamCorruptedException("Unknown element type: "
+                + type.name() + ".");
+    }
+
+    /** The encoded document. */
+    private final byte[] myBytes;
+
+    /** The cache for decoding strings. */
+    private transient StringDecoderCache myDecoderCache;
+
+    /** The mapping from the element names to the elements, once decoded. */
+    private transient volatile Map<String, Element> myElementMap;
+
+    /** The elements of the document, once decoded. */
+    private transient volatile List<Element> myElements;
+
+    /**
+     * The offset of each element's type token followed by the offset of the
+     * document's terminal null byte.
+     */
+    private transient int[] myIndex;
+
+    /**
+     * Creates a new RawDocument. The document takes ownership of the bytes
+     * and they must not be modified after the document is created.
+     *
+     * @param bytes
+     *            The encoded document. The array must contain exactly one
+     *            document.
+     * @param decoderCache
+     *            The cache for decoding strings.
+     * @throws StreamCorruptedException
+     *             If the bytes are not a valid document.
+     */
+    public RawDocument(final byte[] bytes,
+            final StringDecoderCache decoderCache)
+            throws StreamCorruptedException {
+        myBytes = bytes;
+        myDecoderCache = decoderCache;
+        myIndex = index(bytes);
+        myElements = null;
+        myElementMap = null;
+    }
+
+    /**
+     * Creates a new RawDocument from bytes that are already known to be a
+     * valid document, e.g., bound from a {@link DocumentTemplate}. The
+     * document takes ownership of the bytes and the index.
+     *
+     * @param bytes
+     *            The encoded document.
+     * @param index
+     *            The offset of each element's type token followed by the
+     *            offset of the document's terminal null byte.
+     * @param decoderCache
+     *            The cache for decoding strings.
+     */
+    /* package */RawDocument(final byte[] bytes, final int[] index,
+            final StringDecoderCache decoderCache) {
+        myBytes = bytes;
+        myDecoderCache = decoderCache;
+        myIndex = index;
+        myElements = null;
+        myElementMap = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to search the index of elements without decoding them.
+     * </p>
+     */
+    @Override
+    public boolean contains(final String name) {
+        if (myElements != null) {
+            return super.contains(name);
+        }
+        return 0 <= indexOf(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to compare the bytes of two raw documents before decoding
+     * the elements.
+     * </p>
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if ((object instanceof RawDocument)
+                && Arrays.equals(myBytes, ((RawDocument) object).myBytes)) {
+            return true;
+        }
+        return super.equals(object);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to decode only the element with the name.
+     * </p>
+     */
+    @Override
+    public Element get(final String name) {
+        if (myElements != null) {
+            return super.get(name);
+        }
+
+        final int position = indexOf(name);
+        if (position < 0) {
+            return null;
+        }
+
+        final int offset = myIndex[position];
+        final BsonInputStream in = new BsonInputStream(myBytes, offset,
+                myIndex[position + 1] - offset, myDecoderCache);
+        try {
+            return in.readElement();
+        }
+        catch (final IOException ioe) {
+            throw new IllegalStateException("Could not decode the '" + name
+                    + "' element.", ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to decode all of the elements the first time they are
+     * requested.
+     * </p>
+     */
+    @Override
+    public List<Element> getElements() {
+        List<Element> elements = myElements;
+        if (elements == null) {
+            final BsonInputStream in = new BsonInputStream(myBytes, 0,
+                    myBytes.length, myDecoderCache);
+            try {
+                elements = in.readDocument().getElements();
+            }
+            catch (final IOException ioe) {
+                throw new IllegalStateException(
+                        "Could not decode the document's elements.", ioe);
+            }
+            myElements = elements;
+        }
+        return elements;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to use the hash code of the decoded elements so that equal
+     * documents have equal hash codes.
+     * </p>
+     */
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    /**
+     * Returns the size of the document when encoded as bytes.
+     *
+     * @return The size of the document when encoded as bytes.
+     */
+    @Override
+    public long size() {
+        return myBytes.length;
+    }
+
+    /**
+     * Writes the encoded document to the stream.
+     *
+     * @param out
+     *            The stream to write to.
+     * @throws IOException
+     *             On a failure writing to the stream.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        out.write(myBytes, 0, myBytes.length);
+    }
+
+    /**
+     * Returns a map from the element names to the elements in the document.
+     *
+     * @return The element name to element mapping.
+     */
+    @Override
+    protected Map<String, Element> getElementMap() {
+        Map<String, Element> mapping = myElementMap;
+        if (mapping == null) {
+            final List<Element> elements = getElements();
+
+            mapping = new HashMap<String, Element>(elements.size()
+                    + elements.size());
+            for (final Element element : elements) {
+                mapping.put(element.getName(), element);
+            }
+            myElementMap = mapping;
+        }
+        return mapping;
+    }
+
+    /**
+     * Returns the position in the index of the element with the name or -1 if
+     * there is no element with the name.
+     *
+     * @param name
+     *            The name of the element.
+     * @return The position in the index of the element.
+     */
+    private int indexOf(final String name) {
+        byte[] encoded = null;
+        for (int i = 0; i < (myIndex.length - 1); ++i) {
+            final int nameOffset = myIndex[i] + 1;
+
+            // Compare ASCII names without encoding them.
+            int match = 0;
+            final int length = name.length();
+            while (match < length) {
+                final char c = name.charAt(match);
+                if ((c == 0) || (0x80 <= c)
+                        || (myBytes[nameOffset + match] != c)) {
+                    break;
+                }
+                match += 1;
+            }
+
+            if (match == length) {
+                if (myBytes[nameOffset + length] == 0) {
+                    return i;
+                }
+            }
+            else if (0x80 <= name.charAt(match)) {
+                if (encoded == null) {
+                    encoded = name.getBytes(UTF8);
+                }
+                if (matches(nameOffset, encoded)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the null terminated name at the offset matches the
+     * encoded name.
+     *
+     * @param nameOffset
+     *            The offset of the element's name.
+     * @param encoded
+     *            The UTF-8 encoded name.
+     * @return True if the names match.
+     */
+    private boolean matches(final int nameOffset, final byte[] encoded) {
+        if (myBytes.length <= (nameOffset + encoded.length)) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; ++i) {
+            if (myBytes[nameOffset + i] != encoded[i]) {
+                return false;
+            }
+        }
+        return myBytes[nameOffset + encoded.length] == 0;
+    }
+
+    /**
+     * Rebuilds the transient state of this document.
+     *
+     * @param in
+     *            The input stream.
+     * @throws ClassNotFoundException
+     *             On a failure loading a class in this classed reachable tree.
+     * @throws IOException
+     *             On a failure reading from the stream.
+     */
+    private void readObject(final ObjectInputStream in)
+            throws ClassNotFoundException, IOException {
+        in.defaultReadObject();
+        myDecoderCache = new StringDecoderCache();
+        myIndex = index(myBytes);
+    }
+}
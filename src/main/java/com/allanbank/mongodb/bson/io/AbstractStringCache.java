@@ -20,16 +20,16 @@
 
 package com.allanbank.mongodb.bson.io;
 
-import java.io.Serializable;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -38,14 +38,30 @@ import javax.annotation.concurrent.ThreadSafe;
  * usage and triggering rebuilds of the cache over time.
  * <p>
  * The basic function of the cache is to maintain two structures. The first
- * (provided by this class) tracks the usage of strings in the cache via a
- * 'seen' {@link ConcurrentMap}. As the cache sees more usage it will
- * periodically trim entries from the map that are not being used often (this is
- * to limit memory usage). Once the cache thinks it has seen enough usage it
- * will trigger the building of the runtime cache. This runtime cache does not
+ * (provided by this class) tracks the usage of strings. The second is the
+ * runtime cache built by the derived class. This runtime cache does not
  * require any locking as it is read-only after being constructed.
  * </p>
  * <p>
+ * Usage is tracked to keep the shared state mostly read-only on the hot path:
+ * </p>
+ * <ul>
+ * <li>Each thread records the hash of each string it uses in a small private
+ * buffer. Only when the buffer fills are the uses added to a shared frequency
+ * sketch and the shared use count. This replaces a shared counter update per
+ * string with one per {@link #BUFFER_SIZE} strings.</li>
+ * <li>The frequency sketch is a count-min sketch: a fixed size table of
+ * counters that never under estimates how often a string has been seen and
+ * does not need an entry, or an allocation, per string.</li>
+ * <li>Only a sample of the uses of strings that are not already cached (one in
+ * {@link #SAMPLE_RATE}) are admitted as candidates for the next cache. This is
+ * the only time the bytes for a string are copied.</li>
+ * <li>A rebuild only ranks the currently cached strings and the candidates
+ * admitted since the last rebuild. The counters in the sketch are halved after
+ * each rebuild so that older uses age out, and the derived class only builds
+ * a new runtime cache if the set of cached strings changed.</li>
+ * </ul>
+ * <p>
  * There are two controls on the amount of caching instances of this class will
  * do:
  * </p>
@@ -55,8 +71,8 @@ import javax.annotation.concurrent.ThreadSafe;
  * class will try and retrieve from the cache. Setting this value to zero
  * disables the cache and limit any memory overhead.</li>
  * <li>{@link #getMaxCacheEntries()} controls the number of cached entries in
- * the runtime-cache and how often the accumulated statistics are trimmed. Each
- * entry represents a single encoded string.</li>
+ * the runtime-cache and how many candidates are accumulated between rebuilds.
+ * Each entry represents a single encoded string.</li>
  * </ol>
  *
  *
@@ -67,12 +83,30 @@ import javax.annotation.concurrent.ThreadSafe;
 @ThreadSafe
 public abstract class AbstractStringCache {
 
+    /**
+     * The number of uses each thread buffers before adding them to the shared
+     * frequency sketch.
+     */
+    public static final int BUFFER_SIZE = 32;
+
     /** The default maximum number of entries to keep in the cache. */
     public static final int DEFAULT_MAX_CACHE_ENTRIES = 24;
 
     /** The default maximum length byte array to cache. */
     public static final int DEFAULT_MAX_CACHE_LENGTH = 25;
 
+    /**
+     * One in this many uses of a string that is not cached admits the string as
+     * a candidate for the cache. Must be a power of 2.
+     */
+    public static final int SAMPLE_RATE = 4;
+
+    /**
+     * The maximum number of candidates, as a multiple of the maximum number of
+     * entries, accumulated between rebuilds.
+     */
+    protected static final int MAX_CANDIDATE_MULTIPLIER = 2;
+
     /** The maximum value for the multiplier. */
     protected static final int MAX_MULTIPLIER = 100;
 
@@ -92,7 +126,7 @@ public abstract class AbstractStringCache {
     protected volatile int myMaxCachEntriesMultiplier;
 
     /**
-     * The map of seen strings that will be used periodically to build the cache
+     * The map of candidate strings admitted since the last rebuild of the
      * cache.
      */
     protected final ConcurrentMap<String, SeenString> mySeen;
@@ -103,19 +137,44 @@ public abstract class AbstractStringCache {
      */
     protected final AtomicInteger myUseCount;
 
+    /** The per-thread buffers of uses. */
+    private final ThreadLocal<UseBuffer> myBuffers;
+
+    /** The strings currently in the cache. Read-only once published. */
+    private volatile Map<String, SeenString> myCached;
+
+    /**
+     * The generation of the cache. Incremented when the cache is cleared so
+     * uses buffered before the clear are discarded.
+     */
+    private volatile int myGeneration;
+
+    /** The sketch of the frequency each string is used. */
+    private volatile FrequencySketch mySketch;
+
     /**
      * Creates a new AbstractStringCache.
      */
     public AbstractStringCache() {
         super();
 
-        mySeen = new ConcurrentHashMap<String, SeenString>(1024);
+        mySeen = new ConcurrentHashMap<String, SeenString>(64);
 
         myMaxCacheLength = DEFAULT_MAX_CACHE_LENGTH;
         myMaxCachEntries = DEFAULT_MAX_CACHE_ENTRIES;
 
         myMaxCachEntriesMultiplier = 0;
         myUseCount = new AtomicInteger(0);
+
+        myBuffers = new ThreadLocal<UseBuffer>() {
+            @Override
+            protected UseBuffer initialValue() {
+                return new UseBuffer();
+            }
+        };
+        myCached = Collections.emptyMap();
+        myGeneration = 0;
+        mySketch = new FrequencySketch(myMaxCachEntries);
     }
 
     /**
@@ -184,91 +243,140 @@ public abstract class AbstractStringCache {
             return;
         }
 
-        SeenString entry = mySeen.get(decoded);
-        if (entry == null) {
-            entry = new SeenString(source, offset, length, decoded);
-
-            final SeenString existing = mySeen.putIfAbsent(decoded, entry);
-            if (existing != null) {
-                entry = existing;
-            }
-        }
-
         // Count the use.
-        entry.incrementCount();
-
-        // Rebuild the count after period of use.
-        int use = myUseCount.incrementAndGet();
-        while ((myMaxCachEntries * myMaxCachEntriesMultiplier) < use) {
-            use = tryRebuild(use);
+        final UseBuffer buffer = myBuffers.get();
+        if (buffer.add(decoded.hashCode(), myGeneration)) {
+            flush(buffer);
         }
 
-        // Periodically trim low count entries.
-        if ((use != 0) && ((use % myMaxCachEntries) == 0)) {
-            trimPending();
+        // Sample the strings that are not cached as candidates.
+        if (!myCached.containsKey(decoded) && buffer.sample()) {
+            admit(decoded, source, offset, length);
         }
     }
 
     /**
-     * Builds a map of the seen strings at each count. The order of the map is
-     * reversed so that higher counts are first in the map.
+     * Clears the cache.
+     */
+    protected void clear() {
+        myGeneration += 1;
+        mySketch = new FrequencySketch(myMaxCachEntries);
+        myCached = Collections.emptyMap();
+        mySeen.clear();
+        myUseCount.set(0);
+    }
+
+    /**
+     * Rebuilds the cache from the current {@link #mySeen} map. By the end of
+     * the method the cache should have been rebuilt from the results of
+     * {@link #selectCacheEntries()}.
+     */
+    protected abstract void rebuildCache();
+
+    /**
+     * Selects the entries for the cache from the currently cached strings and
+     * the candidates in the {@link #mySeen} map. The candidates are cleared and
+     * the frequency counts are aged.
      *
-     * @return A map of the seen strings at each count.
+     * @return The strings to cache with the most frequently used string first
+     *         or <code>null</code> if the strings to cache have not changed.
      */
-    protected SortedMap<Integer, List<SeenString>> buildCacheGroups() {
+    protected List<SeenString> selectCacheEntries() {
         myMaxCachEntriesMultiplier = Math.min(myMaxCachEntriesMultiplier + 1,
                 MAX_MULTIPLIER);
 
-        // Copy the current entries.
-        final SortedMap<Integer, List<SeenString>> order = new TreeMap<Integer, List<SeenString>>(
-                ReverseIntegerComparator.INSTANCE);
+        // Make sure this thread's uses are counted.
+        final FrequencySketch sketch = mySketch;
+        final UseBuffer buffer = myBuffers.get();
+        if (buffer.myGeneration == myGeneration) {
+            buffer.drainTo(sketch);
+        }
 
+        // Collect the candidates, current entries first.
+        final Map<String, SeenString> cached = myCached;
+        final Map<String, SeenString> candidates = new HashMap<String, SeenString>(
+                cached);
         for (final SeenString seen : mySeen.values()) {
-            final Integer seenCount = Integer.valueOf(seen.reset());
-            List<SeenString> seenAtCount = order.get(seenCount);
-            if (seenAtCount == null) {
-                seenAtCount = new LinkedList<SeenString>();
-                order.put(seenCount, seenAtCount);
+            if (!candidates.containsKey(seen.getValue())) {
+                candidates.put(seen.getValue(), seen);
             }
+        }
+        final SeenString[] all = candidates.values().toArray(
+                new SeenString[candidates.size()]);
+        for (final SeenString seen : all) {
+            mySeen.remove(seen.getValue());
+        }
+
+        // Rank by the estimated use. The estimate is in the upper bits so the
+        // sort orders by it and the lower bits hold the index of the entry.
+        final long[] ranks = new long[all.length];
+        for (int i = 0; i < all.length; ++i) {
+            final long estimate = sketch.estimate(all[i].getValue().hashCode());
+            ranks[i] = (estimate << 32) | i;
+        }
+        Arrays.sort(ranks);
+
+        final int count = Math.max(0, Math.min(myMaxCachEntries, all.length));
+        final List<SeenString> selected = new ArrayList<SeenString>(count);
+        final Map<String, SeenString> newCached = new HashMap<String, SeenString>(
+                (int) Math.ceil(count / 0.75));
+        for (int i = 0; i < count; ++i) {
+            final SeenString seen = all[(int) ranks[ranks.length - 1 - i]];
+            selected.add(seen);
+            newCached.put(seen.getValue(), seen);
+        }
+
+        // Age the counts so the cache follows changes in the strings used.
+        if (sketch.isSizedFor(myMaxCachEntries)) {
+            sketch.age();
+        }
+        else {
+            mySketch = new FrequencySketch(myMaxCachEntries);
+        }
 
-            seenAtCount.add(seen);
+        if (newCached.keySet().equals(cached.keySet())) {
+            return null;
         }
 
-        return order;
+        myCached = newCached;
+        return selected;
     }
 
     /**
-     * Clears the cache.
+     * Admits the string as a candidate for the next rebuild of the cache.
+     *
+     * @param decoded
+     *            The decoded string.
+     * @param source
+     *            The bytes in the string.
+     * @param offset
+     *            The offset of the first byte.
+     * @param length
+     *            The length of the bytes with a terminal zero byte.
      */
-    protected void clear() {
-        mySeen.clear();
-        myUseCount.set(0);
+    private void admit(final String decoded, final byte[] source,
+            final int offset, final int length) {
+        if (!mySeen.containsKey(decoded)
+                && (mySeen.size() < (Math.max(1, myMaxCachEntries) * MAX_CANDIDATE_MULTIPLIER))) {
+            mySeen.putIfAbsent(decoded, new SeenString(source, offset, length,
+                    decoded));
+        }
     }
 
     /**
-     * Rebuilds the cache from the current {@link #mySeen} map. By the end of
-     * the method the caceh should have been rebuild and the {@link #mySeen} map
-     * cleared.
+     * Adds the buffered uses to the shared state and rebuilds the cache after
+     * a period of use.
+     *
+     * @param buffer
+     *            The full buffer of uses.
      */
-    protected abstract void rebuildCache();
+    private void flush(final UseBuffer buffer) {
+        final int count = buffer.drainTo(mySketch);
 
-    /**
-     * Trims the seen map of any entries that have not accumulated many counts.
-     * This is to avoid the seen map holding too many entries.
-     */
-    private void trimPending() {
-        // Only keep entries that have more than 1% (or more than 1 if 1% is <
-        // 1) entries.
-        final int trimLevel = Math.max(1, (int) (myMaxCachEntries * 0.01));
-        int toRemove = Math.max(0, mySeen.size() - myMaxCachEntries);
-
-        final Iterator<SeenString> iter = mySeen.values().iterator();
-        while (iter.hasNext() && (0 < toRemove)) {
-            final SeenString seen = iter.next();
-            if (seen.getCount() <= trimLevel) {
-                iter.remove();
-                toRemove -= 1;
-            }
+        // Rebuild the count after period of use.
+        int use = myUseCount.addAndGet(count);
+        while ((myMaxCachEntries * myMaxCachEntriesMultiplier) < use) {
+            use = tryRebuild(use);
         }
     }
 
@@ -289,47 +397,229 @@ public abstract class AbstractStringCache {
     }
 
     /**
-     * ReverseIntegerComparator provides a {@link Comparator} that considers
-     * higher value integers to be less then lower value integers.
+     * FrequencySketch provides a count-min sketch of the number of times each
+     * string has been used.
+     * <p>
+     * The counters are updated atomically but {@link #age()} does not stop
+     * concurrent increments. An increment racing with the aging may be lost.
+     * That is acceptable for an estimate of the use of a string.
+     * </p>
      *
-     * @copyright 2014, Allanbank Consulting, Inc., All Rights Reserved
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
      */
-    public static class ReverseIntegerComparator
-            implements Comparator<Integer>, Serializable {
+    private static final class FrequencySketch {
 
-        /** The single instance of the comparator. */
-        public static final Comparator<Integer> INSTANCE = new ReverseIntegerComparator();
+        /** The number of counters for each entry in the cache. */
+        private static final int COUNTERS_PER_ENTRY = 8;
 
-        /** The serialization version for the class. */
-        private static final long serialVersionUID = 7342816815375930353L;
+        /** The seeds for the hash of each row. */
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B,
+                0xC2B2AE35, 0x27D4EB2F };
+
+        /** The counters. One row of {@link #myWidth} for each seed. */
+        private final AtomicIntegerArray myCounters;
+
+        /** The number of counters in each row. A power of 2. */
+        private final int myWidth;
 
         /**
-         * Creates a new ReverseIntegerComparator. Private since this class is
-         * stateless and we only need a single copy.
+         * Creates a new FrequencySketch.
+         *
+         * @param entries
+         *            The maximum number of entries in the cache.
          */
-        private ReverseIntegerComparator() {
-            super();
+        public FrequencySketch(final int entries) {
+            myWidth = widthFor(entries);
+            myCounters = new AtomicIntegerArray(SEEDS.length * myWidth);
         }
 
         /**
-         * {@inheritDoc}
-         * <p>
-         * Overridden to reverse the comparison of integers.
-         * </p>
+         * Counts uses of the string with the hash code.
+         *
+         * @param hash
+         *            The hash code of the string.
+         * @param uses
+         *            The number of uses to count.
+         */
+        public void add(final int hash, final int uses) {
+            for (int row = 0; row < SEEDS.length; ++row) {
+                myCounters.addAndGet(index(hash, row), uses);
+            }
+        }
+
+        /**
+         * Halves all of the counters.
          */
-        @Override
-        public int compare(final Integer o1, final Integer o2) {
-            final int value = o1.compareTo(o2);
+        public void age() {
+            for (int i = 0; i < myCounters.length(); ++i) {
+                final int value = myCounters.get(i);
+                if (value != 0) {
+                    myCounters.set(i, value >>> 1);
+                }
+            }
+        }
 
-            if (value < 0) {
-                return 1;
+        /**
+         * Returns the estimated number of uses of the string with the hash
+         * code.
+         *
+         * @param hash
+         *            The hash code of the string.
+         * @return The estimated number of uses of the string.
+         */
+        public int estimate(final int hash) {
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; ++row) {
+                min = Math.min(min, myCounters.get(index(hash, row)));
             }
-            else if (0 < value) {
-                return -1;
+            return min;
+        }
+
+
+        /**
+         * Returns true if the sketch is the right size for the number of
+         * entries in the cache.
+         *
+         * @param entries
+         *            The maximum number of entries in the cache.
+         * @return True if the sketch is the right size for the number of
+         *         entries in the cache.
+         */
+        public boolean isSizedFor(final int entries) {
+            return myWidth == widthFor(entries);
+        }
+
+        /**
+         * Returns the index of the counter for the hash in the row.
+         *
+         * @param hash
+         *            The hash code of the string.
+         * @param row
+         *            The row of the counter.
+         * @return The index of the counter.
+         */
+        private int index(final int hash, final int row) {
+            int h = hash * SEEDS[row];
+            h ^= (h >>> 16);
+            return (row * myWidth) + (h & (myWidth - 1));
+        }
+
+        /**
+         * Returns the width of each row for the number of entries.
+         *
+         * @param entries
+         *            The maximum number of entries in the cache.
+         * @return The width of each row.
+         */
+        private static int widthFor(final int entries) {
+            final int counters = Math.max(16, Math.min(1 << 24,
+                    Math.max(0, entries) * COUNTERS_PER_ENTRY));
+            return Integer.highestOneBit(counters - 1) << 1;
+        }
+    }
+
+    /**
+     * UseBuffer provides a per-thread buffer of the uses of strings.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static final class UseBuffer {
+
+        /** The number of buffered uses. */
+        private int myCount;
+
+        /** The generation of the cache the uses were buffered for. */
+        private int myGeneration;
+
+        /** The hash codes of the used strings. */
+        private final int[] myHashes;
+
+        /** The state of the sampling random number generator. */
+        private int mySeed;
+
+        /**
+         * Creates a new UseBuffer.
+         */
+        public UseBuffer() {
+            myHashes = new int[BUFFER_SIZE];
+            myCount = 0;
+            myGeneration = 0;
+            mySeed = System.identityHashCode(Thread.currentThread()) | 1;
+        }
+
+        /**
+         * Adds a use to the buffer.
+         *
+         * @param hash
+         *            The hash code of the used string.
+         * @param generation
+         *            The current generation of the cache.
+         * @return True if the buffer is full and should be drained.
+         */
+        public boolean add(final int hash, final int generation) {
+            if (myGeneration != generation) {
+                // The cache was cleared. Drop the old uses.
+                myGeneration = generation;
+                myCount = 0;
             }
-            else {
-                return 0;
+
+            myHashes[myCount] = hash;
+            myCount += 1;
+
+            return myCount == myHashes.length;
+        }
+
+        /**
+         * Adds the buffered uses to the sketch and empties the buffer.
+         * <p>
+         * The same few strings (e.g., field names) tend to dominate the
+         * buffer so the uses are sorted and each distinct hash is added to
+         * the shared sketch once with its count. This reduces the contended
+         * atomic updates to one per row for each distinct string.
+         * </p>
+         *
+         * @param sketch
+         *            The sketch to add the uses to.
+         * @return The number of uses drained.
+         */
+        public int drainTo(final FrequencySketch sketch) {
+            final int count = myCount;
+            final int[] hashes = myHashes;
+
+            Arrays.sort(hashes, 0, count);
+
+            int start = 0;
+            for (int i = 1; i <= count; ++i) {
+                if ((i == count) || (hashes[i] != hashes[start])) {
+                    sketch.add(hashes[start], i - start);
+                    start = i;
+                }
             }
+            myCount = 0;
+
+            return count;
+        }
+
+        /**
+         * Returns true if the current use should be sampled.
+         *
+         * @return True if the current use should be sampled.
+         */
+        public boolean sample() {
+            // Xorshift.
+            int seed = mySeed;
+            seed ^= (seed << 13);
+            seed ^= (seed >>> 17);
+            seed ^= (seed << 5);
+            mySeed = seed;
+
+            return (seed & (SAMPLE_RATE - 1)) == 0;
         }
     }
-}
\ No newline at end of file
+}
@@ -19,6 +19,7 @@
  */
 package com.allanbank.mongodb.bson.io;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInput;
 import java.io.EOFException;
 import java.io.IOException;
@@ -53,6 +54,7 @@ import com.allanbank.mongodb.bson.element.StringElement;
 import com.allanbank.mongodb.bson.element.SymbolElement;
 import com.allanbank.mongodb.bson.element.TimestampElement;
 import com.allanbank.mongodb.bson.element.UuidElement;
+import com.allanbank.mongodb.bson.impl.RawDocument;
 import com.allanbank.mongodb.bson.impl.RootDocument;
 
 /**
@@ -72,9 +74,22 @@ public class BsonInputStream
     /** UTF-8 Character set for encoding strings. */
     public final static Charset UTF8 = StringDecoder.UTF8;
 
+    /** An empty stream for readers over a fixed range of bytes. */
+    private static final InputStream EMPTY = new ByteArrayInputStream(
+            new byte[0]);
+
+    /** The buffer for a stream once its pooled buffer has been released. */
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+
     /** The buffered data. */
     private byte[] myBuffer;
 
+    /**
+     * The pool to lease the buffer from as it grows. Null if the stream reads
+     * from a fixed range of bytes.
+     */
+    private final BufferPool myBufferPool;
+
     /** The offset into the current buffer. */
     private int myBufferLimit;
 
@@ -87,9 +102,51 @@ public class BsonInputStream
     /** The underlying input stream. */
     private final InputStream myInput;
 
+    /**
+     * If true then {@link #readDocument()} returns a {@link RawDocument}
+     * instead of decoding every element.
+     */
+    private boolean myRawDocuments;
+
+    /**
+     * The dictionary of the field names for the documents being read. May be
+     * <code>null</code>.
+     */
+    private FieldNameDictionary myFieldNames;
+
+    /** The cache for decoded strings. */
+    private final StringDecoderCache myStringCache;
+
     /** The decoder for strings. */
     private final StringDecoder myStringDecoder;
 
+    /**
+     * Creates a BSON reader over a fixed range of bytes. The bytes are never
+     * copied or modified by the stream.
+     *
+     * @param buffer
+     *            The bytes to read.
+     * @param offset
+     *            The offset of the first byte to read.
+     * @param length
+     *            The number of bytes to read.
+     * @param cache
+     *            The cache to use for decoded strings.
+     */
+    public BsonInputStream(final byte[] buffer, final int offset,
+            final int length, final StringDecoderCache cache) {
+        myInput = EMPTY;
+        myBufferPool = null;
+        myBuffer = buffer;
+        myBufferOffset = offset;
+        myBufferLimit = offset + length;
+        myBytesRead = -offset;
+        myRawDocuments = false;
+
+        myStringCache = cache;
+        myStringDecoder = new StringDecoder(cache);
+    }
+
     /**
      * Creates a BSON document reader.
      *
@@ -130,11 +187,14 @@ public class BsonInputStream
     public BsonInputStream(final InputStream input,
             final int expectedMaxDocumentSize, final StringDecoderCache cache) {
         myInput = input;
-        myBuffer = new byte[expectedMaxDocumentSize];
+        myBufferPool = BufferPool.getDefault();
+        myBuffer = myBufferPool.lease(expectedMaxDocumentSize);
         myBufferOffset = 0;
         myBufferLimit = 0;
         myBytesRead = 0;
+        myRawDocuments = false;
 
+        myStringCache = cache;
         myStringDecoder = new StringDecoder(cache);
     }
 
@@ -166,12 +226,28 @@ public class BsonInputStream
     /**
      * {@inheritDoc}
      * <p>
-     * Overridden to close the wrapped {@link InputStream}.
+     * Overridden to close the wrapped {@link InputStream} and return the
+     * stream's buffer to the {@link BufferPool}. The stream must not be read
+     * after it is closed.
      * </p>
      */
     @Override
     public void close() throws IOException {
-        myInput.close();
+        try {
+            myInput.close();
+        }
+        finally {
+            if ((myBufferPool != null) && (myBuffer.length != 0)) {
+                final byte[] buffer = myBuffer;
+
+                myBytesRead += myBufferOffset;
+                myBuffer = EMPTY_BUFFER;
+                myBufferOffset = 0;
+                myBufferLimit = 0;
+
+                myBufferPool.release(buffer);
+            }
+        }
     }
 
     /**
@@ -183,6 +259,26 @@ public class BsonInputStream
         return myBytesRead + myBufferOffset;
     }
 
+    /**
+     * Returns the dictionary of field names for the namespace from the
+     * stream's string cache.
+     *
+     * @param database
+     *            The name of the database.
+     * @param collection
+     *            The name of the collection.
+     * @return The dictionary of field names for the namespace. May be
+     *         <code>null</code>.
+     * @see #setFieldNames(FieldNameDictionary)
+     */
+    public FieldNameDictionary getFieldNames(final String database,
+            final String collection) {
+        if (myStringCache == null) {
+            return null;
+        }
+        return myStringCache.getFieldNames(database, collection);
+    }
+
     /**
      * Returns the maximum number of strings that may have their encoded form
      * cached.
@@ -213,6 +309,16 @@ public class BsonInputStream
         return myStringDecoder.getCache().getMaxCacheLength();
     }
 
+    /**
+     * Returns true if {@link #readDocument()} returns a {@link RawDocument}
+     * that decodes its elements on demand.
+     *
+     * @return True if {@link #readDocument()} returns a {@link RawDocument}.
+     */
+    public boolean isRawDocuments() {
+        return myRawDocuments;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -327,7 +433,18 @@ public class BsonInputStream
                     // Advance the buffer.
                     myBufferOffset = i + 1;
 
-                    return myStringDecoder.decode(myBuffer, offset, length);
+                    final FieldNameDictionary names = myFieldNames;
+                    if (names == null) {
+                        return myStringDecoder.decode(myBuffer, offset, length);
+                    }
+
+                    String result = names.find(myBuffer, offset, length);
+                    if (result == null) {
+                        result = myStringDecoder.decode(myBuffer, offset,
+                                length);
+                        names.learn(result, myBuffer, offset, length);
+                    }
+                    return result;
                 }
             }
 
@@ -354,11 +471,40 @@ public class BsonInputStream
         // The total length of the document.
         final int size = readInt();
 
+        if (myRawDocuments) {
+            return readRawDocument(size);
+        }
+
         prefetch(size - 4);
 
         return new RootDocument(readElements(), false, size);
     }
 
+    /**
+     * Reads a single BSON element: <code>
+     * <pre>
+     * element 	::= 	type e_name value
+     * </pre>
+     * </code>
+     *
+     * @return The element or <code>null</code> at the end of the element
+     *         list.
+     * @throws EOFException
+     *             On insufficient data for the element.
+     * @throws IOException
+     *             On a failure reading the element.
+     */
+    public Element readElement() throws EOFException, IOException {
+        final int elementToken = read();
+        if (elementToken < 0) {
+            throw new EOFException();
+        }
+        else if (elementToken == 0) {
+            return null;
+        }
+        return readElement((byte) elementToken);
+    }
+
     /**
      * Reads the complete set of bytes from the stream or throws an
      * {@link EOFException}.
@@ -440,6 +586,32 @@ public class BsonInputStream
         throw new UnsupportedOperationException("Mark not supported.");
     }
 
+    /**
+     * Sets the dictionary of field names used by {@link #readCString()} while
+     * reading the documents for a single namespace. Names found in the
+     * dictionary are returned as the dictionary's canonical instance and, while
+     * the dictionary is learning, decoded names are added to it.
+     *
+     * @param fieldNames
+     *            The dictionary of field names or <code>null</code> to stop
+     *            using a dictionary.
+     */
+    public void setFieldNames(final FieldNameDictionary fieldNames) {
+        myFieldNames = fieldNames;
+    }
+
+    /**
+     * Sets if {@link #readDocument()} returns a {@link RawDocument} that holds
+     * the document's bytes and decodes its elements on demand.
+     *
+     * @param rawDocuments
+     *            If true then {@link #readDocument()} returns a
+     *            {@link RawDocument}.
+     */
+    public void setRawDocuments(final boolean rawDocuments) {
+        myRawDocuments = rawDocuments;
+    }
+
     /**
      * Sets the value of maximum number of strings that may have their encoded
      * form cached.
@@ -1135,17 +1307,23 @@ public class BsonInputStream
             throws IOException {
         // See if we need to read more data.
         int available = availableInBuffer();
-        if (available < size) {
+        if ((available < size) && (myBufferPool == null)) {
+            // Reading a fixed range of bytes. Never grow or compact the
+            // buffer we do not own.
+            return available;
+        }
+        else if (available < size) {
             // Yes - we do.
 
             // Will the size fit in the existing buffer?
             if (myBuffer.length < size) {
-                // Nope - grow the buffer to the needed size.
-                final byte[] newBuffer = new byte[size];
+                // Nope - grow the buffer to at least the needed size.
+                final byte[] newBuffer = myBufferPool.lease(size);
 
                 // Copy the existing content into the new buffer.
                 System.arraycopy(myBuffer, myBufferOffset, newBuffer, 0,
                         available);
+                myBufferPool.release(myBuffer);
                 myBuffer = newBuffer;
             }
             else if (0 < available) {
@@ -1177,6 +1355,34 @@ public class BsonInputStream
         return size;
     }
 
+    /**
+     * Reads the remainder of a document into a {@link RawDocument}.
+     *
+     * @param size
+     *            The size of the document, already read from the stream.
+     * @return The {@link RawDocument}.
+     * @throws EOFException
+     *             On insufficient data for the document.
+     * @throws IOException
+     *             On a failure reading the document.
+     */
+    private RawDocument readRawDocument(final int size) throws EOFException,
+            IOException {
+        if (size < 5) {
+            throw new StreamCorruptedException("Invalid document size: "
+                    + size + ".");
+        }
+
+        final byte[] bytes = new byte[size];
+        bytes[0] = (byte) size;
+        bytes[1] = (byte) (size >> 8);
+        bytes[2] = (byte) (size >> 16);
+        bytes[3] = (byte) (size >> 24);
+        readFully(bytes, 4, size - 4);
+
+        return new RawDocument(bytes, myStringCache);
+    }
+
     /**
      * Reads the complete set of bytes from the stream or throws an
      * {@link EOFException}.
@@ -26,6 +26,7 @@ import java.nio.charset.Charset;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.impl.RawDocument;
 
 /**
  * A wrapper for an {@link OutputStream} to handle writing BSON primitives.
@@ -262,7 +263,8 @@ public class BsonOutputStream {
     }
 
     /**
-     * Writes a BSON {@link Document} to the stream.
+     * Writes a BSON {@link Document} to the stream. A {@link RawDocument} is
+     * written by copying its bytes.
      *
      * @param document
      *            The {@link Document} to write.
@@ -270,6 +272,12 @@ public class BsonOutputStream {
      *             On a failure writing the document.
      */
     public void writeDocument(final Document document) throws IOException {
+        if (document instanceof RawDocument) {
+            // Already encoded.
+            ((RawDocument) document).writeTo(myOutput);
+            return;
+        }
+
         try {
             document.accept(myWriteVisitor);
             if (myWriteVisitor.hasError()) {
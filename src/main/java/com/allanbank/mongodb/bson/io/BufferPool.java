@@ -0,0 +1,342 @@
+/*
+ * #%L
+ * BufferPool.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * BufferPool provides a pool of {@code byte[]} buffers used to serialize and
+ * de-serialize messages.
+ * <p>
+ * Buffers are pooled by size class. Each size class is a power of two from
+ * {@link #MIN_SIZE_CLASS 8K} to {@link #MAX_SIZE_CLASS 4M}. Requests for a
+ * buffer larger than the largest size class are always allocated and are
+ * never pooled.
+ * </p>
+ * <p>
+ * Each thread has a small magazine of buffers for each of the smaller size
+ * classes so that the common lease and release do not touch any shared state.
+ * When a thread's magazine is empty, or full, buffers are taken from, or
+ * returned to, a bounded depot for the size class shared by all threads.
+ * Buffers released when the depot is full are left for the garbage collector.
+ * </p>
+ * <p>
+ * The hit and miss counts are striped {@link LongAdder}s so that counting a
+ * lease does not contend across threads either. The counts are only
+ * approximate while leases are in progress.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@ThreadSafe
+public class BufferPool {
+
+    /** The largest size class. Larger buffers are never pooled. */
+    public static final int MAX_SIZE_CLASS = 4 * 1024 * 1024;
+
+    /** The smallest size class. */
+    public static final int MIN_SIZE_CLASS = 8 * 1024;
+
+    /** The maximum number of bytes to hold in each size class's depot. */
+    private static final int MAX_DEPOT_BYTES = 4 * 1024 * 1024;
+
+    /** The maximum number of bytes to hold in each of a thread's magazines. */
+    private static final int MAX_MAGAZINE_BYTES = 128 * 1024;
+
+    /** The maximum number of buffers to hold in each of a thread's magazines. */
+    private static final int MAX_MAGAZINE_COUNT = 4;
+
+    /** The shift for the smallest size class. */
+    private static final int MIN_SIZE_CLASS_SHIFT = Integer
+            .numberOfTrailingZeros(MIN_SIZE_CLASS);
+
+    /** The number of size classes. */
+    private static final int SIZE_CLASS_COUNT = (Integer
+            .numberOfTrailingZeros(MAX_SIZE_CLASS) - MIN_SIZE_CLASS_SHIFT) + 1;
+
+    /** The pool shared by the driver. */
+    private static final BufferPool ourDefault = new BufferPool();
+
+    /**
+     * Returns the buffer pool shared by the driver.
+     *
+     * @return The buffer pool shared by the driver.
+     */
+    public static BufferPool getDefault() {
+        return ourDefault;
+    }
+
+    /**
+     * Returns the index of the size class for a buffer of the specified size.
+     *
+     * @param size
+     *            The minimum size of the buffer.
+     * @return The index of the size class or <code>-1</code> if the buffer is
+     *         larger than the largest size class.
+     */
+    /* package */static int sizeClass(final int size) {
+        if (size <= MIN_SIZE_CLASS) {
+            return 0;
+        }
+        else if (MAX_SIZE_CLASS < size) {
+            return -1;
+        }
+        return (Integer.SIZE - Integer.numberOfLeadingZeros(size - 1))
+                - MIN_SIZE_CLASS_SHIFT;
+    }
+
+    /** The shared depot for each size class. */
+    private final Depot[] myDepots;
+
+    /** The number of leases satisfied by a pooled buffer. */
+    private final LongAdder myHitCount;
+
+    /** The per-thread magazines. */
+    private final ThreadLocal<Magazine> myMagazines;
+
+    /** The number of leases that required allocating a new buffer. */
+    private final LongAdder myMissCount;
+
+    /**
+     * Creates a new BufferPool.
+     */
+    public BufferPool() {
+        myHitCount = new LongAdder();
+        myMissCount = new LongAdder();
+
+        myDepots = new Depot[SIZE_CLASS_COUNT];
+        for (int i = 0; i < myDepots.length; ++i) {
+            myDepots[i] = new Depot(Math.max(1, MAX_DEPOT_BYTES
+                    / (MIN_SIZE_CLASS << i)));
+        }
+
+        myMagazines = new ThreadLocal<Magazine>() {
+            @Override
+            protected Magazine initialValue() {
+                return new Magazine();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of leases satisfied by a pooled buffer.
+     *
+     * @return The number of leases satisfied by a pooled buffer.
+     */
+    public long getHitCount() {
+        return myHitCount.sum();
+    }
+
+    /**
+     * Returns the number of leases that required allocating a new buffer.
+     *
+     * @return The number of leases that required allocating a new buffer.
+     */
+    public long getMissCount() {
+        return myMissCount.sum();
+    }
+
+    /**
+     * Leases a buffer of at least the specified size. The buffer's contents
+     * are undefined.
+     *
+     * @param size
+     *            The minimum size of the buffer.
+     * @return The buffer.
+     */
+    public byte[] lease(final int size) {
+        final int sizeClass = sizeClass(size);
+        if (sizeClass < 0) {
+            myMissCount.increment();
+            return new byte[size];
+        }
+
+        byte[] buffer = myMagazines.get().poll(sizeClass);
+        if (buffer == null) {
+            buffer = myDepots[sizeClass].poll();
+        }
+
+        if (buffer != null) {
+            myHitCount.increment();
+            return buffer;
+        }
+
+        myMissCount.increment();
+        return new byte[MIN_SIZE_CLASS << sizeClass];
+    }
+
+    /**
+     * Returns the buffer to the pool. Buffers that are not exactly the size of
+     * a size class are ignored. The caller must not use the buffer after
+     * releasing it.
+     *
+     * @param buffer
+     *            The buffer to return to the pool.
+     */
+    public void release(final byte[] buffer) {
+        final int length = buffer.length;
+        final int sizeClass = sizeClass(length);
+        if ((0 <= sizeClass) && ((MIN_SIZE_CLASS << sizeClass) == length)) {
+            if (!myMagazines.get().offer(sizeClass, buffer)) {
+                myDepots[sizeClass].offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Depot provides the bounded, shared pool for a single size class.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    /* package */static final class Depot {
+
+        /** The pooled buffers. */
+        private final Queue<byte[]> myBuffers;
+
+        /** The number of pooled buffers. */
+        private final AtomicInteger myCount;
+
+        /** The maximum number of pooled buffers. */
+        private final int myMaximum;
+
+        /**
+         * Creates a new Depot.
+         *
+         * @param maximum
+         *            The maximum number of pooled buffers.
+         */
+        public Depot(final int maximum) {
+            myMaximum = maximum;
+            myBuffers = new ConcurrentLinkedQueue<byte[]>();
+            myCount = new AtomicInteger(0);
+        }
+
+        /**
+         * Adds the buffer to the depot if there is room.
+         *
+         * @param buffer
+         *            The buffer to add.
+         */
+        public void offer(final byte[] buffer) {
+            if (myCount.incrementAndGet() <= myMaximum) {
+                myBuffers.offer(buffer);
+            }
+            else {
+                myCount.decrementAndGet();
+            }
+        }
+
+        /**
+         * Removes a buffer from the depot.
+         *
+         * @return The buffer or <code>null</code> if the depot is empty.
+         */
+        public byte[] poll() {
+            final byte[] buffer = myBuffers.poll();
+            if (buffer != null) {
+                myCount.decrementAndGet();
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Magazine provides a single thread's cache of buffers for each size
+     * class. Larger size classes are not cached per thread and always use the
+     * depot.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    /* package */static final class Magazine {
+
+        /** The cached buffers for each size class. */
+        private final byte[][][] myBuffers;
+
+        /** The number of cached buffers for each size class. */
+        private final int[] myCounts;
+
+        /**
+         * Creates a new Magazine.
+         */
+        public Magazine() {
+            myCounts = new int[SIZE_CLASS_COUNT];
+            myBuffers = new byte[SIZE_CLASS_COUNT][][];
+            for (int i = 0; i < myBuffers.length; ++i) {
+                myBuffers[i] = new byte[Math.min(MAX_MAGAZINE_COUNT,
+                        MAX_MAGAZINE_BYTES / (MIN_SIZE_CLASS << i))][];
+            }
+        }
+
+        /**
+         * Adds the buffer to the magazine if there is room.
+         *
+         * @param sizeClass
+         *            The buffer's size class.
+         * @param buffer
+         *            The buffer to add.
+         * @return True if the buffer was added.
+         */
+        public boolean offer(final int sizeClass, final byte[] buffer) {
+            final byte[][] buffers = myBuffers[sizeClass];
+            final int count = myCounts[sizeClass];
+            if (count < buffers.length) {
+                buffers[count] = buffer;
+                myCounts[sizeClass] = count + 1;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Removes a buffer from the magazine.
+         *
+         * @param sizeClass
+         *            The size class of the buffer.
+         * @return The buffer or <code>null</code> if the magazine is empty.
+         */
+        public byte[] poll(final int sizeClass) {
+            final int count = myCounts[sizeClass];
+            if (0 < count) {
+                final byte[][] buffers = myBuffers[sizeClass];
+                final byte[] buffer = buffers[count - 1];
+
+                buffers[count - 1] = null;
+                myCounts[sizeClass] = count - 1;
+
+                return buffer;
+            }
+            return null;
+        }
+    }
+}
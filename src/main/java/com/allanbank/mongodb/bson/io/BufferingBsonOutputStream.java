@@ -27,6 +27,7 @@ import javax.annotation.concurrent.NotThreadSafe;
 
 import com.allanbank.mongodb.bson.Document;
 import com.allanbank.mongodb.bson.Visitor;
+import com.allanbank.mongodb.bson.impl.RawDocument;
 
 /**
  * {@link BufferingBsonOutputStream} provides a class to write BSON documents
@@ -247,7 +248,7 @@ public class BufferingBsonOutputStream
      */
     public long write(final Document doc) throws IOException {
 
-        doc.accept(myVisitor);
+        writeDocument(doc);
 
         final long position = myVisitor.getSize();
 
@@ -312,7 +313,13 @@ public class BufferingBsonOutputStream
      *             On a failure to write to the underlying document.
      */
     public void writeDocument(final Document doc) throws IOException {
-        doc.accept(myVisitor);
+        if (doc instanceof RawDocument) {
+            // Already encoded.
+            ((RawDocument) doc).writeTo(myOutput);
+        }
+        else {
+            doc.accept(myVisitor);
+        }
     }
 
     /**
@@ -0,0 +1,443 @@
+/*
+ * #%L
+ * FieldNameDictionary.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * FieldNameDictionary provides a dictionary of the field names used by the
+ * documents in a single namespace (collection).
+ * <p>
+ * The dictionary learns the names of the fields from the first
+ * {@link #LEARNING_REPLIES} replies read for the namespace. It is then frozen
+ * into a minimal perfect hash table over the encoded bytes of the names. Once
+ * frozen, each lookup hashes the raw bytes once, probes a single slot and
+ * verifies the bytes. Every occurrence of a field name then shares a single
+ * canonical {@link String} instance, which avoids decoding the name and
+ * reduces the heap retained by long-lived results.
+ * </p>
+ * <p>
+ * The table uses the "hash and displace" construction: the names are grouped
+ * into buckets by a first hash and each bucket is assigned a displacement that
+ * moves all of its names into free slots.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@ThreadSafe
+public class FieldNameDictionary {
+
+    /** The number of replies to learn the field names from. */
+    public static final int LEARNING_REPLIES = 4;
+
+    /** The maximum length of an encoded field name in the dictionary. */
+    public static final int MAX_NAME_LENGTH = 128;
+
+    /** The maximum number of field names in the dictionary. */
+    public static final int MAX_NAMES = 512;
+
+    /** The maximum number of displacements to try for a bucket. */
+    private static final int MAX_DISPLACEMENT = 1 << 16;
+
+    /** The maximum number of slots in the table. */
+    private static final int MAX_SLOTS = MAX_NAMES << 6;
+
+    /**
+     * Hashes the encoded bytes.
+     *
+     * @param source
+     *            The bytes to hash.
+     * @param offset
+     *            The offset of the first byte.
+     * @param length
+     *            The number of bytes to hash.
+     * @return The hash of the bytes.
+     */
+    /* package */static long hash(final byte[] source, final int offset,
+            final int length) {
+        // FNV-1a, 64 bit.
+        long hash = 0xCBF29CE484222325L;
+        final int end = offset + length;
+        for (int i = offset; i < end; ++i) {
+            hash ^= (source[i] & 0xFF);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the slot for the hash given the bucket's displacement.
+     *
+     * @param hash
+     *            The hash of the name.
+     * @param displacement
+     *            The displacement for the name's bucket.
+     * @param mask
+     *            The mask for the number of slots.
+     * @return The slot for the name.
+     */
+    private static int slot(final long hash, final int displacement,
+            final int mask) {
+        int h = ((int) hash) ^ (displacement * 0x9E3779B9);
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+
+    /** The frozen table. <code>null</code> while learning. */
+    private volatile Table myTable;
+
+    /**
+     * The names learned so far, in the order first seen. Guarded by this
+     * dictionary's lock while learning.
+     */
+    private final Map<String, byte[]> myLearned;
+
+    /** The number of replies learned from. Guarded by this dictionary's lock. */
+    private int myReplies;
+
+    /**
+     * Creates a new FieldNameDictionary.
+     */
+    public FieldNameDictionary() {
+        myLearned = new LinkedHashMap<String, byte[]>();
+        myReplies = 0;
+        myTable = null;
+    }
+
+    /**
+     * Finds the canonical name for the encoded bytes.
+     *
+     * @param source
+     *            The source of the bytes in the string.
+     * @param offset
+     *            The offset of the first byte.
+     * @param length
+     *            The length of the bytes including the terminal zero byte.
+     * @return The canonical name or <code>null</code> if the dictionary is
+     *         still learning or does not contain the name.
+     */
+    public String find(final byte[] source, final int offset, final int length) {
+        final Table table = myTable;
+        if (table != null) {
+            return table.find(source, offset, length);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the names in the dictionary.
+     *
+     * @return The names in the dictionary.
+     */
+    public List<String> getNames() {
+        final Table table = myTable;
+        if (table != null) {
+            return table.getNames();
+        }
+        synchronized (this) {
+            return new ArrayList<String>(myLearned.keySet());
+        }
+    }
+
+    /**
+     * Returns true while the dictionary is still learning the field names.
+     *
+     * @return True while the dictionary is still learning the field names.
+     */
+    public boolean isLearning() {
+        return myTable == null;
+    }
+
+    /**
+     * Records a decoded name while the dictionary is learning.
+     *
+     * @param name
+     *            The decoded name.
+     * @param source
+     *            The source of the bytes in the string.
+     * @param offset
+     *            The offset of the first byte.
+     * @param length
+     *            The length of the bytes including the terminal zero byte.
+     */
+    public void learn(final String name, final byte[] source, final int offset,
+            final int length) {
+        if ((myTable == null) && (1 < length) && (length <= MAX_NAME_LENGTH)) {
+            synchronized (this) {
+                if ((myTable == null) && (myLearned.size() < MAX_NAMES)
+                        && !myLearned.containsKey(name)) {
+                    myLearned.put(name, Arrays.copyOfRange(source, offset,
+                            offset + length));
+                }
+            }
+        }
+    }
+
+    /**
+     * Notification that a reply for the namespace has been read. Once
+     * {@link #LEARNING_REPLIES} replies have been read the dictionary is
+     * frozen.
+     */
+    public void replyRead() {
+        if (myTable == null) {
+            synchronized (this) {
+                myReplies += 1;
+                if ((myTable == null) && (LEARNING_REPLIES <= myReplies)) {
+                    myTable = new Table(myLearned);
+                    myLearned.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Table provides the frozen perfect hash table.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static final class Table {
+
+        /** The mask for the buckets. */
+        private final int myBucketMask;
+
+        /** The displacement for each bucket. */
+        private final int[] myDisplacements;
+
+        /** The encoded bytes for each slot. */
+        private final byte[][] myKeys;
+
+        /** The names in the table. */
+        private final List<String> myNames;
+
+        /** The mask for the slots. */
+        private final int mySlotMask;
+
+        /** The name for each slot. */
+        private final String[] myValues;
+
+        /**
+         * Creates a new Table.
+         *
+         * @param learned
+         *            The learned names and encoded bytes.
+         */
+        public Table(final Map<String, byte[]> learned) {
+            final int count = learned.size();
+            final String[] names = learned.keySet().toArray(new String[count]);
+            final long[] hashes = new long[count];
+            for (int i = 0; i < count; ++i) {
+                final byte[] bytes = learned.get(names[i]);
+                hashes[i] = hash(bytes, 0, bytes.length);
+            }
+
+            // Twice as many slots as names keeps the displacement search
+            // short. Buckets average 4 names.
+            int slots = Integer.highestOneBit(Math.max(1, (count * 2) - 1)) << 1;
+            final int buckets = Integer.highestOneBit(Math.max(1,
+                    ((count + 3) / 4) - 1)) << 1;
+
+            int[] displacements = place(names, hashes, buckets, slots);
+            while ((displacements == null) && (slots < MAX_SLOTS)) {
+                slots <<= 1;
+                displacements = place(names, hashes, buckets, slots);
+            }
+            if (displacements == null) {
+                // Two names with the same hash? Give up on the names.
+                learned.clear();
+                displacements = new int[buckets];
+            }
+
+            myBucketMask = buckets - 1;
+            mySlotMask = slots - 1;
+            myDisplacements = displacements;
+            myKeys = new byte[slots][];
+            myValues = new String[slots];
+            for (int i = 0; i < learned.size(); ++i) {
+                final int bucket = bucket(hashes[i]);
+                final int slot = slot(hashes[i], myDisplacements[bucket],
+                        mySlotMask);
+                myKeys[slot] = learned.get(names[i]);
+                myValues[slot] = names[i];
+            }
+            myNames = Collections.unmodifiableList(new ArrayList<String>(
+                    learned.keySet()));
+        }
+
+        /**
+         * Finds the canonical name for the encoded bytes.
+         *
+         * @param source
+         *            The source of the bytes in the string.
+         * @param offset
+         *            The offset of the first byte.
+         * @param length
+         *            The length of the bytes including the terminal zero
+         *            byte.
+         * @return The canonical name or <code>null</code> if the table does
+         *         not contain the name.
+         */
+        public String find(final byte[] source, final int offset,
+                final int length) {
+            final long hash = hash(source, offset, length);
+            final int slot = slot(hash, myDisplacements[bucket(hash)],
+                    mySlotMask);
+
+            final byte[] key = myKeys[slot];
+            if ((key == null) || (key.length != length)) {
+                return null;
+            }
+            for (int i = 0; i < length; ++i) {
+                if (key[i] != source[offset + i]) {
+                    return null;
+                }
+            }
+            return myValues[slot];
+        }
+
+        /**
+         * Returns the names in the table.
+         *
+         * @return The names in the table.
+         */
+        public List<String> getNames() {
+            return myNames;
+        }
+
+        /**
+         * Returns the bucket for the hash.
+         *
+         * @param hash
+         *            The hash of the name.
+         * @return The bucket for the hash.
+         */
+        private int bucket(final long hash) {
+            return ((int) (hash >>> 32)) & myBucketMask;
+        }
+
+        /**
+         * Tries to find a displacement for each bucket that places every name
+         * into its own slot.
+         *
+         * @param names
+         *            The names to place.
+         * @param hashes
+         *            The hash for each name.
+         * @param buckets
+         *            The number of buckets.
+         * @param slots
+         *            The number of slots.
+         * @return The displacement for each bucket or <code>null</code> if
+         *         one of the buckets could not be placed.
+         */
+        private static int[] place(final String[] names, final long[] hashes,
+                final int buckets, final int slots) {
+            final int bucketMask = buckets - 1;
+            final int slotMask = slots - 1;
+
+            // Group the names by bucket.
+            final List<List<Integer>> members = new ArrayList<List<Integer>>(
+                    buckets);
+            for (int i = 0; i < buckets; ++i) {
+                members.add(new ArrayList<Integer>(4));
+            }
+            for (int i = 0; i < names.length; ++i) {
+                members.get(((int) (hashes[i] >>> 32)) & bucketMask).add(
+                        Integer.valueOf(i));
+            }
+
+            // Place the largest buckets first.
+            final Integer[] order = new Integer[buckets];
+            for (int i = 0; i < buckets; ++i) {
+                order[i] = Integer.valueOf(i);
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer lhs, final Integer rhs) {
+                    return members.get(rhs.intValue()).size()
+                            - members.get(lhs.intValue()).size();
+                }
+            });
+
+            final boolean[] used = new boolean[slots];
+            final int[] displacements = new int[buckets];
+            final int[] placed = new int[4];
+            for (final Integer bucket : order) {
+                final List<Integer> bucketMembers = members.get(bucket
+                        .intValue());
+                if (bucketMembers.isEmpty()) {
+                    break;
+                }
+
+                int[] taken = placed;
+                if (taken.length < bucketMembers.size()) {
+                    taken = new int[bucketMembers.size()];
+                }
+
+                boolean found = false;
+                for (int d = 0; !found && (d < MAX_DISPLACEMENT); ++d) {
+                    found = true;
+                    int count = 0;
+                    for (final Integer member : bucketMembers) {
+                        final int slot = slot(hashes[member.intValue()], d,
+                                slotMask);
+                        if (used[slot]) {
+                            found = false;
+                            break;
+                        }
+                        used[slot] = true;
+                        taken[count++] = slot;
+                    }
+
+                    if (found) {
+                        displacements[bucket.intValue()] = d;
+                    }
+                    else {
+                        // Release the slots for the next try.
+                        for (int i = 0; i < count; ++i) {
+                            used[taken[i]] = false;
+                        }
+                    }
+                }
+
+                if (!found) {
+                    return null;
+                }
+            }
+
+            return displacements;
+        }
+    }
+}
@@ -85,6 +85,9 @@ public class RandomAccessOutputStream
      */
     private final byte[] myIntegerBytes;
 
+    /** The pool to lease buffers from. */
+    private final BufferPool myPool;
+
     /** The current buffer being written. */
     private long mySize;
 
@@ -105,15 +108,59 @@ public class RandomAccessOutputStream
      *            The cache for encoding string.
      */
     public RandomAccessOutputStream(final StringEncoderCache cache) {
+        this(cache, BufferPool.getDefault());
+    }
+
+    /**
+     * Creates a new {@link RandomAccessOutputStream}.
+     *
+     * @param cache
+     *            The cache for encoding string.
+     * @param pool
+     *            The pool to lease buffers from.
+     */
+    public RandomAccessOutputStream(final StringEncoderCache cache,
+            final BufferPool pool) {
+        this(cache, pool, true);
+    }
+
+    /**
+     * Creates a new {@link RandomAccessOutputStream}.
+     * <p>
+     * If <tt>leaseBuffer</tt> is false then no buffer is leased from the
+     * <tt>pool</tt> and the derived class must store the written bytes itself
+     * by overriding all of the methods that access the buffers:
+     * {@link #getSize()}, {@link #reset()}, {@link #toByteArray()},
+     * {@link #write(int)}, {@link #write(byte[], int, int)},
+     * {@link #writeAt(long, int)}, {@link #writeAt(long, byte[], int, int)},
+     * {@link #writeTo(OutputStream)} and {@link #nextBuffer()}.
+     * </p>
+     *
+     * @param cache
+     *            The cache for encoding string.
+     * @param pool
+     *            The pool to lease buffers from. May be <code>null</code> if
+     *            <tt>leaseBuffer</tt> is false.
+     * @param leaseBuffer
+     *            If true the first buffer is leased from the pool.
+     */
+    protected RandomAccessOutputStream(final StringEncoderCache cache,
+            final BufferPool pool, final boolean leaseBuffer) {
         mySize = 0;
         myCurrentBufferOffset = 0;
         myCurrentBufferIndex = 0;
-        myCurrentBuffer = new byte[BUFFER_SIZE];
+        myPool = pool;
 
         myStringEncoder = new StringEncoder(cache);
 
         myBuffers = new ArrayList<byte[]>();
-        myBuffers.add(myCurrentBuffer);
+        if (leaseBuffer) {
+            myCurrentBuffer = pool.lease(BUFFER_SIZE);
+            myBuffers.add(myCurrentBuffer);
+        }
+        else {
+            myCurrentBuffer = null;
+        }
 
         myIntegerBytes = new byte[8];
     }
@@ -184,10 +231,14 @@ public class RandomAccessOutputStream
     }
 
     /**
-     * Resets the <code>size</code> of the buffer to zero. All buffers can be
-     * re-used.
+     * Resets the <code>size</code> of the buffer to zero. All but the first
+     * buffer are returned to the {@link BufferPool}.
      */
     public void reset() {
+        while (1 < myBuffers.size()) {
+            myPool.release(myBuffers.remove(myBuffers.size() - 1));
+        }
+
         mySize = 0;
         myCurrentBufferOffset = 0;
         myCurrentBufferIndex = 0;
@@ -510,6 +561,25 @@ public class RandomAccessOutputStream
 
     }
 
+    /**
+     * Returns a copy of the complete contents of the stream.
+     *
+     * @return The bytes written to the stream.
+     */
+    public byte[] toByteArray() {
+        final byte[] result = new byte[(int) mySize];
+
+        int offset = 0;
+        for (int i = 0; i < myCurrentBufferIndex; ++i) {
+            System.arraycopy(myBuffers.get(i), 0, result, offset, BUFFER_SIZE);
+            offset += BUFFER_SIZE;
+        }
+        System.arraycopy(myCurrentBuffer, 0, result, offset,
+                myCurrentBufferOffset);
+
+        return result;
+    }
+
     /**
      * Writes the complete contents of this byte array output stream to the
      * specified output stream argument, as if by calling the output stream's
@@ -528,7 +598,7 @@ public class RandomAccessOutputStream
     }
 
     /**
-     * Allocates a new buffer to use.
+     * Leases a new buffer to use from the {@link BufferPool}.
      */
     protected void nextBuffer() {
         // Need a new buffer.
@@ -538,7 +608,7 @@ public class RandomAccessOutputStream
             myCurrentBuffer = myBuffers.get(myCurrentBufferIndex);
         }
         else {
-            myCurrentBuffer = new byte[BUFFER_SIZE];
+            myCurrentBuffer = myPool.lease(BUFFER_SIZE);
             myBuffers.add(myCurrentBuffer);
         }
 
@@ -20,31 +20,21 @@
 package com.allanbank.mongodb.bson.io;
 
 import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
- * SeenString is a record of the byte[], value and count for each string/byte[]
- * the cache sees.
+ * SeenString is a record of the byte[] and value for each string/byte[] the
+ * cache considers for caching. The number of times the string is seen is
+ * tracked by the cache's frequency sketch.
  *
  * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
  *         mutated in incompatible ways between any two releases of the driver.
  * @copyright 2014, Allanbank Consulting, Inc., All Rights Reserved
  */
 class SeenString {
-    /**
-     * Atomic updated for all of the SeenString instances to cut down on the
-     * number of {@link AtomicInteger} entries required.
-     */
-    private final static AtomicIntegerFieldUpdater<SeenString> ourCountUpdater = AtomicIntegerFieldUpdater
-            .newUpdater(SeenString.class, "myCount");
 
     /** The encoded bytes for the seen string. */
     private final byte[] myBytes;
 
-    /** The number of times the string is seen. */
-    private volatile int myCount;
-
     /** The value for the seen string. */
     private final String myValue;
 
@@ -64,7 +54,6 @@ class SeenString {
             final String decoded) {
         myBytes = Arrays.copyOfRange(source, offset, offset + length);
         myValue = decoded;
-        myCount = 0;
     }
 
     /**
@@ -76,15 +65,6 @@ class SeenString {
         return myBytes;
     }
 
-    /**
-     * Returns the number of times the string is seen.
-     *
-     * @return The number of times the string is seen.
-     */
-    public int getCount() {
-        return myCount;
-    }
-
     /**
      * Returns the decoded string for the seen string.
      *
@@ -93,20 +73,4 @@ class SeenString {
     public String getValue() {
         return myValue;
     }
-
-    /**
-     * Increments the number of times that the string has been seen.
-     */
-    public void incrementCount() {
-        ourCountUpdater.incrementAndGet(this);
-    }
-
-    /**
-     * Sets the count to zero.
-     *
-     * @return the previous value for the count.
-     */
-    public int reset() {
-        return ourCountUpdater.getAndSet(this, 0);
-    }
-}
\ No newline at end of file
+}
@@ -23,7 +23,8 @@ package com.allanbank.mongodb.bson.io;
 import java.io.EOFException;
 import java.io.StreamCorruptedException;
 import java.util.List;
-import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -31,11 +32,16 @@ import javax.annotation.concurrent.ThreadSafe;
  * StringDecoderCache provides a cache for decoding strings.
  * <p>
  * This class is thread safe. Thread safety is achieved by maintaining two data
- * structures. The first is a map of seen strings to the number of times the
- * string has been seen. The map is maintained by the base class:
+ * structures. The first is a sketch of the number of times each string has
+ * been seen. The sketch is maintained by the base class:
  * {@link AbstractStringCache}. The second structure is a trie of the cached
  * {@code byte[]} to the decoded string.
  * </p>
+ * <p>
+ * The cache also holds a {@link FieldNameDictionary} for each namespace
+ * (database and collection) that documents are read from. See
+ * {@link #getFieldNames(String, String)}.
+ * </p>
  *
  * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
  *         mutated in incompatible ways between any two releases of the driver.
@@ -45,6 +51,18 @@ import javax.annotation.concurrent.ThreadSafe;
 public class StringDecoderCache
         extends AbstractStringCache {
 
+    /** The maximum number of namespaces to hold field name dictionaries for. */
+    public static final int MAX_FIELD_NAME_NAMESPACES = 1024;
+
+    /**
+     * The field name dictionaries for each namespace. The outer map is keyed
+     * by the database name and the inner map by the collection name.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, FieldNameDictionary>> myFieldNames;
+
+    /** The number of field name dictionaries. */
+    private volatile int myFieldNamesCount;
+
     /** The cached decoded strings in the form of a trie cache. */
     private TrieCache myTrieCache;
 
@@ -55,6 +73,8 @@ public class StringDecoderCache
         super();
 
         myTrieCache = new TrieCache();
+        myFieldNames = new ConcurrentHashMap<String, ConcurrentMap<String, FieldNameDictionary>>();
+        myFieldNamesCount = 0;
     }
 
     /**
@@ -93,12 +113,67 @@ public class StringDecoderCache
         return myTrieCache.find(source, offset, length);
     }
 
+    /**
+     * Returns the dictionary of the field names for the namespace. The
+     * dictionaries are keyed by the database and collection names separately
+     * so a lookup does not need to build the namespace string.
+     *
+     * @param database
+     *            The name of the database.
+     * @param collection
+     *            The name of the collection.
+     * @return The dictionary for the namespace or <code>null</code> if the
+     *         cache is disabled or holds the maximum number of dictionaries.
+     */
+    public FieldNameDictionary getFieldNames(final String database,
+            final String collection) {
+        if ((myMaxCacheLength <= 0) || (database == null)
+                || (collection == null)) {
+            return null;
+        }
+
+        ConcurrentMap<String, FieldNameDictionary> collections = myFieldNames
+                .get(database);
+        if (collections == null) {
+            if (MAX_FIELD_NAME_NAMESPACES <= myFieldNamesCount) {
+                return null;
+            }
+            collections = new ConcurrentHashMap<String, FieldNameDictionary>();
+            final ConcurrentMap<String, FieldNameDictionary> existing = myFieldNames
+                    .putIfAbsent(database, collections);
+            if (existing != null) {
+                collections = existing;
+            }
+        }
+
+        FieldNameDictionary dictionary = collections.get(collection);
+        if (dictionary == null) {
+            if (MAX_FIELD_NAME_NAMESPACES <= myFieldNamesCount) {
+                return null;
+            }
+            dictionary = new FieldNameDictionary();
+            final FieldNameDictionary existing = collections.putIfAbsent(
+                    collection, dictionary);
+            if (existing != null) {
+                dictionary = existing;
+            }
+            else {
+                // Racy but only a soft limit.
+                myFieldNamesCount += 1;
+            }
+        }
+
+        return dictionary;
+    }
+
     /**
      * Clears the cache.
      */
     @Override
     protected void clear() {
         myTrieCache = new TrieCache();
+        myFieldNames.clear();
+        myFieldNamesCount = 0;
         super.clear();
     }
 
@@ -107,24 +182,17 @@ public class StringDecoderCache
      */
     @Override
     protected void rebuildCache() {
-        final SortedMap<Integer, List<SeenString>> order = buildCacheGroups();
-
-        // Rebuild the cache.
-        final TrieCache cache = new TrieCache();
-        int count = 0;
-        for (final List<SeenString> seenAtCount : order.values()) {
-            for (final SeenString seen : seenAtCount) {
-                if (count < myMaxCachEntries) {
-                    cache.addEntry(seen.getBytes(), seen.getValue());
-                    count += 1;
-                }
-                else {
-                    mySeen.remove(seen.getValue());
-                }
+        final List<SeenString> entries = selectCacheEntries();
+
+        // Only rebuild the trie if the cached strings changed.
+        if (entries != null) {
+            final TrieCache cache = new TrieCache();
+            for (final SeenString seen : entries) {
+                cache.addEntry(seen.getBytes(), seen.getValue());
             }
-        }
 
-        myTrieCache = cache;
+            myTrieCache = cache;
+        }
     }
 
     /**
@@ -24,7 +24,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -33,8 +32,8 @@ import javax.annotation.concurrent.ThreadSafe;
  * speed the writing of strings.
  * <p>
  * This class is thread safe. Thread safety is achieved by maintaining two data
- * structures. The first is a map of seen strings to the number of times the
- * string has been seen. The map is maintained by the base class:
+ * structures. The first is a sketch of the number of times each string has
+ * been seen. The sketch is maintained by the base class:
  * {@link AbstractStringCache}. The second structure is a simple map of the
  * cached {@link String} to the encoded {@code byte[]}. The map has no locking
  * or synchronization since it is read-only after construction.
@@ -86,24 +85,17 @@ public class StringEncoderCache
      */
     @Override
     protected void rebuildCache() {
-        final SortedMap<Integer, List<SeenString>> order = buildCacheGroups();
+        final List<SeenString> entries = selectCacheEntries();
 
-        // Rebuild the cache.
-        int count = 0;
-        final Map<String, byte[]> cache = new HashMap<String, byte[]>(
-                (int) Math.ceil(Math.min(order.size(), myMaxCachEntries) / 0.75));
-        for (final List<SeenString> seenAtCount : order.values()) {
-            for (final SeenString seen : seenAtCount) {
-                if (count < myMaxCachEntries) {
-                    cache.put(seen.getValue(), seen.getBytes());
-                    count += 1;
-                }
-                else {
-                    mySeen.remove(seen.getValue());
-                }
+        // Only rebuild the map if the cached strings changed.
+        if (entries != null) {
+            final Map<String, byte[]> cache = new HashMap<String, byte[]>(
+                    (int) Math.ceil(entries.size() / 0.75));
+            for (final SeenString seen : entries) {
+                cache.put(seen.getValue(), seen.getBytes());
             }
-        }
 
-        myCache = cache;
+            myCache = cache;
+        }
     }
 }
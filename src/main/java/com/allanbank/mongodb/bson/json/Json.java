@@ -20,6 +20,7 @@
 package com.allanbank.mongodb.bson.json;
 
 import java.io.Reader;
+import java.io.StreamCorruptedException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -45,6 +46,11 @@ import com.allanbank.mongodb.bson.element.RegularExpressionElement;
 import com.allanbank.mongodb.bson.element.StringElement;
 import com.allanbank.mongodb.bson.element.SymbolElement;
 import com.allanbank.mongodb.bson.element.TimestampElement;
+import com.allanbank.mongodb.bson.impl.RawDocument;
+import com.allanbank.mongodb.bson.io.BufferingBsonOutputStream;
+import com.allanbank.mongodb.bson.io.RandomAccessOutputStream;
+import com.allanbank.mongodb.bson.io.StringDecoderCache;
+import com.allanbank.mongodb.bson.io.StringEncoderCache;
 import com.allanbank.mongodb.error.JsonException;
 import com.allanbank.mongodb.error.JsonParseException;
 
@@ -143,6 +149,14 @@ import com.allanbank.mongodb.error.JsonParseException;
  * JavaScriptWithScopeElement}</li>
  * </ul>
  * </p>
+ * <p>
+ * The {@link #parseRaw(Reader)} and
+ * {@link #parse(Reader, BufferingBsonOutputStream)} methods accept the same
+ * documents but write the BSON encoding of the document as it is parsed
+ * instead of building a {@link Document} first. The
+ * {@link #parseRaw(Reader) parseRaw} methods return a document that is written
+ * to the server by copying its bytes, e.g., for bulk loading JSON documents.
+ * </p>
  *
  * @see <a
  *      href="http://docs.mongodb.org/manual/reference/mongodb-extended-json/">MongoDB
@@ -157,6 +171,12 @@ import com.allanbank.mongodb.error.JsonParseException;
 @ThreadSafe
 public class Json {
 
+    /** The cache for decoding the strings of the raw documents. */
+    private static final StringDecoderCache DECODER_CACHE = new StringDecoderCache();
+
+    /** The cache for encoding the strings of the raw documents. */
+    private static final StringEncoderCache ENCODER_CACHE = new StringEncoderCache();
+
     /**
      * Parses the document from the reader into a BSON {@link Document}.
      * <p>
@@ -222,6 +242,89 @@ public class Json {
         return parse(new StringReader(input));
     }
 
+    /**
+     * Parses the document from the reader and writes its BSON encoding to the
+     * output without building a {@link Document}.
+     * <p>
+     * Users of this method must call
+     * {@link BufferingBsonOutputStream#flushBuffer()} or the contents will not
+     * be written to the wrapped stream. Any content after the document is
+     * ignored. On a failure the contents written to the output for the
+     * document are undefined.
+     * </p>
+     *
+     * @param input
+     *            The source of the document to read.
+     * @param output
+     *            The stream to write the BSON document to.
+     * @return The number of bytes written for the document.
+     * @throws JsonParseException
+     *             On a failure to parse the JSON document.
+     * @since 2.1.0
+     */
+    public static long parse(final Reader input,
+            final BufferingBsonOutputStream output) throws JsonParseException {
+        return parse(input, output.getOutput());
+    }
+
+    /**
+     * Parses the document from the reader into a {@link RawDocument} without
+     * building a {@link Document} first.
+     * <p>
+     * The returned document holds the BSON encoding of the JSON document and
+     * is written to the server by copying the bytes.
+     * </p>
+     *
+     * @param input
+     *            The source of the document to read.
+     * @return The {@link RawDocument} representation of the JSON document.
+     * @throws JsonParseException
+     *             On a failure to parse the JSON document.
+     * @since 2.1.0
+     */
+    public static RawDocument parseRaw(final Reader input)
+            throws JsonParseException {
+        final RandomAccessOutputStream output = new RandomAccessOutputStream(
+                ENCODER_CACHE);
+
+        parse(input, output);
+
+        try {
+            return new RawDocument(output.toByteArray(), DECODER_CACHE);
+        }
+        catch (final StreamCorruptedException sce) {
+            // Should not happen. The parser writes a complete document.
+            throw new JsonParseException(sce);
+        }
+    }
+
+    /**
+     * Parses the document from the string into a {@link RawDocument} without
+     * building a {@link Document} first.
+     * <p>
+     * This method is equivalent to: <blockquote>
+     *
+     * <pre>
+     * <code>
+     * parseRaw(new StringReader(input));
+     * </code>
+     * </pre>
+     *
+     * </blockquote>
+     * </p>
+     *
+     * @param input
+     *            The source of the document to read.
+     * @return The {@link RawDocument} representation of the JSON document.
+     * @throws JsonParseException
+     *             On a failure to parse the JSON document.
+     * @since 2.1.0
+     */
+    public static RawDocument parseRaw(final String input)
+            throws JsonParseException {
+        return parseRaw(new StringReader(input));
+    }
+
     /**
      * Serializes the {@link Document} to an equivalent JSON document.
      * <p>
@@ -306,6 +409,31 @@ public class Json {
         document.asDocument().accept(visitor);
     }
 
+    /**
+     * Parses the document from the reader and writes its BSON encoding to the
+     * output.
+     *
+     * @param input
+     *            The source of the document to read.
+     * @param output
+     *            The stream to write the BSON document to.
+     * @return The number of bytes written for the document.
+     * @throws JsonParseException
+     *             On a failure to parse the JSON document.
+     */
+    private static long parse(final Reader input,
+            final RandomAccessOutputStream output) throws JsonParseException {
+        try {
+            return new JsonBsonParser(input).parse(output);
+        }
+        catch (final JsonParseException jpe) {
+            throw jpe;
+        }
+        catch (final RuntimeException re) {
+            throw new JsonParseException(re);
+        }
+    }
+
     /**
      * Creates a new Json onbject - hidden.
      */
@@ -0,0 +1,1450 @@
+/*
+ * #%L
+ * JsonBsonParser.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.allanbank.mongodb.bson.ElementType;
+import com.allanbank.mongodb.bson.element.ArrayElement;
+import com.allanbank.mongodb.bson.element.ObjectId;
+import com.allanbank.mongodb.bson.element.RegularExpressionElement;
+import com.allanbank.mongodb.bson.io.EndianUtils;
+import com.allanbank.mongodb.bson.io.RandomAccessOutputStream;
+import com.allanbank.mongodb.error.JsonParseException;
+import com.allanbank.mongodb.util.IOUtils;
+
+/**
+ * JsonBsonParser provides a parser for JSON documents that writes the BSON
+ * encoding of the document directly to a {@link RandomAccessOutputStream}
+ * without building a {@link com.allanbank.mongodb.bson.Document} first.
+ * <p>
+ * The parser accepts the same documents and extensions as the JavaCC based
+ * {@link JsonParser} and produces the same encoding that writing the
+ * {@link JsonParser}'s document would. The length of each document, array and
+ * string is written as a place holder and then back-filled once the end of the
+ * value is reached.
+ * </p>
+ * <p>
+ * Parsing stops after the closing brace of the document and any content after
+ * the document is ignored. The {@link Reader} is read in blocks so content
+ * after the document may have been consumed.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@NotThreadSafe
+/* package */class JsonBsonParser {
+
+    /** The token for a close brace: <code>}</code>. */
+    private static final int CLOSE_BRACE = 2;
+
+    /** The token for a close bracket: <code>]</code>. */
+    private static final int CLOSE_BRACKET = 4;
+
+    /** The token for a close parenthesis: <code>)</code>. */
+    private static final int CLOSE_PAREN = 8;
+
+    /** The token for a colon: <code>:</code>. */
+    private static final int COLON = 6;
+
+    /** The token for a comma: <code>,</code>. */
+    private static final int COMMA = 5;
+
+    /** The time formats accepted/parsed. */
+    private static final String[] DATE_FORMATS = new String[] {
+            "yyyy-MM-dd'T'HH:mm:ss.SSSZ", "yyyy-MM-dd'T'HH:mm:ssZ",
+            "yyyy-MM-dd'T'HH:mmZ", "yyyy-MM-dd'T'HH:mm:ss.SSS",
+            "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd'T'HH:mm",
+            "yyyy-MM-dd HH:mm:ss.SSSZ", "yyyy-MM-dd HH:mm:ssZ",
+            "yyyy-MM-dd HH:mmZ", "yyyy-MM-dd HH:mm:ss.SSS",
+            "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm", "yyyy-MM-dd", };
+
+    /** The token for a number with a fraction or exponent. */
+    private static final int DOUBLE = 11;
+
+    /** The token for the end of the input. */
+    private static final int EOF = 0;
+
+    /** The token for an unquoted name, keyword or symbol. */
+    private static final int IDENTIFIER = 12;
+
+    /** The token for a number without a fraction or exponent. */
+    private static final int INTEGER = 10;
+
+    /** The unicode line separator character. */
+    private static final int LINE_SEPARATOR = 0x2028;
+
+    /** The value returned from {@link #readChar()} at the end of the input. */
+    private static final int NO_CHAR = -1;
+
+    /** The token for an open brace: <code>{</code>. */
+    private static final int OPEN_BRACE = 1;
+
+    /** The token for an open bracket: <code>[</code>. */
+    private static final int OPEN_BRACKET = 3;
+
+    /** The token for an open parenthesis: <code>(</code>. */
+    private static final int OPEN_PAREN = 7;
+
+    /** The unicode paragraph separator character. */
+    private static final int PARAGRAPH_SEPARATOR = 0x2029;
+
+    /** The size of the buffer for reading characters. */
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    /**
+     * The token for one of the unquoted extension names, e.g.,
+     * <code>$date</code>.
+     */
+    private static final int SPECIAL = 13;
+
+    /** The token for a quoted string. */
+    private static final int STRING = 9;
+
+    /** The default time zone. */
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    /**
+     * Returns true if the character is an ASCII digit.
+     *
+     * @param c
+     *            The character to test.
+     * @return True if the character is an ASCII digit.
+     */
+    private static boolean isDigit(final int c) {
+        return ('0' <= c) && (c <= '9');
+    }
+
+    /**
+     * Returns true if the character can continue an identifier.
+     *
+     * @param c
+     *            The character to test.
+     * @return True if the character can continue an identifier.
+     */
+    private static boolean isIdentifierPart(final int c) {
+        if (isIdentifierStart(c) || Character.isDigit(c)) {
+            return true;
+        }
+
+        final int type = Character.getType(c);
+        return (type == Character.NON_SPACING_MARK)
+                || (type == Character.COMBINING_SPACING_MARK)
+                || (type == Character.CONNECTOR_PUNCTUATION);
+    }
+
+    /**
+     * Returns true if the character can start an identifier.
+     *
+     * @param c
+     *            The character to test.
+     * @return True if the character can start an identifier.
+     */
+    private static boolean isIdentifierStart(final int c) {
+        return (c == '$') || (c == '_') || Character.isLetter(c);
+    }
+
+    /**
+     * Returns true if the identifier is one of the reserved words or extension
+     * functions.
+     *
+     * @param identifier
+     *            The identifier to test.
+     * @return True if the identifier is reserved.
+     */
+    private static boolean isKeyword(final String identifier) {
+        return "true".equals(identifier) || "false".equals(identifier)
+                || "null".equals(identifier) || "BinData".equals(identifier)
+                || "HexData".equals(identifier)
+                || "ISODate".equals(identifier)
+                || "NumberLong".equals(identifier)
+                || "ObjectId".equals(identifier)
+                || "Timestamp".equals(identifier)
+                || "MaxKey".equals(identifier) || "MinKey".equals(identifier)
+                || "DBPointer".equals(identifier);
+    }
+
+    /**
+     * Returns true if the identifier is one of the extension names that start
+     * an extended JSON value, e.g., <code>$date</code>.
+     *
+     * @param identifier
+     *            The identifier to test.
+     * @return True if the identifier is an extension name.
+     */
+    private static boolean isSpecial(final String identifier) {
+        return "$binary".equals(identifier) || "$type".equals(identifier)
+                || "$date".equals(identifier)
+                || "$timestamp".equals(identifier)
+                || "$regex".equals(identifier)
+                || "$options".equals(identifier)
+                || "$oid".equals(identifier) || "$maxKey".equals(identifier)
+                || "$minKey".equals(identifier);
+    }
+
+    /** The column of the last character read. */
+    private int myColumn;
+
+    /** The source of the JSON text. */
+    private final Reader myInput;
+
+    /** The line of the last character read. */
+    private int myLine;
+
+    /** The stream to write the BSON to. */
+    private RandomAccessOutputStream myOutput;
+
+    /** The next character, if it has been peeked. */
+    private int myPeekedChar;
+
+    /** True if {@link #myPeekedChar} holds the next character. */
+    private boolean myPeekedCharValid;
+
+    /** True if the last character read was a carriage return. */
+    private boolean myPreviousCarriageReturn;
+
+    /** The number of consecutive backslashes read. */
+    private int myRawBackslashes;
+
+    /** The buffer of characters read from the input. */
+    private final char[] myReadBuffer;
+
+    /** The number of valid characters in {@link #myReadBuffer}. */
+    private int myReadLimit;
+
+    /** The position of the next character in {@link #myReadBuffer}. */
+    private int myReadPosition;
+
+    /** The column of the current token. */
+    private int myTokenColumn;
+
+    /** The kind of the current token. */
+    private int myTokenKind;
+
+    /** The line of the current token. */
+    private int myTokenLine;
+
+    /** True if the current token has been pushed back to be read again. */
+    private boolean myTokenPushedBack;
+
+    /** The text of the current token. Strings do not include the quotes. */
+    private final StringBuilder myTokenText;
+
+    /**
+     * Creates a new JsonBsonParser.
+     *
+     * @param input
+     *            The source of the JSON text.
+     */
+    public JsonBsonParser(final Reader input) {
+        myInput = input;
+        myReadBuffer = new char[READ_BUFFER_SIZE];
+        myReadLimit = 0;
+        myReadPosition = 0;
+        myTokenText = new StringBuilder(64);
+        myLine = 1;
+        myColumn = 0;
+    }
+
+    /**
+     * Parses a single JSON document from the input and writes its BSON
+     * encoding to the output.
+     * <p>
+     * On a failure the contents of the output after its position when this
+     * method was called are undefined.
+     * </p>
+     *
+     * @param output
+     *            The stream to write the BSON document to.
+     * @return The number of bytes written for the document.
+     * @throws JsonParseException
+     *             On a failure to parse the JSON document.
+     */
+    public long parse(final RandomAccessOutputStream output)
+            throws JsonParseException {
+        myOutput = output;
+        try {
+            final long start = output.getPosition();
+
+            final int token = nextToken();
+            if (token == OPEN_BRACKET) {
+                throw error("A JSON array cannot be written as a document");
+            }
+            expect(token, OPEN_BRACE);
+            documentBody();
+
+            return output.getPosition() - start;
+        }
+        finally {
+            myOutput = null;
+        }
+    }
+
+    /**
+     * Parses the elements of an array after the open bracket through the
+     * close bracket.
+     *
+     * @throws JsonParseException
+     *             On a failure to parse the array.
+     */
+    private void arrayBody() throws JsonParseException {
+        final long start = myOutput.getPosition();
+        myOutput.writeInt(0);
+
+        int token = nextToken();
+        if (token != CLOSE_BRACKET) {
+            int index = 0;
+            while (true) {
+                value(ArrayElement.nameFor(index), token);
+                index += 1;
+
+                token = nextToken();
+                if (token == CLOSE_BRACKET) {
+                    break;
+                }
+                expect(token, COMMA);
+                token = nextToken();
+            }
+        }
+
+        finish(start);
+    }
+
+    /**
+     * Parses the members of a document after the open brace through the close
+     * brace.
+     *
+     * @throws JsonParseException
+     *             On a failure to parse the document.
+     */
+    private void documentBody() throws JsonParseException {
+        final long start = myOutput.getPosition();
+        myOutput.writeInt(0);
+
+        int token = nextToken();
+        if (token != CLOSE_BRACE) {
+            while (true) {
+                final String name;
+                if ((token == IDENTIFIER) && !isKeyword(tokenText())) {
+                    name = tokenText();
+                }
+                else if (token == STRING) {
+                    name = tokenText();
+                }
+                else {
+                    throw unexpected();
+                }
+
+                expect(nextToken(), COLON);
+                value(name, nextToken());
+
+                token = nextToken();
+                if (token == CLOSE_BRACE) {
+                    break;
+                }
+                expect(token, COMMA);
+                token = nextToken();
+            }
+        }
+
+        finish(start);
+    }
+
+    /**
+     * Creates an exception for a failure at the current token.
+     *
+     * @param message
+     *            The description of the failure.
+     * @param cause
+     *            The cause of the failure.
+     * @return The exception to throw.
+     */
+    private JsonParseException error(final String message,
+            final Throwable cause) {
+        return new JsonParseException(message + " @ line " + myTokenLine
+                + ", column " + myTokenColumn + ".", cause, myTokenLine,
+                myTokenColumn);
+    }
+
+    /**
+     * Creates an exception for a failure at the current token.
+     *
+     * @param message
+     *            The description of the failure.
+     * @return The exception to throw.
+     */
+    private JsonParseException error(final String message) {
+        return new JsonParseException(message + " @ line " + myTokenLine
+                + ", column " + myTokenColumn + ".", myTokenLine,
+                myTokenColumn);
+    }
+
+    /**
+     * Verifies the token is of the expected kind.
+     *
+     * @param token
+     *            The token read.
+     * @param expected
+     *            The expected token.
+     * @throws JsonParseException
+     *             If the token is not the expected kind.
+     */
+    private void expect(final int token, final int expected)
+            throws JsonParseException {
+        if (token != expected) {
+            throw unexpected();
+        }
+    }
+
+    /**
+     * Reads the next token and verifies it is the expected extension name.
+     *
+     * @param special
+     *            The expected extension name.
+     * @throws JsonParseException
+     *             If the token is not the expected extension name.
+     */
+    private void expectSpecial(final String special) throws JsonParseException {
+        if ((nextToken() != SPECIAL) || !special.equals(tokenText())) {
+            throw unexpected();
+        }
+    }
+
+    /**
+     * Parses an extended JSON value after the open brace and the extension
+     * name through the close brace, e.g.,
+     * <code>{ $oid : "4e9d87aa5825b60b637815a6" }</code>.
+     *
+     * @param name
+     *            The name of the element.
+     * @param special
+     *            The extension name.
+     * @throws JsonParseException
+     *             On a failure to parse the value.
+     */
+    private void extendedValue(final String name, final String special)
+            throws JsonParseException {
+        expect(nextToken(), COLON);
+
+        if ("$binary".equals(special)) {
+            expect(nextToken(), STRING);
+            final byte[] data = toBinaryFromBase64();
+            expect(nextToken(), COMMA);
+            expectSpecial("$type");
+            expect(nextToken(), COLON);
+            writeBinary(name, toBinaryType(nextToken()), data);
+        }
+        else if ("$type".equals(special)) {
+            final byte type = toBinaryType(nextToken());
+            expect(nextToken(), COMMA);
+            expectSpecial("$binary");
+            expect(nextToken(), COLON);
+            expect(nextToken(), STRING);
+            writeBinary(name, type, toBinaryFromBase64());
+        }
+        else if ("$date".equals(special)) {
+            final int token = nextToken();
+            final long millis;
+            if (token == INTEGER) {
+                millis = toDateFromEpoch();
+            }
+            else {
+                expect(token, STRING);
+                millis = toDate();
+            }
+            writeHeader(ElementType.UTC_TIMESTAMP, name);
+            myOutput.writeLong(millis);
+        }
+        else if ("$timestamp".equals(special)) {
+            expect(nextToken(), OPEN_BRACE);
+            final String first = timestampName();
+            expect(nextToken(), COLON);
+            expect(nextToken(), INTEGER);
+            final String firstValue = tokenText();
+            expect(nextToken(), COMMA);
+            final String second = timestampName();
+            expect(nextToken(), COLON);
+            expect(nextToken(), INTEGER);
+            final String secondValue = tokenText();
+            expect(nextToken(), CLOSE_BRACE);
+
+            writeHeader(ElementType.MONGO_TIMESTAMP, name);
+            myOutput.writeLong(toMongoTimestamp(first, firstValue, second,
+                    secondValue));
+        }
+        else if ("$regex".equals(special)) {
+            expect(nextToken(), STRING);
+            final String pattern = tokenText();
+            String options = "";
+            if (nextToken() == COMMA) {
+                expectSpecial("$options");
+                expect(nextToken(), COLON);
+                expect(nextToken(), STRING);
+                options = tokenText();
+            }
+            else {
+                myTokenPushedBack = true;
+            }
+            writeRegularExpression(name, pattern, options);
+        }
+        else if ("$options".equals(special)) {
+            expect(nextToken(), STRING);
+            final String options = tokenText();
+            expect(nextToken(), COMMA);
+            expectSpecial("$regex");
+            expect(nextToken(), COLON);
+            expect(nextToken(), STRING);
+            writeRegularExpression(name, tokenText(), options);
+        }
+        else if ("$oid".equals(special)) {
+            expect(nextToken(), STRING);
+            writeObjectId(ElementType.OBJECT_ID, name, toObjectId());
+        }
+        else if ("$maxKey".equals(special)) {
+            expect(nextToken(), INTEGER);
+            writeHeader(ElementType.MAX_KEY, name);
+        }
+        else { // $minKey
+            expect(nextToken(), INTEGER);
+            writeHeader(ElementType.MIN_KEY, name);
+        }
+
+        expect(nextToken(), CLOSE_BRACE);
+    }
+
+    /**
+     * Fills the buffer of raw characters if it is empty.
+     *
+     * @return False if the end of the input has been reached.
+     * @throws JsonParseException
+     *             On a failure to read from the input.
+     */
+    private boolean fill() throws JsonParseException {
+        if (myReadPosition < myReadLimit) {
+            return true;
+        }
+
+        try {
+            int read = 0;
+            while (read == 0) {
+                read = myInput.read(myReadBuffer, 0, myReadBuffer.length);
+            }
+            if (read < 0) {
+                return false;
+            }
+            myReadLimit = read;
+            myReadPosition = 0;
+            return true;
+        }
+        catch (final IOException ioe) {
+            throw new JsonParseException(ioe.getMessage(), ioe, myLine,
+                    myColumn);
+        }
+    }
+
+    /**
+     * Terminates the document or array and back-fills its length.
+     *
+     * @param start
+     *            The position of the document's length.
+     */
+    private void finish(final long start) {
+        myOutput.writeByte((byte) 0);
+        myOutput.writeIntAt(start, (int) (myOutput.getPosition() - start));
+    }
+
+    /**
+     * Parses an extension function value after the function name, e.g.,
+     * <code>ObjectId("4e9d87aa5825b60b637815a6")</code>.
+     *
+     * @param name
+     *            The name of the element.
+     * @param function
+     *            The name of the function.
+     * @throws JsonParseException
+     *             On a failure to parse the value.
+     */
+    private void functionValue(final String name, final String function)
+            throws JsonParseException {
+        if ("MaxKey".equals(function) || "MinKey".equals(function)) {
+            if (nextToken() == OPEN_PAREN) {
+                expect(nextToken(), CLOSE_PAREN);
+            }
+            else {
+                myTokenPushedBack = true;
+            }
+            writeHeader("MaxKey".equals(function) ? ElementType.MAX_KEY
+                    : ElementType.MIN_KEY, name);
+            return;
+        }
+
+        expect(nextToken(), OPEN_PAREN);
+        if ("BinData".equals(function) || "HexData".equals(function)) {
+            expect(nextToken(), INTEGER);
+            final byte type = toBinaryType(INTEGER);
+            expect(nextToken(), COMMA);
+            expect(nextToken(), STRING);
+            writeBinary(name, type,
+                    "BinData".equals(function) ? toBinaryFromBase64()
+                            : toBinaryFromHex());
+        }
+        else if ("ISODate".equals(function)) {
+            expect(nextToken(), STRING);
+            writeHeader(ElementType.UTC_TIMESTAMP, name);
+            myOutput.writeLong(toDate());
+        }
+        else if ("NumberLong".equals(function)) {
+            expect(nextToken(), STRING);
+            writeHeader(ElementType.LONG, name);
+            myOutput.writeLong(toLong());
+        }
+        else if ("ObjectId".equals(function)) {
+            expect(nextToken(), STRING);
+            writeObjectId(ElementType.OBJECT_ID, name, toObjectId());
+        }
+        else if ("Timestamp".equals(function)) {
+            expect(nextToken(), INTEGER);
+            final String timestamp = tokenText();
+            expect(nextToken(), COMMA);
+            expect(nextToken(), INTEGER);
+            writeHeader(ElementType.MONGO_TIMESTAMP, name);
+            myOutput.writeLong(toMongoTimestamp(timestamp, tokenText()));
+        }
+        else { // DBPointer
+            expect(nextToken(), STRING);
+            final String database = tokenText();
+            expect(nextToken(), COMMA);
+            expect(nextToken(), STRING);
+            final String collection = tokenText();
+            expect(nextToken(), COMMA);
+            if ((nextToken() != IDENTIFIER)
+                    || !"ObjectId".equals(tokenText())) {
+                throw unexpected();
+            }
+            expect(nextToken(), OPEN_PAREN);
+            expect(nextToken(), STRING);
+            final ObjectId id = toObjectId();
+            expect(nextToken(), CLOSE_PAREN);
+
+            writeHeader(ElementType.DB_POINTER, name);
+            myOutput.writeString(database + "." + collection);
+            myOutput.writeInt(EndianUtils.swap(id.getTimestamp()));
+            myOutput.writeLong(EndianUtils.swap(id.getMachineId()));
+        }
+        expect(nextToken(), CLOSE_PAREN);
+    }
+
+    /**
+     * Reads the next token from the input.
+     *
+     * @return The kind of the token.
+     * @throws JsonParseException
+     *             On a failure to read the token.
+     */
+    private int nextToken() throws JsonParseException {
+        if (myTokenPushedBack) {
+            myTokenPushedBack = false;
+            return myTokenKind;
+        }
+
+        int c = skipWhitespaceAndComments();
+
+        myTokenLine = myLine;
+        myTokenColumn = myColumn;
+        myTokenText.setLength(0);
+
+        switch (c) {
+        case NO_CHAR:
+            myTokenKind = EOF;
+            break;
+        case '{':
+            myTokenKind = OPEN_BRACE;
+            break;
+        case '}':
+            myTokenKind = CLOSE_BRACE;
+            break;
+        case '[':
+            myTokenKind = OPEN_BRACKET;
+            break;
+        case ']':
+            myTokenKind = CLOSE_BRACKET;
+            break;
+        case ',':
+            myTokenKind = COMMA;
+            break;
+        case ':':
+            myTokenKind = COLON;
+            break;
+        case '(':
+            myTokenKind = OPEN_PAREN;
+            break;
+        case ')':
+            myTokenKind = CLOSE_PAREN;
+            break;
+        case '"':
+        case '\'':
+            readString(c);
+            myTokenKind = STRING;
+            break;
+        case '-':
+        case '0':
+        case '1':
+        case '2':
+        case '3':
+        case '4':
+        case '5':
+        case '6':
+        case '7':
+        case '8':
+        case '9':
+            myTokenKind = readNumber(c);
+            break;
+        default:
+            if (!isIdentifierStart(c)) {
+                myTokenText.append((char) c);
+                throw error("Unexpected character '" + ((char) c) + "'");
+            }
+
+            myTokenText.append((char) c);
+            c = peekChar();
+            while ((c != NO_CHAR) && isIdentifierPart(c)) {
+                myTokenText.append((char) readChar());
+                c = peekChar();
+            }
+            if ((myTokenText.charAt(0) == '$') && isSpecial(tokenText())) {
+                myTokenKind = SPECIAL;
+            }
+            else {
+                myTokenKind = IDENTIFIER;
+            }
+            break;
+        }
+
+        return myTokenKind;
+    }
+
+    /**
+     * Returns the next character without consuming it.
+     *
+     * @return The next character or {@link #NO_CHAR}.
+     * @throws JsonParseException
+     *             On a failure to read the character.
+     */
+    private int peekChar() throws JsonParseException {
+        if (!myPeekedCharValid) {
+            myPeekedChar = translateChar();
+            myPeekedCharValid = true;
+        }
+        return myPeekedChar;
+    }
+
+    /**
+     * Returns the next raw character without consuming it.
+     *
+     * @return The next raw character or {@link #NO_CHAR}.
+     * @throws JsonParseException
+     *             On a failure to read from the input.
+     */
+    private int peekRawChar() throws JsonParseException {
+        if (fill()) {
+            return myReadBuffer[myReadPosition];
+        }
+        return NO_CHAR;
+    }
+
+    /**
+     * Reads the next character from the input, translating any unicode escape
+     * sequence.
+     *
+     * @return The next character or {@link #NO_CHAR}.
+     * @throws JsonParseException
+     *             On a failure to read the character.
+     */
+    private int readChar() throws JsonParseException {
+        final int c;
+        if (myPeekedCharValid) {
+            myPeekedCharValid = false;
+            c = myPeekedChar;
+        }
+        else {
+            c = translateChar();
+        }
+
+        if (c == '\n') {
+            if (!myPreviousCarriageReturn) {
+                myLine += 1;
+            }
+            myColumn = 0;
+            myPreviousCarriageReturn = false;
+        }
+        else if (c == '\r') {
+            myLine += 1;
+            myColumn = 0;
+            myPreviousCarriageReturn = true;
+        }
+        else if (c != NO_CHAR) {
+            myColumn += 1;
+            myPreviousCarriageReturn = false;
+        }
+
+        return c;
+    }
+
+    /**
+     * Reads the run of digits from the input into the token text.
+     *
+     * @throws JsonParseException
+     *             On a failure to read the digits.
+     */
+    private void readDigits() throws JsonParseException {
+        while (isDigit(peekChar())) {
+            myTokenText.append((char) readChar());
+        }
+    }
+
+    /**
+     * Reads a number from the input. The number has the form
+     * <code>-?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?</code>.
+     *
+     * @param first
+     *            The first character of the number.
+     * @return The kind of the token, {@link #INTEGER} or {@link #DOUBLE}.
+     * @throws JsonParseException
+     *             On a failure to read the number.
+     */
+    private int readNumber(final int first) throws JsonParseException {
+        myTokenText.append((char) first);
+
+        int c = first;
+        if (first == '-') {
+            c = readChar();
+            if (!isDigit(c)) {
+                throw error("Expected a digit after '-'");
+            }
+            myTokenText.append((char) c);
+        }
+        if (c != '0') {
+            readDigits();
+        }
+
+        int kind = INTEGER;
+        c = peekChar();
+        if (c == '.') {
+            myTokenText.append((char) readChar());
+            if (!isDigit(peekChar())) {
+                throw error("Expected a digit after '.'");
+            }
+            readDigits();
+            kind = DOUBLE;
+            c = peekChar();
+        }
+        if ((c == 'e') || (c == 'E')) {
+            myTokenText.append((char) readChar());
+            c = peekChar();
+            if ((c == '+') || (c == '-')) {
+                myTokenText.append((char) readChar());
+            }
+            if (!isDigit(peekChar())) {
+                throw error("Expected a digit in the exponent");
+            }
+            readDigits();
+            kind = DOUBLE;
+        }
+
+        return kind;
+    }
+
+    /**
+     * Reads the next raw character from the input.
+     *
+     * @return The next raw character or {@link #NO_CHAR}.
+     * @throws JsonParseException
+     *             On a failure to read from the input.
+     */
+    private int readRawChar() throws JsonParseException {
+        if (fill()) {
+            return myReadBuffer[myReadPosition++];
+        }
+        return NO_CHAR;
+    }
+
+    /**
+     * Reads a quoted string from the input. Escape sequences are kept
+     * verbatim in the string, as with the {@link JsonParser}.
+     *
+     * @param quote
+     *            The quote character that started the string.
+     * @throws JsonParseException
+     *             On a failure to read the string.
+     */
+    private void readString(final int quote) throws JsonParseException {
+        int c = readChar();
+        while (c != quote) {
+            if ((c == NO_CHAR) || (c == '\n') || (c == '\r')
+                    || (c == LINE_SEPARATOR)
+                    || (c == PARAGRAPH_SEPARATOR)) {
+                throw error("Unterminated string");
+            }
+
+            myTokenText.append((char) c);
+            if (c == '\\') {
+                c = readChar();
+                if (c == NO_CHAR) {
+                    throw error("Unterminated string");
+                }
+                myTokenText.append((char) c);
+            }
+            c = readChar();
+        }
+    }
+
+    /**
+     * Skips any whitespace and comments and returns the next character.
+     *
+     * @return The next character after the whitespace and comments.
+     * @throws JsonParseException
+     *             On a failure to read the input or an unterminated comment.
+     */
+    private int skipWhitespaceAndComments() throws JsonParseException {
+        while (true) {
+            final int c = readChar();
+            if ((c == ' ') || (c == '\t') || (c == '\n') || (c == '\r')
+                    || (c == '\f')) {
+                continue;
+            }
+            if (c != '/') {
+                return c;
+            }
+
+            myTokenLine = myLine;
+            myTokenColumn = myColumn;
+            final int next = readChar();
+            if (next == '/') {
+                int skip = peekChar();
+                while ((skip != NO_CHAR) && (skip != '\n') && (skip != '\r')) {
+                    readChar();
+                    skip = peekChar();
+                }
+            }
+            else if (next == '*') {
+                int previous = 0;
+                int skip = readChar();
+                while (!((previous == '*') && (skip == '/'))) {
+                    if (skip == NO_CHAR) {
+                        throw error("Unterminated comment");
+                    }
+                    previous = skip;
+                    skip = readChar();
+                }
+            }
+            else {
+                throw error("Unexpected character '/'");
+            }
+        }
+    }
+
+    /**
+     * Reads the name of a field in a <code>$timestamp</code> document.
+     *
+     * @return The name of the field.
+     * @throws JsonParseException
+     *             If the token is not a name.
+     */
+    private String timestampName() throws JsonParseException {
+        final int token = nextToken();
+        if ((token != IDENTIFIER) && (token != STRING)) {
+            throw unexpected();
+        }
+        return tokenText();
+    }
+
+    /**
+     * Converts the Base64 string token to a binary array.
+     *
+     * @return The decoded bytes.
+     * @throws JsonParseException
+     *             On a failure to decode the binary.
+     */
+    private byte[] toBinaryFromBase64() throws JsonParseException {
+        try {
+            return IOUtils.base64ToBytes(tokenText());
+        }
+        catch (final IllegalArgumentException iae) {
+            throw error(iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * Converts the HEX string token to a binary array.
+     *
+     * @return The decoded bytes.
+     * @throws JsonParseException
+     *             On a failure to decode the binary.
+     */
+    private byte[] toBinaryFromHex() throws JsonParseException {
+        try {
+            return IOUtils.hexToBytes(tokenText());
+        }
+        catch (final IllegalArgumentException iae) {
+            throw error(iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * Converts the current token to a binary sub-type. Integer tokens are
+     * decimal values and string tokens are hex values.
+     *
+     * @param token
+     *            The current token.
+     * @return The binary sub-type.
+     * @throws JsonParseException
+     *             On a failure to decode the sub-type.
+     */
+    private byte toBinaryType(final int token) throws JsonParseException {
+        try {
+            if (token == INTEGER) {
+                return (byte) Integer.parseInt(tokenText());
+            }
+
+            expect(token, STRING);
+            String hex = tokenText();
+            if (hex.startsWith("0x") || hex.startsWith("0X")) {
+                hex = hex.substring(2);
+            }
+            return (byte) Integer.parseInt(hex, 16);
+        }
+        catch (final NumberFormatException nfe) {
+            throw error(nfe.getMessage(), nfe);
+        }
+    }
+
+    /**
+     * Parses the ISO date string token into the milliseconds since the epoch.
+     *
+     * @return The milliseconds since the epoch for the time string.
+     * @throws JsonParseException
+     *             On a failure to parse the date string.
+     */
+    private long toDate() throws JsonParseException {
+        Exception last = null;
+        final String timestamp = tokenText();
+        for (final String format : DATE_FORMATS) {
+            final SimpleDateFormat f = new SimpleDateFormat(format);
+            f.setTimeZone(UTC);
+            try {
+                final Date date = f.parse(timestamp);
+                return date.getTime();
+            }
+            catch (final java.text.ParseException pe) {
+                // Ignore. Try the next.
+                last = pe;
+            }
+        }
+
+        throw error("Could not parse the time string '" + timestamp + "'",
+                last);
+    }
+
+    /**
+     * Parses the integer token into the milliseconds since the epoch.
+     *
+     * @return The milliseconds since the epoch.
+     * @throws JsonParseException
+     *             On a failure to parse the integer.
+     */
+    private long toDateFromEpoch() throws JsonParseException {
+        try {
+            return Long.parseLong(tokenText());
+        }
+        catch (final NumberFormatException nfe) {
+            throw error("Could not parse the time milliseconds '"
+                    + tokenText() + "'", nfe);
+        }
+    }
+
+    /**
+     * Parses the current token as a long value.
+     *
+     * @return The long value.
+     * @throws JsonParseException
+     *             On a failure to parse the value.
+     */
+    private long toLong() throws JsonParseException {
+        try {
+            return Long.parseLong(tokenText());
+        }
+        catch (final NumberFormatException nfe) {
+            throw error(nfe.getMessage(), nfe);
+        }
+    }
+
+    /**
+     * Converts the fields of a <code>$timestamp</code> document into a
+     * MongoTimestamp long value. The names of the fields must be 't' and 'i'
+     * in either order.
+     *
+     * @param name1
+     *            The name of the first field.
+     * @param value1
+     *            The value of the first field.
+     * @param name2
+     *            The name of the second field.
+     * @param value2
+     *            The value of the second field.
+     * @return The MongoTimestamp long value.
+     * @throws JsonParseException
+     *             On a failure to decode the timestamp document.
+     */
+    private long toMongoTimestamp(final String name1, final String value1,
+            final String name2, final String value2) throws JsonParseException {
+        try {
+            final long int1 = Long.parseLong(value1);
+            final long int2 = Long.parseLong(value2);
+
+            long value = 0;
+            if ("t".equals(name1) && "i".equals(name2)) {
+                // Time is specified in milliseconds but only store seconds
+                // so we truncate the time to milliseconds.
+                value = TimeUnit.MILLISECONDS.toSeconds(int1);
+                value <<= Integer.SIZE;
+                value += (int2 & 0xFFFFFFFFL);
+            }
+            else if ("t".equals(name2) && "i".equals(name1)) {
+                value = TimeUnit.MILLISECONDS.toSeconds(int2);
+                value <<= Integer.SIZE;
+                value += (int1 & 0xFFFFFFFFL);
+            }
+            else {
+                throw error("Invalid MongoDB Timestamp document");
+            }
+            return value;
+        }
+        catch (final NumberFormatException nfe) {
+            throw error(nfe.getMessage(), nfe);
+        }
+    }
+
+    /**
+     * Converts the timestamp and increment into a MongoTimestamp long value.
+     *
+     * @param timestamp
+     *            The time since the UNIX Epoch, in milliseconds.
+     * @param increment
+     *            The increment for the Mongo Timestamp.
+     * @return The MongoTimestamp long value.
+     * @throws JsonParseException
+     *             On a failure to decode the timestamp integers.
+     */
+    private long toMongoTimestamp(final String timestamp,
+            final String increment) throws JsonParseException {
+        try {
+            final long timePortion = Long.parseLong(timestamp) & 0xFFFFFFFFL;
+
+            // Time is specified in milliseconds but only store seconds
+            // so we truncate the time to milliseconds.
+            long value = TimeUnit.MILLISECONDS.toSeconds(timePortion);
+            value <<= Integer.SIZE;
+            value += (Long.parseLong(increment) & 0xFFFFFFFFL);
+
+            return value;
+        }
+        catch (final NumberFormatException nfe) {
+            throw error(nfe.getMessage(), nfe);
+        }
+    }
+
+    /**
+     * Creates a ObjectId from the hex string token.
+     *
+     * @return The ObjectId.
+     * @throws JsonParseException
+     *             On a failure to decode the hex string into an ObjectId.
+     */
+    private ObjectId toObjectId() throws JsonParseException {
+        try {
+            return new ObjectId(tokenText());
+        }
+        catch (final IllegalArgumentException iae) {
+            throw error(iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * Returns the text of the current token.
+     *
+     * @return The text of the current token.
+     */
+    private String tokenText() {
+        return myTokenText.toString();
+    }
+
+    /**
+     * Reads the next raw character and translates any unicode escape sequence,
+     * <code>\\uXXXX</code>, into the character. As in Java source a backslash
+     * only starts an escape if it is preceded by an even number of
+     * backslashes.
+     *
+     * @return The next character or {@link #NO_CHAR}.
+     * @throws JsonParseException
+     *             On a failure to read the character or an invalid escape
+     *             sequence.
+     */
+    private int translateChar() throws JsonParseException {
+        final int c = readRawChar();
+        if (c != '\\') {
+            myRawBackslashes = 0;
+            return c;
+        }
+        if (((myRawBackslashes & 1) != 0) || (peekRawChar() != 'u')) {
+            myRawBackslashes += 1;
+            return c;
+        }
+
+        int u = readRawChar();
+        while (u == 'u') {
+            u = readRawChar();
+        }
+
+        int value = 0;
+        for (int i = 0; i < 4; ++i) {
+            final int digit = Character.digit(u, 16);
+            if ((u == NO_CHAR) || (digit < 0)) {
+                throw new JsonParseException(
+                        "Invalid unicode escape sequence @ line " + myLine
+                                + ", column " + myColumn + ".", myLine,
+                        myColumn);
+            }
+            value = (value << 4) + digit;
+            if (i < 3) {
+                u = readRawChar();
+            }
+        }
+
+        myRawBackslashes = 0;
+        return value;
+    }
+
+    /**
+     * Creates an exception for an unexpected token.
+     *
+     * @return The exception to throw.
+     */
+    private JsonParseException unexpected() {
+        if (myTokenKind == EOF) {
+            return error("Unexpected end of the document");
+        }
+        return error("Unexpected token '" + tokenText() + "'");
+    }
+
+    /**
+     * Parses a value and writes it as an element.
+     *
+     * @param name
+     *            The name of the element.
+     * @param token
+     *            The first token of the value.
+     * @throws JsonParseException
+     *             On a failure to parse the value.
+     */
+    private void value(final String name, final int token)
+            throws JsonParseException {
+        switch (token) {
+        case OPEN_BRACE: {
+            if (nextToken() == SPECIAL) {
+                extendedValue(name, tokenText());
+            }
+            else {
+                myTokenPushedBack = true;
+                writeHeader(ElementType.DOCUMENT, name);
+                documentBody();
+            }
+            break;
+        }
+        case OPEN_BRACKET: {
+            writeHeader(ElementType.ARRAY, name);
+            arrayBody();
+            break;
+        }
+        case STRING: {
+            writeHeader(ElementType.STRING, name);
+            myOutput.writeString(tokenText());
+            break;
+        }
+        case INTEGER: {
+            // Experimentally determine the size of the integer.
+            final long value = toLong();
+            if ((Integer.MIN_VALUE <= value) && (value <= Integer.MAX_VALUE)) {
+                writeHeader(ElementType.INTEGER, name);
+                myOutput.writeInt((int) value);
+            }
+            else {
+                writeHeader(ElementType.LONG, name);
+                myOutput.writeLong(value);
+            }
+            break;
+        }
+        case DOUBLE: {
+            writeHeader(ElementType.DOUBLE, name);
+            myOutput.writeLong(Double.doubleToLongBits(Double
+                    .parseDouble(tokenText())));
+            break;
+        }
+        case IDENTIFIER: {
+            final String identifier = tokenText();
+            if ("true".equals(identifier) || "false".equals(identifier)) {
+                writeHeader(ElementType.BOOLEAN, name);
+                myOutput.writeByte("true".equals(identifier) ? (byte) 1
+                        : (byte) 0);
+            }
+            else if ("null".equals(identifier)) {
+                writeHeader(ElementType.NULL, name);
+            }
+            else if (isKeyword(identifier)) {
+                functionValue(name, identifier);
+            }
+            else {
+                writeHeader(ElementType.SYMBOL, name);
+                myOutput.writeString(identifier);
+            }
+            break;
+        }
+        default: {
+            throw unexpected();
+        }
+        }
+    }
+
+    /**
+     * Writes a binary element.
+     *
+     * @param name
+     *            The name of the element.
+     * @param subType
+     *            The sub-type of the binary data.
+     * @param data
+     *            The binary data.
+     */
+    private void writeBinary(final String name, final byte subType,
+            final byte[] data) {
+        writeHeader(ElementType.BINARY, name);
+        if (subType == 2) {
+            myOutput.writeInt(data.length + 4);
+            myOutput.writeByte(subType);
+            myOutput.writeInt(data.length);
+        }
+        else {
+            myOutput.writeInt(data.length);
+            myOutput.writeByte(subType);
+        }
+        myOutput.writeBytes(data);
+    }
+
+    /**
+     * Writes the type and name of an element.
+     *
+     * @param type
+     *            The type of the element.
+     * @param name
+     *            The name of the element.
+     */
+    private void writeHeader(final ElementType type, final String name) {
+        myOutput.writeByte(type.getToken());
+        myOutput.writeCString(name);
+    }
+
+    /**
+     * Writes an element with an {@link ObjectId} value.
+     *
+     * @param type
+     *            The type of the element.
+     * @param name
+     *            The name of the element.
+     * @param id
+     *            The ObjectId value.
+     */
+    private void writeObjectId(final ElementType type, final String name,
+            final ObjectId id) {
+        writeHeader(type, name);
+        // Just to be complicated the Object ID is big endian.
+        myOutput.writeInt(EndianUtils.swap(id.getTimestamp()));
+        myOutput.writeLong(EndianUtils.swap(id.getMachineId()));
+    }
+
+    /**
+     * Writes a regular expression element. The options are validated and
+     * normalized as with a {@link RegularExpressionElement}.
+     *
+     * @param name
+     *            The name of the element.
+     * @param pattern
+     *            The regular expression pattern.
+     * @param options
+     *            The regular expression options.
+     * @throws JsonParseException
+     *             If the options are not valid.
+     */
+    private void writeRegularExpression(final String name,
+            final String pattern, final String options)
+            throws JsonParseException {
+        final int flags;
+        try {
+            flags = new RegularExpressionElement(name, pattern, options)
+                    .getOptions();
+        }
+        catch (final IllegalArgumentException iae) {
+            throw error(iae.getMessage(), iae);
+        }
+
+        // Options must be in alphabetic order.
+        final StringBuilder normalized = new StringBuilder(6);
+        if ((flags & RegularExpressionElement.OPTION_I) != 0) {
+            normalized.append('i');
+        }
+        if ((flags & RegularExpressionElement.OPTION_L) != 0) {
+            normalized.append('l');
+        }
+        if ((flags & RegularExpressionElement.OPTION_M) != 0) {
+            normalized.append('m');
+        }
+        if ((flags & RegularExpressionElement.OPTION_S) != 0) {
+            normalized.append('s');
+        }
+        if ((flags & RegularExpressionElement.OPTION_U) != 0) {
+            normalized.append('u');
+        }
+        if ((flags & RegularExpressionElement.OPTION_X) != 0) {
+            normalized.append('x');
+        }
+
+        writeHeader(ElementType.REGEX, name);
+        myOutput.writeCString(pattern);
+        myOutput.writeCString(normalized.toString());
+    }
+}
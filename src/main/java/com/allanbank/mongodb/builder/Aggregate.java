@@ -176,6 +176,12 @@ public class Aggregate {
     /** The pipeline of operations to be applied. */
     private final List<Element> myPipeline;
 
+    /**
+     * The number of batches of results to request from the server ahead of
+     * the iteration.
+     */
+    private final int myReadAhead;
+
     /** The read preference to use. */
     private final ReadPreference myReadPreference;
 
@@ -198,6 +204,7 @@ public class Aggregate {
         myLimit = builder.myLimit;
         myUseCursor = builder.myUseCursor;
         myAllowDiskUsage = builder.myAllowDiskUsage;
+        myReadAhead = builder.myReadAhead;
         myReadPreference = builder.myReadPreference;
         myRequiredVersion = builder.myRequiredVersion;
         myMaximumTimeMilliseconds = builder.myMaximumTimeMilliseconds;
@@ -245,6 +252,18 @@ public class Aggregate {
         return myPipeline;
     }
 
+    /**
+     * Returns the number of batches of results to request from the server
+     * ahead of the iteration of the cursor.
+     *
+     * @return The number of batches of results to request from the server
+     *         ahead of the iteration of the cursor.
+     * @since 2.1.0
+     */
+    public int getReadAhead() {
+        return myReadAhead;
+    }
+
     /**
      * Returns the {@link ReadPreference} specifying which servers may be used
      * to execute the aggregation.
@@ -372,6 +391,12 @@ public class Aggregate {
         /** The pipeline of operations to be applied. */
         protected final ArrayBuilder myPipeline;
 
+        /**
+         * The number of batches of results to request from the server ahead
+         * of the iteration.
+         */
+        protected int myReadAhead;
+
         /** The read preference to use. */
         protected ReadPreference myReadPreference;
 
@@ -861,6 +886,23 @@ public class Aggregate {
             return step("$project", projection);
         }
 
+        /**
+         * Sets the number of batches of results to request from the server
+         * ahead of the iteration of the cursor.
+         * <p>
+         * This method delegates to {@link #setReadAhead(int)}.
+         * </p>
+         *
+         * @param batches
+         *            The number of batches of results to request from the
+         *            server ahead of the iteration.
+         * @return This builder for chaining method calls.
+         * @since 2.1.0
+         */
+        public Builder readAhead(final int batches) {
+            return setReadAhead(batches);
+        }
+
         /**
          * Adds a <tt>$redact</tt> operation to potentially prune sub-documents
          * from the results.
@@ -929,6 +971,7 @@ public class Aggregate {
             myMaximumTimeMilliseconds = 0;
             myBatchSize = 0;
             myLimit = 0;
+            myReadAhead = 1;
             myUseCursor = false;
             myAllowDiskUsage = false;
             myRequiredVersion = REQUIRED_VERSION;
@@ -1008,6 +1051,28 @@ public class Aggregate {
             return this;
         }
 
+        /**
+         * Sets the number of batches of results to request from the server
+         * ahead of the iteration of the cursor. The next batch is requested as
+         * soon as the previous batch is received until this many batches, or
+         * more than the iterator's read ahead byte limit, are waiting to be
+         * iterated over. Values less than 1 are treated as 1, which is the
+         * default.
+         * <p>
+         * This method also sets the builder to use a cursor to true.
+         * </p>
+         *
+         * @param batches
+         *            The number of batches of results to request from the
+         *            server ahead of the iteration.
+         * @return This builder for chaining method calls.
+         * @since 2.1.0
+         */
+        public Builder setReadAhead(final int batches) {
+            myReadAhead = batches;
+            return setUseCursor(true);
+        }
+
         /**
          * Sets the {@link ReadPreference} specifying which servers may be used
          * to execute the aggregation.
@@ -125,6 +125,12 @@ public class Find {
     /** The query document. */
     private final Document myQuery;
 
+    /**
+     * The number of batches of results to request from the server ahead of
+     * the iteration.
+     */
+    private final int myReadAhead;
+
     /** The preference for which servers to use to retrieve the results. */
     private final ReadPreference myReadPreference;
 
@@ -163,6 +169,7 @@ public class Find {
         myNumberToSkip = builder.myNumberToSkip;
         myPartialOk = builder.myPartialOk;
         myQuery = builder.myQuery;
+        myReadAhead = builder.myReadAhead;
         myReadPreference = builder.myReadPreference;
         myProjection = builder.myProjection;
         mySnapshot = builder.mySnapshot;
@@ -178,6 +185,39 @@ public class Find {
         myShowDiskLocation = builder.myShowDiskLocation;
     }
 
+    /**
+     * Creates a new Find with the options of another {@link Find} but a
+     * different query document.
+     *
+     * @param other
+     *            The find to copy the query options from.
+     * @param query
+     *            The query document.
+     */
+    /* package */Find(final Find other, final Document query) {
+        myBatchSize = other.myBatchSize;
+        myHint = other.myHint;
+        myHintName = other.myHintName;
+        myLimit = other.myLimit;
+        myNumberToSkip = other.myNumberToSkip;
+        myPartialOk = other.myPartialOk;
+        myQuery = query;
+        myReadAhead = other.myReadAhead;
+        myReadPreference = other.myReadPreference;
+        myProjection = other.myProjection;
+        mySnapshot = other.mySnapshot;
+        mySort = other.mySort;
+        myTailable = other.myTailable;
+        myAwaitData = other.myAwaitData;
+        myImmortalCursor = other.myImmortalCursor;
+        myMaximumRange = other.myMaximumRange;
+        myMinimumRange = other.myMinimumRange;
+        myMaximumDocumentsToScan = other.myMaximumDocumentsToScan;
+        myMaximumTimeMilliseconds = other.myMaximumTimeMilliseconds;
+        myReturnIndexKeysOnly = other.myReturnIndexKeysOnly;
+        myShowDiskLocation = other.myShowDiskLocation;
+    }
+
     /**
      * Returns the number of documents to be returned in each batch of results.
      *
@@ -302,6 +342,20 @@ public class Find {
         return myQuery;
     }
 
+    /**
+     * Returns the number of batches of results to request from the server
+     * ahead of the iteration. Batches are requested one at a time but the
+     * next batch is requested as soon as the previous batch is received until
+     * this many batches are waiting to be iterated over.
+     *
+     * @return The number of batches of results to request from the server
+     *         ahead of the iteration.
+     * @since 2.1.0
+     */
+    public int getReadAhead() {
+        return myReadAhead;
+    }
+
     /**
      * Returns the preference for the servers to retrieve the results from. May
      * be <code>null</code> in which case the default read preference should be
@@ -596,6 +650,12 @@ public class Find {
         /** The query document. */
         protected Document myQuery;
 
+        /**
+         * The number of batches of results to request from the server ahead
+         * of the iteration.
+         */
+        protected int myReadAhead;
+
         /** The preference for which servers to use to retrieve the results. */
         protected ReadPreference myReadPreference;
 
@@ -925,6 +985,23 @@ public class Find {
             return setQuery(query);
         }
 
+        /**
+         * Sets the number of batches of results to request from the server
+         * ahead of the iteration.
+         * <p>
+         * This method delegates to {@link #setReadAhead(int)}.
+         * </p>
+         *
+         * @param batches
+         *            The number of batches of results to request from the
+         *            server ahead of the iteration.
+         * @return This builder for chaining method calls.
+         * @since 2.1.0
+         */
+        public Builder readAhead(final int batches) {
+            return setReadAhead(batches);
+        }
+
         /**
          * Sets the preference for the set of servers to retrieve the results
          * from.
@@ -954,6 +1031,7 @@ public class Find {
             myNumberToSkip = 0;
             myPartialOk = false;
             myQuery = ALL;
+            myReadAhead = 1;
             myReadPreference = null;
             myProjection = null;
             mySnapshot = false;
@@ -1327,6 +1405,24 @@ public class Find {
             return this;
         }
 
+        /**
+         * Sets the number of batches of results to request from the server
+         * ahead of the iteration. The next batch is requested as soon as the
+         * previous batch is received until this many batches, or more than
+         * the iterator's read ahead byte limit, are waiting to be iterated
+         * over. Values less than 1 are treated as 1, which is the default.
+         *
+         * @param batches
+         *            The number of batches of results to request from the
+         *            server ahead of the iteration.
+         * @return This builder for chaining method calls.
+         * @since 2.1.0
+         */
+        public Builder setReadAhead(final int batches) {
+            myReadAhead = batches;
+            return this;
+        }
+
         /**
          * Sets the preference for the set of servers to retrieve the results
          * from.
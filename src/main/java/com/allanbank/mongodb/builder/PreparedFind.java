@@ -0,0 +1,271 @@
+/*
+ * #%L
+ * PreparedFind.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.allanbank.mongodb.bson.impl.DocumentTemplate;
+
+/**
+ * PreparedFind provides an immutable {@link Find} whose query document has
+ * been encoded once with parameters that are replaced for each execution.
+ * <p>
+ * The query document is encoded when the {@code PreparedFind} is built. Each
+ * call to {@link #bind(Object...)} copies the encoded query and writes the
+ * parameter values into place. The query is sent to the server by copying the
+ * bytes without rebuilding the document, computing its size or encoding the
+ * field names again.
+ * </p>
+ * <p>
+ * Parameters are named by the path to their element in the query document
+ * with the names of the enclosing elements joined with a '.'. The value in the
+ * query document when the {@code PreparedFind} is built determines the type of
+ * the parameter. e.g.,<blockquote>
+ *
+ * <pre>
+ * <code>
+ * import static {@link QueryBuilder#where(String) com.allanbank.mongodb.builder.QueryBuilder.where};
+ * 
+ * PreparedFind byUserAndAge = PreparedFind.builder()
+ *         .find(Find.builder().query(where("user").equals("").and("age").greaterThan(0)).limit(10))
+ *         .parameters("user", "age.$gt").build();
+ * 
+ * MongoIterator&lt;Document&gt; results = collection.find(byUserAndAge.bind("bob", 21));
+ * </code>
+ * </pre>
+ *
+ * </blockquote>
+ * </p>
+ * <p>
+ * Only boolean, double, integer, long, ObjectId, string and timestamp
+ * parameters are supported.
+ * </p>
+ *
+ * @api.yes This class is part of the driver's API. Public and protected members
+ *          will be deprecated for at least 1 non-bugfix release (version
+ *          numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;) before being
+ *          removed or modified.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ * @since 2.1.0
+ */
+@Immutable
+@ThreadSafe
+public class PreparedFind {
+
+    /**
+     * Creates a new builder for a {@link PreparedFind}.
+     *
+     * @return The builder to construct a {@link PreparedFind}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** The find providing the query options. */
+    private final Find myFind;
+
+    /** The encoded query document. */
+    private final DocumentTemplate myQuery;
+
+    /**
+     * Creates a new PreparedFind.
+     *
+     * @param builder
+     *            The builder to copy the find and parameters from.
+     * @throws IllegalArgumentException
+     *             If a parameter is not found in the query document, is
+     *             repeated or is not a supported type.
+     */
+    protected PreparedFind(final Builder builder)
+            throws IllegalArgumentException {
+        myFind = builder.myFind;
+        myQuery = new DocumentTemplate(myFind.getQuery(),
+                builder.myParameters.toArray(new String[builder.myParameters
+                        .size()]));
+    }
+
+    /**
+     * Returns a {@link Find} with the parameter values in the query document
+     * and all of the other options of the prepared {@link Find}.
+     *
+     * @param values
+     *            The value for each parameter in the order the parameters
+     *            were added to the builder.
+     * @return The {@link Find} to execute.
+     * @throws IllegalArgumentException
+     *             If the number of values does not match the number of
+     *             parameters or a value is not the type of its parameter.
+     */
+    public Find bind(final Object... values) throws IllegalArgumentException {
+        return new Find(myFind, myQuery.bind(values));
+    }
+
+    /**
+     * Returns the prepared {@link Find} with the initial query document.
+     *
+     * @return The prepared {@link Find} with the initial query document.
+     */
+    public Find getFind() {
+        return myFind;
+    }
+
+    /**
+     * Returns the names of the parameters in the order their values are
+     * provided to {@link #bind(Object...)}.
+     *
+     * @return The names of the parameters.
+     */
+    public List<String> getParameterNames() {
+        return myQuery.getParameterNames();
+    }
+
+    /**
+     * Helper for creating immutable {@link PreparedFind} queries.
+     *
+     * @api.yes This class is part of the driver's API. Public and protected
+     *          members will be deprecated for at least 1 non-bugfix release
+     *          (version numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;)
+     *          before being removed or modified.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    @NotThreadSafe
+    public static class Builder {
+
+        /** The find providing the query document and options. */
+        protected Find myFind;
+
+        /** The names of the parameters in the query document. */
+        protected final List<String> myParameters;
+
+        /**
+         * Creates a new Builder.
+         */
+        public Builder() {
+            myParameters = new ArrayList<String>();
+            reset();
+        }
+
+        /**
+         * Constructs a new {@link PreparedFind} object from the state of the
+         * builder.
+         *
+         * @return The new {@link PreparedFind} object.
+         * @throws IllegalArgumentException
+         *             If a parameter is not found in the query document, is
+         *             repeated or is not a supported type.
+         */
+        public PreparedFind build() throws IllegalArgumentException {
+            return new PreparedFind(this);
+        }
+
+        /**
+         * Sets the find to prepare.
+         * <p>
+         * This method delegates to {@link #setFind(Find)}.
+         * </p>
+         *
+         * @param find
+         *            The find providing the query document and options.
+         * @return This builder for chaining method calls.
+         */
+        public Builder find(final Find find) {
+            return setFind(find);
+        }
+
+        /**
+         * Sets the find to prepare.
+         * <p>
+         * This method delegates to {@link #setFind(Find)}.
+         * </p>
+         *
+         * @param find
+         *            The builder for the find providing the query document and
+         *            options.
+         * @return This builder for chaining method calls.
+         */
+        public Builder find(final Find.Builder find) {
+            return setFind(find.build());
+        }
+
+        /**
+         * Adds parameters to the query.
+         * <p>
+         * This method delegates to {@link #setParameters(String...)} after
+         * appending the names to the current parameters.
+         * </p>
+         *
+         * @param parameterNames
+         *            The path to the element in the query document for each
+         *            parameter.
+         * @return This builder for chaining method calls.
+         */
+        public Builder parameters(final String... parameterNames) {
+            final List<String> names = new ArrayList<String>(myParameters);
+            Collections.addAll(names, parameterNames);
+
+            return setParameters(names.toArray(new String[names.size()]));
+        }
+
+        /**
+         * Resets the builder back to its initial state for reuse.
+         *
+         * @return This builder for chaining method calls.
+         */
+        public Builder reset() {
+            myFind = Find.builder().build();
+            myParameters.clear();
+
+            return this;
+        }
+
+        /**
+         * Sets the find to prepare.
+         *
+         * @param find
+         *            The find providing the query document and options.
+         * @return This builder for chaining method calls.
+         */
+        public Builder setFind(final Find find) {
+            myFind = find;
+            return this;
+        }
+
+        /**
+         * Sets the parameters for the query.
+         *
+         * @param parameterNames
+         *            The path to the element in the query document for each
+         *            parameter.
+         * @return This builder for chaining method calls.
+         */
+        public Builder setParameters(final String... parameterNames) {
+            myParameters.clear();
+            Collections.addAll(myParameters, parameterNames);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * #%L
+ * PreparedUpdate.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.allanbank.mongodb.MongoCollection;
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.DocumentAssignable;
+import com.allanbank.mongodb.bson.impl.DocumentTemplate;
+import com.allanbank.mongodb.builder.write.UpdateOperation;
+
+/**
+ * PreparedUpdate provides an immutable update whose query and update
+ * documents have been encoded once with parameters that are replaced for each
+ * execution.
+ * <p>
+ * The documents are encoded when the {@code PreparedUpdate} is built. Each
+ * call to {@link #bind(Object...)} copies the encoded documents and writes the
+ * parameter values into place. e.g.,<blockquote>
+ *
+ * <pre>
+ * <code>
+ * import static {@link com.allanbank.mongodb.bson.builder.BuilderFactory#d(com.allanbank.mongodb.bson.Element...) com.allanbank.mongodb.bson.builder.BuilderFactory.d};
+ * import static {@link com.allanbank.mongodb.bson.builder.BuilderFactory#e(String, Object) com.allanbank.mongodb.bson.builder.BuilderFactory.e};
+ * 
+ * PreparedUpdate rename = PreparedUpdate.builder()
+ *         .query(d(e("_id", 0))).queryParameters("_id")
+ *         .update(d(e("$set", d(e("name", ""))))).updateParameters("$set.name")
+ *         .build();
+ * 
+ * UpdateOperation update = rename.bind(42, "bob");
+ * collection.update(update.getQuery(), update.getUpdate(),
+ *         update.isMultiUpdate(), update.isUpsert());
+ * </code>
+ * </pre>
+ *
+ * </blockquote>
+ * </p>
+ * <p>
+ * See {@link PreparedFind} for how the parameters are named and the supported
+ * types.
+ * </p>
+ *
+ * @api.yes This class is part of the driver's API. Public and protected members
+ *          will be deprecated for at least 1 non-bugfix release (version
+ *          numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;) before being
+ *          removed or modified.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ * @since 2.1.0
+ */
+@Immutable
+@ThreadSafe
+public class PreparedUpdate {
+
+    /**
+     * Creates a new builder for a {@link PreparedUpdate}.
+     *
+     * @return The builder to construct a {@link PreparedUpdate}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** If true then the update can modify multiple documents. */
+    private final boolean myMultiUpdate;
+
+    /** The names of the query parameters followed by the update parameters. */
+    private final List<String> myParameterNames;
+
+    /** The encoded query document. */
+    private final DocumentTemplate myQuery;
+
+    /** The encoded update document. */
+    private final DocumentTemplate myUpdate;
+
+    /** If true then the document should be inserted if not found. */
+    private final boolean myUpsert;
+
+    /**
+     * Creates a new PreparedUpdate.
+     *
+     * @param builder
+     *            The builder to copy the documents and parameters from.
+     * @throws IllegalArgumentException
+     *             If a parameter is not found in its document, is repeated or
+     *             is not a supported type.
+     */
+    protected PreparedUpdate(final Builder builder)
+            throws IllegalArgumentException {
+        myQuery = new DocumentTemplate(builder.myQuery,
+                builder.myQueryParameters
+                        .toArray(new String[builder.myQueryParameters.size()]));
+        myUpdate = new DocumentTemplate(builder.myUpdate,
+                builder.myUpdateParameters
+                        .toArray(new String[builder.myUpdateParameters.size()]));
+        myMultiUpdate = builder.myMultiUpdate;
+        myUpsert = builder.myUpsert;
+
+        final List<String> names = new ArrayList<String>(
+                builder.myQueryParameters);
+        names.addAll(builder.myUpdateParameters);
+        myParameterNames = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Returns the {@link UpdateOperation} with the parameter values in the
+     * query and update documents.
+     * <p>
+     * The values for the query document's parameters are provided first
+     * followed by the values for the update document's parameters.
+     * </p>
+     *
+     * @param values
+     *            The value for each parameter in the order the parameters
+     *            were added to the builder.
+     * @return The {@link UpdateOperation} to execute.
+     * @throws IllegalArgumentException
+     *             If the number of values does not match the number of
+     *             parameters or a value is not the type of its parameter.
+     */
+    public UpdateOperation bind(final Object... values)
+            throws IllegalArgumentException {
+        if (values.length != myParameterNames.size()) {
+            throw new IllegalArgumentException("Expected "
+                    + myParameterNames.size()
+                    + " parameter values but received " + values.length + ".");
+        }
+
+        final int queryCount = myQuery.getParameterNames().size();
+        final Object[] queryValues = new Object[queryCount];
+        final Object[] updateValues = new Object[values.length - queryCount];
+        System.arraycopy(values, 0, queryValues, 0, queryCount);
+        System.arraycopy(values, queryCount, updateValues, 0,
+                updateValues.length);
+
+        return new UpdateOperation(myQuery.bind(queryValues),
+                myUpdate.bind(updateValues), myMultiUpdate, myUpsert);
+    }
+
+    /**
+     * Returns the names of the query document's parameters followed by the
+     * update document's parameters in the order their values are provided to
+     * {@link #bind(Object...)}.
+     *
+     * @return The names of the parameters.
+     */
+    public List<String> getParameterNames() {
+        return myParameterNames;
+    }
+
+    /**
+     * Returns true if the update can modify multiple documents.
+     *
+     * @return True if the update can modify multiple documents.
+     */
+    public boolean isMultiUpdate() {
+        return myMultiUpdate;
+    }
+
+    /**
+     * Returns true if the document should be inserted if not found.
+     *
+     * @return True if the document should be inserted if not found.
+     */
+    public boolean isUpsert() {
+        return myUpsert;
+    }
+
+    /**
+     * Helper for creating immutable {@link PreparedUpdate} operations.
+     *
+     * @api.yes This class is part of the driver's API. Public and protected
+     *          members will be deprecated for at least 1 non-bugfix release
+     *          (version numbers are &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;)
+     *          before being removed or modified.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    @NotThreadSafe
+    public static class Builder {
+
+        /** If true then the update can modify multiple documents. */
+        protected boolean myMultiUpdate;
+
+        /** The query to find the documents to update. */
+        protected Document myQuery;
+
+        /** The names of the parameters in the query document. */
+        protected final List<String> myQueryParameters;
+
+        /** The update specification. */
+        protected Document myUpdate;
+
+        /** The names of the parameters in the update document. */
+        protected final List<String> myUpdateParameters;
+
+        /** If true then the document should be inserted if not found. */
+        protected boolean myUpsert;
+
+        /**
+         * Creates a new Builder.
+         */
+        public Builder() {
+            myQueryParameters = new ArrayList<String>();
+            myUpdateParameters = new ArrayList<String>();
+            reset();
+        }
+
+        /**
+         * Constructs a new {@link PreparedUpdate} object from the state of the
+         * builder.
+         *
+         * @return The new {@link PreparedUpdate} object.
+         * @throws IllegalArgumentException
+         *             If a parameter is not found in its document, is repeated
+         *             or is not a supported type.
+         */
+        public PreparedUpdate build() throws IllegalArgumentException {
+            return new PreparedUpdate(this);
+        }
+
+        /**
+         * Sets the update to modify all of the matching documents.
+         * <p>
+         * This method delegates to {@link #setMultiUpdate(boolean)
+         * setMultiUpdate(true)}.
+         * </p>
+         *
+         * @return This builder for chaining method calls.
+         */
+        public Builder multiUpdate() {
+            return setMultiUpdate(true);
+        }
+
+        /**
+         * Sets if the update can modify multiple documents.
+         * <p>
+         * This method delegates to {@link #setMultiUpdate(boolean)}.
+         * </p>
+         *
+         * @param multiUpdate
+         *            If true then the update is applied to all of the matching
+         *            documents, otherwise only the first document found is
+         *            updated.
+         * @return This builder for chaining method calls.
+         */
+        public Builder multiUpdate(final boolean multiUpdate) {
+            return setMultiUpdate(multiUpdate);
+        }
+
+        /**
+         * Sets the query to find the documents to update.
+         * <p>
+         * This method delegates to {@link #setQuery(DocumentAssignable)}.
+         * </p>
+         *
+         * @param query
+         *            The query to find the documents to update.
+         * @return This builder for chaining method calls.
+         */
+        public Builder query(final DocumentAssignable query) {
+            return setQuery(query);
+        }
+
+        /**
+         * Adds parameters to the query document.
+         * <p>
+         * This method delegates to {@link #setQueryParameters(String...)}
+         * after appending the names to the current query parameters.
+         * </p>
+         *
+         * @param parameterNames
+         *            The path to the element in the query document for each
+         *            parameter.
+         * @return This builder for chaining method calls.
+         */
+        public Builder queryParameters(final String... parameterNames) {
+            final List<String> names = new ArrayList<String>(
+                    myQueryParameters);
+            Collections.addAll(names, parameterNames);
+
+            return setQueryParameters(names.toArray(new String[names.size()]));
+        }
+
+        /**
+         * Resets the builder back to its initial state for reuse.
+         *
+         * @return This builder for chaining method calls.
+         */
+        public Builder reset() {
+            myQuery = MongoCollection.ALL;
+            myQueryParameters.clear();
+            myUpdate = MongoCollection.ALL;
+            myUpdateParameters.clear();
+            myMultiUpdate = false;
+            myUpsert = false;
+
+            return this;
+        }
+
+        /**
+         * Sets if the update can modify multiple documents.
+         *
+         * @param multiUpdate
+         *            If true then the update is applied to all of the matching
+         *            documents, otherwise only the first document found is
+         *            updated.
+         * @return This builder for chaining method calls.
+         */
+        public Builder setMultiUpdate(final boolean multiUpdate) {
+            myMultiUpdate = multiUpdate;
+            return this;
+        }
+
+        /**
+         * Sets the query to find the documents to update.
+         *
+         * @param query
+         *            The query to find the documents to update.
+         * @return This builder for chaining method calls.
+         */
+        public Builder setQuery(final DocumentAssignable query) {
+            myQuery = query.asDocument();
+            return this;
+        }
+
+        /**
+         * Sets the parameters for the query document.
+         *
+         * @param parameterNames
+         *            The path to the element in the query document for each
+         *            parameter.
+         * @return This builder for chaining method calls.
+         */
+        public Builder setQueryParameters(final String... parameterNames) {
+            myQueryParameters.clear();
+            Collections.addAll(myQueryParameters, parameterNames);
+            return this;
+        }
+
+        /**
+         * Sets the update specification.
+         *
+         * @param update
+         *            The update specification.
+         * @return This builder for chaining method calls.
+         */
+        public Builder setUpdate(final DocumentAssignable update) {
+            myUpdate = update.asDocument();
+            return this;
+        }
+
+        /**
+         * Sets the parameters for the update document.
+         *
+         * @param parameterNames
+         *            The path to the element in the update document for each
+         *            parameter.
+         * @return This builder for chaining method calls.
+         */
+        public Builder setUpdateParameters(final String... parameterNames) {
+            myUpdateParameters.clear();
+            Collections.addAll(myUpdateParameters, parameterNames);
+            return this;
+        }
+
+        /**
+         * Sets if the document should be inserted if not found.
+         *
+         * @param upsert
+         *            If true then if no document is found then a new document
+         *            is created and updated, otherwise no operation is
+         *            performed.
+         * @return This builder for chaining method calls.
+         */
+        public Builder setUpsert(final boolean upsert) {
+            myUpsert = upsert;
+            return this;
+        }
+
+        /**
+         * Sets the update specification.
+         * <p>
+         * This method delegates to {@link #setUpdate(DocumentAssignable)}.
+         * </p>
+         *
+         * @param update
+         *            The update specification.
+         * @return This builder for chaining method calls.
+         */
+        public Builder update(final DocumentAssignable update) {
+            return setUpdate(update);
+        }
+
+        /**
+         * Adds parameters to the update document.
+         * <p>
+         * This method delegates to {@link #setUpdateParameters(String...)}
+         * after appending the names to the current update parameters.
+         * </p>
+         *
+         * @param parameterNames
+         *            The path to the element in the update document for each
+         *            parameter.
+         * @return This builder for chaining method calls.
+         */
+        public Builder updateParameters(final String... parameterNames) {
+            final List<String> names = new ArrayList<String>(
+                    myUpdateParameters);
+            Collections.addAll(names, parameterNames);
+
+            return setUpdateParameters(names.toArray(new String[names.size()]));
+        }
+
+        /**
+         * Sets the document to be inserted if not found.
+         * <p>
+         * This method delegates to {@link #setUpsert(boolean)
+         * setUpsert(true)}.
+         * </p>
+         *
+         * @return This builder for chaining method calls.
+         */
+        public Builder upsert() {
+            return setUpsert(true);
+        }
+
+        /**
+         * Sets if the document should be inserted if not found.
+         * <p>
+         * This method delegates to {@link #setUpsert(boolean)}.
+         * </p>
+         *
+         * @param upsert
+         *            If true then if no document is found then a new document
+         *            is created and updated, otherwise no operation is
+         *            performed.
+         * @return This builder for chaining method calls.
+         */
+        public Builder upsert(final boolean upsert) {
+            return setUpsert(upsert);
+        }
+    }
+}
@@ -113,6 +113,15 @@ public abstract class AbstractClient
     protected abstract Connection findConnection(Message message1,
             Message message2) throws MongoDbException;
 
+    /**
+     * Returns true if the client has been closed.
+     *
+     * @return True if the client has been closed.
+     */
+    protected boolean isClosed() {
+        return myClosed.get();
+    }
+
     /**
      * Asserts that the command is open.
      *
@@ -169,6 +169,7 @@ public abstract class AbstractMongoOperations {
 
         final CursorCallback callback = new CursorCallback(myClient,
                 commandMsg, true, results);
+        callback.setReadAhead(command.getReadAhead());
 
         myClient.send(commandMsg, callback);
     }
@@ -426,6 +427,7 @@ public abstract class AbstractMongoOperations {
 
         final CursorCallback callback = new CursorCallback(myClient,
                 queryMessage, false, results);
+        callback.setReadAhead(query.getReadAhead());
 
         myClient.send(queryMessage, callback);
     }
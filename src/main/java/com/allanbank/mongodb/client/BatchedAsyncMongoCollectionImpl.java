@@ -24,10 +24,16 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.allanbank.mongodb.BatchedAsyncMongoCollection;
 import com.allanbank.mongodb.Callback;
@@ -48,6 +54,8 @@ import com.allanbank.mongodb.client.message.GetLastError;
 import com.allanbank.mongodb.client.message.Insert;
 import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.client.message.Update;
+import com.allanbank.mongodb.util.log.Log;
+import com.allanbank.mongodb.util.log.LogFactory;
 
 /**
  * BatchedAsyncMongoCollectionImpl provides the implementation for the
@@ -62,12 +70,37 @@ public class BatchedAsyncMongoCollectionImpl
     /** The interfaces to implement via the proxy. */
     private static final Class<?>[] CLIENT_INTERFACE = new Class[] { Client.class };
 
+    /** The logger for the collection. */
+    private static final Log LOG = LogFactory
+            .getLog(BatchedAsyncMongoCollectionImpl.class);
+
+    /**
+     * Set to true to flush the batch once the pending writes reach the
+     * server's limits.
+     */
+    private volatile boolean myAutoFlush = false;
+
     /** set to true to batch deletes. */
     private boolean myBatchDeletes = false;
 
     /** Set to true to batch updates. */
     private boolean myBatchUpdates = false;
 
+    /**
+     * The thread flushing the batch once an operation has waited the maximum
+     * flush delay. Guarded by {@link #myFlusherLock}.
+     */
+    private Thread myFlusher = null;
+
+    /** The lock for starting and stopping the {@link #myFlusher}. */
+    private final Object myFlusherLock = new Object();
+
+    /**
+     * The maximum time, in nanoseconds, an operation waits before the batch is
+     * flushed. Zero disables the flushes on a deadline.
+     */
+    private volatile long myMaxFlushDelayNanos = 0;
+
     /** The mode for the writes. */
     private BatchedWriteMode myMode = BatchedWriteMode.SERIALIZE_AND_CONTINUE;
 
@@ -88,6 +121,8 @@ public class BatchedAsyncMongoCollectionImpl
                 BatchedAsyncMongoCollectionImpl.class.getClassLoader(),
                 CLIENT_INTERFACE, new CaptureClientHandler(client)), database,
                 name);
+
+        handler().setOwner(this);
     }
 
     /**
@@ -98,20 +133,19 @@ public class BatchedAsyncMongoCollectionImpl
      */
     @Override
     public void cancel() {
-        final InvocationHandler handler = Proxy.getInvocationHandler(myClient);
-        if (handler instanceof CaptureClientHandler) {
-            ((CaptureClientHandler) handler).clear();
-        }
+        handler().clear();
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * Overridden to flush any pending messages to a real serialized client.
+     * Overridden to stop any flushes on a deadline and flush any pending
+     * messages to a real serialized client.
      * </p>
      */
     @Override
     public void close() throws MongoDbException {
+        stopFlusher();
         flush();
     }
 
@@ -123,10 +157,20 @@ public class BatchedAsyncMongoCollectionImpl
      */
     @Override
     public void flush() throws MongoDbException {
-        final InvocationHandler handler = Proxy.getInvocationHandler(myClient);
-        if (handler instanceof CaptureClientHandler) {
-            ((CaptureClientHandler) handler).flush(this);
-        }
+        handler().flush(this);
+    }
+
+    /**
+     * Returns the maximum time an operation waits before the batch is
+     * flushed. Zero if the batch is not flushed on a deadline.
+     *
+     * @param units
+     *            The units for the delay.
+     * @return The maximum time an operation waits before the batch is
+     *         flushed.
+     */
+    public long getMaxFlushDelay(final TimeUnit units) {
+        return units.convert(myMaxFlushDelayNanos, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -138,6 +182,17 @@ public class BatchedAsyncMongoCollectionImpl
         return myMode;
     }
 
+    /**
+     * Returns true if the batch is flushed once the pending writes reach the
+     * server's limits.
+     *
+     * @return True if the batch is flushed once the pending writes reach the
+     *         server's limits.
+     */
+    public boolean isAutoFlush() {
+        return myAutoFlush;
+    }
+
     /**
      * Returns true if the deletes should be batched.
      *
@@ -156,6 +211,14 @@ public class BatchedAsyncMongoCollectionImpl
         return myBatchUpdates;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAutoFlush(final boolean autoFlush) {
+        myAutoFlush = autoFlush;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -172,6 +235,24 @@ public class BatchedAsyncMongoCollectionImpl
         myBatchUpdates = batchUpdates;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to start, or stop, the thread flushing the batch on a
+     * deadline.
+     * </p>
+     */
+    @Override
+    public void setMaxFlushDelay(final long delay, final TimeUnit units) {
+        myMaxFlushDelayNanos = Math.max(0, units.toNanos(delay));
+        if (0 < myMaxFlushDelayNanos) {
+            startFlusher();
+        }
+        else {
+            stopFlusher();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -193,6 +274,44 @@ public class BatchedAsyncMongoCollectionImpl
         return false;
     }
 
+    /**
+     * Returns the handler capturing the messages for the batch.
+     *
+     * @return The handler capturing the messages for the batch.
+     */
+    private CaptureClientHandler handler() {
+        return (CaptureClientHandler) Proxy.getInvocationHandler(myClient);
+    }
+
+    /**
+     * Starts the thread flushing the batch on a deadline if it is not already
+     * running.
+     */
+    private void startFlusher() {
+        synchronized (myFlusherLock) {
+            if (myFlusher == null) {
+                final Thread flusher = myClient.getConfig().getThreadFactory()
+                        .newThread(new DeadlineFlusher());
+                flusher.setName("MongoDB Batch Flusher "
+                        + getDatabaseName() + "." + getName());
+                flusher.setDaemon(true);
+
+                myFlusher = flusher;
+                flusher.start();
+            }
+        }
+    }
+
+    /**
+     * Stops the thread flushing the batch on a deadline.
+     */
+    private void stopFlusher() {
+        synchronized (myFlusherLock) {
+            myFlusher = null;
+            myFlusherLock.notifyAll();
+        }
+    }
+
     /**
      * CaptureClientHandler provides an {@link InvocationHandler} to capture all
      * send requests and defer them until flushed.
@@ -206,9 +325,33 @@ public class BatchedAsyncMongoCollectionImpl
         public static final Version BATCH_WRITE_VERSION = Version
                 .parse("2.5.4");
 
+        /** The value for {@link #myOldestPending} when nothing is pending. */
+        private static final long NONE_PENDING = Long.MIN_VALUE;
+
         /** The collection we are proxying. */
         private BatchedAsyncMongoCollectionImpl myCollection;
 
+        /**
+         * The lock held while flushing. Capturing messages does not take the
+         * lock.
+         */
+        private final Lock myFlushLock;
+
+        /**
+         * The {@link System#nanoTime()} when the oldest pending message was
+         * captured or {@link #NONE_PENDING}.
+         */
+        private final AtomicLong myOldestPending;
+
+        /** The collection that owns the handler. */
+        private volatile BatchedAsyncMongoCollectionImpl myOwner;
+
+        /** The approximate number of bytes in the pending messages. */
+        private final AtomicLong myPendingBytes;
+
+        /** The approximate number of pending write operations. */
+        private final AtomicInteger myPendingOperations;
+
         /** The real (e.g., user's) callbacks. */
         private List<Callback<Reply>> myRealCallbacks;
 
@@ -222,10 +365,10 @@ public class BatchedAsyncMongoCollectionImpl
         private List<Object> myResults;
 
         /**
-         * The {@link Client} implementation to delegate to when sending
-         * messages or handling other method calls.
+         * The arguments for each captured {@link Client#send} call. Producers
+         * add to the queue concurrently and a flush drains it.
          */
-        private final List<Object[]> mySendArgs;
+        private final Queue<Object[]> mySendArgs;
 
         /** The batched writer we are building. */
         private final BatchedWrite.Builder myWrite;
@@ -243,44 +386,145 @@ public class BatchedAsyncMongoCollectionImpl
             myRealCallbacks = null;
             myResults = null;
 
-            mySendArgs = new LinkedList<Object[]>();
+            myFlushLock = new ReentrantLock();
+            myOldestPending = new AtomicLong(NONE_PENDING);
+            myPendingBytes = new AtomicLong(0);
+            myPendingOperations = new AtomicInteger(0);
+            mySendArgs = new ConcurrentLinkedQueue<Object[]>();
             myWrite = BatchedWrite.builder();
         }
 
         /**
          * Clears the pending messages without sending them to MongoDB.
          */
-        public synchronized void clear() {
-            final List<Object[]> copy = new ArrayList<Object[]>(mySendArgs);
+        public void clear() {
+            myFlushLock.lock();
+            try {
+                cancel(drain());
+            }
+            finally {
+                myFlushLock.unlock();
+            }
+        }
 
-            mySendArgs.clear();
-            myWrite.reset();
+        /**
+         * Flushes the pending messages to a serialized client.
+         *
+         * @param collection
+         *            The Collection the we are flushing operations for.
+         */
+        public void flush(final BatchedAsyncMongoCollectionImpl collection) {
+            myFlushLock.lock();
+            try {
+                doFlush(collection);
+            }
+            finally {
+                myFlushLock.unlock();
+            }
+        }
 
-            myResults = null;
-            myRealCallbacks = null;
-            myCollection = null;
+        /**
+         * Flushes the pending messages if the oldest has waited for the delay.
+         *
+         * @param collection
+         *            The Collection the we are flushing operations for.
+         * @param delayNanos
+         *            The maximum time a message should wait, in nanoseconds.
+         * @return The time until the oldest pending message will have waited
+         *         for the delay, in nanoseconds. If there are no pending
+         *         messages then the delay is returned.
+         */
+        public long flushIfDue(
+                final BatchedAsyncMongoCollectionImpl collection,
+                final long delayNanos) {
+            final long oldest = myOldestPending.get();
+            if (oldest == NONE_PENDING) {
+                return delayNanos;
+            }
 
-            for (final Object[] args : copy) {
-                final Object lastArg = args[args.length - 1];
-                if (lastArg instanceof Future<?>) {
-                    ((Future<?>) lastArg).cancel(false);
+            final long remaining = (oldest + delayNanos) - System.nanoTime();
+            if (0 < remaining) {
+                return remaining;
+            }
+
+            flush(collection);
+            return delayNanos;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to batch all {@link Client#send} operations. Capturing a
+         * message does not block other producers. If the owning collection is
+         * set to {@link BatchedAsyncMongoCollectionImpl#isAutoFlush()
+         * auto-flush} and the pending writes have reached the server's limits
+         * then the batch is flushed on the calling thread unless another
+         * thread is already flushing.
+         * </p>
+         */
+        @Override
+        public Object invoke(final Object proxy, final Method method,
+                final Object[] args) throws Throwable {
+
+            final String methodName = method.getName();
+
+            if (methodName.equals("send")) {
+                mySendArgs.add(args);
+
+                final int operations = myPendingOperations
+                        .addAndGet(operations(args));
+                final long bytes = myPendingBytes.addAndGet(bytes(args));
+                myOldestPending.compareAndSet(NONE_PENDING, System.nanoTime());
+
+                final BatchedAsyncMongoCollectionImpl owner = myOwner;
+                if ((owner != null) && owner.isAutoFlush()) {
+                    final ClusterStats stats = myRealClient.getClusterStats();
+                    if ((stats.getSmallestMaxBatchedWriteOperations() <= operations)
+                            || (stats.getSmallestMaxBsonObjectSize() <= bytes)) {
+                        tryFlush(owner);
+                    }
                 }
-                else if (lastArg instanceof Callback<?>) {
-                    ((Callback<?>) lastArg)
-                            .exception(new CancellationException(
-                                    "Batch request cancelled."));
+                return null;
+            }
+            return method.invoke(myRealClient, args);
+        }
+
+        /**
+         * Sets the collection that owns the handler.
+         *
+         * @param owner
+         *            The collection that owns the handler.
+         */
+        public void setOwner(final BatchedAsyncMongoCollectionImpl owner) {
+            myOwner = owner;
+        }
+
+        /**
+         * Flushes the pending messages if no other thread is flushing.
+         *
+         * @param collection
+         *            The Collection the we are flushing operations for.
+         */
+        public void tryFlush(final BatchedAsyncMongoCollectionImpl collection) {
+            if (myFlushLock.tryLock()) {
+                try {
+                    doFlush(collection);
+                }
+                finally {
+                    myFlushLock.unlock();
                 }
             }
         }
 
         /**
-         * Flushes the pending messages to a serialized client.
+         * Flushes the pending messages to a serialized client. The caller must
+         * hold the {@link #myFlushLock}.
          *
          * @param collection
          *            The Collection the we are flushing operations for.
          */
-        public synchronized void flush(
-                final BatchedAsyncMongoCollectionImpl collection) {
+        private void doFlush(final BatchedAsyncMongoCollectionImpl collection) {
+            final List<Object[]> sendArgs = drain();
 
             // Use a serialized client to keep all of the messages on a single
             // connection as much as possible.
@@ -294,7 +538,7 @@ public class BatchedAsyncMongoCollectionImpl
 
             try {
                 // Send the optimized requests.
-                final List<Object> optimized = optimize(collection);
+                final List<Object> optimized = optimize(collection, sendArgs);
                 for (final Object toSend : optimized) {
                     if (toSend instanceof BatchedWriteCallback) {
                         final BatchedWriteCallback cb = (BatchedWriteCallback) toSend;
@@ -316,27 +560,15 @@ public class BatchedAsyncMongoCollectionImpl
                 }
             }
             finally {
-                clear();
-            }
-        }
-
-        /**
-         * {@inheritDoc}
-         * <p>
-         * Overridden to batch all {@link Client#send} operations.
-         * </p>
-         */
-        @Override
-        public synchronized Object invoke(final Object proxy,
-                final Method method, final Object[] args) throws Throwable {
+                myWrite.reset();
 
-            final String methodName = method.getName();
+                myResults = null;
+                myRealCallbacks = null;
+                myCollection = null;
 
-            if (methodName.equals("send")) {
-                mySendArgs.add(args);
-                return null;
+                // Anything not optimized is cancelled.
+                cancel(sendArgs);
             }
-            return method.invoke(myRealClient, args);
         }
 
         /**
@@ -406,6 +638,39 @@ public class BatchedAsyncMongoCollectionImpl
                     update.isMultiUpdate(), update.isUpsert());
         }
 
+        /**
+         * Returns the approximate number of bytes for the captured
+         * {@link Client#send} call.
+         *
+         * @param args
+         *            The arguments for the {@link Client#send} call.
+         * @return The size of the first message in the call.
+         */
+        private long bytes(final Object[] args) {
+            return ((Message) args[0]).size();
+        }
+
+        /**
+         * Cancels the pending messages.
+         *
+         * @param sendArgs
+         *            The arguments for each pending {@link Client#send} call.
+         */
+        private void cancel(final List<Object[]> sendArgs) {
+            for (final Object[] args : sendArgs) {
+                final Object lastArg = args[args.length - 1];
+                if (lastArg instanceof Future<?>) {
+                    ((Future<?>) lastArg).cancel(false);
+                }
+                else if (lastArg instanceof Callback<?>) {
+                    ((Callback<?>) lastArg)
+                            .exception(new CancellationException(
+                                    "Batch request cancelled."));
+                }
+            }
+            sendArgs.clear();
+        }
+
         /**
          * Closes the current batch of operations and re-initializes the batched
          * writer.
@@ -429,6 +694,34 @@ public class BatchedAsyncMongoCollectionImpl
             myRealCallbacks.clear();
         }
 
+        /**
+         * Removes all of the pending messages from the queue and updates the
+         * pending counts.
+         *
+         * @return The arguments for each pending {@link Client#send} call in
+         *         the order they were captured.
+         */
+        private List<Object[]> drain() {
+            // Reset first so a message captured while draining starts a new
+            // deadline.
+            myOldestPending.set(NONE_PENDING);
+
+            final List<Object[]> drained = new ArrayList<Object[]>();
+            int operations = 0;
+            long bytes = 0;
+            Object[] args;
+            while ((args = mySendArgs.poll()) != null) {
+                drained.add(args);
+                operations += operations(args);
+                bytes += bytes(args);
+            }
+
+            myPendingOperations.addAndGet(-operations);
+            myPendingBytes.addAndGet(-bytes);
+
+            return drained;
+        }
+
         /**
          * Extracts the callback from the write arguments. If the write has a
          * {@link Callback} then it will be the last argument.
@@ -454,12 +747,16 @@ public class BatchedAsyncMongoCollectionImpl
          *
          * @param collection
          *            The collection we are sending requests to.
+         * @param sendArgs
+         *            The arguments for each pending {@link Client#send} call.
+         *            Optimized calls are removed from the list.
          * @return The list of optimized messages.
          */
         private List<Object> optimize(
-                final BatchedAsyncMongoCollectionImpl collection) {
+                final BatchedAsyncMongoCollectionImpl collection,
+                final List<Object[]> sendArgs) {
 
-            if (mySendArgs.isEmpty()) {
+            if (sendArgs.isEmpty()) {
                 return Collections.emptyList();
             }
 
@@ -474,46 +771,70 @@ public class BatchedAsyncMongoCollectionImpl
                 myWrite.reset();
                 myWrite.setMode(collection.getMode());
 
-                myResults = new ArrayList<Object>(mySendArgs.size());
+                myResults = new ArrayList<Object>(sendArgs.size());
                 myRealCallbacks = new ArrayList<Callback<Reply>>(
-                        mySendArgs.size());
+                        sendArgs.size());
+
+                int processed = 0;
+                try {
+                    for (final Object[] args : sendArgs) {
+                        processed += 1;
+                        if (args[0] instanceof Insert) {
+                            addInsert((Insert) args[0], args);
+                        }
+                        else if (collection.isBatchUpdates()
+                                && (args[0] instanceof Update)) {
+                            addUpdate((Update) args[0], args);
+                        }
+                        else if (collection.isBatchDeletes()
+                                && (args[0] instanceof Delete)) {
+                            addDelete((Delete) args[0], args);
+                        }
+                        else {
+                            closeBatch();
+                            myResults.add(args);
+                        }
 
-                while (!mySendArgs.isEmpty()) {
-                    final Object[] args = mySendArgs.remove(0);
-                    if (args[0] instanceof Insert) {
-                        addInsert((Insert) args[0], args);
-                    }
-                    else if (collection.isBatchUpdates()
-                            && (args[0] instanceof Update)) {
-                        addUpdate((Update) args[0], args);
-                    }
-                    else if (collection.isBatchDeletes()
-                            && (args[0] instanceof Delete)) {
-                        addDelete((Delete) args[0], args);
-                    }
-                    else {
-                        closeBatch();
-                        myResults.add(args);
+                        if (collection.getMode() == BatchedWriteMode.SERIALIZE_AND_STOP) {
+                            closeBatch();
+                        }
                     }
 
-                    if (collection.getMode() == BatchedWriteMode.SERIALIZE_AND_STOP) {
-                        closeBatch();
-                    }
+                    closeBatch();
+                }
+                finally {
+                    // Remove the processed sendArgs or they will get notified
+                    // of a cancel.
+                    sendArgs.subList(0, processed).clear();
                 }
-
-                closeBatch();
             }
             else {
-                myResults = new ArrayList<Object>(mySendArgs.size());
-                myResults.addAll(mySendArgs);
+                myResults = new ArrayList<Object>(sendArgs.size());
+                myResults.addAll(sendArgs);
 
                 // Clear the sendArgs or they will get notified of a cancel.
-                mySendArgs.clear();
+                sendArgs.clear();
             }
 
             return myResults;
         }
 
+        /**
+         * Returns the number of write operations for the captured
+         * {@link Client#send} call. Each document of an insert is an
+         * operation.
+         *
+         * @param args
+         *            The arguments for the {@link Client#send} call.
+         * @return The number of write operations.
+         */
+        private int operations(final Object[] args) {
+            if (args[0] instanceof Insert) {
+                return Math.max(1, ((Insert) args[0]).getDocuments().size());
+            }
+            return 1;
+        }
+
         /**
          * Updates the durability for the batch. If the durability changes
          * mid-batch then we force a break in the batch.
@@ -546,4 +867,62 @@ public class BatchedAsyncMongoCollectionImpl
             } // else Durability is none or not applicable.
         }
     }
+
+    /**
+     * DeadlineFlusher provides the loop for the thread flushing the batch once
+     * the oldest pending operation has waited the maximum flush delay.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private final class DeadlineFlusher
+            implements Runnable {
+
+        /**
+         * Creates a new DeadlineFlusher.
+         */
+        public DeadlineFlusher() {
+            super();
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to flush the batch on a deadline until the flusher is
+         * stopped.
+         * </p>
+         */
+        @Override
+        public void run() {
+            final Thread me = Thread.currentThread();
+            long waitNanos = 0;
+            while (true) {
+                synchronized (myFlusherLock) {
+                    try {
+                        if (0 < waitNanos) {
+                            TimeUnit.NANOSECONDS.timedWait(myFlusherLock,
+                                    waitNanos);
+                        }
+                    }
+                    catch (final InterruptedException ie) {
+                        // Check if stopped.
+                        ie.hashCode(); // PMD - Shhhh.
+                    }
+                    if (myFlusher != me) {
+                        return;
+                    }
+                }
+
+                final long delay = myMaxFlushDelayNanos;
+                try {
+                    waitNanos = handler().flushIfDue(
+                            BatchedAsyncMongoCollectionImpl.this, delay);
+                }
+                catch (final RuntimeException error) {
+                    LOG.warn(error, "Failed to flush the batch for {}.{}.",
+                            getDatabaseName(), getName());
+                    waitNanos = delay;
+                }
+            }
+        }
+    }
 }
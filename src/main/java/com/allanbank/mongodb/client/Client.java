@@ -20,6 +20,7 @@
 package com.allanbank.mongodb.client;
 
 import com.allanbank.mongodb.Durability;
+import com.allanbank.mongodb.ListenableFuture;
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoCursorControl;
 import com.allanbank.mongodb.MongoDbException;
@@ -143,4 +144,15 @@ public interface Client {
      */
     public void send(Message message, ReplyCallback replyCallback)
             throws MongoDbException;
+
+    /**
+     * Opens the {@link MongoClientConfiguration#getMinConnectionCount()
+     * minimum number of connections}, including the handshake and
+     * authentication, so that later requests do not pay the cost of opening
+     * a connection.
+     *
+     * @return The future that completes with the number of open connections
+     *         once the warm-up has finished.
+     */
+    public ListenableFuture<Integer> warmUp();
 }
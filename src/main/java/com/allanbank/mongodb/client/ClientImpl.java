@@ -30,9 +30,13 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.allanbank.mongodb.Durability;
+import com.allanbank.mongodb.ListenableFuture;
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoCursorControl;
 import com.allanbank.mongodb.MongoDbException;
@@ -72,6 +76,12 @@ public class ClientImpl
     /** The logger for the {@link ClientImpl}. */
     protected static final Log LOG = LogFactory.getLog(ClientImpl.class);
 
+    /**
+     * The maximum number of threads used to open connections for a
+     * {@link #warmUp() warm-up}.
+     */
+    public static final int MAX_WARM_UP_THREADS = 4;
+
     /**
      * Resolves the bootstrap connection factory to use.
      *
@@ -122,9 +132,15 @@ public class ClientImpl
     /** The sequence of the connection that was last used. */
     private final AtomicLong myNextConnectionSequence = new AtomicLong(0);
 
+    /** Tracks if a background thread is currently opening a connection. */
+    private final AtomicBoolean myOpeningConnection = new AtomicBoolean(false);
+
     /** The listener for changes to the state of connections or configuration. */
     private final PropertyChangeListener myPropertyListener;
 
+    /** The future for the most recent warm-up of the connections. */
+    private final AtomicReference<FutureCallback<Integer>> myWarmUp;
+
     /**
      * Create a new ClientImpl.
      *
@@ -150,6 +166,7 @@ public class ClientImpl
         myConnections = new CopyOnWriteArrayList<Connection>();
         myConnectionsToClose = new LinkedBlockingQueue<Connection>();
         myPropertyListener = new ChangeListener();
+        myWarmUp = new AtomicReference<FutureCallback<Integer>>();
         myActiveReconnects = 0;
 
         myMetrics = MetricsRegistrar.createRegistrar(
@@ -344,6 +361,60 @@ public class ClientImpl
                         + cursorDoc);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to open connections, on up to {@link #MAX_WARM_UP_THREADS}
+     * background threads, until there are at least
+     * {@link MongoClientConfiguration#getMinConnectionCount() minConnectionCount}
+     * (but no fewer than one and no more than
+     * {@link MongoClientConfiguration#getMaxConnectionCount()
+     * maxConnectionCount}) connections. Each connection completes its
+     * handshake and authentication before it is added to the set of
+     * connections.
+     * </p>
+     * <p>
+     * If a warm-up is already in progress then its future is returned.
+     * </p>
+     */
+    @Override
+    public ListenableFuture<Integer> warmUp() {
+        final FutureCallback<Integer> existing = myWarmUp.get();
+        if ((existing != null) && !existing.isDone()) {
+            return existing;
+        }
+
+        final FutureCallback<Integer> future = new FutureCallback<Integer>();
+        if (!myWarmUp.compareAndSet(existing, future)) {
+            // Lost the race with another warm-up.
+            return myWarmUp.get();
+        }
+
+        final int target = Math.min(
+                Math.max(1, myConfig.getMaxConnectionCount()),
+                Math.max(1, myConfig.getMinConnectionCount()));
+        final int needed = target - myConnections.size();
+        if (needed <= 0) {
+            future.callback(Integer.valueOf(myConnections.size()));
+        }
+        else {
+            LOG.debug("Warming up {} connections.", needed);
+
+            final int threads = Math.min(needed, MAX_WARM_UP_THREADS);
+            final ConnectionWarmUp warmUp = new ConnectionWarmUp(needed,
+                    threads, future);
+            for (int i = 0; i < threads; ++i) {
+                final Thread opener = myConfig.getThreadFactory().newThread(
+                        warmUp);
+                opener.setDaemon(true);
+                opener.setName("MongoDB Connection Warm-Up " + i);
+                opener.start();
+            }
+        }
+
+        return future;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -497,6 +568,13 @@ public class ClientImpl
      * use the previous or next connection based on which has the fewest pending
      * connections.</li>
      * <ol>
+     * <p>
+     * If {@link MongoClientConfiguration#isAsyncConnectionGrowthEnabled()
+     * asynchronous connection growth} is enabled then the new connection is
+     * instead created by a background thread and the most idle connection is
+     * used. The connection is only created on the calling thread if there is
+     * no other connection available.
+     * </p>
      *
      * @param message1
      *            The first message that will be sent. The connection return
@@ -519,6 +597,10 @@ public class ClientImpl
             throws MongoDbException {
         // Locate a connection to use.
         Connection conn = findIdleConnection();
+        if ((conn == null) && myConfig.isAsyncConnectionGrowthEnabled()) {
+            tryStartConnectionOpener();
+            conn = findMostIdleConnection();
+        }
         if (conn == null) {
             conn = tryCreateConnection();
             if (conn == null) {
@@ -532,6 +614,35 @@ public class ClientImpl
         return conn;
     }
 
+    /**
+     * Adds a connection opened in the background to the set of connections.
+     * If the client has been closed or already has the maximum number of
+     * connections then the connection is shutdown.
+     *
+     * @param conn
+     *            The connection to add.
+     * @return True if the connection was added.
+     */
+    private boolean addConnection(final Connection conn) {
+        synchronized (myConnectionFactory) {
+            final int limit = Math.max(1, myConfig.getMaxConnectionCount());
+            if (!isClosed() && (myConnections.size() < limit)) {
+                myConnections.add(conn);
+
+                // Add a listener for if the connection is closed.
+                conn.addPropertyChangeListener(myPropertyListener);
+
+                return true;
+            }
+        }
+
+        // Raced with a close or another connection.
+        LOG.debug("Discarding connection no longer needed: {}", conn);
+        conn.shutdown(true);
+
+        return false;
+    }
+
     /**
      * Silently closes the connection.
      *
@@ -667,6 +778,31 @@ public class ClientImpl
         return null;
     }
 
+    /**
+     * Starts a background thread to open a new connection if there are fewer
+     * than the maximum number of connections and a connection is not already
+     * being opened. The first connection is always opened by the sending
+     * thread via {@link #tryCreateConnection()}.
+     */
+    private void tryStartConnectionOpener() {
+        final int limit = Math.max(1, myConfig.getMaxConnectionCount());
+        final int size = myConnections.size();
+        if ((0 < size) && (size < limit)
+                && myOpeningConnection.compareAndSet(false, true)) {
+            try {
+                final Thread opener = myConfig.getThreadFactory().newThread(
+                        new ConnectionOpener());
+                opener.setDaemon(true);
+                opener.setName("MongoDB Connection Opener");
+                opener.start();
+            }
+            catch (final RuntimeException error) {
+                myOpeningConnection.set(false);
+                LOG.warn(error, "Could not start the connection opener.");
+            }
+        }
+    }
+
     /**
      * Checks if there is an active reconnect attempt on-going. If so waits for
      * it to finish (with a timeout) and then searches for a connection again.
@@ -714,6 +850,130 @@ public class ClientImpl
         return conn;
     }
 
+    /**
+     * ConnectionOpener provides the background task to open a new connection
+     * when {@link MongoClientConfiguration#isAsyncConnectionGrowthEnabled()
+     * asynchronous connection growth} is enabled. The connection is only added
+     * to the set of connections once it has been fully established.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    protected class ConnectionOpener
+            implements Runnable {
+
+        /**
+         * Creates a new ConnectionOpener.
+         */
+        public ConnectionOpener() {
+            super();
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to open the connection and add it to the set of
+         * connections.
+         * </p>
+         */
+        @Override
+        public void run() {
+            try {
+                addConnection(myConnectionFactory.connect());
+            }
+            catch (final IOException ioe) {
+                LOG.warn(ioe, "Could not create a connection.");
+            }
+            catch (final MongoDbException error) {
+                LOG.warn(error, "Could not create a connection.");
+            }
+            finally {
+                myOpeningConnection.set(false);
+            }
+        }
+    }
+
+    /**
+     * ConnectionWarmUp provides the background task to open the connections
+     * for a {@link ClientImpl#warmUp() warm-up}. The same ConnectionWarmUp is
+     * run by each of the warm-up threads. Each thread opens connections until
+     * all of them have been attempted and the last thread to finish completes
+     * the warm-up's future.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    protected class ConnectionWarmUp
+            implements Runnable {
+
+        /** The future to complete once all of the connections are opened. */
+        private final FutureCallback<Integer> myFuture;
+
+        /** The last error opening a connection. */
+        private volatile Throwable myLastError;
+
+        /** The number of warm-up threads still running. */
+        private final AtomicInteger myRunning;
+
+        /** The number of connections still to be opened. */
+        private final AtomicInteger myToOpen;
+
+        /**
+         * Creates a new ConnectionWarmUp.
+         *
+         * @param count
+         *            The number of connections to open.
+         * @param threads
+         *            The number of threads running the warm-up.
+         * @param future
+         *            The future to complete once all of the connections are
+         *            opened.
+         */
+        public ConnectionWarmUp(final int count, final int threads,
+                final FutureCallback<Integer> future) {
+            myToOpen = new AtomicInteger(count);
+            myRunning = new AtomicInteger(threads);
+            myFuture = future;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to open connections until all have been attempted and
+         * complete the future if this is the last thread to finish.
+         * </p>
+         */
+        @Override
+        public void run() {
+            try {
+                while (0 < myToOpen.getAndDecrement()) {
+                    try {
+                        addConnection(myConnectionFactory.connect());
+                    }
+                    catch (final IOException ioe) {
+                        LOG.warn(ioe, "Could not create a connection.");
+                        myLastError = ioe;
+                    }
+                    catch (final MongoDbException error) {
+                        LOG.warn(error, "Could not create a connection.");
+                        myLastError = error;
+                    }
+                }
+            }
+            finally {
+                if (myRunning.decrementAndGet() == 0) {
+                    final int count = myConnections.size();
+                    if ((count == 0) && (myLastError != null)) {
+                        myFuture.exception(new CannotConnectException(
+                                "Could not create a connection to the server.",
+                                myLastError));
+                    }
+                    else {
+                        myFuture.callback(Integer.valueOf(count));
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * ChangeListener provides the call back for events occurring on a
      * connection or with the configuration.
@@ -27,6 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import com.allanbank.mongodb.LambdaCallback;
+import com.allanbank.mongodb.ListenableFuture;
 import com.allanbank.mongodb.MongoClient;
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoCursorControl;
@@ -256,4 +257,25 @@ public class MongoClientImpl
             throws IllegalArgumentException {
         return myClient.restart(results, cursorDocument);
     }
+
+    /**
+     * Opens connections to the MongoDB servers until the client has the
+     * {@link MongoClientConfiguration#getMinConnectionCount() minimum number
+     * of connections} (at least one). Each connection completes its handshake
+     * and authentication before it is used for requests.
+     * <p>
+     * This method is not part of the {@link MongoClient} interface. Most
+     * applications should instead enable the
+     * {@link MongoClientConfiguration#setConnectionWarmUpEnabled(boolean)
+     * connectionWarmUpEnabled} configuration and the warm-up is started by
+     * {@link com.allanbank.mongodb.MongoFactory#createClient(MongoClientConfiguration)}.
+     * </p>
+     *
+     * @return The future that completes with the number of open connections
+     *         once the warm-up has finished.
+     * @see Client#warmUp()
+     */
+    public ListenableFuture<Integer> warmUp() {
+        return myClient.warmUp();
+    }
 }
@@ -23,6 +23,7 @@ import static com.allanbank.mongodb.client.IdentityTransform.identity;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ExecutionException;
@@ -49,6 +50,13 @@ import com.allanbank.mongodb.util.log.LogFactory;
 
 /**
  * Iterator over the results of the MongoDB cursor.
+ * <p>
+ * The iterator requests the next batch of documents from the server as soon as
+ * it starts iterating over the current batch. With a {@link #setReadAhead read
+ * ahead} greater than one the iterator keeps requesting batches as each reply
+ * is received, one request at a time, until the configured number of batches
+ * or {@link #setReadAheadByteLimit bytes} are waiting to be iterated over.
+ * </p>
  *
  * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
  *         mutated in incompatible ways between any two releases of the driver.
@@ -57,12 +65,21 @@ import com.allanbank.mongodb.util.log.LogFactory;
 public class MongoIteratorImpl
         implements MongoIterator<Document> {
 
+    /**
+     * The default maximum number of bytes of received batches to hold ahead of
+     * the iteration before requests for more batches are paused.
+     */
+    public static final long DEFAULT_READ_AHEAD_BYTE_LIMIT = 16L * 1024 * 1024;
+
     /** The log for the iterator. */
     private static final Log LOG = LogFactory.getLog(MongoIteratorImpl.class);
 
     /** The size of batches that are requested from the servers. */
     private int myBatchSize = 0;
 
+    /** The number of times the iteration blocked waiting for a batch. */
+    private long myBlockedCount = 0;
+
     /** The client for sending get_more requests to the server. */
     private final Client myClient;
 
@@ -87,6 +104,64 @@ public class MongoIteratorImpl
     /** The {@link Future} that will be updated with the next set of results. */
     private FutureReplyCallback myNextReply;
 
+    /** The number of batches to request ahead of the iteration. */
+    private int myReadAhead = 1;
+
+    /**
+     * The batch size to use for requests sent as replies are received. Guarded
+     * by {@link #myReadAheadReplies}.
+     */
+    private int myReadAheadBatchSize = 0;
+
+    /**
+     * The maximum number of bytes of received batches to hold. Guarded by
+     * {@link #myReadAheadReplies}.
+     */
+    private long myReadAheadByteLimit = DEFAULT_READ_AHEAD_BYTE_LIMIT;
+
+    /**
+     * The number of bytes in the received batches that have not been iterated
+     * over. Guarded by {@link #myReadAheadReplies}.
+     */
+    private long myReadAheadBytes = 0;
+
+    /**
+     * Set to true once the iterator is closed to stop any further requests.
+     * Guarded by {@link #myReadAheadReplies}.
+     */
+    private boolean myReadAheadClosed = false;
+
+    /**
+     * The number of batches requested but not yet iterated over, including
+     * {@link #myNextReply}. Guarded by {@link #myReadAheadReplies}.
+     */
+    private int myReadAheadCount = 0;
+
+    /**
+     * The cursor id from the most recent reply or zero if no more batches
+     * should be requested. Guarded by {@link #myReadAheadReplies}.
+     */
+    private long myReadAheadCursorId = 0;
+
+    /**
+     * The maximum number of batches requested but not yet iterated over.
+     * Guarded by {@link #myReadAheadReplies}.
+     */
+    private int myReadAheadDepth = 1;
+
+    /**
+     * True if there is a request outstanding to the server. Guarded by
+     * {@link #myReadAheadReplies}.
+     */
+    private boolean myReadAheadInFlight = false;
+
+    /**
+     * The replies requested after {@link #myNextReply}, in the order they were
+     * requested. Also serves as the lock for the read ahead state shared with
+     * the threads receiving the replies.
+     */
+    private final LinkedList<ReadAheadCallback> myReadAheadReplies = new LinkedList<ReadAheadCallback>();
+
     /** The read preference to subsequent requests. */
     private final ReadPreference myReadPerference;
 
@@ -97,7 +172,7 @@ public class MongoIteratorImpl
      * Flag to shutdown this iterator gracefully without closing the cursor on
      * the server.
      */
-    private boolean myShutdown = false;
+    private volatile boolean myShutdown = false;
 
     /**
      * Create a new MongoDBInterator.
@@ -233,23 +308,36 @@ public class MongoIteratorImpl
      * Overridden to close the iterator and send a {@link KillCursors} for the
      * open cursor, if any.
      * </p>
+     * <p>
+     * If a request for a batch is still outstanding then the
+     * {@link KillCursors} is sent, using the reply's cursor id, once the reply
+     * is received. The server may not kill a cursor still in use by a request
+     * and the reply may have exhausted the cursor.
+     * </p>
      */
     @Override
     public void close() {
         long cursorId = myCursorId;
         final Future<Reply> replyFuture = myNextReply;
+        final boolean inFlight;
 
         myCurrentIterator = null;
         myNextReply = null;
         myCursorId = 0;
+        synchronized (myReadAheadReplies) {
+            myReadAheadClosed = true;
+            inFlight = myReadAheadInFlight;
+            myReadAheadReplies.clear();
+        }
+
+        if (inFlight) {
+            // The ReadAheadCallback kills the cursor.
+            return;
+        }
 
         cursorId = retreiveCursorIdFromPendingRequest(cursorId, replyFuture);
 
-        if ((cursorId != 0) && !myShutdown) {
-            // The user asked us to leave the cursor be.
-            myClient.send(new KillCursors(new long[] { cursorId },
-                    myReadPerference), null);
-        }
+        killCursor(cursorId);
     }
 
     /**
@@ -264,6 +352,43 @@ public class MongoIteratorImpl
         return myBatchSize;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the number of times the iteration found the next
+     * batch had not yet been received.
+     * </p>
+     */
+    @Override
+    public long getBlockedCount() {
+        return myBlockedCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the number of batches to request ahead of the
+     * iteration.
+     * </p>
+     */
+    @Override
+    public int getReadAhead() {
+        return myReadAhead;
+    }
+
+    /**
+     * Returns the maximum number of bytes of received batches to hold ahead of
+     * the iteration before requests for more batches are paused.
+     *
+     * @return The maximum number of bytes of received batches to hold ahead of
+     *         the iteration.
+     */
+    public long getReadAheadByteLimit() {
+        synchronized (myReadAheadReplies) {
+            return myReadAheadByteLimit;
+        }
+    }
+
     /**
      * Returns the iterator's read preference which points to the original
      * server performing the query.
@@ -366,6 +491,34 @@ public class MongoIteratorImpl
         myBatchSize = batchSize;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to set the number of batches to request ahead of the
+     * iteration. The new value is used once the next batch is loaded. A read
+     * ahead is only used for cursors without a limit.
+     * </p>
+     */
+    @Override
+    public void setReadAhead(final int batches) {
+        myReadAhead = Math.max(1, batches);
+    }
+
+    /**
+     * Sets the maximum number of bytes of received batches to hold ahead of
+     * the iteration before requests for more batches are paused. At least one
+     * batch is always requested regardless of the limit.
+     *
+     * @param limit
+     *            The maximum number of bytes of received batches to hold ahead
+     *            of the iteration.
+     */
+    public void setReadAheadByteLimit(final long limit) {
+        synchronized (myReadAheadReplies) {
+            myReadAheadByteLimit = limit;
+        }
+    }
+
     /**
      * Stops the iterator after consuming any received and/or requested batches.
      * <p>
@@ -506,7 +659,11 @@ public class MongoIteratorImpl
         List<Document> docs;
         try {
             // Pull the reply from the future. Hopefully it is already there!
-            final Reply reply = myNextReply.get();
+            final FutureReplyCallback replyFuture = myNextReply;
+            if (!replyFuture.isDone()) {
+                myBlockedCount += 1;
+            }
+            final Reply reply = replyFuture.get();
             if (reply.isQueryFailed()) {
                 ReplyErrorHandler handler = new ReplyErrorHandler();
 
@@ -541,25 +698,25 @@ public class MongoIteratorImpl
                 myLimit -= docs.size();
             }
 
-            // Pre-fetch the next set of documents while we iterate over the
-            // documents we just got.
-            if ((myCursorId != 0) && !myShutdown) {
+            // Move to any batch already requested. Otherwise pre-fetch the
+            // next set of documents while we iterate over the documents we
+            // just got.
+            myNextReply = nextReadAhead(replyFuture);
+            if (myNextReply != null) {
+                requestAhead();
+            }
+            else if ((myCursorId != 0) && !myShutdown) {
                 sendRequest();
-
-                // Include the (myNextReply != null) to catch failures on the
-                // server.
-                while (docs.isEmpty() && blockForTailable
-                        && (myNextReply != null)) {
-                    // Tailable - Wait for a reply with documents.
-                    docs = loadDocuments(false);
-                }
             }
-            else {
-                // Exhausted the cursor or are shutting down - no more results.
-                myNextReply = null;
-
-                // Don't need to kill the cursor since we exhausted it or are
-                // shutting down.
+            // else - Exhausted the cursor or are shutting down - no more
+            // results. Don't need to kill the cursor since we exhausted it
+            // or are shutting down.
+
+            // Include the (myNextReply != null) to catch failures on the
+            // server.
+            while (docs.isEmpty() && blockForTailable && (myNextReply != null)) {
+                // Tailable - Wait for a reply with documents.
+                docs = loadDocuments(false);
             }
 
         }
@@ -614,7 +771,206 @@ public class MongoIteratorImpl
         final GetMore getMore = new GetMore(myDatabaseName, myCollectionName,
                 myCursorId, nextBatchSize(), myReadPerference);
 
-        myNextReply = new FutureReplyCallback();
-        myClient.send(getMore, myNextReply);
+        final ReadAheadCallback callback = new ReadAheadCallback();
+        synchronized (myReadAheadReplies) {
+            myReadAheadCount += 1;
+            myReadAheadInFlight = true;
+        }
+
+        myNextReply = callback;
+        send(getMore, callback);
+    }
+
+    /**
+     * Sends a {@link KillCursors} for the cursor unless the cursor is
+     * exhausted or the user asked us to leave the cursor be.
+     *
+     * @param cursorId
+     *            The id of the cursor to kill.
+     * @throws MongoDbException
+     *             On a failure to send the request to kill the cursor.
+     */
+    private void killCursor(final long cursorId) throws MongoDbException {
+        if ((cursorId != 0) && !myShutdown) {
+            myClient.send(new KillCursors(new long[] { cursorId },
+                    myReadPerference), null);
+        }
+    }
+
+    /**
+     * Updates the read ahead state for the consumed reply and returns the next
+     * batch already requested, if any.
+     *
+     * @param consumed
+     *            The reply that has just been loaded for iteration.
+     * @return The next batch already requested or <code>null</code> if there
+     *         is no pending request.
+     */
+    private FutureReplyCallback nextReadAhead(
+            final FutureReplyCallback consumed) {
+        synchronized (myReadAheadReplies) {
+            if (consumed instanceof ReadAheadCallback) {
+                myReadAheadCount -= 1;
+                myReadAheadBytes -= ((ReadAheadCallback) consumed).mySize;
+            }
+            if ((myReadAheadCount == 0) || (myCursorId == 0)) {
+                // Limit may have killed the cursor.
+                myReadAheadCursorId = myCursorId;
+            }
+            myReadAheadDepth = (0 < myLimit) ? 1 : myReadAhead;
+            myReadAheadBatchSize = nextBatchSize();
+
+            return myReadAheadReplies.poll();
+        }
+    }
+
+    /**
+     * Sends a request for the next batch if one is not already outstanding and
+     * there is room for another batch ahead of the iteration.
+     *
+     * @throws MongoDbException
+     *             On a failure to send the request for more document.
+     */
+    private void requestAhead() throws MongoDbException {
+        final ReadAheadCallback callback;
+        final GetMore getMore;
+        synchronized (myReadAheadReplies) {
+            if (myReadAheadClosed || myShutdown || myReadAheadInFlight
+                    || (myReadAheadCursorId == 0)
+                    || (myReadAheadDepth <= myReadAheadCount)
+                    || (myReadAheadByteLimit <= myReadAheadBytes)) {
+                return;
+            }
+
+            getMore = new GetMore(myDatabaseName, myCollectionName,
+                    myReadAheadCursorId, myReadAheadBatchSize,
+                    myReadPerference);
+            callback = new ReadAheadCallback();
+
+            myReadAheadReplies.add(callback);
+            myReadAheadCount += 1;
+            myReadAheadInFlight = true;
+        }
+
+        send(getMore, callback);
+    }
+
+    /**
+     * Sends the request and makes sure the callback is notified if the send
+     * fails so the iteration does not wait forever.
+     *
+     * @param getMore
+     *            The request to send.
+     * @param callback
+     *            The callback for the reply.
+     * @throws MongoDbException
+     *             On a failure to send the request for more document.
+     */
+    private void send(final GetMore getMore, final ReadAheadCallback callback)
+            throws MongoDbException {
+        try {
+            myClient.send(getMore, callback);
+        }
+        catch (final MongoDbException error) {
+            callback.exception(error);
+            throw error;
+        }
+    }
+
+    /**
+     * ReadAheadCallback provides the callback for a requested batch that
+     * tracks the size of the batch and requests the next batch when there is
+     * room to read further ahead.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private final class ReadAheadCallback
+            extends FutureReplyCallback {
+
+        /**
+         * The size of the reply. Guarded by
+         * {@link MongoIteratorImpl#myReadAheadReplies}.
+         */
+        protected long mySize = 0;
+
+        /**
+         * Creates a new ReadAheadCallback.
+         */
+        public ReadAheadCallback() {
+            super();
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to record the size and cursor id of the reply and then
+         * request the next batch if there is room. If the iterator was closed
+         * while the request was outstanding then the cursor is killed
+         * instead.
+         * </p>
+         */
+        @Override
+        public void callback(final Reply result) {
+            final long killCursorId;
+            synchronized (myReadAheadReplies) {
+                mySize = result.size();
+                myReadAheadBytes += mySize;
+                myReadAheadInFlight = false;
+                if (result.isCursorNotFound() || result.isQueryFailed()) {
+                    myReadAheadCursorId = 0;
+                }
+                else {
+                    myReadAheadCursorId = result.getCursorId();
+                }
+                killCursorId = myReadAheadClosed ? myReadAheadCursorId : 0;
+            }
+
+            super.callback(result);
+
+            try {
+                if (killCursorId != 0) {
+                    killCursor(killCursorId);
+                }
+                else {
+                    requestAhead();
+                }
+            }
+            catch (final MongoDbException error) {
+                // The iteration will see the error on the failed batch.
+                LOG.debug(error, "Failed to request more documents: {}",
+                        error.getMessage());
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to stop requesting batches. If the iterator was closed
+         * while the request was outstanding then the last known cursor is
+         * killed.
+         * </p>
+         */
+        @Override
+        public void exception(final Throwable thrown) {
+            final long killCursorId;
+            synchronized (myReadAheadReplies) {
+                myReadAheadInFlight = false;
+                killCursorId = myReadAheadClosed ? myReadAheadCursorId : 0;
+                myReadAheadCursorId = 0;
+            }
+
+            super.exception(thrown);
+
+            try {
+                killCursor(killCursorId);
+            }
+            catch (final MongoDbException error) {
+                LOG.debug(error, "Failed to kill the cursor: {}",
+                        error.getMessage());
+            }
+        }
     }
 }
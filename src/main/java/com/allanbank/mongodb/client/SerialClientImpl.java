@@ -22,6 +22,7 @@ package com.allanbank.mongodb.client;
 import java.io.Closeable;
 
 import com.allanbank.mongodb.Durability;
+import com.allanbank.mongodb.ListenableFuture;
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoCursorControl;
 import com.allanbank.mongodb.MongoDbException;
@@ -172,6 +173,19 @@ public class SerialClientImpl
         return myDelegate.restart(results, cursorDocument);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to forward to the delegate client.
+     * </p>
+     *
+     * @see Client#warmUp()
+     */
+    @Override
+    public ListenableFuture<Integer> warmUp() {
+        return myDelegate.warmUp();
+    }
+
     /**
      * Tries to reuse the last connection used. If the connection it closed or
      * does not exist then the request is delegated to the {@link ClientImpl}
@@ -86,6 +86,29 @@ public class SimpleMongoIteratorImpl<T>
         return -1;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero as all of the documents are already present.
+     * </p>
+     */
+    @Override
+    public long getBlockedCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero as this iterator only supports single batch
+     * results.
+     * </p>
+     */
+    @Override
+    public int getReadAhead() {
+        return 0;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -147,6 +170,18 @@ public class SimpleMongoIteratorImpl<T>
         // Nothing.
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to do nothing as this iterator only supports single batch
+     * results.
+     * </p>
+     */
+    @Override
+    public void setReadAhead(final int batches) {
+        // Nothing.
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -59,6 +59,9 @@ public final class CursorCallback
     /** The original message to start the cursor. */
     private final CursorableMessage myMessage;
 
+    /** The number of batches for the iterator to request ahead. */
+    private volatile int myReadAhead = 1;
+
     /** The reply to the query. */
     private volatile Reply myReply;
 
@@ -131,6 +134,17 @@ public final class CursorCallback
         return myAddress;
     }
 
+    /**
+     * Returns the number of batches for the iterator to request ahead of the
+     * iteration.
+     *
+     * @return The number of batches for the iterator to request ahead of the
+     *         iteration.
+     */
+    public int getReadAhead() {
+        return myReadAhead;
+    }
+
     /**
      * Sets the value of the server the original request was sent to.
      *
@@ -143,6 +157,18 @@ public final class CursorCallback
         trigger();
     }
 
+    /**
+     * Sets the number of batches for the iterator to request ahead of the
+     * iteration.
+     *
+     * @param batches
+     *            The number of batches for the iterator to request ahead of
+     *            the iteration.
+     */
+    public void setReadAhead(final int batches) {
+        myReadAhead = batches;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -173,8 +199,11 @@ public final class CursorCallback
         if (isCommand()) {
             result = CommandCursorTranslator.translate(reply);
         }
-        return new MongoIteratorImpl(myMessage, myClient, myAddress, result,
-                myTransformer);
+        final MongoIteratorImpl iter = new MongoIteratorImpl(myMessage,
+                myClient, myAddress, result, myTransformer);
+        iter.setReadAhead(myReadAhead);
+
+        return iter;
     }
 
     /**
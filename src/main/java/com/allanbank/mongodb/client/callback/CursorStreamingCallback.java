@@ -23,6 +23,7 @@ package com.allanbank.mongodb.client.callback;
 import static com.allanbank.mongodb.client.IdentityTransform.identity;
 
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.allanbank.mongodb.MongoCursorControl;
 import com.allanbank.mongodb.MongoDbException;
@@ -46,6 +47,11 @@ import com.allanbank.mongodb.error.ReplyException;
 /**
  * Callback to convert a {@link CursorableMessage} {@link Reply} into a series
  * of callback for each document received.
+ * <p>
+ * When streaming replies are enabled the documents are passed to the
+ * application's callback as each is decoded from the reply via the
+ * {@link StreamingReplyCallback} interface.
+ * </p>
  *
  * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
  *         mutated in incompatible ways between any two releases of the driver.
@@ -53,7 +59,7 @@ import com.allanbank.mongodb.error.ReplyException;
  */
 public final class CursorStreamingCallback
         extends AbstractValidatingReplyCallback
-        implements MongoCursorControl, AddressAware {
+        implements MongoCursorControl, AddressAware, StreamingReplyCallback {
 
     /** The server the original request was sent to. */
     private volatile String myAddress;
@@ -90,6 +96,14 @@ public final class CursorStreamingCallback
      */
     private int myLimit = 0;
 
+    /**
+     * The lock held while pushing documents to the application's callback.
+     * The lock is held for the entire time a reply is being streamed so the
+     * documents from the next batch cannot be pushed until the current batch
+     * is complete.
+     */
+    private final ReentrantLock myLock = new ReentrantLock();
+
     /** The original message that started the cursor, if known. */
     private final CursorableMessage myMessage;
 
@@ -102,6 +116,13 @@ public final class CursorStreamingCallback
      */
     private boolean myShutdown = false;
 
+    /**
+     * The number of documents from the reply being streamed that can still be
+     * pushed to the application's callback or -1 if the remaining documents
+     * are being discarded.
+     */
+    private int myStreamRemaining = 0;
+
     /** The transformer for each document returned. */
     private final Transform<Document, Document> myTransformer;
 
@@ -247,10 +268,14 @@ public final class CursorStreamingCallback
      */
     @Override
     public void close() {
-        synchronized (myForwardCallback) {
+        myLock.lock();
+        try {
             myClosed = true;
             sendKill();
         }
+        finally {
+            myLock.unlock();
+        }
     }
 
     /**
@@ -262,15 +287,43 @@ public final class CursorStreamingCallback
     @Override
     public void exception(final Throwable thrown) {
         try {
-            synchronized (myForwardCallback) {
+            myLock.lock();
+            try {
                 myForwardCallback.exception(thrown);
             }
+            finally {
+                myLock.unlock();
+            }
         }
         finally {
             close();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to signal the end of the results if the cursor is exhausted
+     * and release the lock acquired in {@link #startStreaming(long, int)}.
+     * </p>
+     */
+    @Override
+    public void finishStreaming() {
+        try {
+            if ((0 <= myStreamRemaining) && (myCursorId == 0)) {
+                // Signal the end of the results.
+                myForwardCallback.done();
+            }
+        }
+        catch (final RuntimeException re) {
+            exception(re);
+            close();
+        }
+        finally {
+            myLock.unlock();
+        }
+    }
+
     /**
      * Returns the server the original request was sent to.
      *
@@ -385,6 +438,57 @@ public final class CursorStreamingCallback
         myBatchSize = batchSize;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to accept the documents from all but the first, command
+     * formatted, reply. Replies with a single document are not streamed so
+     * that they can be checked for an error document. Acquires the lock
+     * released by {@link #finishStreaming()}.
+     * </p>
+     */
+    @Override
+    public boolean startStreaming(final long cursorId, final int documentCount) {
+        if (isCommand() || (myAddress == null) || (documentCount <= 1)) {
+            return false;
+        }
+
+        myLock.lock();
+        try {
+            if (myClosed) {
+                myStreamRemaining = -1;
+                myCursorId = cursorId;
+                sendKill();
+            }
+            else {
+                myCursorId = cursorId;
+
+                // Adjust the limit for the documents in the reply before the
+                // fetch so the nextBatchSize() has the updated limit.
+                myStreamRemaining = documentCount;
+                if (0 < myLimit) {
+                    if (myLimit <= documentCount) {
+                        myStreamRemaining = myLimit;
+                        close();
+                    }
+                    myLimit -= myStreamRemaining;
+                }
+
+                // Pre-fetch the next set of documents while we stream the
+                // documents in this reply.
+                if ((myCursorId != 0) && !myShutdown) {
+                    sendRequest();
+                }
+            }
+        }
+        catch (final RuntimeException re) {
+            myStreamRemaining = -1;
+            exception(re);
+            close();
+        }
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -396,6 +500,27 @@ public final class CursorStreamingCallback
         myShutdown = true;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to push the document to the application's callback.
+     * </p>
+     */
+    @Override
+    public void streamed(final Document document) {
+        if (0 < myStreamRemaining) {
+            myStreamRemaining -= 1;
+            try {
+                myForwardCallback.callback(myTransformer.transform(document));
+            }
+            catch (final RuntimeException re) {
+                myStreamRemaining = -1;
+                exception(re);
+                close();
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -535,9 +660,10 @@ public final class CursorStreamingCallback
      *            callback.
      */
     private void push(final Reply reply) {
-        // Request the load in the synchronized block so there is only 1
+        // Request the load while holding the lock so there is only 1
         // outstanding request.
-        synchronized (myForwardCallback) {
+        myLock.lock();
+        try {
             if (myClosed) {
                 myCursorId = reply.getCursorId();
                 sendKill();
@@ -559,5 +685,8 @@ public final class CursorStreamingCallback
                 }
             }
         }
+        finally {
+            myLock.unlock();
+        }
     }
 }
\ No newline at end of file
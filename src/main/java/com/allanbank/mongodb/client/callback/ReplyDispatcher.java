@@ -0,0 +1,508 @@
+/*
+ * #%L
+ * ReplyDispatcher.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.callback;
+
+import java.io.Closeable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.allanbank.mongodb.client.message.Reply;
+import com.allanbank.mongodb.util.log.Log;
+import com.allanbank.mongodb.util.log.LogFactory;
+
+/**
+ * ReplyDispatcher provides a fixed set of dispatch threads that run the
+ * callbacks for replies off of the connection's receive threads.
+ * <p>
+ * Each dispatch thread consumes from its own bounded queue (a stripe).
+ * Replies are assigned to a stripe based on the identity of the callback. All
+ * of the replies for a cursor or stream use the same callback instance so
+ * they are always delivered, in order, by the same thread. The queues are
+ * drained in batches to limit the hand-offs between the receive and dispatch
+ * threads and the queue entries are held in pre-allocated arrays so no object
+ * is created per reply.
+ * </p>
+ * <p>
+ * The receive thread never waits for a dispatch thread. When a stripe's queue
+ * is full the reply is rejected and the receive thread runs the callback
+ * itself. That pushes back on the reads from the socket without parking the
+ * receive thread, or a shared selector thread, and avoids a deadlock with a
+ * callback that is waiting on a reply from the receive thread. A callback
+ * only has a single reply outstanding at a time so delivering a rejected
+ * reply on the receive thread does not reorder the replies for the callback.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class ReplyDispatcher
+        implements Closeable {
+
+    /** The logger for the dispatcher. */
+    private static final Log LOG = LogFactory.getLog(ReplyDispatcher.class);
+
+    /** The stripes for the dispatcher. */
+    private final Stripe[] myStripes;
+
+    /** The threads draining the stripes. */
+    private final Thread[] myThreads;
+
+    /**
+     * Creates a new ReplyDispatcher.
+     *
+     * @param threadCount
+     *            The number of dispatch threads (and stripes).
+     * @param queueSize
+     *            The maximum number of replies queued for each stripe.
+     * @param factory
+     *            The factory for the dispatch threads.
+     */
+    public ReplyDispatcher(final int threadCount, final int queueSize,
+            final ThreadFactory factory) {
+        final int count = Math.max(1, threadCount);
+        final int size = Math.max(1, queueSize);
+
+        myStripes = new Stripe[count];
+        myThreads = new Thread[count];
+        for (int i = 0; i < count; ++i) {
+            myStripes[i] = new Stripe(size);
+
+            final Thread thread = factory.newThread(myStripes[i]);
+            thread.setName("MongoDB Reply Dispatcher " + i);
+            thread.setDaemon(true);
+            myThreads[i] = thread;
+        }
+        for (final Thread thread : myThreads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to stop the dispatch threads. Replies already queued are
+     * delivered before the threads exit.
+     * </p>
+     */
+    @Override
+    public void close() {
+        for (final Stripe stripe : myStripes) {
+            stripe.stop();
+        }
+
+        LOG.debug("Reply dispatcher closed: {} replies dispatched with an "
+                + "average latency of {} ns and a maximum queue depth of {}.",
+                getDispatchedCount(),
+                getAverageDispatchLatency(TimeUnit.NANOSECONDS),
+                getMaxQueueDepth());
+    }
+
+    /**
+     * Queues the error for delivery to the callback.
+     *
+     * @param replyCallback
+     *            The callback for the reply to the message.
+     * @param exception
+     *            The thrown exception.
+     * @return True if the error was queued. False if the dispatcher is closed
+     *         or the callback's stripe is full and the caller should deliver
+     *         the error itself.
+     */
+    public boolean dispatch(final ReplyCallback replyCallback,
+            final Throwable exception) {
+        return stripeFor(replyCallback).offer(replyCallback, null, exception);
+    }
+
+    /**
+     * Queues the reply for delivery to the callback.
+     *
+     * @param replyCallback
+     *            The callback for the reply to the message.
+     * @param reply
+     *            The reply.
+     * @return True if the reply was queued. False if the dispatcher is closed
+     *         or the callback's stripe is full and the caller should deliver
+     *         the reply itself.
+     */
+    public boolean dispatch(final ReplyCallback replyCallback, final Reply reply) {
+        return stripeFor(replyCallback).offer(replyCallback, reply, null);
+    }
+
+    /**
+     * Returns the average time replies waited in the queues before the
+     * callback was started.
+     *
+     * @param units
+     *            The units for the latency.
+     * @return The average dispatch latency.
+     */
+    public double getAverageDispatchLatency(final TimeUnit units) {
+        long count = 0;
+        long total = 0;
+        for (final Stripe stripe : myStripes) {
+            count += stripe.myDispatched;
+            total += stripe.myTotalLatency;
+        }
+
+        if (count == 0) {
+            return 0.0D;
+        }
+        return ((double) units.convert(total, TimeUnit.NANOSECONDS)) / count;
+    }
+
+    /**
+     * Returns the number of replies delivered by the dispatch threads.
+     *
+     * @return The number of replies delivered by the dispatch threads.
+     */
+    public long getDispatchedCount() {
+        long count = 0;
+        for (final Stripe stripe : myStripes) {
+            count += stripe.myDispatched;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the largest number of replies queued on a single stripe.
+     *
+     * @return The largest number of replies queued on a single stripe.
+     */
+    public int getMaxQueueDepth() {
+        int max = 0;
+        for (final Stripe stripe : myStripes) {
+            max = Math.max(max, stripe.myMaxDepth);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of replies currently waiting to be delivered.
+     *
+     * @return The number of replies currently waiting to be delivered.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (final Stripe stripe : myStripes) {
+            depth += stripe.myDepth;
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the number of replies rejected because the stripe's queue was
+     * full. The callbacks for those replies were run by the receive thread.
+     *
+     * @return The number of replies rejected because the stripe's queue was
+     *         full.
+     */
+    public long getRejectedCount() {
+        long count = 0;
+        for (final Stripe stripe : myStripes) {
+            count += stripe.myRejected;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of stripes (and threads) for the dispatcher.
+     *
+     * @return The number of stripes for the dispatcher.
+     */
+    public int getStripeCount() {
+        return myStripes.length;
+    }
+
+    /**
+     * Returns the stripe for the callback.
+     *
+     * @param replyCallback
+     *            The callback to find the stripe for.
+     * @return The stripe for the callback.
+     */
+    private Stripe stripeFor(final ReplyCallback replyCallback) {
+        int hash = System.identityHashCode(replyCallback);
+
+        // Spread the bits since identity hash codes are often aligned.
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+
+        return myStripes[(hash & Integer.MAX_VALUE) % myStripes.length];
+    }
+
+    /**
+     * Stripe provides a single consumer bounded queue of replies and the loop
+     * to drain it.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static final class Stripe
+            implements Runnable {
+
+        /** The callbacks for the queued replies. */
+        private final ReplyCallback[] myCallbacks;
+
+        /** The current number of queued replies. */
+        private volatile int myDepth;
+
+        /**
+         * The number of replies delivered. Only written by the dispatch
+         * thread.
+         */
+        private volatile long myDispatched;
+
+        /** The time each reply was queued. */
+        private final long[] myEnqueued;
+
+        /** The errors for the queued replies. */
+        private final Throwable[] myErrors;
+
+        /** The index of the oldest queued reply. */
+        private int myHead;
+
+        /** The lock for the queue. */
+        private final ReentrantLock myLock;
+
+        /** The largest number of replies queued at once. */
+        private volatile int myMaxDepth;
+
+        /** The condition signalled when replies are queued. */
+        private final Condition myNotEmpty;
+
+        /**
+         * The number of replies rejected because the queue was full. Only
+         * written with the lock held.
+         */
+        private volatile long myRejected;
+
+        /** The queued replies. */
+        private final Reply[] myReplies;
+
+        /** Set to false when the stripe should stop. */
+        private boolean myRunning;
+
+        /**
+         * The total time replies were queued, in nanoseconds. Only written by
+         * the dispatch thread.
+         */
+        private volatile long myTotalLatency;
+
+        /**
+         * Creates a new Stripe.
+         *
+         * @param size
+         *            The maximum number of replies to queue.
+         */
+        public Stripe(final int size) {
+            myCallbacks = new ReplyCallback[size];
+            myReplies = new Reply[size];
+            myErrors = new Throwable[size];
+            myEnqueued = new long[size];
+
+            myLock = new ReentrantLock();
+            myNotEmpty = myLock.newCondition();
+
+            myHead = 0;
+            myDepth = 0;
+            myRunning = true;
+        }
+
+        /**
+         * Queues a reply or error for the callback. Never waits for room in
+         * the queue.
+         *
+         * @param callback
+         *            The callback for the reply.
+         * @param reply
+         *            The reply, if any.
+         * @param error
+         *            The error, if any.
+         * @return True if the reply was queued. False if the stripe is
+         *         stopped or the queue is full.
+         */
+        public boolean offer(final ReplyCallback callback, final Reply reply,
+                final Throwable error) {
+            final int size = myCallbacks.length;
+            myLock.lock();
+            try {
+                if (!myRunning) {
+                    return false;
+                }
+
+                final int depth = myDepth;
+                if (size <= depth) {
+                    myRejected += 1;
+                    return false;
+                }
+
+                final int index = (myHead + depth) % size;
+                myCallbacks[index] = callback;
+                myReplies[index] = reply;
+                myErrors[index] = error;
+                myEnqueued[index] = System.nanoTime();
+
+                myDepth = depth + 1;
+                if (myMaxDepth <= depth) {
+                    myMaxDepth = depth + 1;
+                }
+                if (depth == 0) {
+                    myNotEmpty.signal();
+                }
+                return true;
+            }
+            finally {
+                myLock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to drain the queue in batches and deliver each reply.
+         * </p>
+         */
+        @Override
+        public void run() {
+            final int size = myCallbacks.length;
+            final ReplyCallback[] callbacks = new ReplyCallback[size];
+            final Reply[] replies = new Reply[size];
+            final Throwable[] errors = new Throwable[size];
+            final long[] enqueued = new long[size];
+
+            int count;
+            while ((count = drain(callbacks, replies, errors, enqueued)) > 0) {
+                final long now = System.nanoTime();
+                long latency = 0;
+                for (int i = 0; i < count; ++i) {
+                    latency += (now - enqueued[i]);
+                }
+                myTotalLatency += latency;
+                myDispatched += count;
+
+                for (int i = 0; i < count; ++i) {
+                    deliver(callbacks[i], replies[i], errors[i]);
+
+                    callbacks[i] = null;
+                    replies[i] = null;
+                    errors[i] = null;
+                }
+            }
+        }
+
+        /**
+         * Stops the stripe once the queued replies have been delivered.
+         */
+        public void stop() {
+            myLock.lock();
+            try {
+                myRunning = false;
+                myNotEmpty.signalAll();
+            }
+            finally {
+                myLock.unlock();
+            }
+        }
+
+        /**
+         * Delivers a single reply to the callback.
+         *
+         * @param callback
+         *            The callback for the reply.
+         * @param reply
+         *            The reply, if any.
+         * @param error
+         *            The error, if any.
+         */
+        private void deliver(final ReplyCallback callback, final Reply reply,
+                final Throwable error) {
+            try {
+                if (reply != null) {
+                    ReplyHandler.reply(null, reply, callback, null);
+                }
+                else {
+                    ReplyHandler.raiseError(error, callback, null);
+                }
+            }
+            catch (final RuntimeException re) {
+                LOG.warn(re, "Reply callback threw an exception.");
+            }
+        }
+
+        /**
+         * Moves all of the queued replies into the provided arrays. Blocks
+         * until there is at least one reply or the stripe is stopped.
+         *
+         * @param callbacks
+         *            The array to receive the callbacks.
+         * @param replies
+         *            The array to receive the replies.
+         * @param errors
+         *            The array to receive the errors.
+         * @param enqueued
+         *            The array to receive the enqueue times.
+         * @return The number of replies drained. Zero once the stripe is
+         *         stopped and empty.
+         */
+        private int drain(final ReplyCallback[] callbacks,
+                final Reply[] replies, final Throwable[] errors,
+                final long[] enqueued) {
+            final int size = myCallbacks.length;
+            myLock.lock();
+            try {
+                while (myRunning && (myDepth == 0)) {
+                    myNotEmpty.awaitUninterruptibly();
+                }
+
+                final int count = myDepth;
+                if (0 < count) {
+                    int index = myHead;
+                    for (int i = 0; i < count; ++i) {
+                        callbacks[i] = myCallbacks[index];
+                        replies[i] = myReplies[index];
+                        errors[i] = myErrors[index];
+                        enqueued[i] = myEnqueued[index];
+
+                        myCallbacks[index] = null;
+                        myReplies[index] = null;
+                        myErrors[index] = null;
+
+                        index = (index + 1) % size;
+                    }
+
+                    myHead = index;
+                    myDepth = 0;
+                }
+
+                return count;
+            }
+            finally {
+                myLock.unlock();
+            }
+        }
+    }
+}
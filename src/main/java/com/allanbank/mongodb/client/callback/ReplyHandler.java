@@ -99,6 +99,31 @@ public class ReplyHandler
         }
     }
 
+    /**
+     * Restores the receiver for the current thread after a call to
+     * {@link #suspendReceive()}.
+     *
+     * @param receiver
+     *            The receiver returned from {@link #suspendReceive()}.
+     */
+    public static void resumeReceive(final Receiver receiver) {
+        ourReceiver.set(receiver);
+    }
+
+    /**
+     * Stops {@link #tryReceive()} from processing replies on the current
+     * thread. This is used while a reply is being decoded from the receiver's
+     * buffer so that a callback cannot start reading the next reply from the
+     * same buffer.
+     *
+     * @return The receiver to pass to {@link #resumeReceive(Receiver)}.
+     */
+    public static Receiver suspendReceive() {
+        final Receiver before = ourReceiver.get();
+        ourReceiver.set(null);
+        return before;
+    }
+
     /**
      * If there is a pending reply tries to process that reply.
      */
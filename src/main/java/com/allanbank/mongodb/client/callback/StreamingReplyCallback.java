@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * StreamingReplyCallback.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.callback;
+
+import com.allanbank.mongodb.bson.Document;
+
+/**
+ * StreamingReplyCallback provides an interface for a callback that can accept
+ * the documents from a reply as each document is decoded instead of waiting
+ * for the complete reply.
+ * <p>
+ * When streaming replies are enabled the receive processing first calls
+ * {@link #startStreaming(long, int)} with the reply's cursor information. If
+ * the callback accepts the reply then each document is passed to
+ * {@link #streamed(Document)} as it is decoded and
+ * {@link #finishStreaming()} is called once the reply has been read, even if
+ * reading the reply fails. The callback is not passed the completed reply.
+ * </p>
+ * <p>
+ * All of the methods are called on the receiver's thread and the receiver
+ * cannot process other messages until the reply has been read.
+ * </p>
+ *
+ * @api.no This interface is <b>NOT</b> part of the drivers API. This interface
+ *         may be mutated in incompatible ways between any two releases of the
+ *         driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public interface StreamingReplyCallback
+        extends ReplyCallback {
+
+    /**
+     * Called once the reply has been completely read if the callback accepted
+     * the reply's documents.
+     */
+    public void finishStreaming();
+
+    /**
+     * Called before any of the reply's documents are decoded. This is only
+     * called if none of the reply's failure flags are set.
+     *
+     * @param cursorId
+     *            The id of the cursor if more documents are available.
+     * @param documentCount
+     *            The number of documents in the reply.
+     * @return True if the callback will accept the documents as they are
+     *         decoded, false to be passed the complete reply.
+     */
+    public boolean startStreaming(long cursorId, int documentCount);
+
+    /**
+     * Called with each document as it is decoded.
+     *
+     * @param document
+     *            The decoded document.
+     */
+    public void streamed(Document document);
+}
@@ -0,0 +1,434 @@
+/*
+ * #%L
+ * ScramKeyCache.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.connection.auth;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.sasl.SaslException;
+
+/**
+ * ScramKeyCache provides a bounded cache of the SCRAM client and server keys
+ * derived from a user's password, the server's salt and the iteration count.
+ * <p>
+ * Deriving the keys requires thousands of HMAC iterations and the result is
+ * the same for every connection that authenticates with the same credential
+ * to servers sharing the same user. Caching the keys removes the derivation
+ * from all but the first connection's authentication.
+ * </p>
+ * <p>
+ * The cache is keyed by an HMAC, using a random per-process secret, of the
+ * user name, password, salt and iteration count so that neither the
+ * password nor an unkeyed hash of the password is held by the cache. The
+ * cached keys are copied on the way in and out of the cache and are zeroed
+ * when evicted or {@link #clear() cleared}. The keys are only held in memory
+ * and grant no more access than the {@link com.allanbank.mongodb.Credential}
+ * already held by the client.
+ * </p>
+ * <p>
+ * When many connections authenticate at once (e.g., as a connection pool
+ * is warmed up) only the first thread to miss for a credential derives the
+ * keys. The other threads wait for it to {@link #put put} the keys, or to
+ * {@link #abandon abandon} the derivation, instead of repeating the same
+ * expensive derivation in parallel.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@ThreadSafe
+public class ScramKeyCache {
+
+    /** The default maximum number of credentials to cache keys for. */
+    public static final int DEFAULT_MAX_ENTRIES = 128;
+
+    /** The name of the {@link Mac} used for the cache keys. */
+    private static final String LOOKUP_HMAC_NAME = "HmacSHA256";
+
+    /** The size of the per-process secret for the cache keys. */
+    private static final int SECRET_BYTES = 32;
+
+    /** The UTF-8 encoding. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The cache shared by the driver. */
+    private static final ScramKeyCache ourDefault = new ScramKeyCache(
+            DEFAULT_MAX_ENTRIES);
+
+    /**
+     * Returns the cache shared by the driver.
+     *
+     * @return The cache shared by the driver.
+     */
+    public static ScramKeyCache getDefault() {
+        return ourDefault;
+    }
+
+    /** The cached keys. Guarded by the map's monitor. */
+    private final Map<ByteBuffer, Keys> myCache;
+
+    /** The total time spent deriving keys in nanoseconds. */
+    private final AtomicLong myDerivationNanos;
+
+    /**
+     * The thread deriving the keys for each lookup key. Guarded by the
+     * {@link #myCache cache's} monitor.
+     */
+    private final Map<ByteBuffer, Thread> myDeriving;
+
+    /** The number of lookups satisfied by the cache. */
+    private final AtomicLong myHitCount;
+
+    /** The maximum number of credentials to cache keys for. */
+    private final int myMaxEntries;
+
+    /** The number of lookups that required deriving the keys. */
+    private final AtomicLong myMissCount;
+
+    /** The secret for the cache keys. */
+    private final SecretKeySpec mySecret;
+
+    /**
+     * Creates a new ScramKeyCache.
+     *
+     * @param maxEntries
+     *            The maximum number of credentials to cache keys for. Zero or
+     *            less disables the cache.
+     */
+    public ScramKeyCache(final int maxEntries) {
+        myMaxEntries = Math.max(0, maxEntries);
+        myDerivationNanos = new AtomicLong(0);
+        myDeriving = new HashMap<ByteBuffer, Thread>();
+        myHitCount = new AtomicLong(0);
+        myMissCount = new AtomicLong(0);
+
+        final byte[] secret = new byte[SECRET_BYTES];
+        new SecureRandom().nextBytes(secret);
+        mySecret = new SecretKeySpec(secret, LOOKUP_HMAC_NAME);
+        Arrays.fill(secret, (byte) 0);
+
+        myCache = new LinkedHashMap<ByteBuffer, Keys>(16, 0.75f, true) {
+            /** Serialization version for the class. */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<ByteBuffer, Keys> eldest) {
+                if (myMaxEntries < size()) {
+                    eldest.getValue().clear();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Removes and zeros all of the cached keys.
+     */
+    public void clear() {
+        synchronized (myCache) {
+            final Iterator<Keys> iter = myCache.values().iterator();
+            while (iter.hasNext()) {
+                iter.next().clear();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the total time spent deriving keys in nanoseconds.
+     *
+     * @return The total time spent deriving keys in nanoseconds.
+     */
+    public long getDerivationNanos() {
+        return myDerivationNanos.get();
+    }
+
+    /**
+     * Returns the number of lookups satisfied by the cache.
+     *
+     * @return The number of lookups satisfied by the cache.
+     */
+    public long getHitCount() {
+        return myHitCount.get();
+    }
+
+    /**
+     * Returns the maximum number of credentials to cache keys for.
+     *
+     * @return The maximum number of credentials to cache keys for.
+     */
+    public int getMaxEntries() {
+        return myMaxEntries;
+    }
+
+    /**
+     * Returns the number of lookups that required deriving the keys.
+     *
+     * @return The number of lookups that required deriving the keys.
+     */
+    public long getMissCount() {
+        return myMissCount.get();
+    }
+
+    /**
+     * Returns the number of credentials with cached keys.
+     *
+     * @return The number of credentials with cached keys.
+     */
+    public int size() {
+        synchronized (myCache) {
+            return myCache.size();
+        }
+    }
+
+    /**
+     * Notification that the current thread will not {@link #put put} the keys
+     * after {@link #find find} returned false. Wakes any threads waiting for
+     * the keys so one of them can derive the keys instead.
+     *
+     * @param lookupKey
+     *            The key from
+     *            {@link #lookupKey(String, byte[], byte[], int)}.
+     */
+    /* package */void abandon(final byte[] lookupKey) {
+        synchronized (myCache) {
+            derived(ByteBuffer.wrap(lookupKey));
+        }
+    }
+
+    /**
+     * Copies the cached keys for the lookup key into the provided arrays.
+     * <p>
+     * If another thread is already deriving the keys then waits for that
+     * thread to finish. If this method returns false then the current thread
+     * is expected to derive the keys and then either {@link #put put} the keys
+     * or {@link #abandon abandon} the derivation.
+     * </p>
+     *
+     * @param lookupKey
+     *            The key from
+     *            {@link #lookupKey(String, byte[], byte[], int)}.
+     * @param clientKey
+     *            The array to copy the client key into.
+     * @param serverKey
+     *            The array to copy the server key into.
+     * @return True if the keys were found and copied.
+     */
+    /* package */boolean find(final byte[] lookupKey, final byte[] clientKey,
+            final byte[] serverKey) {
+        final ByteBuffer key = ByteBuffer.wrap(lookupKey);
+        final Thread current = Thread.currentThread();
+        synchronized (myCache) {
+            while (true) {
+                final Keys keys = myCache.get(key);
+                if (keys != null) {
+                    if (keys.copyTo(clientKey, serverKey)) {
+                        myHitCount.incrementAndGet();
+                        return true;
+                    }
+                    // Wrong sized keys. Derive without waiting.
+                    break;
+                }
+
+                final Thread deriving = myDeriving.get(key);
+                if (deriving == null) {
+                    if (0 < myMaxEntries) {
+                        myDeriving.put(ByteBuffer.wrap(lookupKey.clone()),
+                                current);
+                    }
+                    break;
+                }
+                else if (deriving == current) {
+                    break;
+                }
+
+                try {
+                    myCache.wait();
+                }
+                catch (final InterruptedException interrupted) {
+                    // Derive the keys without waiting.
+                    current.interrupt();
+                    break;
+                }
+            }
+        }
+        myMissCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Computes the key for the credential's cached keys.
+     *
+     * @param username
+     *            The user's name.
+     * @param passwordBytes
+     *            The prepared and encoded password.
+     * @param salt
+     *            The server's salt for the password.
+     * @param iterations
+     *            The number of iterations for the derivation.
+     * @return The cache key.
+     * @throws SaslException
+     *             On a failure to initialize the {@link Mac}.
+     */
+    /* package */byte[] lookupKey(final String username,
+            final byte[] passwordBytes, final byte[] salt, final int iterations)
+            throws SaslException {
+        try {
+            final Mac mac = Mac.getInstance(LOOKUP_HMAC_NAME);
+            mac.init(mySecret);
+
+            final byte[] name = ((username == null) ? "" : username)
+                    .getBytes(UTF_8);
+            mac.update(ByteBuffer.allocate(12).putInt(name.length)
+                    .putInt(passwordBytes.length).putInt(iterations).array());
+            mac.update(name);
+            mac.update(passwordBytes);
+            mac.update(salt);
+
+            return mac.doFinal();
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new SaslException(e.getMessage(), e);
+        }
+        catch (final InvalidKeyException e) {
+            throw new SaslException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adds the derived keys to the cache. The lookup key and keys are copied.
+     *
+     * @param lookupKey
+     *            The key from
+     *            {@link #lookupKey(String, byte[], byte[], int)}.
+     * @param clientKey
+     *            The derived client key.
+     * @param serverKey
+     *            The derived server key.
+     * @param derivationNanos
+     *            The time spent deriving the keys in nanoseconds.
+     */
+    /* package */void put(final byte[] lookupKey, final byte[] clientKey,
+            final byte[] serverKey, final long derivationNanos) {
+        myDerivationNanos.addAndGet(derivationNanos);
+
+        if (0 < myMaxEntries) {
+            final Keys keys = new Keys(clientKey, serverKey);
+            synchronized (myCache) {
+                final Keys old = myCache.put(
+                        ByteBuffer.wrap(lookupKey.clone()), keys);
+                if (old != null) {
+                    old.clear();
+                }
+                derived(ByteBuffer.wrap(lookupKey));
+            }
+        }
+    }
+
+    /**
+     * Clears the current thread's derivation of the keys, if any, and wakes
+     * any threads waiting for the keys. The caller must hold the
+     * {@link #myCache cache's} monitor.
+     *
+     * @param key
+     *            The lookup key.
+     */
+    private void derived(final ByteBuffer key) {
+        if (myDeriving.get(key) == Thread.currentThread()) {
+            myDeriving.remove(key);
+        }
+        myCache.notifyAll();
+    }
+
+    /**
+     * Keys provides the holder for the cached keys.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static final class Keys {
+
+        /** The client key. */
+        private final byte[] myClientKey;
+
+        /** The server key. */
+        private final byte[] myServerKey;
+
+        /**
+         * Creates a new Keys.
+         *
+         * @param clientKey
+         *            The client key to copy.
+         * @param serverKey
+         *            The server key to copy.
+         */
+        public Keys(final byte[] clientKey, final byte[] serverKey) {
+            myClientKey = clientKey.clone();
+            myServerKey = serverKey.clone();
+        }
+
+        /**
+         * Zeros the keys.
+         */
+        public void clear() {
+            Arrays.fill(myClientKey, (byte) 0);
+            Arrays.fill(myServerKey, (byte) 0);
+        }
+
+        /**
+         * Copies the keys into the arrays.
+         *
+         * @param clientKey
+         *            The array to copy the client key into.
+         * @param serverKey
+         *            The array to copy the server key into.
+         * @return True if the keys were copied, false if the arrays are not
+         *         the right size.
+         */
+        public boolean copyTo(final byte[] clientKey, final byte[] serverKey) {
+            if ((clientKey.length != myClientKey.length)
+                    || (serverKey.length != myServerKey.length)) {
+                return false;
+            }
+            System.arraycopy(myClientKey, 0, clientKey, 0, clientKey.length);
+            System.arraycopy(myServerKey, 0, serverKey, 0, serverKey.length);
+            return true;
+        }
+    }
+}
@@ -111,6 +111,9 @@ import com.allanbank.mongodb.util.IOUtils;
     /** The name of the {@link Mac} used: {@value #HMAC_NAME} */
     private static final String HMAC_NAME = "HmacSHA1";
 
+    /** The size of the client and server keys: the {@link #HMAC_NAME} output. */
+    private static final int KEY_BYTES = 20;
+
     /** The initial value to seed the hash iterations. */
     private static final byte[] ONE_UINT32_BE = new byte[] { 0, 0, 0, 1 };
 
@@ -304,6 +307,9 @@ import com.allanbank.mongodb.util.IOUtils;
     /** The number of iterations that server wants the password hashed. */
     private int myIterationCount;
 
+    /** The cache of the keys derived from the password. */
+    private final ScramKeyCache myKeyCache;
+
     /** The salt for the password from the server. */
     private byte[] mySalt;
 
@@ -326,7 +332,21 @@ import com.allanbank.mongodb.util.IOUtils;
      *            The handler to retrieve the user's name and password.
      */
     public ScramSaslClient(final CallbackHandler callbackHandler) {
+        this(callbackHandler, ScramKeyCache.getDefault());
+    }
+
+    /**
+     * Creates a new ScramSaslClient.
+     *
+     * @param callbackHandler
+     *            The handler to retrieve the user's name and password.
+     * @param keyCache
+     *            The cache of the keys derived from the password.
+     */
+    public ScramSaslClient(final CallbackHandler callbackHandler,
+            final ScramKeyCache keyCache) {
         myCallbackHandler = callbackHandler;
+        myKeyCache = keyCache;
 
         dispose();
     }
@@ -588,6 +608,7 @@ import com.allanbank.mongodb.util.IOUtils;
             char[] passwordPrep = EMPTY_CHARS;
             ByteBuffer passwordBuffer = null;
             byte[] passwordBytes = EMPTY_BYTES;
+            byte[] lookupKey = EMPTY_BYTES;
             byte[] saltedPassword = EMPTY_BYTES;
             byte[] clientKey = EMPTY_BYTES;
             byte[] storedKey = EMPTY_BYTES;
@@ -602,8 +623,32 @@ import com.allanbank.mongodb.util.IOUtils;
                 passwordBytes = new byte[passwordBuffer.remaining()];
                 passwordBuffer.get(passwordBytes);
 
-                saltedPassword = generateSaltedPassword(passwordBytes);
-                clientKey = computeHmac(saltedPassword, "Client Key");
+                // The keys only depend on the credential, salt and iteration
+                // count so they are shared across connections.
+                clientKey = new byte[KEY_BYTES];
+                serverKey = new byte[KEY_BYTES];
+                lookupKey = myKeyCache.lookupKey(myUsername, passwordBytes,
+                        mySalt, myIterationCount);
+                if (!myKeyCache.find(lookupKey, clientKey, serverKey)) {
+                    final long start = System.nanoTime();
+                    boolean derived = false;
+                    try {
+                        saltedPassword = generateSaltedPassword(passwordBytes);
+                        clientKey = computeHmac(saltedPassword, "Client Key");
+                        serverKey = computeHmac(saltedPassword, "Server Key");
+
+                        myKeyCache.put(lookupKey, clientKey, serverKey,
+                                System.nanoTime() - start);
+                        derived = true;
+                    }
+                    finally {
+                        if (!derived) {
+                            // Let any waiting threads derive the keys.
+                            myKeyCache.abandon(lookupKey);
+                        }
+                    }
+                }
+
                 storedKey = MessageDigest.getInstance(DIGEST_NAME).digest(
                         clientKey);
 
@@ -621,7 +666,6 @@ import com.allanbank.mongodb.util.IOUtils;
                 }
 
                 // Compute the server's signature for use in the final step.
-                serverKey = computeHmac(saltedPassword, "Server Key");
                 myServerSignature = IOUtils.toBase64(computeHmac(serverKey,
                         authMessage));
 
@@ -643,6 +687,7 @@ import com.allanbank.mongodb.util.IOUtils;
                     }
                 }
                 Arrays.fill(passwordBytes, (byte) 0);
+                Arrays.fill(lookupKey, (byte) 0);
                 Arrays.fill(saltedPassword, (byte) 0);
                 Arrays.fill(clientKey, (byte) 0);
                 Arrays.fill(storedKey, (byte) 0);
@@ -227,12 +227,16 @@ public class ReplicaSetConnectionFactory
     /**
      * {@inheritDoc}
      * <p>
-     * Sets the metrics agent on the proxied connection factory.
+     * Sets the metrics agent on the proxied connection factory and publishes
+     * the pinger's metrics.
      * </p>
      */
     @Override
     public void setMetrics(final MongoClientMetrics metrics) {
         myConnectionFactory.setMetrics(metrics);
+        if (metrics != null) {
+            metrics.setPinger(myPinger);
+        }
     }
 
     /**
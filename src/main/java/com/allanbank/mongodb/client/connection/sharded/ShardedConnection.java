@@ -21,12 +21,14 @@
 package com.allanbank.mongodb.client.connection.sharded;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoDbException;
 import com.allanbank.mongodb.ReadPreference;
+import com.allanbank.mongodb.ServerSelectionStrategy;
 import com.allanbank.mongodb.client.Message;
 import com.allanbank.mongodb.client.connection.Connection;
 import com.allanbank.mongodb.client.connection.proxy.AbstractProxyMultipleConnection;
@@ -203,6 +205,28 @@ public class ShardedConnection
         return null;
     }
 
+    /**
+     * Filters the candidate servers to those this connection already has a
+     * connection to. The power of two choices selection spreads requests
+     * across the open connections but never opens a new connection to each
+     * mongos, which would multiply the number of sockets by the number of
+     * mongos servers.
+     *
+     * @param candidates
+     *            The candidate servers in order of preference.
+     * @return The connected candidates, in the same order.
+     */
+    private List<Server> connectedServers(final List<Server> candidates) {
+        final List<Server> connected = new ArrayList<Server>(
+                candidates.size());
+        for (final Server server : candidates) {
+            if (super.connection(server) != null) {
+                connected.add(server);
+            }
+        }
+        return connected;
+    }
+
     /**
      * Locates the set of servers that can be used to send the specified
      * messages.
@@ -220,7 +244,14 @@ public class ShardedConnection
 
         final Server main = myMainKey;
         if (main != null) {
-            servers = Collections.singletonList(main);
+            if (myConfig.getServerSelectionStrategy() == ServerSelectionStrategy.POWER_OF_TWO_CHOICES) {
+                // Spread the requests across the mongos servers.
+                servers = connectedServers(myCluster
+                        .findCandidateServers(ReadPreference.PRIMARY));
+            }
+            if (servers.isEmpty()) {
+                servers = Collections.singletonList(main);
+            }
         }
 
         if (message1 != null) {
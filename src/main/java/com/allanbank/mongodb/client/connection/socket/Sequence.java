@@ -29,7 +29,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.allanbank.mongodb.LockType;
-import com.allanbank.mongodb.client.message.PendingMessageQueue;
+import com.allanbank.mongodb.StandardWaitStrategy;
 
 /**
  * Sequence provides the ability to synchronize the access to the socket's
@@ -53,7 +53,7 @@ public class Sequence {
     private static final int RESERVE_OFFSET = 7;
 
     /** Amount of time to spin/yield before waiting. Set to 1/2 millisecond. */
-    private static final long YIELD_TIME_NS = PendingMessageQueue.YIELD_TIME_NS;
+    private static final long YIELD_TIME_NS = StandardWaitStrategy.YIELD_TIME_NS;
 
     /** The condition used when there are waiters. */
     private final Condition myCondition;
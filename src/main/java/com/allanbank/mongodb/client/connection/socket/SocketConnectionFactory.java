@@ -34,6 +34,7 @@ import com.allanbank.mongodb.bson.io.StringDecoderCache;
 import com.allanbank.mongodb.bson.io.StringEncoderCache;
 import com.allanbank.mongodb.client.ClusterStats;
 import com.allanbank.mongodb.client.ClusterType;
+import com.allanbank.mongodb.client.callback.ReplyDispatcher;
 import com.allanbank.mongodb.client.connection.Connection;
 import com.allanbank.mongodb.client.connection.ConnectionFactory;
 import com.allanbank.mongodb.client.connection.ReconnectStrategy;
@@ -78,6 +79,12 @@ public class SocketConnectionFactory
     /** The state of the cluster. */
     private final Cluster myCluster;
 
+    /**
+     * The dispatcher for running the callbacks for replies. May be
+     * <code>null</code>.
+     */
+    private final ReplyDispatcher myDispatcher;
+
     /** The MongoDB client configuration. */
     private final ConfigurationListener myConfigListener;
 
@@ -111,6 +118,16 @@ public class SocketConnectionFactory
         myEncoderCache = new StringEncoderCache();
         myEncoderCache.setMaxCacheEntries(config.getMaxCachedStringEntries());
         myEncoderCache.setMaxCacheLength(config.getMaxCachedStringLength());
+
+        if (0 < config.getReplyDispatchThreads()) {
+            myDispatcher = new ReplyDispatcher(
+                    config.getReplyDispatchThreads(),
+                    config.getReplyDispatchQueueSize(),
+                    config.getThreadFactory());
+        }
+        else {
+            myDispatcher = null;
+        }
     }
 
     /**
@@ -126,6 +143,10 @@ public class SocketConnectionFactory
         // Release the cached entries too.
         myDecoderCache.setMaxCacheEntries(0);
         myDecoderCache.setMaxCacheLength(0);
+
+        if (myDispatcher != null) {
+            myDispatcher.close();
+        }
     }
 
     /**
@@ -198,7 +219,8 @@ public class SocketConnectionFactory
             final MongoClientConfiguration config) throws IOException {
 
         final TransportConnection connection = new TransportConnection(server,
-                config, myMetrics.newConnection(server.getCanonicalName()));
+                config, myMetrics.newConnection(server.getCanonicalName()),
+                myDispatcher);
 
         final Transport<TransportOutputBuffer> transport = (Transport<TransportOutputBuffer>) config
                 .getTransportFactory().createTransport(server, config,
@@ -262,6 +284,17 @@ public class SocketConnectionFactory
         return myEncoderCache;
     }
 
+    /**
+     * Returns the dispatcher for running the callbacks for replies.
+     *
+     * @return The dispatcher for running the callbacks for replies. May be
+     *         <code>null</code> if the callbacks are not dispatched by the
+     *         factory.
+     */
+    public ReplyDispatcher getDispatcher() {
+        return myDispatcher;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -298,6 +331,7 @@ public class SocketConnectionFactory
         else {
             myMetrics = metrics;
         }
+        myMetrics.setReplyDispatcher(myDispatcher);
     }
 
     /**
@@ -24,6 +24,9 @@ import java.beans.PropertyChangeSupport;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -37,7 +40,9 @@ import com.allanbank.mongodb.client.callback.AddressAware;
 import com.allanbank.mongodb.client.callback.NoOpCallback;
 import com.allanbank.mongodb.client.callback.Receiver;
 import com.allanbank.mongodb.client.callback.ReplyCallback;
+import com.allanbank.mongodb.client.callback.ReplyDispatcher;
 import com.allanbank.mongodb.client.callback.ReplyHandler;
+import com.allanbank.mongodb.client.callback.StreamingReplyCallback;
 import com.allanbank.mongodb.client.connection.Connection;
 import com.allanbank.mongodb.client.message.BuildInfo;
 import com.allanbank.mongodb.client.message.IsMaster;
@@ -47,6 +52,7 @@ import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.client.metrics.ConnectionMetricsCollector;
 import com.allanbank.mongodb.client.state.Server;
 import com.allanbank.mongodb.client.state.ServerUpdateCallback;
+import com.allanbank.mongodb.client.transport.ReplyInputBuffer;
 import com.allanbank.mongodb.client.transport.Transport;
 import com.allanbank.mongodb.client.transport.TransportInputBuffer;
 import com.allanbank.mongodb.client.transport.TransportOutputBuffer;
@@ -69,9 +75,21 @@ import com.allanbank.mongodb.util.log.LogFactory;
 public class TransportConnection
         implements Connection, Receiver, TransportResponseListener {
 
+    /**
+     * The logger for the operations that exceed the slow operation threshold.
+     */
+    private static final Log SLOW_OPERATION_LOG = LogFactory
+            .getLog(MongoClientConfiguration.SLOW_OPERATION_LOGGER_NAME);
+
     /** The connections configuration. */
     protected final MongoClientConfiguration myConfig;
 
+    /**
+     * The dispatcher for running the callbacks for replies. May be
+     * <code>null</code>.
+     */
+    protected final ReplyDispatcher myDispatcher;
+
     /** Support for emitting property change events. */
     protected final PropertyChangeSupport myEventSupport;
 
@@ -102,6 +120,12 @@ public class TransportConnection
     /** The sequence for serializing sends. */
     private final Sequence mySendSequence;
 
+    /**
+     * The time (in nano-seconds) an operation may take before it is logged. Zero
+     * disables the slow operation log.
+     */
+    private final long mySlowOperationNanos;
+
     /** The transport for sending messages. */
     private Transport<TransportOutputBuffer> myTransport;
 
@@ -118,8 +142,30 @@ public class TransportConnection
     public TransportConnection(final Server server,
             final MongoClientConfiguration config,
             final ConnectionMetricsCollector listener) {
+        this(server, config, listener, null);
+    }
+
+    /**
+     * Creates a new SocketConnection to a MongoDB server.
+     *
+     * @param server
+     *            The MongoDB server to connect to.
+     * @param config
+     *            The configuration for the Connection to the MongoDB server.
+     * @param listener
+     *            The listener for the metrics on sent and received messages.
+     * @param dispatcher
+     *            The dispatcher for running the callbacks for replies. If
+     *            <code>null</code> the callbacks are run on the receive
+     *            thread or the configuration's executor.
+     */
+    public TransportConnection(final Server server,
+            final MongoClientConfiguration config,
+            final ConnectionMetricsCollector listener,
+            final ReplyDispatcher dispatcher) {
         myServer = server;
         myConfig = config;
+        myDispatcher = dispatcher;
 
         myListener = listener;
         myLog = LogFactory.getLog(getClass());
@@ -131,9 +177,11 @@ public class TransportConnection
 
         myPendingQueue = new PendingMessageQueue(
                 config.getMaxPendingOperationsPerConnection(),
-                config.getLockType());
+                config.getWaitStrategy());
 
         mySendSequence = new Sequence(1, myConfig.getLockType());
+        mySlowOperationNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+                config.getSlowOperationThreshold()));
     }
 
     /**
@@ -269,7 +317,7 @@ public class TransportConnection
     public void raiseErrors(final MongoDbException exception) {
         final PendingMessage message = new PendingMessage();
 
-        while (myPendingQueue.poll(message)) {
+        while (pollPending(message)) {
             raiseError(exception, message.getReplyCallback());
         }
     }
@@ -295,6 +343,11 @@ public class TransportConnection
     @Override
     public void response(final TransportInputBuffer buffer) {
         try {
+            if (buffer instanceof ReplyInputBuffer) {
+                handleReply((ReplyInputBuffer) buffer);
+                return;
+            }
+
             final Message message = buffer.read();
             if (message instanceof Reply) {
                 handleReply((Reply) message);
@@ -350,22 +403,41 @@ public class TransportConnection
             final TransportOutputBuffer out = myTransport
                     .createSendBuffer(size);
 
-            pending.set((int) (seq & 0xFFFFFF), toSend1, replyCallback);
-            out.write((int) (seq & 0xFFFFFF), toSend1, replyCallback);
-            if (toSend2 != null) {
+            // The reply is for the last message. Set the pending message (and
+            // its creation time stamp) once, before either is serialized.
+            if (toSend2 == null) {
+                pending.set((int) (seq & 0xFFFFFF), toSend1, replyCallback);
+            }
+            else {
                 pending.set((int) ((seq + 1) & 0xFFFFFF), toSend2,
                         replyCallback);
+            }
+
+            out.write((int) (seq & 0xFFFFFF), toSend1, replyCallback);
+            if (toSend2 != null) {
                 out.write((int) ((seq + 1) & 0xFFFFFF), toSend2, replyCallback);
             }
+            pending.timestampSerialized();
 
             // Now stand in line.
             mySendSequence.waitFor(seq);
 
             // Send, quickly now.
-            if ((replyCallback != null) && !myPendingQueue.offer(pending)) {
-                // Flush before blocking.
-                flush();
-                myPendingQueue.put(pending);
+            if (replyCallback != null) {
+                myServer.requestSent();
+                pending.timestampSent();
+                if (!myPendingQueue.offer(pending)) {
+                    // Flush before blocking.
+                    flush();
+                    try {
+                        myPendingQueue.put(pending);
+                    }
+                    catch (final InterruptedException ie) {
+                        // Never queued.
+                        myServer.requestCompleted();
+                        throw ie;
+                    }
+                }
             }
             myTransport.send(out);
 
@@ -559,13 +631,14 @@ public class TransportConnection
      *            The received reply.
      */
     protected void handleReply(final Reply reply) {
+        final long received = System.nanoTime();
         final int replyId = reply.getResponseToId();
         boolean took = false;
 
         // Keep polling the pending queue until we get to
         // message based on a matching replyId.
         try {
-            took = myPendingQueue.poll(myReplyPendingMessage);
+            took = pollPending(myReplyPendingMessage);
             while (took && (myReplyPendingMessage.getMessageId() != replyId)) {
 
                 final MongoDbException noReply = new MongoDbException(
@@ -575,11 +648,12 @@ public class TransportConnection
                 raiseError(noReply, myReplyPendingMessage.getReplyCallback());
 
                 // Keep looking.
-                took = myPendingQueue.poll(myReplyPendingMessage);
+                took = pollPending(myReplyPendingMessage);
             }
 
             if (took) {
                 // Must be the pending message's reply.
+                myReplyPendingMessage.timestampReceived(received);
                 reply(reply, myReplyPendingMessage);
             }
             else {
@@ -592,6 +666,112 @@ public class TransportConnection
         }
     }
 
+    /**
+     * Process a single reply that has not been read from the transport's
+     * buffer yet. The pending message is located using the reply's header so
+     * that the documents can be streamed to the pending message's callback as
+     * they are decoded.
+     *
+     * @param buffer
+     *            The buffer containing the reply.
+     * @throws IOException
+     *             On a failure reading the reply.
+     */
+    protected void handleReply(final ReplyInputBuffer buffer)
+            throws IOException {
+        final long received = System.nanoTime();
+        final int replyId = buffer.getResponseToId();
+        List<ReplyCallback> noReplies = Collections.emptyList();
+        boolean took = false;
+
+        // Keep polling the pending queue until we get to
+        // message based on a matching replyId.
+        try {
+            took = pollPending(myReplyPendingMessage);
+            while (took && (myReplyPendingMessage.getMessageId() != replyId)) {
+
+                // Note that this message will not get a reply. The error is
+                // raised once the reply has been read from the buffer.
+                if (noReplies.isEmpty()) {
+                    noReplies = new ArrayList<ReplyCallback>();
+                }
+                noReplies.add(myReplyPendingMessage.getReplyCallback());
+
+                // Keep looking.
+                took = pollPending(myReplyPendingMessage);
+            }
+
+            if (took) {
+                // Must be the pending message's reply.
+                myReplyPendingMessage.timestampReceived(received);
+                final ReplyCallback callback = myReplyPendingMessage
+                        .getReplyCallback();
+                // Streamed documents are passed to the callback on this
+                // thread so only stream when the reply would not otherwise
+                // be handed to a dispatcher or executor thread.
+                StreamingReplyCallback streaming = null;
+                if ((myDispatcher == null) && (myExecutor == null)
+                        && (callback instanceof StreamingReplyCallback)) {
+                    streaming = (StreamingReplyCallback) callback;
+                }
+
+                // The reply is decoded from the transport's buffer so the
+                // callback cannot be allowed to receive another reply.
+                final Receiver receiver = ReplyHandler.suspendReceive();
+                Reply reply;
+                try {
+                    final Message message = myReplyPendingMessage
+                            .getMessage();
+                    if (message != null) {
+                        reply = buffer.read(streaming,
+                                message.getDatabaseName(),
+                                message.getCollectionName());
+                    }
+                    else {
+                        reply = buffer.read(streaming);
+                    }
+                }
+                catch (final IOException ioe) {
+                    // The message is no longer pending.
+                    raiseError(new MongoDbException(ioe), callback);
+                    throw ioe;
+                }
+                finally {
+                    ReplyHandler.resumeReceive(receiver);
+                }
+
+                reply(reply, myReplyPendingMessage);
+            }
+            else {
+                myLog.warn("Could not find the callback for reply '{}'.",
+                        Integer.valueOf(replyId));
+            }
+        }
+        finally {
+            myReplyPendingMessage.clear();
+
+            for (final ReplyCallback noReply : noReplies) {
+                raiseError(new MongoDbException("No reply received."), noReply);
+            }
+        }
+    }
+
+    /**
+     * Removes the next pending message from the queue of messages waiting for
+     * a reply and notifies the server that the request has completed.
+     *
+     * @param pending
+     *            The pending message to update with the removed message.
+     * @return True if a pending message was removed from the queue.
+     */
+    protected boolean pollPending(final PendingMessage pending) {
+        if (myPendingQueue.poll(pending)) {
+            myServer.requestCompleted();
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Updates to raise an error on the callback, if any.
      *
@@ -602,11 +782,19 @@ public class TransportConnection
      */
     protected void raiseError(final Throwable exception,
             final ReplyCallback replyCallback) {
-        ReplyHandler.raiseError(exception, replyCallback, myExecutor);
+        if ((myDispatcher == null) || (replyCallback == null)
+                || !myDispatcher.dispatch(replyCallback, exception)) {
+            ReplyHandler.raiseError(exception, replyCallback, myExecutor);
+        }
     }
 
     /**
      * Updates to set the reply for the callback, if any.
+     * <p>
+     * Once the callback has completed, or been dispatched, the time the message
+     * spent in each stage is reported to the listener and, if the operation
+     * took longer than the slow operation threshold, logged.
+     * </p>
      *
      * @param reply
      *            The reply.
@@ -615,14 +803,34 @@ public class TransportConnection
      */
     protected void reply(final Reply reply, final PendingMessage pendingMessage) {
 
+        pendingMessage.timestampDecoded();
         final long latency = pendingMessage.latency();
 
+        myServer.updateRequestLatency(latency);
+
         myListener.receive(getServer().getCanonicalName(),
                 reply.getResponseToId(), pendingMessage.getMessage(), reply,
                 latency);
 
-        final ReplyCallback callback = pendingMessage.getReplyCallback();
-        ReplyHandler.reply(this, reply, callback, getExecutor());
+        // Streamed documents have already been passed to the callback.
+        if (!reply.isStreamed()) {
+            final ReplyCallback callback = pendingMessage.getReplyCallback();
+            if ((myDispatcher == null) || (callback == null)
+                    || callback.isLightWeight()
+                    || !myDispatcher.dispatch(callback, reply)) {
+                ReplyHandler.reply(this, reply, callback, getExecutor());
+            }
+        }
+
+        pendingMessage.timestampCompleted();
+        myListener.stages(getServer().getCanonicalName(), pendingMessage);
+
+        if ((0 < mySlowOperationNanos)
+                && (mySlowOperationNanos <= (latency + pendingMessage
+                        .getCallbackNanos()))) {
+            logSlowOperation(pendingMessage,
+                    latency + pendingMessage.getCallbackNanos());
+        }
     }
 
     /**
@@ -653,6 +861,42 @@ public class TransportConnection
         }
     }
 
+    /**
+     * Logs the time a slow operation spent in each stage.
+     *
+     * @param pendingMessage
+     *            The pending message for the operation.
+     * @param totalNanos
+     *            The total time for the operation in nano-seconds.
+     */
+    private void logSlowOperation(final PendingMessage pendingMessage,
+            final long totalNanos) {
+        if (SLOW_OPERATION_LOG.isInfoEnabled()) {
+            SLOW_OPERATION_LOG.info("Slow operation on {} took {} ms "
+                    + "(serialize={} ms, queue={} ms, network={} ms, "
+                    + "decode={} ms, callback={} ms): {}",
+                    getServer().getCanonicalName(), millis(totalNanos),
+                    millis(pendingMessage.getSerializeNanos()),
+                    millis(pendingMessage.getQueueNanos()),
+                    millis(pendingMessage.getNetworkNanos()),
+                    millis(pendingMessage.getDecodeNanos()),
+                    millis(pendingMessage.getCallbackNanos()),
+                    pendingMessage.getMessage());
+        }
+    }
+
+    /**
+     * Converts the nano-seconds into milliseconds with microsecond precision
+     * for logging.
+     *
+     * @param nanos
+     *            The nano-seconds to convert.
+     * @return The milliseconds.
+     */
+    private Double millis(final long nanos) {
+        return Double.valueOf(Math.round(nanos / 1000.0D) / 1000.0D);
+    }
+
     /**
      * Validates that the server we are about to send the message to knows how
      * to handle the message.
@@ -26,6 +26,15 @@ import com.allanbank.mongodb.client.callback.ReplyCallback;
  * Container for a pending message. Before the message is sent the message id
  * will be zero. After it will contain the assigned message id for the
  * connection.
+ * <p>
+ * The pending message also records when the message reached each stage of its
+ * life: created, serialized, handed to the transport, reply received, reply
+ * decoded and callback completed. The time between the stages is available
+ * via the {@link #getSerializeNanos()}, {@link #getQueueNanos()},
+ * {@link #getNetworkNanos()}, {@link #getDecodeNanos()} and
+ * {@link #getCallbackNanos()} methods. Stages that have not been reached
+ * report zero.
+ * </p>
  *
  * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
  *         mutated in incompatible ways between any two releases of the driver.
@@ -33,15 +42,30 @@ import com.allanbank.mongodb.client.callback.ReplyCallback;
  */
 public class PendingMessage {
 
+    /** The time the callback for the reply completed. */
+    private long myCompletedTimestamp;
+
+    /** The time the reply was decoded. */
+    private long myDecodedTimestamp;
+
     /** The message sent. */
     private Message myMessage;
 
     /** The message id assigned to the sent message. */
     private int myMessageId;
 
+    /** The time the reply to the message was received. */
+    private long myReceivedTimestamp;
+
     /** The callback for the reply to the message. */
     private ReplyCallback myReplyCallback;
 
+    /** The time the message was handed to the transport to be sent. */
+    private long mySentTimestamp;
+
+    /** The time the message was serialized. */
+    private long mySerializedTimestamp;
+
     /** The timestamp of the message. */
     private long myTimestamp;
 
@@ -88,11 +112,37 @@ public class PendingMessage {
      */
     public void clear() {
         myTimestamp = 0;
+        mySerializedTimestamp = 0;
+        mySentTimestamp = 0;
+        myReceivedTimestamp = 0;
+        myDecodedTimestamp = 0;
+        myCompletedTimestamp = 0;
         myMessageId = 0;
         myMessage = null;
         myReplyCallback = null;
     }
 
+    /**
+     * Returns the time in nano-seconds from the reply being decoded to the
+     * reply's callback completing or being handed to the thread that will run
+     * it.
+     *
+     * @return The time spent running or dispatching the callback.
+     */
+    public long getCallbackNanos() {
+        return elapsed(myDecodedTimestamp, myCompletedTimestamp);
+    }
+
+    /**
+     * Returns the time in nano-seconds from the reply being received to the
+     * reply being decoded.
+     *
+     * @return The time spent decoding the reply.
+     */
+    public long getDecodeNanos() {
+        return elapsed(myReceivedTimestamp, myDecodedTimestamp);
+    }
+
     /**
      * Returns the sent message.
      *
@@ -111,6 +161,28 @@ public class PendingMessage {
         return myMessageId;
     }
 
+    /**
+     * Returns the time in nano-seconds from the message being handed to the
+     * transport to the reply being received. This includes the time the
+     * server spent processing the request.
+     *
+     * @return The time spent on the network and in the server.
+     */
+    public long getNetworkNanos() {
+        return elapsed(mySentTimestamp, myReceivedTimestamp);
+    }
+
+    /**
+     * Returns the time in nano-seconds from the message being serialized to
+     * being handed to the transport. This is the time spent waiting for the
+     * connection's send sequence and for room in the pending message queue.
+     *
+     * @return The time spent waiting to send the message.
+     */
+    public long getQueueNanos() {
+        return elapsed(mySerializedTimestamp, mySentTimestamp);
+    }
+
     /**
      * Returns the callback for the reply to the message.
      *
@@ -120,9 +192,20 @@ public class PendingMessage {
         return myReplyCallback;
     }
 
+    /**
+     * Returns the time in nano-seconds from the message being created to it
+     * being serialized.
+     *
+     * @return The time spent serializing the message.
+     */
+    public long getSerializeNanos() {
+        return elapsed(myTimestamp, mySerializedTimestamp);
+    }
+
     /**
      * Determines the latency of the message in nano-seconds. If the message
-     * does not have a time stamp then zero is returned.
+     * does not have a time stamp then zero is returned. Once the reply has
+     * been decoded the latency is measured up to the decode.
      *
      * @return The current latency for the message.
      */
@@ -133,6 +216,10 @@ public class PendingMessage {
             return 0;
         }
 
+        final long decoded = myDecodedTimestamp;
+        if (decoded != 0) {
+            return decoded - timestamp;
+        }
         return System.nanoTime() - timestamp;
     }
 
@@ -152,6 +239,11 @@ public class PendingMessage {
         myMessage = message;
         myReplyCallback = replyCallback;
         myTimestamp = System.nanoTime();
+        mySerializedTimestamp = 0;
+        mySentTimestamp = 0;
+        myReceivedTimestamp = 0;
+        myDecodedTimestamp = 0;
+        myCompletedTimestamp = 0;
     }
 
     /**
@@ -165,6 +257,32 @@ public class PendingMessage {
         myMessage = other.getMessage();
         myReplyCallback = other.getReplyCallback();
         myTimestamp = other.myTimestamp;
+        mySerializedTimestamp = other.mySerializedTimestamp;
+        mySentTimestamp = other.mySentTimestamp;
+        myReceivedTimestamp = other.myReceivedTimestamp;
+        myDecodedTimestamp = other.myDecodedTimestamp;
+        myCompletedTimestamp = other.myCompletedTimestamp;
+    }
+
+    /**
+     * Records that the callback for the reply has completed or been handed to
+     * the thread that will run it.
+     *
+     * @return The time stamp for the completion.
+     */
+    public long timestampCompleted() {
+        myCompletedTimestamp = System.nanoTime();
+        return myCompletedTimestamp;
+    }
+
+    /**
+     * Records that the reply has been decoded.
+     *
+     * @return The time stamp for the decode.
+     */
+    public long timestampDecoded() {
+        myDecodedTimestamp = System.nanoTime();
+        return myDecodedTimestamp;
     }
 
     /**
@@ -173,4 +291,47 @@ public class PendingMessage {
     public void timestampNow() {
         myTimestamp = System.nanoTime();
     }
+
+    /**
+     * Records the time the reply to the message was received. The receive time
+     * is captured before the pending message is located so it is provided by
+     * the caller.
+     *
+     * @param received
+     *            The {@link System#nanoTime()} the reply was received.
+     */
+    public void timestampReceived(final long received) {
+        myReceivedTimestamp = received;
+    }
+
+    /**
+     * Records that the message has been handed to the transport to be sent.
+     */
+    public void timestampSent() {
+        mySentTimestamp = System.nanoTime();
+    }
+
+    /**
+     * Records that the message has been serialized.
+     */
+    public void timestampSerialized() {
+        mySerializedTimestamp = System.nanoTime();
+    }
+
+    /**
+     * Returns the time between the two time stamps or zero if either has not
+     * been recorded.
+     *
+     * @param start
+     *            The start of the stage.
+     * @param end
+     *            The end of the stage.
+     * @return The time between the time stamps.
+     */
+    private long elapsed(final long start, final long end) {
+        if ((start == 0) || (end == 0)) {
+            return 0;
+        }
+        return Math.max(0, end - start);
+    }
 }
@@ -20,13 +20,15 @@
 package com.allanbank.mongodb.client.message;
 
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.allanbank.mongodb.LockType;
+import com.allanbank.mongodb.StandardWaitStrategy;
+import com.allanbank.mongodb.WaitStrategy;
 import com.allanbank.mongodb.client.Message;
 import com.allanbank.mongodb.client.callback.ReplyCallback;
 
@@ -57,6 +59,16 @@ import com.allanbank.mongodb.client.callback.ReplyCallback;
  * time at the cost of a longer initialization.
  * </p>
  * <p>
+ * The three positions are each written by different threads so they are
+ * stored in a single {@link AtomicIntegerArray} with padding between each
+ * position to keep them on separate cache lines and avoid false sharing.
+ * </p>
+ * <p>
+ * When the queue is empty the consumer waits using the {@link WaitStrategy}
+ * provided when the queue is created. Producers waiting for space in a full
+ * queue always block.
+ * </p>
+ * <p>
  * Lastly, This queue assumes there is a single consumer of messages. This is
  * true for the driver's use case but don't copy the code and expect it to work
  * with multiple consumers. The consumer should use the following basic
@@ -103,14 +115,40 @@ public final class PendingMessageQueue {
      */
     public static final int MAX_SIZE = (1 << 20);
 
-    /** Amount of time to spin before yielding. Set to 1/100 of a millisecond. */
-    public static final long SPIN_TIME_NS = TimeUnit.MILLISECONDS.toNanos(1) / 100;
+    /**
+     * Amount of time to spin before yielding. Set to 1/100 of a millisecond.
+     *
+     * @deprecated The spin time is now controlled by the queue's
+     *             {@link WaitStrategy}. Use
+     *             {@link StandardWaitStrategy#SPIN_TIME_NS} instead.
+     */
+    @Deprecated
+    public static final long SPIN_TIME_NS = StandardWaitStrategy.SPIN_TIME_NS;
+
+    /**
+     * Amount of time to spin/yield before waiting. Set to 1/2 millisecond.
+     *
+     * @deprecated The yield time is now controlled by the queue's
+     *             {@link WaitStrategy}. Use
+     *             {@link StandardWaitStrategy#YIELD_TIME_NS} instead.
+     */
+    @Deprecated
+    public static final long YIELD_TIME_NS = StandardWaitStrategy.YIELD_TIME_NS;
+
+    /**
+     * The number of integers between each position. Sized to be at least a
+     * 64 byte cache line.
+     */
+    private static final int PADDING = 16;
+
+    /** The offset of the ready before position. */
+    private static final int READY_BEFORE_OFFSET = PADDING;
 
-    /** Amount of time to spin/yield before waiting. Set to 1/2 millisecond. */
-    public static final long YIELD_TIME_NS = TimeUnit.MILLISECONDS.toNanos(1) >> 1;
+    /** The offset of the reserve position. */
+    private static final int RESERVE_OFFSET = 2 * PADDING;
 
-    /** Number of times to spin before trying something different. */
-    private static final int SPIN_ITERATIONS = 10000;
+    /** The offset of the take position. */
+    private static final int TAKE_OFFSET = 3 * PADDING;
 
     /** The condition used with the queue being full or empty. */
     private final Condition myCondition;
@@ -118,9 +156,6 @@ public final class PendingMessageQueue {
     /** The mutex used with the queue. */
     private final Lock myLock;
 
-    /** The lock type to use with the queue. */
-    private final LockType myLockType;
-
     /** Tracks how many times we have looped through the ring buffer. */
     private final AtomicInteger myLooped;
 
@@ -131,35 +166,24 @@ public final class PendingMessageQueue {
     private final PendingMessage[] myQueue;
 
     /**
-     * The position of the last message that is ready to be taken.
-     * <p>
-     * When ({@link #myReadyBeforePosition} == {@link #myTakePosition}) the
-     * queue is empty.
-     * </p>
-     */
-    private final AtomicInteger myReadyBeforePosition;
-
-    /**
-     * The position of the next message that can be reserved.
+     * The padded positions within the queue.
+     * <ul>
+     * <li>The ready before position ({@value #READY_BEFORE_OFFSET}) is the
+     * position of the last message that is ready to be taken.</li>
+     * <li>The reserve position ({@value #RESERVE_OFFSET}) is the position of the
+     * next message that can be reserved.</li>
+     * <li>The take position ({@value #TAKE_OFFSET}) is the position of the next
+     * message that can be taken.</li>
+     * </ul>
      * <p>
-     * When ({@link #myReservePosition} == ({@link #myTakePosition} - 1)) the
-     * queue is full.
+     * When (ready before == take) the queue is empty. When (reserve == (take -
+     * 1)) the queue is full.
      * </p>
      */
-    private final AtomicInteger myReservePosition;
+    private final AtomicIntegerArray myPositions;
 
-    /**
-     * The position of the next message that can be taken.
-     * <p>
-     * When ({@link #myReservePosition} == ({@link #myTakePosition} - 1)) the
-     * queue is full.
-     * </p>
-     * <p>
-     * When ({@link #myReadyBeforePosition} == {@link #myTakePosition}) the
-     * queue is empty.
-     * </p>
-     */
-    private volatile int myTakePosition;
+    /** The strategy for the consumer to wait for a message. */
+    private final WaitStrategy myWaitStrategy;
 
     /** Tracks how many threads are waiting for a message or a space to open. */
     private final AtomicInteger myWaiting;
@@ -173,6 +197,18 @@ public final class PendingMessageQueue {
      *            The lock type to use with the queue.
      */
     public PendingMessageQueue(final int size, final LockType lockType) {
+        this(size, StandardWaitStrategy.forLockType(lockType));
+    }
+
+    /**
+     * Creates a new PendingMessageQueue.
+     *
+     * @param size
+     *            The size of the queue to create.
+     * @param waitStrategy
+     *            The strategy for the consumer to wait for a message.
+     */
+    public PendingMessageQueue(final int size, final WaitStrategy waitStrategy) {
         int power = size;
         if (MAX_SIZE < size) {
             power = MAX_SIZE;
@@ -185,7 +221,7 @@ public final class PendingMessageQueue {
             }
         }
 
-        myLockType = lockType;
+        myWaitStrategy = waitStrategy;
         myQueue = new PendingMessage[power];
         for (int i = 0; i < myQueue.length; ++i) {
             myQueue[i] = new PendingMessage(0, null);
@@ -193,9 +229,8 @@ public final class PendingMessageQueue {
         myMask = (power - 1);
 
         myLooped = new AtomicInteger(0);
-        myTakePosition = -1;
-        myReadyBeforePosition = new AtomicInteger(0);
-        myReservePosition = new AtomicInteger(0);
+        myPositions = new AtomicIntegerArray(TAKE_OFFSET + PADDING);
+        myPositions.set(TAKE_OFFSET, -1);
         myWaiting = new AtomicInteger(0);
 
         myLock = new ReentrantLock();
@@ -232,8 +267,8 @@ public final class PendingMessageQueue {
      * @return If the queue is empty.
      */
     public boolean isEmpty() {
-        final int take = myTakePosition;
-        final int readyBefore = myReadyBeforePosition.get();
+        final int take = myPositions.get(TAKE_OFFSET);
+        final int readyBefore = myPositions.get(READY_BEFORE_OFFSET);
 
         return (readyBefore == take) || (take < 0);
     }
@@ -307,15 +342,15 @@ public final class PendingMessageQueue {
      */
     public boolean poll(final PendingMessage copyOut) {
         boolean result = false;
-        final int take = myTakePosition;
-        if ((myReadyBeforePosition.get() != take) && (take >= 0)) { // Empty,
+        final int take = myPositions.get(TAKE_OFFSET);
+        if ((myPositions.get(READY_BEFORE_OFFSET) != take) && (take >= 0)) { // Empty,
             // Not
             // started?
             copyOut.set(myQueue[take]);
             myQueue[take].clear();
             result = true;
 
-            myTakePosition = increment(take);
+            myPositions.set(TAKE_OFFSET, increment(take));
             notifyWaiters(false);
         }
 
@@ -431,6 +466,11 @@ public final class PendingMessageQueue {
     /**
      * Puts a message onto the queue. This method will block waiting for a space
      * to add the message.
+     * <p>
+     * If the put has to wait for room the message's
+     * {@link PendingMessage#timestampSent() sent time stamp} is updated once
+     * room is found since the message is sent as soon as it is queued.
+     * </p>
      *
      * @param pendingMessage
      *            The message to add.
@@ -460,6 +500,8 @@ public final class PendingMessageQueue {
                 myLock.unlock();
                 myWaiting.decrementAndGet();
             }
+
+            pendingMessage.timestampSent();
         }
 
         myQueue[reserve].set(pendingMessage);
@@ -473,8 +515,8 @@ public final class PendingMessageQueue {
      * @return The number of messages in the queue.
      */
     public int size() {
-        final int take = myTakePosition;
-        final int ready = myReadyBeforePosition.get();
+        final int take = myPositions.get(TAKE_OFFSET);
+        final int ready = myPositions.get(READY_BEFORE_OFFSET);
 
         if (take < 0) {
             return 0;
@@ -498,30 +540,19 @@ public final class PendingMessageQueue {
     public void take(final PendingMessage copyOut) throws InterruptedException {
         if (!poll(copyOut)) {
 
-            // Spin/yeild loop.
-            if (myLockType == LockType.LOW_LATENCY_SPIN) {
-                long now = 0;
-                long spinDeadline = 1;
-                long yeildDeadline = 1;
-                while (now < yeildDeadline) {
-                    for (int i = 0; i < SPIN_ITERATIONS; ++i) {
-                        if (poll(copyOut)) {
-                            return;
-                        }
-                    }
-
-                    // Pause?
-                    now = System.nanoTime();
-                    if (spinDeadline == 1) {
-                        spinDeadline = now + SPIN_TIME_NS;
-                        yeildDeadline = now + YIELD_TIME_NS;
-                        // First time free pass.
-                    }
-                    else {
-                        if ((spinDeadline < now) && (now < yeildDeadline)) {
-                            Thread.yield();
-                        }
-                    }
+            // Let the strategy spin, yield or park.
+            final long start = System.nanoTime();
+            int attempt = 0;
+            while (myWaitStrategy.idle(attempt, start)) {
+                if (poll(copyOut)) {
+                    return;
+                }
+                if (Thread.interrupted()) {
+                    // Strategies that never block still honor interrupts.
+                    throw new InterruptedException();
+                }
+                if (attempt < Integer.MAX_VALUE) {
+                    attempt += 1;
                 }
             }
 
@@ -564,15 +595,15 @@ public final class PendingMessageQueue {
     protected void markReady(final int index) {
         final int after = increment(index);
 
-        while (!myReadyBeforePosition.compareAndSet(index, after)) {
+        while (!myPositions.compareAndSet(READY_BEFORE_OFFSET, index, after)) {
             // Spinning here slows things down because we know that the other
             // thread should be runnable. Always Yield.
             Thread.yield();
         }
 
         // Pull take position into the queue.
-        if ((index == 0) && (myTakePosition == -1)) {
-            myTakePosition = index;
+        if (index == 0) {
+            myPositions.compareAndSet(TAKE_OFFSET, -1, index);
         }
 
         notifyWaiters(false);
@@ -591,14 +622,15 @@ public final class PendingMessageQueue {
         final int after = increment(index);
         final int twoAfter = increment(after);
 
-        while (!myReadyBeforePosition.compareAndSet(index, twoAfter)) {
+        while (!myPositions.compareAndSet(READY_BEFORE_OFFSET, index,
+                twoAfter)) {
             // Just keep swimming...
             Thread.yield();
         }
 
         // Pull take position into the queue.
-        if ((index == 0) && (myTakePosition == -1)) {
-            myTakePosition = index;
+        if (index == 0) {
+            myPositions.compareAndSet(TAKE_OFFSET, -1, index);
         }
 
         // If someone is waiting let them know we created two messages.
@@ -638,10 +670,10 @@ public final class PendingMessageQueue {
      */
     protected int offer() {
         int result = -1;
-        final int reserve = myReservePosition.get();
+        final int reserve = myPositions.get(RESERVE_OFFSET);
         final int next = increment(reserve);
-        if ((myTakePosition != next) /* Full? */
-                && myReservePosition.compareAndSet(reserve, next)) {
+        if ((myPositions.get(TAKE_OFFSET) != next) /* Full? */
+                && myPositions.compareAndSet(RESERVE_OFFSET, reserve, next)) {
 
             // Got a slot.
             result = reserve;
@@ -664,12 +696,12 @@ public final class PendingMessageQueue {
      */
     protected int offer2() {
         int result = -1;
-        final int reserve = myReservePosition.get();
+        final int reserve = myPositions.get(RESERVE_OFFSET);
         final int first = increment(reserve);
         final int second = increment(first);
-        final int take = myTakePosition;
+        final int take = myPositions.get(TAKE_OFFSET);
         if ((take != first) && (take != second) /* Full? */
-                && myReservePosition.compareAndSet(reserve, second)) {
+                && myPositions.compareAndSet(RESERVE_OFFSET, reserve, second)) {
 
             // Got two slots. Return the first.
             result = reserve;
@@ -22,6 +22,7 @@ package com.allanbank.mongodb.client.message;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.allanbank.mongodb.ReadPreference;
@@ -32,6 +33,7 @@ import com.allanbank.mongodb.bson.io.BsonOutputStream;
 import com.allanbank.mongodb.bson.io.BufferingBsonOutputStream;
 import com.allanbank.mongodb.client.Message;
 import com.allanbank.mongodb.client.Operation;
+import com.allanbank.mongodb.client.callback.StreamingReplyCallback;
 import com.allanbank.mongodb.error.DocumentToLargeException;
 
 /**
@@ -98,6 +100,13 @@ public class Reply
     /** Indicates (to a MongoS?) that its shard configuration is stale. */
     private final boolean myShardConfigStale;
 
+    /**
+     * The length of the reply if the documents were streamed to a callback as
+     * they were decoded and are not in the {@link #getResults() results}.
+     * Otherwise zero.
+     */
+    private final int myStreamedLength;
+
     /**
      * Creates a new Reply.
      *
@@ -110,6 +119,26 @@ public class Reply
      */
     public Reply(final Header header, final BsonInputStream in)
             throws IOException {
+        this(header, in, null);
+    }
+
+    /**
+     * Creates a new Reply that passes the documents to the callback as they
+     * are decoded, if the callback accepts them.
+     *
+     * @param header
+     *            The header from the reply message.
+     * @param in
+     *            Stream to read the reply message from.
+     * @param callback
+     *            The callback to stream the documents to. May be
+     *            <code>null</code>.
+     * @throws IOException
+     *             On a failure to read the reply.
+     * @see StreamingReplyCallback
+     */
+    public Reply(final Header header, final BsonInputStream in,
+            final StreamingReplyCallback callback) throws IOException {
         init(".");
 
         myResponseToId = header.getResponseId();
@@ -119,15 +148,35 @@ public class Reply
         myCursorOffset = in.readInt();
 
         final int docCount = in.readInt();
-        myResults = new ArrayList<Document>(docCount);
-        for (int i = 0; i < docCount; ++i) {
-            myResults.add(in.readDocument());
-        }
 
         myAwaitCapable = (flags & AWAIT_CAPABLE_BIT) == AWAIT_CAPABLE_BIT;
         myCursorNotFound = (flags & CURSOR_NOT_FOUND_BIT) == CURSOR_NOT_FOUND_BIT;
         myQueryFailed = (flags & QUERY_FAILURE_BIT) == QUERY_FAILURE_BIT;
         myShardConfigStale = (flags & SHARD_CONFIG_STALE_BIT) == SHARD_CONFIG_STALE_BIT;
+
+        // Failures are always returned as a complete reply so the callback
+        // can report the error document.
+        if ((callback != null) && !myCursorNotFound && !myQueryFailed
+                && !myShardConfigStale
+                && callback.startStreaming(myCursorId, docCount)) {
+            myStreamedLength = header.getLength();
+            myResults = Collections.emptyList();
+            try {
+                for (int i = 0; i < docCount; ++i) {
+                    callback.streamed(in.readDocument());
+                }
+            }
+            finally {
+                callback.finishStreaming();
+            }
+        }
+        else {
+            myStreamedLength = 0;
+            myResults = new ArrayList<Document>(docCount);
+            for (int i = 0; i < docCount; ++i) {
+                myResults.add(in.readDocument());
+            }
+        }
     }
 
     /**
@@ -170,6 +219,7 @@ public class Reply
         myCursorNotFound = cursorNotFound;
         myQueryFailed = queryFailed;
         myShardConfigStale = shardConfigStale;
+        myStreamedLength = 0;
     }
 
     /**
@@ -313,6 +363,17 @@ public class Reply
         return myShardConfigStale;
     }
 
+    /**
+     * Returns true if the documents were streamed to a
+     * {@link StreamingReplyCallback} as they were decoded. The streamed
+     * documents are not included in the {@link #getResults() results}.
+     *
+     * @return True if the documents were streamed to a callback.
+     */
+    public boolean isStreamed() {
+        return (0 < myStreamedLength);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -321,6 +382,9 @@ public class Reply
      */
     @Override
     public int size() {
+        if (isStreamed()) {
+            return myStreamedLength;
+        }
 
         int size = HEADER_SIZE + 20;
         // size += 4; // flags;
@@ -23,15 +23,38 @@ import java.io.Closeable;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.NumberFormat;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 
 /**
  * AbstractMetrics provides the ability to accumulate the basic send/receive
  * metrics.
+ * <p>
+ * The counts and totals are held in striped {@link LongAdder}s and the
+ * latencies are recorded in a striped {@link LatencyHistogram} so that the
+ * many threads sending and receiving messages do not contend on the same
+ * values. Readers sum the stripes without blocking the writers.
+ * </p>
+ * <p>
+ * The recent average latency is derived from the striped counts when it is
+ * read instead of being updated by each received message. The latency of the
+ * last message received is only written for a sample of the received
+ * messages so it is the latency of a recently received message.
+ * </p>
+ * <p>
+ * The time each message spends in each {@link MessageStage} is recorded in a
+ * histogram per stage. The stage histograms are only created once the first
+ * stage notification is received since most metrics never see them.
+ * </p>
  *
  * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
  *         mutated in incompatible ways between any two releases of the driver.
@@ -46,78 +69,73 @@ public abstract class AbstractMetrics
     /** The decay period (number of samples) for the average latency. */
     private static final double DECAY_SAMPLES = 1000.0D;
 
+    /**
+     * One in this many received messages updates the last latency. Must be a
+     * power of 2.
+     */
+    private static final int LAST_LATENCY_SAMPLE_RATE = 16;
+
+    /** The stages of a message's life. */
+    private static final MessageStage[] STAGES = MessageStage.values();
+
     /** The number of nano-seconds per milli-second. */
     private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS
             .toNanos(1);
 
-    /** The updater for all of the message received counts. */
+    /** The updater for the latency of the last message received. */
     private final static AtomicLongFieldUpdater<AbstractMetrics> ourLastLatencyNanosUpdater;
 
-    /** The updater for all of the message received bytes. */
-    private final static AtomicLongFieldUpdater<AbstractMetrics> ourMessageReceivedBytesUpdater;
-
-    /** The updater for all of the message received counts. */
-    private final static AtomicLongFieldUpdater<AbstractMetrics> ourMessageReceivedUpdater;
-
-    /** The updater for all of the message sent bytes. */
-    private final static AtomicLongFieldUpdater<AbstractMetrics> ourMessageSentBytesUpdater;
-
-    /** The updater for all of the message sent counts. */
-    private final static AtomicLongFieldUpdater<AbstractMetrics> ourMessageSentUpdater;
-
-    /** The updater for all of the message received counts. */
-    private final static AtomicLongFieldUpdater<AbstractMetrics> ourRecentAverageLatencyMillisUpdater;
-
-    /** The updater for all of the message received counts. */
-    private final static AtomicLongFieldUpdater<AbstractMetrics> ourTotalLatencyNanosUpdater;
-
     static {
         DECAY_ALPHA = (2.0D / (DECAY_SAMPLES + 1));
 
         ourLastLatencyNanosUpdater = AtomicLongFieldUpdater.newUpdater(
                 AbstractMetrics.class, "myLastLatencyNanos");
-        ourMessageReceivedBytesUpdater = AtomicLongFieldUpdater.newUpdater(
-                AbstractMetrics.class, "myMessageReceivedBytes");
-        ourMessageReceivedUpdater = AtomicLongFieldUpdater.newUpdater(
-                AbstractMetrics.class, "myMessageReceivedCount");
-        ourMessageSentBytesUpdater = AtomicLongFieldUpdater.newUpdater(
-                AbstractMetrics.class, "myMessageSentBytes");
-        ourMessageSentUpdater = AtomicLongFieldUpdater.newUpdater(
-                AbstractMetrics.class, "myMessageSentCount");
-        ourRecentAverageLatencyMillisUpdater = AtomicLongFieldUpdater
-                .newUpdater(AbstractMetrics.class,
-                        "myRecentAverageLatencyMillis");
-        ourTotalLatencyNanosUpdater = AtomicLongFieldUpdater.newUpdater(
-                AbstractMetrics.class, "myTotalLatencyNanos");
     }
 
-    /** The latency for the last message received. */
+    /** The latency for a recently received message. */
     private volatile long myLastLatencyNanos;
 
+    /** The histogram of the latency for received messages. */
+    private final LatencyHistogram myLatencies = new LatencyHistogram();
+
     /** The number of received bytes. */
-    private volatile long myMessageReceivedBytes;
+    private final LongAdder myMessageReceivedBytes = new LongAdder();
 
     /** The number of received messages. */
-    private volatile long myMessageReceivedCount;
+    private final LongAdder myMessageReceivedCount = new LongAdder();
 
     /** The number of sent bytes. */
-    private volatile long myMessageSentBytes;
+    private final LongAdder myMessageSentBytes = new LongAdder();
 
     /** The number of sent messages. */
-    private volatile long myMessageSentCount;
+    private final LongAdder myMessageSentCount = new LongAdder();
 
     /**
-     * Tracks the recent average received latency. This is updated periodically
-     * using an exponential moving average.
-     * <p>
-     * The double value is stored as a long via
-     * {@link Double#doubleToLongBits(double)}.
-     * </p>
+     * Tracks the recent average received latency. This is updated, using an
+     * exponential moving average, when the average is read. Guarded by this.
+     */
+    private double myRecentAverageLatencyMillis;
+
+    /**
+     * The number of received messages when the recent average was last
+     * updated. Guarded by this.
      */
-    private volatile long myRecentAverageLatencyMillis;
+    private long myRecentReceivedCount;
+
+    /**
+     * The total latency when the recent average was last updated. Guarded by
+     * this.
+     */
+    private long myRecentTotalLatencyNanos;
+
+    /**
+     * The histograms of the time spent in each stage, indexed by the stage's
+     * ordinal. Created on the first stage notification.
+     */
+    private volatile LatencyHistogram[] myStageLatencies;
 
     /** The total latency for all received messages. */
-    private volatile long myTotalLatencyNanos;
+    private final LongAdder myTotalLatencyNanos = new LongAdder();
 
     /**
      * Creates a new AbstractMetrics.
@@ -148,7 +166,10 @@ public abstract class AbstractMetrics
     }
 
     /**
-     * Returns the latency for the last message received in nanoseconds.
+     * Returns the latency for the last message received in nanoseconds. To
+     * avoid every receiving thread writing the same value only a sample of the
+     * received messages update the latency so this is the latency of a
+     * recently received message.
      *
      * @return The latency for the last message received in nanoseconds.
      */
@@ -156,13 +177,68 @@ public abstract class AbstractMetrics
         return myLastLatencyNanos;
     }
 
+    /**
+     * Returns the histogram of the latency for received messages.
+     *
+     * @return The histogram of the latency for received messages.
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return myLatencies;
+    }
+
+    /**
+     * Returns the median latency for received messages in milliseconds.
+     *
+     * @return The median latency for received messages in milliseconds or
+     *         {@link Double#NaN} if no messages have been received.
+     */
+    public double getLatencyP50Millis() {
+        return myLatencies.getPercentileMillis(50.0);
+    }
+
+    /**
+     * Returns the 90th percentile latency for received messages in
+     * milliseconds.
+     *
+     * @return The 90th percentile latency for received messages in
+     *         milliseconds or {@link Double#NaN} if no messages have been
+     *         received.
+     */
+    public double getLatencyP90Millis() {
+        return myLatencies.getPercentileMillis(90.0);
+    }
+
+    /**
+     * Returns the 99th percentile latency for received messages in
+     * milliseconds.
+     *
+     * @return The 99th percentile latency for received messages in
+     *         milliseconds or {@link Double#NaN} if no messages have been
+     *         received.
+     */
+    public double getLatencyP99Millis() {
+        return myLatencies.getPercentileMillis(99.0);
+    }
+
+    /**
+     * Returns the 99.9th percentile latency for received messages in
+     * milliseconds.
+     *
+     * @return The 99.9th percentile latency for received messages in
+     *         milliseconds or {@link Double#NaN} if no messages have been
+     *         received.
+     */
+    public double getLatencyP999Millis() {
+        return myLatencies.getPercentileMillis(99.9);
+    }
+
     /**
      * Returns the number of received bytes.
      *
      * @return The number of received bytes.
      */
     public long getMessageReceivedBytes() {
-        return myMessageReceivedBytes;
+        return myMessageReceivedBytes.sum();
     }
 
     /**
@@ -171,7 +247,7 @@ public abstract class AbstractMetrics
      * @return The number of received messages.
      */
     public long getMessageReceivedCount() {
-        return myMessageReceivedCount;
+        return myMessageReceivedCount.sum();
     }
 
     /**
@@ -180,7 +256,7 @@ public abstract class AbstractMetrics
      * @return The number of sent bytes.
      */
     public long getMessageSentBytes() {
-        return myMessageSentBytes;
+        return myMessageSentBytes.sum();
     }
 
     /**
@@ -189,16 +265,81 @@ public abstract class AbstractMetrics
      * @return The number of sent messages.
      */
     public long getMessageSentCount() {
-        return myMessageSentCount;
+        return myMessageSentCount.sum();
     }
 
     /**
      * Returns the recent average received latency in nanoseconds.
+     * <p>
+     * The exponential moving average is brought up to date using the messages
+     * received since the last call. The average latency of those messages is
+     * weighted as if each had been added to the average individually.
+     * </p>
      *
      * @return The recent average received latency in nanoseconds.
      */
-    public double getRecentAverageLatencyMillis() {
-        return Double.longBitsToDouble(myRecentAverageLatencyMillis);
+    public synchronized double getRecentAverageLatencyMillis() {
+        final long count = myMessageReceivedCount.sum();
+        final long total = myTotalLatencyNanos.sum();
+        final long samples = count - myRecentReceivedCount;
+        if (0 < samples) {
+            final double latency = (total - myRecentTotalLatencyNanos)
+                    / (samples * NANOS_PER_MILLI);
+            if (Double.isNaN(myRecentAverageLatencyMillis)) {
+                myRecentAverageLatencyMillis = latency;
+            }
+            else {
+                final double retained = Math.pow(1.0D - DECAY_ALPHA, samples);
+                myRecentAverageLatencyMillis = ((1.0D - retained) * latency)
+                        + (retained * myRecentAverageLatencyMillis);
+            }
+            myRecentReceivedCount = count;
+            myRecentTotalLatencyNanos = total;
+        }
+        return myRecentAverageLatencyMillis;
+    }
+
+    /**
+     * Returns the histogram of the time messages spent in the stage.
+     *
+     * @param stage
+     *            The stage of interest.
+     * @return The histogram of the time messages spent in the stage or
+     *         <code>null</code> if no stage times have been recorded.
+     */
+    public LatencyHistogram getStageLatencyHistogram(final MessageStage stage) {
+        final LatencyHistogram[] latencies = myStageLatencies;
+        if (latencies == null) {
+            return null;
+        }
+        return latencies[stage.ordinal()];
+    }
+
+    /**
+     * Returns the percentile of the time messages spent in each stage in
+     * milliseconds. The map is keyed by the stage's
+     * {@link MessageStage#getDisplayName() display name} and is in the order
+     * of the stages.
+     *
+     * @param percentile
+     *            The percentile to return. Must be between 0 and 100.
+     * @return The percentile of the time spent in each stage in milliseconds.
+     *         The value for a stage is {@link Double#NaN} if no stage times
+     *         have been recorded.
+     */
+    public Map<String, Double> getStageLatencyMillis(final double percentile) {
+        final LatencyHistogram[] latencies = myStageLatencies;
+
+        final Map<String, Double> result = new LinkedHashMap<String, Double>();
+        for (final MessageStage stage : STAGES) {
+            double value = Double.NaN;
+            if (latencies != null) {
+                value = latencies[stage.ordinal()]
+                        .getPercentileMillis(percentile);
+            }
+            result.put(stage.getDisplayName(), Double.valueOf(value));
+        }
+        return Collections.unmodifiableMap(result);
     }
 
     /**
@@ -207,7 +348,7 @@ public abstract class AbstractMetrics
      * @return The total latency for all received messages in nanoseconds.
      */
     public long getTotalLatencyNanos() {
-        return myTotalLatencyNanos;
+        return myTotalLatencyNanos.sum();
     }
 
     /**
@@ -219,40 +360,40 @@ public abstract class AbstractMetrics
     @Override
     public void receive(final String serverName, final long messageId,
             final Message sent, final Reply reply, final long latencyNanos) {
-        ourMessageReceivedUpdater.incrementAndGet(this);
-        ourMessageReceivedBytesUpdater.addAndGet(this, reply.size());
-        ourTotalLatencyNanosUpdater.addAndGet(this, latencyNanos);
-        ourLastLatencyNanosUpdater.lazySet(this, latencyNanos);
-
-        // Compute a moving average for the recent latency.
-        final double latency = latencyNanos / NANOS_PER_MILLI;
-        final double oldAverage = getRecentAverageLatencyMillis();
-
-        long newValue;
-        if (Double.isNaN(oldAverage)) {
-            newValue = Double.doubleToLongBits(latency);
-        }
-        else {
-            final double newLatency = (DECAY_ALPHA * latency)
-                    + ((1.0D - DECAY_ALPHA) * oldAverage);
-
-            newValue = Double.doubleToLongBits(newLatency);
+        myTotalLatencyNanos.add(latencyNanos);
+        myMessageReceivedCount.increment();
+        myMessageReceivedBytes.add(reply.size());
+        myLatencies.record(latencyNanos);
+
+        // Sample the last latency so every thread is not writing the value.
+        final int sample = ThreadLocalRandom.current().nextInt();
+        if ((myLastLatencyNanos == 0)
+                || ((sample & (LAST_LATENCY_SAMPLE_RATE - 1)) == 0)) {
+            ourLastLatencyNanosUpdater.lazySet(this, latencyNanos);
         }
-
-        ourRecentAverageLatencyMillisUpdater.set(this, newValue);
     }
 
     /**
      * Resets the metrics counts.
      */
-    public void reset() {
+    public synchronized void reset() {
         myLastLatencyNanos = 0L;
-        myMessageReceivedBytes = 0L;
-        myMessageReceivedCount = 0L;
-        myMessageSentBytes = 0L;
-        myMessageSentCount = 0L;
-        myRecentAverageLatencyMillis = Double.doubleToRawLongBits(Double.NaN);
-        myTotalLatencyNanos = 0L;
+        myLatencies.reset();
+        myMessageReceivedBytes.reset();
+        myMessageReceivedCount.reset();
+        myMessageSentBytes.reset();
+        myMessageSentCount.reset();
+        myTotalLatencyNanos.reset();
+        myRecentAverageLatencyMillis = Double.NaN;
+        myRecentReceivedCount = 0;
+        myRecentTotalLatencyNanos = 0;
+
+        final LatencyHistogram[] latencies = myStageLatencies;
+        if (latencies != null) {
+            for (final LatencyHistogram histogram : latencies) {
+                histogram.reset();
+            }
+        }
     }
 
     /**
@@ -264,8 +405,22 @@ public abstract class AbstractMetrics
     @Override
     public void sent(final String serverName, final long messageId,
             final Message sent) {
-        ourMessageSentUpdater.incrementAndGet(this);
-        ourMessageSentBytesUpdater.addAndGet(this, sent.size());
+        myMessageSentCount.increment();
+        myMessageSentBytes.add(sent.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to record the time spent in each stage.
+     * </p>
+     */
+    @Override
+    public void stages(final String serverName, final PendingMessage pending) {
+        final LatencyHistogram[] latencies = stageLatencies();
+        for (final MessageStage stage : STAGES) {
+            latencies[stage.ordinal()].record(stage.nanos(pending));
+        }
     }
 
     /**
@@ -316,23 +471,23 @@ public abstract class AbstractMetrics
         final NumberFormat doubleFormat = NumberFormat.getNumberInstance();
 
         writer.append("sentBytes=");
-        writer.append(intFormat.format(myMessageSentBytes));
+        writer.append(intFormat.format(getMessageSentBytes()));
 
         writer.append(", sentCount=");
-        writer.append(intFormat.format(myMessageSentCount));
+        writer.append(intFormat.format(getMessageSentCount()));
 
         writer.append(", receivedBytes=");
-        writer.append(intFormat.format(myMessageReceivedBytes));
+        writer.append(intFormat.format(getMessageReceivedBytes()));
 
         writer.append(", receivedCount=");
-        writer.append(intFormat.format(myMessageReceivedCount));
+        writer.append(intFormat.format(getMessageReceivedCount()));
 
         writer.append(", lastLatency=");
         writer.append(doubleFormat.format(myLastLatencyNanos / NANOS_PER_MILLI));
 
         writer.append(" ms, totalLatency=");
         writer.append(doubleFormat
-                .format(myTotalLatencyNanos / NANOS_PER_MILLI));
+                .format(getTotalLatencyNanos() / NANOS_PER_MILLI));
 
         double average = getRecentAverageLatencyMillis();
         if (!Double.isNaN(average)) {
@@ -353,4 +508,26 @@ public abstract class AbstractMetrics
         }
     }
 
+    /**
+     * Returns the histograms for the stages, creating them if needed.
+     *
+     * @return The histograms for the stages.
+     */
+    private LatencyHistogram[] stageLatencies() {
+        LatencyHistogram[] latencies = myStageLatencies;
+        if (latencies == null) {
+            synchronized (this) {
+                latencies = myStageLatencies;
+                if (latencies == null) {
+                    latencies = new LatencyHistogram[STAGES.length];
+                    for (int i = 0; i < latencies.length; ++i) {
+                        latencies[i] = new LatencyHistogram();
+                    }
+                    myStageLatencies = latencies;
+                }
+            }
+        }
+        return latencies;
+    }
+
 }
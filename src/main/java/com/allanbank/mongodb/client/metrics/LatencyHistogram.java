@@ -0,0 +1,287 @@
+/*
+ * #%L
+ * LatencyHistogram.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * LatencyHistogram provides a fixed memory histogram of latencies.
+ * <p>
+ * Latencies are recorded, in nanoseconds, into log-linear buckets: each power
+ * of two is split into {@value #SUB_BUCKETS} equal width buckets so the
+ * relative error of a reported value is at most 1 part in
+ * {@value #SUB_BUCKETS}. Latencies longer than about 68 seconds are recorded in
+ * the last bucket.
+ * </p>
+ * <p>
+ * Recording a latency is a single atomic increment. To keep threads from
+ * contending on the same bucket the counts are striped across several arrays
+ * selected by the recording thread's id. Readers sum the stripes without
+ * blocking the writers. Histograms can be merged, e.g., to combine the
+ * latencies for several servers.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@ThreadSafe
+public class LatencyHistogram {
+
+    /** The number of sub-buckets for each power of two. */
+    public static final int SUB_BUCKETS = 8;
+
+    /** The largest power of two with distinct buckets. */
+    private static final int MAX_EXPONENT = 36;
+
+    /** The number of bits for the sub-bucket. */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** The total number of buckets. */
+    private static final int BUCKET_COUNT = ((MAX_EXPONENT - SUB_BUCKET_BITS) + 2)
+            * SUB_BUCKETS;
+
+    /** The default maximum number of stripes. */
+    private static final int MAX_STRIPES = 4;
+
+    /** The number of nano-seconds per milli-second. */
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS
+            .toNanos(1);
+
+    /**
+     * Returns the bucket for the latency.
+     *
+     * @param latencyNanos
+     *            The latency in nanoseconds.
+     * @return The bucket for the latency.
+     */
+    /* package */static int bucket(final long latencyNanos) {
+        if (latencyNanos < SUB_BUCKETS) {
+            return (int) Math.max(0, latencyNanos);
+        }
+
+        final int exponent = (Long.SIZE - 1)
+                - Long.numberOfLeadingZeros(latencyNanos);
+        if (MAX_EXPONENT < exponent) {
+            return BUCKET_COUNT - 1;
+        }
+
+        final int sub = (int) (latencyNanos >>> (exponent - SUB_BUCKET_BITS))
+                & (SUB_BUCKETS - 1);
+        return (((exponent - SUB_BUCKET_BITS) + 1) * SUB_BUCKETS) + sub;
+    }
+
+    /**
+     * Returns the value reported for the bucket. This is the middle of the
+     * range of latencies recorded in the bucket.
+     *
+     * @param bucket
+     *            The bucket.
+     * @return The value for the bucket in nanoseconds.
+     */
+    /* package */static long bucketValue(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int shift = (bucket / SUB_BUCKETS) - 1;
+        final long sub = bucket % SUB_BUCKETS;
+        final long lower = (SUB_BUCKETS + sub) << shift;
+
+        return lower + ((1L << shift) >> 1);
+    }
+
+    /**
+     * Returns the default number of stripes. This is the smallest power of two
+     * at least the number of processors up to {@value #MAX_STRIPES}.
+     *
+     * @return The default number of stripes.
+     */
+    private static int defaultStripes() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while ((stripes < processors) && (stripes < MAX_STRIPES)) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    /** The mask for selecting a stripe from the thread's id. */
+    private final int myMask;
+
+    /** The stripes of bucket counts. */
+    private final AtomicLongArray[] myStripes;
+
+    /**
+     * Creates a new LatencyHistogram with the default number of stripes.
+     */
+    public LatencyHistogram() {
+        this(defaultStripes());
+    }
+
+    /**
+     * Creates a new LatencyHistogram.
+     *
+     * @param stripes
+     *            The number of stripes for the counts. Rounded up to a power
+     *            of two.
+     */
+    public LatencyHistogram(final int stripes) {
+        int count = 1;
+        while (count < stripes) {
+            count <<= 1;
+        }
+
+        myMask = count - 1;
+        myStripes = new AtomicLongArray[count];
+        for (int i = 0; i < count; ++i) {
+            myStripes[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return The number of latencies recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (final AtomicLongArray stripe : myStripes) {
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                count += stripe.get(i);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the count of latencies in each bucket summed across the stripes.
+     *
+     * @return The count of latencies in each bucket.
+     */
+    public long[] getCounts() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (final AtomicLongArray stripe : myStripes) {
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the latency at the percentile in milliseconds.
+     *
+     * @param percentile
+     *            The percentile, e.g., 99.9.
+     * @return The latency at the percentile in milliseconds or
+     *         {@link Double#NaN} if no latencies have been recorded.
+     */
+    public double getPercentileMillis(final double percentile) {
+        final long nanos = getPercentileNanos(percentile);
+        if (nanos < 0) {
+            return Double.NaN;
+        }
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the latency at the percentile in nanoseconds.
+     *
+     * @param percentile
+     *            The percentile, e.g., 99.9.
+     * @return The latency at the percentile in nanoseconds or -1 if no
+     *         latencies have been recorded.
+     */
+    public long getPercentileNanos(final double percentile) {
+        final long[] counts = getCounts();
+        long total = 0;
+        for (final long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return -1;
+        }
+
+        final double bounded = Math.min(100.0, Math.max(0.0, percentile));
+        final long target = Math.max(1,
+                (long) Math.ceil((bounded / 100.0) * total));
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (target <= seen) {
+                return bucketValue(i);
+            }
+        }
+        return bucketValue(counts.length - 1);
+    }
+
+    /**
+     * Adds the latencies recorded in the other histogram to this histogram.
+     *
+     * @param other
+     *            The histogram to merge into this histogram.
+     */
+    public void merge(final LatencyHistogram other) {
+        final AtomicLongArray stripe = stripe();
+        final long[] counts = other.getCounts();
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] != 0) {
+                stripe.addAndGet(i, counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param latencyNanos
+     *            The latency in nanoseconds.
+     */
+    public void record(final long latencyNanos) {
+        stripe().incrementAndGet(bucket(latencyNanos));
+    }
+
+    /**
+     * Clears the recorded latencies. Latencies recorded concurrently with the
+     * reset may or may not be cleared.
+     */
+    public void reset() {
+        for (final AtomicLongArray stripe : myStripes) {
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the stripe for the current thread.
+     *
+     * @return The stripe for the current thread.
+     */
+    private AtomicLongArray stripe() {
+        return myStripes[(int) Thread.currentThread().getId() & myMask];
+    }
+}
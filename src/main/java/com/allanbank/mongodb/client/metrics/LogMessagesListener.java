@@ -21,6 +21,7 @@ package com.allanbank.mongodb.client.metrics;
 
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.util.log.Log;
 import com.allanbank.mongodb.util.log.LogFactory;
@@ -79,4 +80,24 @@ public class LogMessagesListener
             LOG.debug("{}:{} --> {}", serverName, Long.valueOf(messageId), sent);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to log the time spent in each stage.
+     * </p>
+     */
+    @Override
+    public void stages(final String serverName, final PendingMessage pending) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{}:{} stages: serialize={} ns, queue={} ns, "
+                    + "network={} ns, decode={} ns, callback={} ns",
+                    serverName, Long.valueOf(pending.getMessageId()),
+                    Long.valueOf(pending.getSerializeNanos()),
+                    Long.valueOf(pending.getQueueNanos()),
+                    Long.valueOf(pending.getNetworkNanos()),
+                    Long.valueOf(pending.getDecodeNanos()),
+                    Long.valueOf(pending.getCallbackNanos()));
+        }
+    }
 }
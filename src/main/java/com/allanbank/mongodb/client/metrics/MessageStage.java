@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * MessageStage.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.metrics;
+
+import com.allanbank.mongodb.client.message.PendingMessage;
+
+/**
+ * MessageStage enumerates the stages of a message's life that are timed by the
+ * driver. The stages are contiguous: the sum of the stages is the time from
+ * the message being created to the callback for its reply completing.
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public enum MessageStage {
+
+    /** Serializing the message into the transport's buffer. */
+    SERIALIZE("serialize") {
+        @Override
+        public long nanos(final PendingMessage pending) {
+            return pending.getSerializeNanos();
+        }
+    },
+
+    /**
+     * Waiting for the connection's send sequence and for room in the pending
+     * message queue.
+     */
+    QUEUE("queue") {
+        @Override
+        public long nanos(final PendingMessage pending) {
+            return pending.getQueueNanos();
+        }
+    },
+
+    /**
+     * On the network and in the server. From the message being handed to the
+     * transport to the reply being received.
+     */
+    NETWORK("network") {
+        @Override
+        public long nanos(final PendingMessage pending) {
+            return pending.getNetworkNanos();
+        }
+    },
+
+    /** Decoding the reply. */
+    DECODE("decode") {
+        @Override
+        public long nanos(final PendingMessage pending) {
+            return pending.getDecodeNanos();
+        }
+    },
+
+    /** Running, or dispatching, the callback for the reply. */
+    CALLBACK("callback") {
+        @Override
+        public long nanos(final PendingMessage pending) {
+            return pending.getCallbackNanos();
+        }
+    };
+
+    /** The display name for the stage. */
+    private final String myDisplayName;
+
+    /**
+     * Creates a new MessageStage.
+     *
+     * @param displayName
+     *            The display name for the stage.
+     */
+    private MessageStage(final String displayName) {
+        myDisplayName = displayName;
+    }
+
+    /**
+     * Returns the display name for the stage.
+     *
+     * @return The display name for the stage.
+     */
+    public String getDisplayName() {
+        return myDisplayName;
+    }
+
+    /**
+     * Returns the time the message spent in this stage.
+     *
+     * @param pending
+     *            The pending message with the stage time stamps.
+     * @return The time, in nano-seconds, the message spent in this stage.
+     */
+    public abstract long nanos(PendingMessage pending);
+}
@@ -21,6 +21,9 @@ package com.allanbank.mongodb.client.metrics;
 
 import java.io.Closeable;
 
+import com.allanbank.mongodb.client.callback.ReplyDispatcher;
+import com.allanbank.mongodb.client.state.ClusterPinger;
+
 /**
  * MongoClientMetrics provides the interface for exposing various client
  * metrics.
@@ -50,6 +53,126 @@ public interface MongoClientMetrics
      */
     public void connectionClosed(MongoMessageListener listener);
 
+    /**
+     * Returns the number of buffer leases from the driver's
+     * {@link com.allanbank.mongodb.bson.io.BufferPool} satisfied by a pooled
+     * buffer.
+     * <p>
+     * The pool is shared by every client in the process (JVM) so the count is
+     * process-wide and not specific to this client.
+     * </p>
+     *
+     * @return The number of buffer leases satisfied by a pooled buffer.
+     */
+    public long getBufferPoolHitCount();
+
+    /**
+     * Returns the number of buffer leases from the driver's
+     * {@link com.allanbank.mongodb.bson.io.BufferPool} that required a new
+     * buffer to be allocated.
+     * <p>
+     * The pool is shared by every client in the process (JVM) so the count is
+     * process-wide and not specific to this client.
+     * </p>
+     *
+     * @return The number of buffer leases that required a new buffer to be
+     *         allocated.
+     */
+    public long getBufferPoolMissCount();
+
+    /**
+     * Returns the number of servers being re-pinged with an exponential back
+     * off after a failure.
+     *
+     * @return The number of servers being re-pinged after a failure. Zero if
+     *         the servers are not pinged.
+     */
+    public int getPingBackoffServerCount();
+
+    /**
+     * Returns the number of pings sent to the servers.
+     *
+     * @return The number of pings sent. Zero if the servers are not pinged.
+     */
+    public long getPingCount();
+
+    /**
+     * Returns the number of pings that failed or were not answered.
+     *
+     * @return The number of pings that failed or were not answered. Zero if
+     *         the servers are not pinged.
+     */
+    public long getPingFailedCount();
+
+    /**
+     * Returns the number of pings sent before the ping sweep interval because
+     * of a failure or a replica set without a primary.
+     *
+     * @return The number of pings sent before the ping sweep interval. Zero
+     *         if the servers are not pinged.
+     */
+    public long getPingFastCount();
+
+    /**
+     * Returns the interval, in milliseconds, between ping sweeps across all
+     * of the servers.
+     *
+     * @return The interval between ping sweeps in milliseconds. Zero if the
+     *         servers are not pinged.
+     */
+    public long getPingSweepIntervalMillis();
+
+    /**
+     * Returns the average time, in nanoseconds, replies waited for a
+     * {@link ReplyDispatcher} thread before their callback was started.
+     *
+     * @return The average time replies waited for a dispatch thread. Zero if
+     *         replies are not dispatched.
+     */
+    public double getReplyDispatchAverageLatencyNanos();
+
+    /**
+     * Returns the number of replies waiting for a {@link ReplyDispatcher}
+     * thread.
+     *
+     * @return The number of replies waiting for a dispatch thread. Zero if
+     *         replies are not dispatched.
+     */
+    public int getReplyDispatchQueueDepth();
+
+    /**
+     * Returns the number of replies rejected by a full {@link ReplyDispatcher}
+     * queue. Those replies were delivered by the receive thread or the
+     * client's executor.
+     *
+     * @return The number of replies rejected by a full dispatch queue.
+     */
+    public long getReplyDispatchRejectedCount();
+
+    /**
+     * Returns the number of SCRAM-SHA-1 authentications that reused the keys
+     * already derived for the same user, password, salt and iteration count.
+     *
+     * @return The number of authentications that reused the derived keys.
+     */
+    public long getScramKeyCacheHitCount();
+
+    /**
+     * Returns the number of SCRAM-SHA-1 authentications that had to derive
+     * the keys from the password.
+     *
+     * @return The number of authentications that derived the keys.
+     */
+    public long getScramKeyCacheMissCount();
+
+    /**
+     * Returns the total time, in nanoseconds, spent deriving SCRAM-SHA-1 keys
+     * from passwords.
+     *
+     * @return The total time spent deriving SCRAM-SHA-1 keys.
+     */
+    public long getScramKeyDerivationNanos();
+
     /**
      * Returns a listener for the messages from a single connection to the
      * server.
@@ -70,4 +193,24 @@ public interface MongoClientMetrics
      *            The listener for all messages sent or received by the cluster.
      */
     public void setMessageListener(MongoMessageListener listener);
+
+    /**
+     * Sets the pinger tracking the state and latency of the client's servers.
+     *
+     * @param pinger
+     *            The pinger tracking the state and latency of the client's
+     *            servers. May be <code>null</code> if the servers are not
+     *            pinged.
+     */
+    public void setPinger(ClusterPinger pinger);
+
+    /**
+     * Sets the dispatcher running the callbacks for the client's replies.
+     *
+     * @param dispatcher
+     *            The dispatcher running the callbacks for the client's
+     *            replies. May be <code>null</code> if the replies are not
+     *            dispatched.
+     */
+    public void setReplyDispatcher(ReplyDispatcher dispatcher);
 }
@@ -20,6 +20,7 @@
 package com.allanbank.mongodb.client.metrics;
 
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 
 /**
@@ -66,4 +67,20 @@ public interface MongoMessageListener {
      *            The message that was sent.
      */
     public void sent(String serverName, long messageId, Message sent);
+
+    /**
+     * Notification of the time a message spent in each {@link MessageStage
+     * stage} of its life. This is called once the callback for the message's
+     * reply has completed or been dispatched.
+     * <p>
+     * The pending message is reused by the connection and is only valid for
+     * the duration of the call.
+     * </p>
+     *
+     * @param serverName
+     *            The name of the server that the message was sent to.
+     * @param pending
+     *            The pending message with the time stamps for each stage.
+     */
+    public void stages(String serverName, PendingMessage pending);
 }
@@ -20,6 +20,7 @@
 package com.allanbank.mongodb.client.metrics;
 
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 
 /**
@@ -80,4 +81,15 @@ public final class NoOpMongoMessageListener
             final Message sent) {
         // NoOp.
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to do nothing.
+     * </p>
+     */
+    @Override
+    public void stages(final String serverName, final PendingMessage pending) {
+        // NoOp.
+    }
 }
@@ -22,6 +22,7 @@ package com.allanbank.mongodb.client.metrics.basic;
 import java.io.PrintWriter;
 
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.client.metrics.AbstractMetrics;
 import com.allanbank.mongodb.client.metrics.ConnectionMetricsCollector;
@@ -85,6 +86,18 @@ public class BasicConnectionMetrics
         myParentListener.sent(serverName, messageId, sent);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to only delegate to the parent listener. The stage histograms
+     * are not kept for each connection.
+     * </p>
+     */
+    @Override
+    public void stages(final String serverName, final PendingMessage pending) {
+        myParentListener.stages(serverName, pending);
+    }
+
     /**
      * Writes a human readable form of the collection metrics.
      *
@@ -29,6 +29,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.client.metrics.MongoMessageListener;
 
@@ -102,6 +103,18 @@ public class BasicLogicalMetricsListener
         metrics.sent(serverName, messageId, sent);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to do nothing. The time spent in each stage is only
+     * accumulated for the client and each server.
+     * </p>
+     */
+    @Override
+    public void stages(final String serverName, final PendingMessage pending) {
+        // Nothing.
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -20,13 +20,19 @@
 package com.allanbank.mongodb.client.metrics.basic;
 
 import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
 
+import com.allanbank.mongodb.bson.io.BufferPool;
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.callback.ReplyDispatcher;
+import com.allanbank.mongodb.client.connection.auth.ScramKeyCache;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.client.metrics.AbstractMetrics;
 import com.allanbank.mongodb.client.metrics.MongoClientMetrics;
 import com.allanbank.mongodb.client.metrics.MongoMessageListener;
 import com.allanbank.mongodb.client.metrics.NoOpMongoMessageListener;
+import com.allanbank.mongodb.client.state.ClusterPinger;
 import com.allanbank.mongodb.util.log.Log;
 import com.allanbank.mongodb.util.log.LogFactory;
 
@@ -59,6 +65,12 @@ public class BasicMongoClientMetrics
     /** The listener to accumulate metrics for each type of operation. */
     private final BasicOperationMetricsListener myOperationMetrics;
 
+    /** The pinger tracking the state of the servers, if any. */
+    private volatile ClusterPinger myPinger;
+
+    /** The dispatcher running the callbacks for the replies, if any. */
+    private volatile ReplyDispatcher myReplyDispatcher;
+
     /** The listener to accumulate metrics for each server. */
     private final BasicServerMetricsListener myServerMetrics;
 
@@ -115,6 +127,187 @@ public class BasicMongoClientMetrics
         // Nothing.
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the hit count for the default {@link BufferPool}.
+     * The count includes the leases by all clients in the process.
+     * </p>
+     */
+    @Override
+    public long getBufferPoolHitCount() {
+        return BufferPool.getDefault().getHitCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the miss count for the default {@link BufferPool}.
+     * The count includes the leases by all clients in the process.
+     * </p>
+     */
+    @Override
+    public long getBufferPoolMissCount() {
+        return BufferPool.getDefault().getMissCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the number of servers the pinger is backing off.
+     * </p>
+     */
+    @Override
+    public int getPingBackoffServerCount() {
+        final ClusterPinger pinger = myPinger;
+        if (pinger == null) {
+            return 0;
+        }
+        return pinger.getBackoffServerCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the pinger's ping count.
+     * </p>
+     */
+    @Override
+    public long getPingCount() {
+        final ClusterPinger pinger = myPinger;
+        if (pinger == null) {
+            return 0;
+        }
+        return pinger.getPingCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the pinger's failed ping count.
+     * </p>
+     */
+    @Override
+    public long getPingFailedCount() {
+        final ClusterPinger pinger = myPinger;
+        if (pinger == null) {
+            return 0;
+        }
+        return pinger.getFailedPingCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the pinger's fast ping count.
+     * </p>
+     */
+    @Override
+    public long getPingFastCount() {
+        final ClusterPinger pinger = myPinger;
+        if (pinger == null) {
+            return 0;
+        }
+        return pinger.getFastPingCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the pinger's sweep interval.
+     * </p>
+     */
+    @Override
+    public long getPingSweepIntervalMillis() {
+        final ClusterPinger pinger = myPinger;
+        if (pinger == null) {
+            return 0;
+        }
+        return pinger.getIntervalUnits().toMillis(
+                pinger.getPingSweepInterval());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the average latency of the reply dispatcher.
+     * </p>
+     */
+    @Override
+    public double getReplyDispatchAverageLatencyNanos() {
+        final ReplyDispatcher dispatcher = myReplyDispatcher;
+        if (dispatcher == null) {
+            return 0;
+        }
+        return dispatcher.getAverageDispatchLatency(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the queue depth of the reply dispatcher.
+     * </p>
+     */
+    @Override
+    public int getReplyDispatchQueueDepth() {
+        final ReplyDispatcher dispatcher = myReplyDispatcher;
+        if (dispatcher == null) {
+            return 0;
+        }
+        return dispatcher.getQueueDepth();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the rejected count of the reply dispatcher.
+     * </p>
+     */
+    @Override
+    public long getReplyDispatchRejectedCount() {
+        final ReplyDispatcher dispatcher = myReplyDispatcher;
+        if (dispatcher == null) {
+            return 0;
+        }
+        return dispatcher.getRejectedCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the hit count for the default
+     * {@link ScramKeyCache}.
+     * </p>
+     */
+    @Override
+    public long getScramKeyCacheHitCount() {
+        return ScramKeyCache.getDefault().getHitCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the miss count for the default
+     * {@link ScramKeyCache}.
+     * </p>
+     */
+    @Override
+    public long getScramKeyCacheMissCount() {
+        return ScramKeyCache.getDefault().getMissCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the derivation time for the default
+     * {@link ScramKeyCache}.
+     * </p>
+     */
+    @Override
+    public long getScramKeyDerivationNanos() {
+        return ScramKeyCache.getDefault().getDerivationNanos();
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -164,6 +357,20 @@ public class BasicMongoClientMetrics
         myGlobalListener.sent(serverName, messageId, sent);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to accumulate the stage times for the client and the server.
+     * </p>
+     */
+    @Override
+    public void stages(final String serverName, final PendingMessage pending) {
+        super.stages(serverName, pending);
+
+        myServerMetrics.stages(serverName, pending);
+        myGlobalListener.stages(serverName, pending);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -183,6 +390,28 @@ public class BasicMongoClientMetrics
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to save the pinger for the ping metrics.
+     * </p>
+     */
+    @Override
+    public void setPinger(final ClusterPinger pinger) {
+        myPinger = pinger;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to save the dispatcher for the reply dispatch metrics.
+     * </p>
+     */
+    @Override
+    public void setReplyDispatcher(final ReplyDispatcher dispatcher) {
+        myReplyDispatcher = dispatcher;
+    }
+
     /**
      * Writes a human readable form of the server metrics.
      *
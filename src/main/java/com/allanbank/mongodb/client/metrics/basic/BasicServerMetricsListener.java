@@ -29,6 +29,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.client.metrics.MongoMessageListener;
 
@@ -102,6 +103,20 @@ public class BasicServerMetricsListener
         metrics.sent(serverName, messageId, sent);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to forward the call to the appropriate
+     * {@link BasicServerMetrics}.
+     * </p>
+     */
+    @Override
+    public void stages(final String serverName, final PendingMessage pending) {
+        final BasicServerMetrics metrics = findServerMetrics(serverName);
+
+        metrics.stages(serverName, pending);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -30,6 +30,7 @@ import javax.management.ObjectName;
 
 import com.allanbank.mongodb.MongoClient;
 import com.allanbank.mongodb.client.metrics.AbstractMetrics;
+import com.allanbank.mongodb.client.metrics.basic.BasicMongoClientMetrics;
 import com.allanbank.mongodb.util.IOUtils;
 import com.allanbank.mongodb.util.log.Log;
 import com.allanbank.mongodb.util.log.LogFactory;
@@ -97,7 +98,7 @@ public class JmxSupport {
         try {
             final ObjectName objectName = createName(subType, name);
 
-            myServer.registerMBean(new MetricsMXBeanProxy(metrics), objectName);
+            myServer.registerMBean(createProxy(metrics), objectName);
         }
         catch (final JMException e) {
             LOG.warn("Failure registering MBean subType={}, name={}: {}",
@@ -127,7 +128,7 @@ public class JmxSupport {
         try {
             final ObjectName objectName = createName(subType, serverName, index);
 
-            myServer.registerMBean(new MetricsMXBeanProxy(metrics), objectName);
+            myServer.registerMBean(createProxy(metrics), objectName);
         }
         catch (final JMException e) {
             LOG.warn(
@@ -250,4 +251,20 @@ public class JmxSupport {
 
         return new ObjectName(DOMAIN_NAME, attrs);
     }
+
+    /**
+     * Creates the MXBean to register for the metrics. The client's metrics
+     * also expose the state of the client's shared resources.
+     *
+     * @param metrics
+     *            The metrics to create the MXBean for.
+     * @return The MXBean for the metrics.
+     */
+    protected MetricsMXBean createProxy(final AbstractMetrics metrics) {
+        if (metrics instanceof BasicMongoClientMetrics) {
+            return new MongoClientMetricsMXBeanProxy(
+                    (BasicMongoClientMetrics) metrics);
+        }
+        return new MetricsMXBeanProxy(metrics);
+    }
 }
@@ -19,6 +19,8 @@
  */
 package com.allanbank.mongodb.client.metrics.jmx;
 
+import java.util.Map;
+
 import javax.management.MXBean;
 
 /**
@@ -44,6 +46,40 @@ public interface MetricsMXBean {
      */
     public long getLastLatencyNanos();
 
+    /**
+     * Returns the median latency for received messages in milliseconds.
+     *
+     * @return The median latency for received messages in milliseconds.
+     */
+    public double getLatencyP50Millis();
+
+    /**
+     * Returns the 90th percentile latency for received messages in
+     * milliseconds.
+     *
+     * @return The 90th percentile latency for received messages in
+     *         milliseconds.
+     */
+    public double getLatencyP90Millis();
+
+    /**
+     * Returns the 99th percentile latency for received messages in
+     * milliseconds.
+     *
+     * @return The 99th percentile latency for received messages in
+     *         milliseconds.
+     */
+    public double getLatencyP99Millis();
+
+    /**
+     * Returns the 99.9th percentile latency for received messages in
+     * milliseconds.
+     *
+     * @return The 99.9th percentile latency for received messages in
+     *         milliseconds.
+     */
+    public double getLatencyP999Millis();
+
     /**
      * Returns the number of received bytes.
      *
@@ -79,6 +115,23 @@ public interface MetricsMXBean {
      */
     public double getRecentAverageLatencyMillis();
 
+    /**
+     * Returns the median time messages spent in each stage in milliseconds,
+     * keyed by the stage name.
+     *
+     * @return The median time messages spent in each stage in milliseconds.
+     */
+    public Map<String, Double> getStageLatencyP50Millis();
+
+    /**
+     * Returns the 99th percentile time messages spent in each stage in
+     * milliseconds, keyed by the stage name.
+     *
+     * @return The 99th percentile time messages spent in each stage in
+     *         milliseconds.
+     */
+    public Map<String, Double> getStageLatencyP99Millis();
+
     /**
      * Returns the total latency for all received messages in nanoseconds.
      *
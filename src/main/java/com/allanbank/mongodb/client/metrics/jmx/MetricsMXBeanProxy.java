@@ -19,6 +19,8 @@
  */
 package com.allanbank.mongodb.client.metrics.jmx;
 
+import java.util.Map;
+
 import com.allanbank.mongodb.client.metrics.AbstractMetrics;
 
 /**
@@ -67,6 +69,50 @@ public class MetricsMXBeanProxy
         return myDelegate.getLastLatencyNanos();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public double getLatencyP50Millis() {
+        return myDelegate.getLatencyP50Millis();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public double getLatencyP90Millis() {
+        return myDelegate.getLatencyP90Millis();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public double getLatencyP99Millis() {
+        return myDelegate.getLatencyP99Millis();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public double getLatencyP999Millis() {
+        return myDelegate.getLatencyP999Millis();
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -122,6 +168,28 @@ public class MetricsMXBeanProxy
         return myDelegate.getRecentAverageLatencyMillis();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public Map<String, Double> getStageLatencyP50Millis() {
+        return myDelegate.getStageLatencyMillis(50.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public Map<String, Double> getStageLatencyP99Millis() {
+        return myDelegate.getStageLatencyMillis(99.0);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * MongoClientMetricsMXBean.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.metrics.jmx;
+
+import javax.management.MXBean;
+
+/**
+ * MongoClientMetricsMXBean provides the interface for the metrics collected
+ * for the entire client. In addition to the basic metrics it exposes the state
+ * of the client's shared resources.
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+@MXBean(true)
+public interface MongoClientMetricsMXBean
+        extends MetricsMXBean {
+
+    /**
+     * Returns the number of buffer leases, by all clients in the process,
+     * satisfied by a pooled buffer.
+     *
+     * @return The number of buffer leases satisfied by a pooled buffer.
+     */
+    public long getBufferPoolHitCount();
+
+    /**
+     * Returns the number of buffer leases, by all clients in the process, that
+     * required a new buffer to be allocated.
+     *
+     * @return The number of buffer leases that required a new buffer to be
+     *         allocated.
+     */
+    public long getBufferPoolMissCount();
+
+    /**
+     * Returns the number of servers being re-pinged with an exponential back
+     * off after a failure.
+     *
+     * @return The number of servers being re-pinged after a failure.
+     */
+    public int getPingBackoffServerCount();
+
+    /**
+     * Returns the number of pings sent to the servers.
+     *
+     * @return The number of pings sent to the servers.
+     */
+    public long getPingCount();
+
+    /**
+     * Returns the number of pings that failed or were not answered.
+     *
+     * @return The number of pings that failed or were not answered.
+     */
+    public long getPingFailedCount();
+
+    /**
+     * Returns the number of pings sent before the ping sweep interval because
+     * of a failure or a replica set without a primary.
+     *
+     * @return The number of pings sent before the ping sweep interval.
+     */
+    public long getPingFastCount();
+
+    /**
+     * Returns the interval between ping sweeps across all of the servers in
+     * milliseconds.
+     *
+     * @return The interval between ping sweeps in milliseconds.
+     */
+    public long getPingSweepIntervalMillis();
+
+    /**
+     * Returns the average time replies waited for a reply dispatch thread in
+     * nanoseconds.
+     *
+     * @return The average time replies waited for a reply dispatch thread in
+     *         nanoseconds.
+     */
+    public double getReplyDispatchAverageLatencyNanos();
+
+    /**
+     * Returns the number of replies waiting for a reply dispatch thread.
+     *
+     * @return The number of replies waiting for a reply dispatch thread.
+     */
+    public int getReplyDispatchQueueDepth();
+
+    /**
+     * Returns the number of replies that were delivered by the receive thread
+     * because the reply dispatch queue was full.
+     *
+     * @return The number of replies rejected by a full reply dispatch queue.
+     */
+    public long getReplyDispatchRejectedCount();
+
+    /**
+     * Returns the number of SCRAM-SHA-1 authentications, by all clients in the
+     * process, that reused previously derived keys.
+     *
+     * @return The number of authentications that reused the derived keys.
+     */
+    public long getScramKeyCacheHitCount();
+
+    /**
+     * Returns the number of SCRAM-SHA-1 authentications, by all clients in the
+     * process, that had to derive the keys from the password.
+     *
+     * @return The number of authentications that derived the keys.
+     */
+    public long getScramKeyCacheMissCount();
+
+    /**
+     * Returns the total time, in nanoseconds, spent deriving SCRAM-SHA-1 keys
+     * by all clients in the process.
+     *
+     * @return The total time spent deriving SCRAM-SHA-1 keys.
+     */
+    public long getScramKeyDerivationNanos();
+}
@@ -0,0 +1,193 @@
+/*
+ * #%L
+ * MongoClientMetricsMXBeanProxy.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.metrics.jmx;
+
+import com.allanbank.mongodb.client.metrics.basic.BasicMongoClientMetrics;
+
+/**
+ * MongoClientMetricsMXBeanProxy provides the MXBean for the client's metrics
+ * that is registered with JMX and delegates to a non-JMX tainted class.
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class MongoClientMetricsMXBeanProxy
+        extends MetricsMXBeanProxy
+        implements MongoClientMetricsMXBean {
+
+    /** The proxied client metrics to delegate to. */
+    private final BasicMongoClientMetrics myClientDelegate;
+
+    /**
+     * Creates a new MongoClientMetricsMXBeanProxy.
+     *
+     * @param delegate
+     *            The proxied client metrics to delegate to.
+     */
+    public MongoClientMetricsMXBeanProxy(final BasicMongoClientMetrics delegate) {
+        super(delegate);
+        myClientDelegate = delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getBufferPoolHitCount() {
+        return myClientDelegate.getBufferPoolHitCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getBufferPoolMissCount() {
+        return myClientDelegate.getBufferPoolMissCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public int getPingBackoffServerCount() {
+        return myClientDelegate.getPingBackoffServerCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getPingCount() {
+        return myClientDelegate.getPingCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getPingFailedCount() {
+        return myClientDelegate.getPingFailedCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getPingFastCount() {
+        return myClientDelegate.getPingFastCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getPingSweepIntervalMillis() {
+        return myClientDelegate.getPingSweepIntervalMillis();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public double getReplyDispatchAverageLatencyNanos() {
+        return myClientDelegate.getReplyDispatchAverageLatencyNanos();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public int getReplyDispatchQueueDepth() {
+        return myClientDelegate.getReplyDispatchQueueDepth();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getReplyDispatchRejectedCount() {
+        return myClientDelegate.getReplyDispatchRejectedCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getScramKeyCacheHitCount() {
+        return myClientDelegate.getScramKeyCacheHitCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getScramKeyCacheMissCount() {
+        return myClientDelegate.getScramKeyCacheMissCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to call the same method on the delegate.
+     * </p>
+     */
+    @Override
+    public long getScramKeyDerivationNanos() {
+        return myClientDelegate.getScramKeyDerivationNanos();
+    }
+}
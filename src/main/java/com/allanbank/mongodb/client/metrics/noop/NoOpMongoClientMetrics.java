@@ -19,9 +19,11 @@
  */
 package com.allanbank.mongodb.client.metrics.noop;
 
+import com.allanbank.mongodb.client.callback.ReplyDispatcher;
 import com.allanbank.mongodb.client.metrics.MongoClientMetrics;
 import com.allanbank.mongodb.client.metrics.MongoMessageListener;
 import com.allanbank.mongodb.client.metrics.NoOpMongoMessageListener;
+import com.allanbank.mongodb.client.state.ClusterPinger;
 
 /**
  * NoOpMongoClientMetrics provides a {@link MongoClientMetrics} that does not
@@ -56,6 +58,149 @@ public class NoOpMongoClientMetrics
         // NoOp.
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getBufferPoolHitCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getBufferPoolMissCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public int getPingBackoffServerCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getPingCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getPingFailedCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getPingFastCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getPingSweepIntervalMillis() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public double getReplyDispatchAverageLatencyNanos() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public int getReplyDispatchQueueDepth() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getReplyDispatchRejectedCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getScramKeyCacheHitCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getScramKeyCacheMissCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return zero.
+     * </p>
+     */
+    @Override
+    public long getScramKeyDerivationNanos() {
+        return 0;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -78,6 +223,28 @@ public class NoOpMongoClientMetrics
         // NoOp.
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to do nothing.
+     * </p>
+     */
+    @Override
+    public void setPinger(final ClusterPinger pinger) {
+        // NoOp.
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to do nothing.
+     * </p>
+     */
+    @Override
+    public void setReplyDispatcher(final ReplyDispatcher dispatcher) {
+        // NoOp.
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -30,9 +30,11 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.ReadPreference;
+import com.allanbank.mongodb.ServerSelectionStrategy;
 import com.allanbank.mongodb.Version;
 import com.allanbank.mongodb.client.ClusterStats;
 import com.allanbank.mongodb.client.ClusterType;
@@ -55,6 +57,13 @@ import com.allanbank.mongodb.util.ServerNameUtils;
  * modified the simplest mechanism is to keep querying for the cluster state on
  * the connection until no addition change events are seen.
  * </p>
+ * <p>
+ * The servers that can be used for each {@link ReadPreference} are cached as
+ * an immutable {@link ServerSelection} snapshot holding the matching servers
+ * and their latency CDF. The snapshots are rebuilt lazily after a server's
+ * state, tags, latency bucket or replication lag changes so routing a message
+ * is normally just a random draw.
+ * </p>
  *
  * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
  *         mutated in incompatible ways between any two releases of the driver.
@@ -87,12 +96,21 @@ public class Cluster
     /** Support for firing property change events. */
     /* package */final PropertyChangeSupport myChangeSupport;
 
+    /**
+     * The generation of the state of the servers. Incremented each time a
+     * change may alter the servers selected for a read preference.
+     */
+    /* package */final AtomicInteger myGeneration;
+
     /** The listener for changes to the server. */
     /* package */final ServerListener myListener;
 
     /** The complete list of non-writable servers. */
     /* package */final CopyOnWriteArrayList<Server> myNonWritableServers;
 
+    /** The cached selection of servers for each read preference. */
+    /* package */final ConcurrentMap<ReadPreference, ServerSelection> mySelections;
+
     /** The complete list of writable servers. */
     /* package */final CopyOnWriteArrayList<Server> myWritableServers;
 
@@ -114,6 +132,8 @@ public class Cluster
         myServers = new ConcurrentHashMap<String, Server>();
         myWritableServers = new CopyOnWriteArrayList<Server>();
         myNonWritableServers = new CopyOnWriteArrayList<Server>();
+        myGeneration = new AtomicInteger(0);
+        mySelections = new ConcurrentHashMap<ReadPreference, ServerSelection>();
         myListener = new ServerListener();
         myServerVersionRange = VersionRange.range(Version.parse("0"),
                 Version.parse("0"));
@@ -132,7 +152,9 @@ public class Cluster
         Server server = myServers.get(normalized);
         if (server == null) {
 
-            server = new Server(address);
+            final double latencyPercentile = (myConfig == null) ? 0.0D
+                    : myConfig.getLatencyPercentile();
+            server = new Server(address, latencyPercentile);
 
             synchronized (this) {
                 final Server existing = myServers.putIfAbsent(normalized,
@@ -142,6 +164,7 @@ public class Cluster
                 }
                 else {
                     myNonWritableServers.add(server);
+                    myGeneration.incrementAndGet();
                     myChangeSupport.firePropertyChange(SERVER_PROP, null,
                             server);
 
@@ -202,35 +225,30 @@ public class Cluster
      *            The {@link ReadPreference} to filter the servers.
      * @return The {@link List} of servers that can be used. Servers will be
      *         ordered by preference to be used, most preferred to least
-     *         preferred.
+     *         preferred. The first server is picked using the configuration's
+     *         {@link MongoClientConfiguration#getServerSelectionStrategy()
+     *         server selection strategy}. The list cannot be modified.
      */
     public List<Server> findCandidateServers(final ReadPreference readPreference) {
-        List<Server> results = Collections.emptyList();
+        if (readPreference.getMode() == ReadPreference.Mode.SERVER) {
+            return findCandidateServer(readPreference);
+        }
 
-        switch (readPreference.getMode()) {
-        case NEAREST:
-            results = findNearestCandidates(readPreference);
-            break;
-        case PRIMARY_ONLY:
-            results = findWritableCandidates(readPreference);
-            break;
-        case PRIMARY_PREFERRED:
-            results = merge(findWritableCandidates(readPreference),
-                    findNonWritableCandidates(readPreference));
-            break;
-        case SECONDARY_ONLY:
-            results = findNonWritableCandidates(readPreference);
-            break;
-        case SECONDARY_PREFERRED:
-            results = merge(findNonWritableCandidates(readPreference),
-                    findWritableCandidates(readPreference));
-            break;
-        case SERVER:
-            results = findCandidateServer(readPreference);
-            break;
+        final int generation = myGeneration.get();
+        final long maxSecondaryLag = myConfig.getMaxSecondaryLag();
+
+        ServerSelection selection = mySelections.get(readPreference);
+        if ((selection == null)
+                || !selection.isCurrent(generation, maxSecondaryLag)) {
+            selection = createSelection(readPreference, generation,
+                    maxSecondaryLag);
+            mySelections.put(readPreference, selection);
         }
 
-        return results;
+        if (myConfig.getServerSelectionStrategy() == ServerSelectionStrategy.POWER_OF_TWO_CHOICES) {
+            return selection.selectLeastLoaded();
+        }
+        return selection.select();
     }
 
     /**
@@ -252,7 +270,9 @@ public class Cluster
                     .getReadPreference());
             servers = potentialServers;
 
-            if (message2 != null) {
+            if ((message2 != null)
+                    && !message1.getReadPreference().equals(
+                            message2.getReadPreference())) {
                 servers = new ArrayList<Server>(potentialServers);
                 potentialServers = findCandidateServers(message2
                         .getReadPreference());
@@ -361,6 +381,7 @@ public class Cluster
             removed.removeListener(myListener);
             myNonWritableServers.remove(removed);
             myWritableServers.remove(removed);
+            myGeneration.incrementAndGet();
 
             updateVersions();
         }
@@ -426,7 +447,7 @@ public class Cluster
         double first = Double.NEGATIVE_INFINITY;
         for (int i = 0; i < relativeLatency.length; ++i) {
             final Server server = servers.get(i);
-            double latency = server.getAverageLatency();
+            double latency = server.getLatency();
 
             // Turn the latency into a ratio of the lowest latency.
             if (first == Double.NEGATIVE_INFINITY) {
@@ -454,6 +475,61 @@ public class Cluster
         return relativeLatency;
     }
 
+    /**
+     * Creates the snapshot of the servers that can be used for the read
+     * preference.
+     *
+     * @param readPreference
+     *            The read preference to match the servers against.
+     * @param generation
+     *            The generation of the server state the snapshot is created
+     *            from.
+     * @param maxSecondaryLag
+     *            The maximum secondary lag used to filter the servers.
+     * @return The snapshot of the servers for the read preference.
+     */
+    protected ServerSelection createSelection(
+            final ReadPreference readPreference, final int generation,
+            final long maxSecondaryLag) {
+        List<Server> preferred = Collections.emptyList();
+        List<Server> fallback = Collections.emptyList();
+
+        switch (readPreference.getMode()) {
+        case NEAREST:
+            preferred = findNearestCandidates(readPreference);
+            break;
+        case PRIMARY_ONLY:
+            preferred = findWritableCandidates(readPreference);
+            break;
+        case PRIMARY_PREFERRED:
+            preferred = findWritableCandidates(readPreference);
+            fallback = findNonWritableCandidates(readPreference);
+            break;
+        case SECONDARY_ONLY:
+            preferred = findNonWritableCandidates(readPreference);
+            break;
+        case SECONDARY_PREFERRED:
+            preferred = findNonWritableCandidates(readPreference);
+            fallback = findWritableCandidates(readPreference);
+            break;
+        case SERVER:
+            preferred = findCandidateServer(readPreference);
+            break;
+        }
+
+        if (preferred.isEmpty()) {
+            preferred = fallback;
+            fallback = Collections.emptyList();
+        }
+
+        // Computing the CDF sorts the servers by latency.
+        final double[] preferredCdf = cdf(preferred);
+        final double[] fallbackCdf = cdf(fallback);
+
+        return new ServerSelection(generation, maxSecondaryLag, preferred,
+                preferredCdf, fallback, fallbackCdf);
+    }
+
     /**
      * Finds the candidate server, if known.
      *
@@ -476,11 +552,8 @@ public class Cluster
      *
      * @param readPreference
      *            The read preference to match the server against.
-     * @return The servers found in order of preference. Generally this is in
-     *         latency order but we randomly move one of the servers to the
-     *         front of the list to distribute the load across more servers.
-     *
-     * @see #sort
+     * @return The servers found. The list is not ordered and may be modified
+     *         by the caller.
      */
     protected List<Server> findNearestCandidates(
             final ReadPreference readPreference) {
@@ -491,9 +564,6 @@ public class Cluster
             }
         }
 
-        // Sort the server by preference.
-        sort(results);
-
         return results;
     }
 
@@ -503,11 +573,8 @@ public class Cluster
      *
      * @param readPreference
      *            The read preference to match the server against.
-     * @return The servers found in order of preference. Generally this is in
-     *         latency order but we randomly move one of the servers to the
-     *         front of the list to distribute the load across more servers.
-     *
-     * @see #sort
+     * @return The servers found. The list is not ordered and may be modified
+     *         by the caller.
      */
     protected List<Server> findNonWritableCandidates(
             final ReadPreference readPreference) {
@@ -520,9 +587,6 @@ public class Cluster
             }
         }
 
-        // Sort the server by preference.
-        sort(results);
-
         return results;
     }
 
@@ -532,11 +596,8 @@ public class Cluster
      *
      * @param readPreference
      *            The read preference to match the server against.
-     * @return The servers found in order of preference. Generally this is in
-     *         latency order but we randomly move one of the servers to the
-     *         front of the list to distribute the load across more servers.
-     *
-     * @see #sort
+     * @return The servers found. The list is not ordered and may be modified
+     *         by the caller.
      */
     protected List<Server> findWritableCandidates(
             final ReadPreference readPreference) {
@@ -548,9 +609,6 @@ public class Cluster
             }
         }
 
-        // Sort the server by preference.
-        sort(results);
-
         return results;
     }
 
@@ -637,32 +695,6 @@ public class Cluster
         return ((secondsBehind * 1000) < myConfig.getMaxSecondaryLag());
     }
 
-    /**
-     * Merges the two lists into a single list.
-     *
-     * @param list1
-     *            The first list of servers.
-     * @param list2
-     *            The second list of servers.
-     * @return The 2 lists of servers merged into a single list.
-     */
-    private final List<Server> merge(final List<Server> list1,
-            final List<Server> list2) {
-        List<Server> results;
-        if (list1.isEmpty()) {
-            results = list2;
-        }
-        else if (list2.isEmpty()) {
-            results = list1;
-        }
-        else {
-            results = new ArrayList<Server>(list1.size() + list2.size());
-            results.addAll(list1);
-            results.addAll(list2);
-        }
-        return results;
-    }
-
     /**
      * ServerListener provides a listener for the state updates of the
      * {@link Server}.
@@ -704,6 +736,10 @@ public class Cluster
                     myNonWritableServers.remove(server);
                 }
 
+                // Only after the lists change so a selection created for the
+                // new generation sees the new lists.
+                myGeneration.incrementAndGet();
+
                 myChangeSupport.firePropertyChange(WRITABLE_PROP, old,
                         !myWritableServers.isEmpty());
 
@@ -724,10 +760,26 @@ public class Cluster
                     myNonWritableServers.remove(server);
                     myWritableServers.remove(server);
                     server.removeListener(myListener);
+                    myGeneration.incrementAndGet();
 
                     myChangeSupport.firePropertyChange(SERVER_PROP, server,
                             null);
                 }
+                else {
+                    myGeneration.incrementAndGet();
+                }
+            }
+            else if (Server.TAGS_PROP.equals(propertyName)
+                    || Server.LATENCY_BUCKET_PROP.equals(propertyName)) {
+                myGeneration.incrementAndGet();
+            }
+            else if (Server.SECONDS_BEHIND_PROP.equals(propertyName)) {
+                // Only matters if the server crossed the maximum lag.
+                final double old = ((Number) evt.getOldValue()).doubleValue();
+                final double now = ((Number) evt.getNewValue()).doubleValue();
+                if (isRecentEnough(old) != isRecentEnough(now)) {
+                    myGeneration.incrementAndGet();
+                }
             }
             else if (Server.VERSION_PROP.equals(propertyName)) {
                 // If the old version is either the high or low for the cluster
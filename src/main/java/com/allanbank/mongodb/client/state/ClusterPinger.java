@@ -19,6 +19,8 @@
  */
 package com.allanbank.mongodb.client.state;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -27,11 +29,14 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoDbException;
@@ -48,10 +53,26 @@ import com.allanbank.mongodb.util.log.LogFactory;
 /**
  * ClusterPinger pings each of the connections in the cluster and updates the
  * latency of the server from this client.
+ * <p>
+ * Each server has its own time for the next ping. Normally a server is pinged
+ * once every {@link #getPingSweepInterval() ping sweep interval}. The pinger
+ * listens to the servers and pings a server sooner when:
+ * <ul>
+ * <li>A request to the server fails ({@link Server#requestFailed()}) or the
+ * server becomes unavailable ({@link Server#connectFailed()}). The server is
+ * re-pinged after {@link #REPROBE_DELAY_MILLIS} with the delay doubling for
+ * each consecutive failure.</li>
+ * <li>A replica set does not have a writable primary. The servers in the
+ * replica set are pinged every {@link #NO_PRIMARY_PING_INTERVAL_MILLIS} until
+ * a primary is found.</li>
+ * </ul>
+ * All of the servers that are due are pinged at once without waiting for the
+ * replies.
+ * </p>
  *
  * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
  *         mutated in incompatible ways between any two releases of the driver.
- * @copyright 2012-2014, Allanbank Consulting, Inc., All Rights Reserved
+ * @copyright 2012-2015, Allanbank Consulting, Inc., All Rights Reserved
  */
 public class ClusterPinger
         implements Runnable, Closeable {
@@ -59,6 +80,19 @@ public class ClusterPinger
     /** The default interval between ping sweeps in seconds. */
     public static final int DEFAULT_PING_INTERVAL_SECONDS = 600;
 
+    /**
+     * The interval (in milliseconds) between pings of the servers in a replica
+     * set without a writable primary.
+     */
+    public static final long NO_PRIMARY_PING_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The initial delay (in milliseconds) before re-pinging a server after a
+     * failure. The delay doubles for each consecutive failure up to the
+     * {@link #getPingSweepInterval() ping sweep interval}.
+     */
+    public static final long REPROBE_DELAY_MILLIS = 500;
+
     /** The logger for the {@link ClusterPinger}. */
     protected static final Log LOG = LogFactory.getLog(ClusterPinger.class);
 
@@ -69,6 +103,12 @@ public class ClusterPinger
     protected static final Log METRICS_LOG = LogFactory
             .getLog(MongoClientConfiguration.METRICS_LOGGER_NAME);
 
+    /**
+     * The minimum time (in milliseconds) to wait for a reply to a ping before
+     * treating the ping as failed.
+     */
+    private static final long MIN_PING_TIMEOUT_MILLIS = 5000;
+
     /** Instance of the inner class containing the ping logic. */
     private static final Pinger PINGER = new Pinger();
 
@@ -94,18 +134,45 @@ public class ClusterPinger
     /** The factory for creating connections to the servers. */
     private final ProxiedConnectionFactory myConnectionFactory;
 
+    /** The number of pings that failed or were not answered. */
+    private final AtomicLong myFailedPingCount;
+
+    /**
+     * The number of pings sent before the ping sweep interval because of a
+     * failure or a replica set without a primary.
+     */
+    private final AtomicLong myFastPingCount;
+
     /** The units for the ping sweep intervals. */
     private volatile TimeUnit myIntervalUnits;
 
+    /** The time (nano-seconds) the metrics were last logged. */
+    private long myLastMetricsLog;
+
+    /** The listener for failures of the servers. */
+    private final PropertyChangeListener myListener;
+
+    /** The lock for waiting for the next ping. */
+    private final Object myLock;
+
+    /** The number of pings sent. */
+    private final AtomicLong myPingCount;
+
     /** The interval for a ping sweep across all of the servers. */
     private volatile int myPingSweepInterval;
 
     /** The thread that is pinging the servers for latency. */
     private final Thread myPingThread;
 
+    /** The ping schedule for each server. */
+    private final ConcurrentMap<Server, Probe> myProbes;
+
     /** The flag to stop the ping thread. */
     private volatile boolean myRunning;
 
+    /** Set to true to have the ping thread re-check the ping schedule. */
+    private boolean myWakeUp;
+
     /**
      * Creates a new ClusterPinger.
      *
@@ -131,6 +198,15 @@ public class ClusterPinger
         myIntervalUnits = TimeUnit.SECONDS;
         myPingSweepInterval = DEFAULT_PING_INTERVAL_SECONDS;
 
+        myProbes = new ConcurrentHashMap<Server, Probe>();
+        myListener = new ServerListener();
+        myLock = new Object();
+        myWakeUp = false;
+        myPingCount = new AtomicLong(0);
+        myFailedPingCount = new AtomicLong(0);
+        myFastPingCount = new AtomicLong(0);
+        myLastMetricsLog = System.nanoTime();
+
         myPingThread = myConfig.getThreadFactory().newThread(this);
         myPingThread.setDaemon(true);
         myPingThread.setName("MongoDB Pinger");
@@ -145,6 +221,7 @@ public class ClusterPinger
      */
     public void addCluster(final Cluster cluster) {
         myClusters.add(cluster);
+        wakeUp(false);
     }
 
     /**
@@ -156,12 +233,51 @@ public class ClusterPinger
     @Override
     public void close() {
         myRunning = false;
-        myPingThread.interrupt();
+        wakeUp(false);
+
+        for (final Server server : myProbes.keySet()) {
+            server.removeListener(myListener);
+        }
 
         // Log the final metrics.
         logMetrics();
     }
 
+    /**
+     * Returns the number of servers being re-pinged with an exponential back
+     * off after a failure.
+     *
+     * @return The number of servers being re-pinged after a failure.
+     */
+    public int getBackoffServerCount() {
+        int count = 0;
+        for (final Probe probe : myProbes.values()) {
+            if (probe.isBackingOff()) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of pings that failed or were not answered.
+     *
+     * @return The number of pings that failed or were not answered.
+     */
+    public long getFailedPingCount() {
+        return myFailedPingCount.get();
+    }
+
+    /**
+     * Returns the number of pings sent before the ping sweep interval because
+     * of a failure or a replica set without a primary.
+     *
+     * @return The number of pings sent before the ping sweep interval.
+     */
+    public long getFastPingCount() {
+        return myFastPingCount.get();
+    }
+
     /**
      * Returns the units for the ping sweep intervals.
      *
@@ -171,6 +287,35 @@ public class ClusterPinger
         return myIntervalUnits;
     }
 
+    /**
+     * Returns the time until the next ping of the server.
+     *
+     * @param server
+     *            The server to return the time until the next ping for.
+     * @param units
+     *            The units for the returned time.
+     * @return The time until the next ping of the server. Returns a negative
+     *         value if the server is not being pinged.
+     */
+    public long getNextPingDelay(final Server server, final TimeUnit units) {
+        final Probe probe = myProbes.get(server);
+        if (probe == null) {
+            return -1;
+        }
+        return units.convert(
+                Math.max(0, probe.myNextPing - System.nanoTime()),
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of pings sent.
+     *
+     * @return The number of pings sent.
+     */
+    public long getPingCount() {
+        return myPingCount.get();
+    }
+
     /**
      * Returns the interval for a ping sweep across all of the servers..
      *
@@ -265,57 +410,73 @@ public class ClusterPinger
     /**
      * {@inheritDoc}
      * <p>
-     * Overridden to periodically wake-up and ping the servers. At first this
-     * will occur fairly often but eventually degrade to once every 5 minutes.
+     * Overridden to ping each server when it is due and then wait for the next
+     * server to be due or a server to fail.
      * </p>
      */
     @Override
     public void run() {
         while (myRunning) {
             try {
-                final Map<Server, ClusterType> servers = extractAllServers();
-
-                final long interval = getIntervalUnits().toMillis(
+                final long interval = getIntervalUnits().toNanos(
                         getPingSweepInterval());
-                final long perServerSleep = servers.isEmpty() ? interval
-                        : interval / servers.size();
-
-                // Sleep a little before starting. We do it first to give
-                // tests time to finish without a sweep in the middle
-                // causing confusion and delay.
-                Thread.sleep(TimeUnit.MILLISECONDS.toMillis(perServerSleep));
-
-                startSweep();
-                logMetrics();
+                final Map<Server, Cluster> servers = extractAllServers(interval);
 
-                for (final Map.Entry<Server, ClusterType> entry : servers
+                long now = System.nanoTime();
+                boolean started = false;
+                long next = now + interval;
+                for (final Map.Entry<Server, Cluster> entry : servers
                         .entrySet()) {
-                    // Ping the current server.
                     final Server server = entry.getKey();
-                    final String name = server.getCanonicalName();
-                    Connection conn = null;
-                    try {
-                        myPingThread.setName("MongoDB Pinger - " + name);
-
-                        conn = myConnectionFactory.connect(server, myConfig);
-
-                        PINGER.pingAsync(entry.getValue(), server, conn);
+                    final Cluster cluster = entry.getValue();
+                    final Probe probe = myProbes.get(server);
 
-                        // Sleep a little between the servers.
-                        Thread.sleep(TimeUnit.MILLISECONDS
-                                .toMillis(perServerSleep));
+                    if (waiting(server, probe, now)) {
+                        next = Math.min(next,
+                                probe.myLastPing + pingTimeout());
+                        continue;
                     }
-                    catch (final IOException e) {
-                        LOG.info("Could not ping '{}': {}", name,
-                                e.getMessage());
+
+                    long due = probe.myNextPing;
+                    if (noPrimary(cluster)) {
+                        due = Math.min(due, probe.myLastPing
+                                + noPrimaryInterval(interval));
                     }
-                    finally {
-                        myPingThread.setName("MongoDB Pinger - Idle");
-                        if (conn != null) {
-                            conn.shutdown(true);
+
+                    if (due <= now) {
+                        if (!started) {
+                            startSweep();
+                            started = true;
+                        }
+                        ping(server, cluster.getType(), probe, interval);
+
+                        now = System.nanoTime();
+                        due = probe.myNextPing;
+                        if (noPrimary(cluster)) {
+                            due = Math.min(due, probe.myLastPing
+                                    + noPrimaryInterval(interval));
+                        }
+                        if (probe.myReply != null) {
+                            // Wake up to check for a zombie server.
+                            due = Math.min(due, probe.myLastPing
+                                    + pingTimeout());
                         }
                     }
+                    next = Math.min(next, due);
+                }
 
+                if (started && ((myLastMetricsLog + interval) <= now)) {
+                    myLastMetricsLog = now;
+                    logMetrics();
+                }
+
+                // Wait for the next ping to be due.
+                synchronized (myLock) {
+                    final long wait = next - System.nanoTime();
+                    if (myRunning && !myWakeUp && (0 < wait)) {
+                        TimeUnit.NANOSECONDS.timedWait(myLock, wait);
+                    }
+                    myWakeUp = false;
                 }
             }
             catch (final InterruptedException ok) {
@@ -360,10 +521,10 @@ public class ClusterPinger
     }
 
     /**
-     * Starts the background pinger.
+     * Wakes the background pinger and has it ping all of the servers.
      */
     public void wakeUp() {
-        myPingThread.interrupt();
+        wakeUp(true);
     }
 
     /**
@@ -374,22 +535,61 @@ public class ClusterPinger
     }
 
     /**
-     * Extracts the complete list of servers in all clusters.
+     * Extracts the complete list of servers in all clusters. New servers are
+     * scheduled to be pinged after the interval and servers no longer in any
+     * cluster are removed from the schedule.
      *
+     * @param interval
+     *            The interval (nano-seconds) between the pings of a server.
      * @return The complete list of servers across all clusters.
      */
-    private Map<Server, ClusterType> extractAllServers() {
-        final Map<Server, ClusterType> servers = new HashMap<Server, ClusterType>();
+    private Map<Server, Cluster> extractAllServers(final long interval) {
+        final Map<Server, Cluster> servers = new HashMap<Server, Cluster>();
 
         for (final Cluster cluster : myClusters) {
             for (final Server server : cluster.getServers()) {
-                servers.put(server, cluster.getType());
+                servers.put(server, cluster);
+
+                if (!myProbes.containsKey(server)) {
+                    final Probe probe = new Probe(System.nanoTime(), interval);
+                    if (myProbes.putIfAbsent(server, probe) == null) {
+                        server.addListener(myListener);
+                    }
+                }
+            }
+        }
+
+        final Iterator<Server> iter = myProbes.keySet().iterator();
+        while (iter.hasNext()) {
+            final Server server = iter.next();
+            if (!servers.containsKey(server)) {
+                server.removeListener(myListener);
+                iter.remove();
             }
         }
 
         return Collections.unmodifiableMap(servers);
     }
 
+    /**
+     * Handles a failure of the server: reschedules the next ping using the
+     * exponential back off and wakes the ping thread.
+     *
+     * @param server
+     *            The server that failed.
+     */
+    private void failed(final Server server) {
+        final Probe probe = myProbes.get(server);
+        if (probe != null) {
+            final long interval = getIntervalUnits().toNanos(
+                    getPingSweepInterval());
+            if (probe.failed(System.nanoTime(), interval)) {
+                myFailedPingCount.incrementAndGet();
+            }
+            wakeUp(false);
+        }
+    }
+
     /**
      * Logs the current metrics.
      */
@@ -399,6 +599,153 @@ public class ClusterPinger
                 .parse(String.valueOf(myConfig.getMetricsLogLevel()));
         if (METRICS_LOG.isEnabled(level)) {
             METRICS_LOG.log(level, "{}", myConnectionFactory.getMetrics());
+            METRICS_LOG.log(level,
+                    "Pinger: pings={}, fast pings={}, failed pings={}",
+                    Long.valueOf(getPingCount()),
+                    Long.valueOf(getFastPingCount()),
+                    Long.valueOf(getFailedPingCount()));
+        }
+    }
+
+    /**
+     * Returns true if the cluster is a replica set without a writable primary.
+     *
+     * @param cluster
+     *            The cluster to check.
+     * @return True if the cluster is a replica set without a writable primary.
+     */
+    private boolean noPrimary(final Cluster cluster) {
+        return (cluster.getType() == ClusterType.REPLICA_SET)
+                && cluster.getWritableServers().isEmpty();
+    }
+
+    /**
+     * Returns the interval (nano-seconds) between the pings of the servers in
+     * a replica set without a primary.
+     *
+     * @param interval
+     *            The normal interval (nano-seconds) between pings.
+     * @return The interval between the pings of the servers in a replica set
+     *         without a primary.
+     */
+    private long noPrimaryInterval(final long interval) {
+        return Math.min(interval,
+                TimeUnit.MILLISECONDS.toNanos(NO_PRIMARY_PING_INTERVAL_MILLIS));
+    }
+
+    /**
+     * Pings the server.
+     *
+     * @param server
+     *            The server to ping.
+     * @param type
+     *            The type of the server's cluster.
+     * @param probe
+     *            The ping schedule for the server.
+     * @param interval
+     *            The normal interval (nano-seconds) between pings.
+     */
+    private void ping(final Server server, final ClusterType type,
+            final Probe probe, final long interval) {
+        final String name = server.getCanonicalName();
+        final long now = System.nanoTime();
+
+        if ((probe.myLastPing + interval) > now) {
+            myFastPingCount.incrementAndGet();
+        }
+        myPingCount.incrementAndGet();
+        probe.pinging(now, interval);
+
+        Connection conn = null;
+        try {
+            myPingThread.setName("MongoDB Pinger - " + name);
+
+            conn = myConnectionFactory.connect(server, myConfig);
+
+            probe.myReply = PINGER.pingAsync(type, server, conn);
+        }
+        catch (final IOException e) {
+            LOG.info("Could not ping '{}': {}", name, e.getMessage());
+            failed(server);
+        }
+        finally {
+            myPingThread.setName("MongoDB Pinger - Idle");
+            if (conn != null) {
+                conn.shutdown(true);
+            }
+        }
+    }
+
+    /**
+     * Returns how long (nano-seconds) to wait for the reply to a ping. The
+     * timeout does not depend on the ping interval so that a server that stops
+     * responding is detected promptly even with a long interval.
+     *
+     * @return How long to wait for the reply to a ping.
+     */
+    private long pingTimeout() {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(MIN_PING_TIMEOUT_MILLIS,
+                myConfig.getConnectTimeout()));
+    }
+
+    /**
+     * Returns true if the reply to the last ping of the server is still
+     * outstanding and has not timed out. A failed or timed out ping is handled
+     * as a {@link #failed(Server) failure} of the server.
+     *
+     * @param server
+     *            The server being pinged.
+     * @param probe
+     *            The ping schedule for the server.
+     * @param now
+     *            The current time in nano-seconds.
+     * @return True if still waiting on the reply to the last ping.
+     */
+    private boolean waiting(final Server server, final Probe probe,
+            final long now) {
+        final Future<Reply> reply = probe.myReply;
+        if (reply == null) {
+            return false;
+        }
+        else if (reply.isDone()) {
+            try {
+                reply.get();
+                probe.replied();
+            }
+            catch (final ExecutionException e) {
+                failed(server);
+            }
+            catch (final InterruptedException e) {
+                // Done so should not happen. Try again later.
+                return false;
+            }
+            return false;
+        }
+        else if ((now - probe.myLastPing) < pingTimeout()) {
+            return true;
+        }
+
+        LOG.info("'{}' might be a zombie - not receiving a response to ping.",
+                server.getCanonicalName());
+        failed(server);
+        return false;
+    }
+
+    /**
+     * Wakes the ping thread to re-check the ping schedule.
+     *
+     * @param all
+     *            If true then all of the servers are pinged.
+     */
+    private void wakeUp(final boolean all) {
+        if (all) {
+            for (final Probe probe : myProbes.values()) {
+                probe.myNextPing = System.nanoTime();
+            }
+        }
+        synchronized (myLock) {
+            myWakeUp = true;
+            myLock.notifyAll();
         }
     }
 
@@ -487,4 +834,139 @@ public class ClusterPinger
             return null;
         }
     }
+
+    /**
+     * Probe holds the ping schedule for a single server.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static final class Probe {
+
+        /** True if a failure has been seen since the last ping. */
+        private boolean myFailed;
+
+        /** The number of consecutive failures. */
+        private int myFailures;
+
+        /** The time (nano-seconds) of the last ping. */
+        /* package */volatile long myLastPing;
+
+        /** The time (nano-seconds) of the next ping. */
+        /* package */volatile long myNextPing;
+
+        /** The reply to the last ping. */
+        /* package */volatile Future<Reply> myReply;
+
+        /**
+         * Creates a new Probe.
+         *
+         * @param now
+         *            The current time in nano-seconds.
+         * @param interval
+         *            The normal interval (nano-seconds) between pings.
+         */
+        public Probe(final long now, final long interval) {
+            myLastPing = now;
+            myNextPing = now + interval;
+            myReply = null;
+            myFailed = false;
+            myFailures = 0;
+        }
+
+        /**
+         * Records a failure and reschedules the next ping using an
+         * exponential back off.
+         *
+         * @param now
+         *            The current time in nano-seconds.
+         * @param interval
+         *            The normal interval (nano-seconds) between pings.
+         * @return True if this is the first failure seen since the last ping.
+         */
+        public synchronized boolean failed(final long now, final long interval) {
+            final boolean first = !myFailed;
+            if (first) {
+                myFailed = true;
+                myFailures += 1;
+            }
+
+            final long delay = Math.min(interval, TimeUnit.MILLISECONDS
+                    .toNanos(REPROBE_DELAY_MILLIS << Math.min(20,
+                            myFailures - 1)));
+            myNextPing = Math.min(myNextPing, now + delay);
+            myReply = null;
+
+            return first;
+        }
+
+        /**
+         * Returns true if the server has failed since the last successful
+         * ping and is being re-pinged with an exponential back off.
+         *
+         * @return True if the server is being re-pinged after a failure.
+         */
+        public synchronized boolean isBackingOff() {
+            return 0 < myFailures;
+        }
+
+        /**
+         * Notification that the reply to the last ping was received.
+         */
+        public synchronized void replied() {
+            if (!myFailed) {
+                myFailures = 0;
+            }
+            myReply = null;
+        }
+
+        /**
+         * Notification that the server is being pinged.
+         *
+         * @param now
+         *            The current time in nano-seconds.
+         * @param interval
+         *            The normal interval (nano-seconds) between pings.
+         */
+        public synchronized void pinging(final long now, final long interval) {
+            myFailed = false;
+            myLastPing = now;
+            myNextPing = now + interval;
+            myReply = null;
+        }
+    }
+
+    /**
+     * ServerListener re-pings servers that fail.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    protected final class ServerListener
+            implements PropertyChangeListener {
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to re-ping the server when it becomes unavailable or a
+         * request to the server fails.
+         * </p>
+         */
+        @Override
+        public void propertyChange(final PropertyChangeEvent evt) {
+            final String propertyName = evt.getPropertyName();
+            final Object newValue = evt.getNewValue();
+            if (Server.STATE_PROP.equals(propertyName)) {
+                if (newValue == Server.State.UNAVAILABLE) {
+                    failed((Server) evt.getSource());
+                }
+                else if (evt.getOldValue() == Server.State.WRITABLE) {
+                    // Might have lost the primary.
+                    wakeUp(false);
+                }
+            }
+            else if (Server.SECONDS_BEHIND_PROP.equals(propertyName)
+                    && (Integer.MAX_VALUE <= ((Number) newValue).doubleValue())) {
+                failed((Server) evt.getSource());
+            }
+        }
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * LatencyWindow.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.state;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyWindow provides a sliding window histogram of the latency of the
+ * replies from a server.
+ * <p>
+ * The window is split into {@link #SLOT_COUNT} time slots. Each slot holds a
+ * histogram of the latencies recorded while the slot was current with the
+ * histogram bins growing geometrically by {@link #BIN_RATIO}. When a slot is
+ * reused for a later period of time its histogram is cleared so samples age
+ * out of the window based on time instead of the number of samples.
+ * </p>
+ * <p>
+ * Recording a sample is lock free. A sample recorded while another thread is
+ * clearing a slot for reuse may be lost. That is acceptable for an estimate of
+ * the latency.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+/* package */final class LatencyWindow {
+
+    /**
+     * The number of bins in each slot's histogram. The last bin holds all
+     * latencies over roughly 1 minute.
+     */
+    public static final int BIN_COUNT = 80;
+
+    /** The ratio of the latencies at the edges of each bin. */
+    public static final double BIN_RATIO = 1.25D;
+
+    /** The number of time slots in the window. */
+    public static final int SLOT_COUNT = 10;
+
+    /** The natural log of the {@link #BIN_RATIO}. */
+    private static final double BIN_LOG = Math.log(BIN_RATIO);
+
+    /** The number of nano-seconds per micro-second. */
+    private static final double NANOS_PER_MICRO = TimeUnit.MICROSECONDS
+            .toNanos(1);
+
+    /**
+     * The count of the samples in each bin of each slot. The count for the
+     * i'th bin of the s'th slot is at index {@code (s * BIN_COUNT) + i}.
+     */
+    private final AtomicIntegerArray myCounts;
+
+    /** The length of each slot in nano-seconds. */
+    private final long mySlotNanos;
+
+    /** The time slot (time divided by the slot length) each slot holds. */
+    private final AtomicLongArray myTicks;
+
+    /**
+     * Creates a new LatencyWindow.
+     *
+     * @param windowNanos
+     *            The length of the window in nano-seconds.
+     */
+    public LatencyWindow(final long windowNanos) {
+        mySlotNanos = Math.max(1, windowNanos / SLOT_COUNT);
+        myCounts = new AtomicIntegerArray(SLOT_COUNT * BIN_COUNT);
+        myTicks = new AtomicLongArray(SLOT_COUNT);
+        for (int i = 0; i < SLOT_COUNT; ++i) {
+            myTicks.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Returns the latency (in milliseconds) that the {@code percentile}
+     * percent of the samples in the window are at or below.
+     *
+     * @param percentile
+     *            The percentile to return. e.g., 50 for the median or 99 for
+     *            the 99th percentile.
+     * @param nowNanos
+     *            The current time in nano-seconds from
+     *            {@link System#nanoTime()}.
+     * @return The latency (in milliseconds) for the percentile or
+     *         {@link Double#MAX_VALUE} if there are no samples in the window.
+     */
+    public double percentile(final double percentile, final long nowNanos) {
+        final long tick = Math.floorDiv(nowNanos, mySlotNanos);
+
+        final long[] counts = new long[BIN_COUNT];
+        long total = 0;
+        for (int slot = 0; slot < SLOT_COUNT; ++slot) {
+            final long slotTick = myTicks.get(slot);
+            if (((tick - SLOT_COUNT) < slotTick) && (slotTick <= tick)) {
+                final int base = slot * BIN_COUNT;
+                for (int bin = 0; bin < BIN_COUNT; ++bin) {
+                    final int count = myCounts.get(base + bin);
+                    counts[bin] += count;
+                    total += count;
+                }
+            }
+        }
+
+        if (total == 0) {
+            return Double.MAX_VALUE;
+        }
+
+        final double target = Math.max(1.0D, Math.ceil((total * Math.min(
+                100.0D, percentile)) / 100.0D));
+        long seen = 0;
+        for (int bin = 0; bin < BIN_COUNT; ++bin) {
+            seen += counts[bin];
+            if (target <= seen) {
+                return latency(bin);
+            }
+        }
+        return latency(BIN_COUNT - 1);
+    }
+
+    /**
+     * Records a sample.
+     *
+     * @param latencyNanos
+     *            The latency of the sample in nano-seconds.
+     * @param nowNanos
+     *            The current time in nano-seconds from
+     *            {@link System#nanoTime()}.
+     * @return True if the sample started a new time slot, i.e., the oldest
+     *         samples have aged out of the window.
+     */
+    public boolean record(final long latencyNanos, final long nowNanos) {
+        final long tick = Math.floorDiv(nowNanos, mySlotNanos);
+        final int slot = (int) Math.floorMod(tick, SLOT_COUNT);
+
+        boolean started = false;
+        final long current = myTicks.get(slot);
+        if (current != tick) {
+            if (tick < current) {
+                // A sample for a slot that has already been reused.
+                return false;
+            }
+            if (myTicks.compareAndSet(slot, current, tick)) {
+                final int base = slot * BIN_COUNT;
+                for (int bin = 0; bin < BIN_COUNT; ++bin) {
+                    myCounts.set(base + bin, 0);
+                }
+                started = true;
+            }
+        }
+
+        myCounts.incrementAndGet((slot * BIN_COUNT) + bin(latencyNanos));
+
+        return started;
+    }
+
+    /**
+     * Returns the bin for the latency.
+     *
+     * @param latencyNanos
+     *            The latency in nano-seconds.
+     * @return The bin for the latency.
+     */
+    private int bin(final long latencyNanos) {
+        final double micros = latencyNanos / NANOS_PER_MICRO;
+        if (micros <= 1.0D) {
+            return 0;
+        }
+        return Math.min(BIN_COUNT - 1, (int) (Math.log(micros) / BIN_LOG));
+    }
+
+    /**
+     * Returns the latency (in milliseconds) for the bin. This is the geometric
+     * middle of the bin's range.
+     *
+     * @param bin
+     *            The bin.
+     * @return The latency for the bin.
+     */
+    private double latency(final int bin) {
+        return Math.pow(BIN_RATIO, bin + 0.5D) / 1000.0D;
+    }
+}
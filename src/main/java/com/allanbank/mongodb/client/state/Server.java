@@ -27,6 +27,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.allanbank.mongodb.Version;
 import com.allanbank.mongodb.bson.Document;
@@ -64,6 +65,22 @@ public class Server {
     /** The document element type. */
     public static final Class<DocumentElement> DOCUMENT_TYPE = DocumentElement.class;
 
+    /**
+     * The name for the Server's latency bucket property: {@value} . The bucket
+     * changes when the average latency moves by more than
+     * {@link #LATENCY_BUCKET_RATIO}.
+     */
+    public static final String LATENCY_BUCKET_PROP = "latencyBucket";
+
+    /** The ratio of the latencies at the edges of each latency bucket. */
+    public static final double LATENCY_BUCKET_RATIO = 1.1D;
+
+    /**
+     * The length of the sliding window (in seconds) of reply latencies used
+     * when the server routes on a percentile of the reply latencies.
+     */
+    public static final long LATENCY_WINDOW_SECONDS = 60;
+
     /** The default number of max batched write operations. */
     public static final int MAX_BATCHED_WRITE_OPERATIONS_DEFAULT = 1000;
 
@@ -82,9 +99,20 @@ public class Server {
     /** The value for a secondary (actively replicating) server's state. */
     public static final int SECONDARY_STATE = 2;
 
+    /** The name for the Server's seconds behind property: {@value} . */
+    public static final String SECONDS_BEHIND_PROP = "secondsBehind";
+
     /** The name for the Server's state property: {@value} . */
     public static final String STATE_PROP = "state";
 
+    /**
+     * The decay period (number of samples) for the average latency of the
+     * replies to requests. This is much shorter than the
+     * {@link #DECAY_SAMPLES} so the average tracks the recent latency of the
+     * server.
+     */
+    public static final double REQUEST_DECAY_SAMPLES = 20.0D;
+
     /** The string element type. */
     public static final Class<StringElement> STRING_TYPE = StringElement.class;
 
@@ -97,6 +125,13 @@ public class Server {
     /** The name for the Server's version property: {@value} . */
     public static final String VERSION_PROP = "version";
 
+    /** The natural log of the {@link #LATENCY_BUCKET_RATIO}. */
+    private static final double LATENCY_BUCKET_LOG = Math
+            .log(LATENCY_BUCKET_RATIO);
+
+    /** The decay rate for the exponential average for the request latency. */
+    private static final double REQUEST_DECAY_ALPHA = (2.0D / (REQUEST_DECAY_SAMPLES + 1));
+
     /** The number of nano-seconds per milli-second. */
     private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS
             .toNanos(1);
@@ -130,6 +165,18 @@ public class Server {
     /** Provides support for the sending of property change events. */
     private final PropertyChangeSupport myEventSupport;
 
+    /**
+     * The percentile of the reply latencies to route on. If zero the server
+     * routes on the {@link #myAverageLatency average latency}.
+     */
+    private final double myLatencyPercentile;
+
+    /**
+     * The sliding window of the reply latencies. Null if the server routes on
+     * the {@link #myAverageLatency average latency}.
+     */
+    private final LatencyWindow myLatencyWindow;
+
     /** The time of the last version update. */
     private long myLastVersionUpdate = 0;
 
@@ -145,6 +192,16 @@ public class Server {
      */
     private volatile int myMaxBsonObjectSize = Client.MAX_DOCUMENT_SIZE;
 
+    /** The number of requests sent to the server still waiting for a reply. */
+    private final AtomicInteger myPendingRequests;
+
+    /**
+     * Tracks the recent latency of the replies to requests sent to the server
+     * using an exponential moving average over the last
+     * {@link #REQUEST_DECAY_SAMPLES} replies.
+     */
+    private volatile double myRequestLatency;
+
     /**
      * Tracks the last report of how many seconds the server is behind the
      * primary.
@@ -160,6 +217,13 @@ public class Server {
     /** The version of the server. */
     private Version myVersion;
 
+    /**
+     * The {@link #myLatencyPercentile} of the reply latencies in the
+     * {@link #myLatencyWindow}. Recomputed each time a new time slot in the
+     * window is started.
+     */
+    private volatile double myWindowLatency;
+
     /**
      * The socket address being actively used. This will be re-created using the
      * server's hostname if a connection attempt fails.
@@ -174,6 +238,21 @@ public class Server {
      *            The server being tracked.
      */
     /* package */Server(final InetSocketAddress server) {
+        this(server, 0.0D);
+    }
+
+    /**
+     * Creates a new {@link Server}. Package private to force creation through
+     * the {@link Cluster}.
+     *
+     * @param server
+     *            The server being tracked.
+     * @param latencyPercentile
+     *            The percentile of the recent reply latencies to route on. If
+     *            zero (or less) then the server routes on the average latency.
+     */
+    /* package */Server(final InetSocketAddress server,
+            final double latencyPercentile) {
         myCanonicalAddress = server;
         myCanonicalHostName = server.getHostName();
         myCanonicalName = ServerNameUtils.normalize(server);
@@ -183,10 +262,23 @@ public class Server {
 
         myState = State.UNKNOWN;
         myAverageLatency = Double.MAX_VALUE;
+        myPendingRequests = new AtomicInteger(0);
+        myRequestLatency = Double.MAX_VALUE;
         mySecondsBehind = Double.MAX_VALUE;
         myTags = null;
 
         myVersion = Version.UNKNOWN;
+
+        if (0 < latencyPercentile) {
+            myLatencyPercentile = latencyPercentile;
+            myLatencyWindow = new LatencyWindow(
+                    TimeUnit.SECONDS.toNanos(LATENCY_WINDOW_SECONDS));
+        }
+        else {
+            myLatencyPercentile = 0.0D;
+            myLatencyWindow = null;
+        }
+        myWindowLatency = Double.MAX_VALUE;
     }
 
     /**
@@ -295,6 +387,54 @@ public class Server {
         return myAverageLatency;
     }
 
+    /**
+     * Returns the latency (in milliseconds) used to route requests to the
+     * server. If the server was created with a latency percentile and replies
+     * have been received then this is that percentile of the replies'
+     * latency over the last {@value #LATENCY_WINDOW_SECONDS} seconds.
+     * Otherwise this is the {@link #getAverageLatency() average latency}.
+     *
+     * @return The latency (in milliseconds) used to route requests to the
+     *         server.
+     */
+    public double getLatency() {
+        final double windowLatency = myWindowLatency;
+        if (windowLatency != Double.MAX_VALUE) {
+            return windowLatency;
+        }
+        return myAverageLatency;
+    }
+
+    /**
+     * Returns the bucket for the server's current {@link #getLatency()
+     * latency}. Latencies in the same bucket are within
+     * {@link #LATENCY_BUCKET_RATIO} of each other.
+     *
+     * @return The bucket for the server's current latency.
+     */
+    public int getLatencyBucket() {
+        return latencyBucket(getLatency());
+    }
+
+    /**
+     * Returns the latency (in milliseconds) that the {@code percentile}
+     * percent of the replies over the last {@value #LATENCY_WINDOW_SECONDS}
+     * seconds were at or below.
+     *
+     * @param percentile
+     *            The percentile to return. e.g., 50 for the median or 99 for
+     *            the 99th percentile.
+     * @return The latency for the percentile or {@link Double#MAX_VALUE} if
+     *         the server does not track the reply latencies or no replies have
+     *         been received.
+     */
+    public double getLatencyPercentile(final double percentile) {
+        if (myLatencyWindow == null) {
+            return Double.MAX_VALUE;
+        }
+        return myLatencyWindow.percentile(percentile, System.nanoTime());
+    }
+
     /**
      * Returns the name of the server as reported by the server itself.
      *
@@ -325,6 +465,51 @@ public class Server {
         return myMaxBsonObjectSize;
     }
 
+    /**
+     * Returns the load on the server: the number of requests waiting for a
+     * reply (plus the request about to be sent) times the recent latency of
+     * the replies from the server. If no replies have been received then the
+     * {@link #getAverageLatency() average latency} is used.
+     *
+     * @return The load on the server. Returns {@link Double#MAX_VALUE} if the
+     *         latency of the server is not known.
+     */
+    public double getLoad() {
+        double latency = myRequestLatency;
+        if (latency == Double.MAX_VALUE) {
+            latency = myAverageLatency;
+            if (latency == Double.MAX_VALUE) {
+                return Double.MAX_VALUE;
+            }
+        }
+
+        // Pad the latency so a server with a zero latency still sees its load.
+        return (myPendingRequests.get() + 1) * (latency + 1.0D);
+    }
+
+    /**
+     * Returns the number of requests sent to the server that are waiting for a
+     * reply.
+     *
+     * @return The number of requests sent to the server that are waiting for a
+     *         reply.
+     */
+    public int getPendingRequests() {
+        return myPendingRequests.get();
+    }
+
+    /**
+     * Returns the recent latency of the replies to requests sent to the server
+     * in milliseconds. Returns {@link Double#MAX_VALUE} if no replies have
+     * been received.
+     *
+     * @return The recent latency of the replies to requests sent to the
+     *         server.
+     */
+    public double getRequestLatency() {
+        return myRequestLatency;
+    }
+
     /**
      * Sets the last reported seconds behind the primary.
      *
@@ -417,6 +602,14 @@ public class Server {
         myEventSupport.removePropertyChangeListener(listener);
     }
 
+    /**
+     * Notification that a request sent to the server has either received a
+     * reply or will never receive a reply.
+     */
+    public void requestCompleted() {
+        myPendingRequests.decrementAndGet();
+    }
+
     /**
      * Notification that a status request message on the connection failed.
      * <p>
@@ -428,7 +621,15 @@ public class Server {
      * </p>
      */
     public void requestFailed() {
-        mySecondsBehind = Integer.MAX_VALUE;
+        setSecondsBehind(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Notification that a request that expects a reply has been sent to the
+     * server.
+     */
+    public void requestSent() {
+        myPendingRequests.incrementAndGet();
     }
 
     /**
@@ -474,6 +675,11 @@ public class Server {
 
     /**
      * Updates the average latency (in nano-seconds) for the server.
+     * <p>
+     * If all of the replies have aged out of the sliding window of latencies
+     * then the window's percentile is discarded and the server routes on the
+     * average latency until a new reply is received.
+     * </p>
      *
      * @param latencyNanoSeconds
      *            The latency seen sending a request and receiving a reply from
@@ -482,17 +688,117 @@ public class Server {
     public void updateAverageLatency(final long latencyNanoSeconds) {
 
         final double latency = latencyNanoSeconds / NANOS_PER_MILLI;
+        final int oldBucket = getLatencyBucket();
         final double oldAverage = myAverageLatency;
         if (Double.MAX_VALUE == oldAverage) {
             myAverageLatency = latency;
             if (mySecondsBehind == Double.MAX_VALUE) {
-                mySecondsBehind = 0.0;
+                setSecondsBehind(0.0);
             }
         }
         else {
             myAverageLatency = (DECAY_ALPHA * latency)
                     + ((1.0D - DECAY_ALPHA) * oldAverage);
         }
+        expireWindowLatency(System.nanoTime());
+
+        myEventSupport.firePropertyChange(LATENCY_BUCKET_PROP, oldBucket,
+                getLatencyBucket());
+    }
+
+    /**
+     * Updates the recent latency (in nano-seconds) of the replies from the
+     * server.
+     * <p>
+     * If the server routes on a percentile of the reply latencies then the
+     * latency is also added to the sliding window of latencies. The
+     * percentile is recomputed (and a {@link #LATENCY_BUCKET_PROP} event
+     * fired if the bucket changes) each time the sample starts a new time
+     * slot in the window.
+     * </p>
+     *
+     * @param latencyNanoSeconds
+     *            The latency seen sending a request and receiving the reply
+     *            from the server.
+     */
+    public void updateRequestLatency(final long latencyNanoSeconds) {
+        final double latency = latencyNanoSeconds / NANOS_PER_MILLI;
+        final double oldAverage = myRequestLatency;
+        if (Double.MAX_VALUE == oldAverage) {
+            myRequestLatency = latency;
+        }
+        else {
+            myRequestLatency = (REQUEST_DECAY_ALPHA * latency)
+                    + ((1.0D - REQUEST_DECAY_ALPHA) * oldAverage);
+        }
+
+        final LatencyWindow window = myLatencyWindow;
+        if (window != null) {
+            final long now = System.nanoTime();
+            if (window.record(latencyNanoSeconds, now)
+                    || (myWindowLatency == Double.MAX_VALUE)) {
+                final int oldBucket = getLatencyBucket();
+
+                myWindowLatency = window.percentile(myLatencyPercentile, now);
+
+                myEventSupport.firePropertyChange(LATENCY_BUCKET_PROP,
+                        oldBucket, getLatencyBucket());
+            }
+        }
+    }
+
+    /**
+     * Discards the {@link #myWindowLatency window's percentile} if there are
+     * no replies left in the {@link #myLatencyWindow window}. Otherwise a
+     * server that stops receiving replies would be routed on a stale
+     * percentile forever.
+     *
+     * @param nowNanos
+     *            The current time in nano-seconds from
+     *            {@link System#nanoTime()}.
+     */
+    /* package */void expireWindowLatency(final long nowNanos) {
+        final LatencyWindow window = myLatencyWindow;
+        if ((window != null) && (myWindowLatency != Double.MAX_VALUE)) {
+            final double percentile = window.percentile(myLatencyPercentile,
+                    nowNanos);
+            if (percentile == Double.MAX_VALUE) {
+                myWindowLatency = Double.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Returns the bucket for the latency.
+     *
+     * @param latency
+     *            The latency in milliseconds.
+     * @return The bucket for the latency.
+     */
+    private int latencyBucket(final double latency) {
+        if (latency == Double.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        else if (latency <= 0) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) Math.floor(Math.log(latency) / LATENCY_BUCKET_LOG);
+    }
+
+    /**
+     * Sets the number of seconds the server is behind the primary and fires a
+     * {@link #SECONDS_BEHIND_PROP} property change event.
+     *
+     * @param secondsBehind
+     *            The new number of seconds the server is behind the primary.
+     */
+    private void setSecondsBehind(final double secondsBehind) {
+        final double oldValue = mySecondsBehind;
+
+        mySecondsBehind = secondsBehind;
+
+        myEventSupport.firePropertyChange(SECONDS_BEHIND_PROP,
+                Double.valueOf(oldValue), Double.valueOf(secondsBehind));
     }
 
     /**
@@ -581,7 +887,7 @@ public class Server {
             final int value = state.getIntValue();
             if (value == PRIMARY_STATE) {
                 myState = State.WRITABLE;
-                mySecondsBehind = 0;
+                setSecondsBehind(0);
             }
             else if (value == SECONDARY_STATE) {
                 myState = State.READ_ONLY;
@@ -610,12 +916,12 @@ public class Server {
 
                     final double msBehind = latestTimestamp.getTime()
                             - serverTimestamp.getTime();
-                    mySecondsBehind = (msBehind / TimeUnit.SECONDS.toMillis(1));
+                    setSecondsBehind((msBehind / TimeUnit.SECONDS.toMillis(1)));
                 }
             }
             else {
                 // "myState" != 1 and "myState" != 2
-                mySecondsBehind = Double.MAX_VALUE;
+                setSecondsBehind(Double.MAX_VALUE);
                 myState = State.UNAVAILABLE;
             }
         }
@@ -637,7 +943,7 @@ public class Server {
         if (element != null) {
             if (element.getValue()) {
                 myState = State.WRITABLE;
-                mySecondsBehind = 0.0;
+                setSecondsBehind(0.0);
             }
             else {
                 element = isMasterReply.findFirst(BooleanElement.class,
@@ -649,7 +955,7 @@ public class Server {
                     // status due to permissions.
                     if ((mySecondsBehind == Double.MAX_VALUE)
                             || (mySecondsBehind == Integer.MAX_VALUE)) {
-                        mySecondsBehind = 0.0;
+                        setSecondsBehind(0.0);
                     }
                 }
                 else {
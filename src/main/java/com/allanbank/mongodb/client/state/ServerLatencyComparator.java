@@ -48,14 +48,15 @@ public class ServerLatencyComparator
     /**
      * {@inheritDoc}
      * <p>
-     * Compares the servers based on their respective average latencies.
+     * Compares the servers based on their respective
+     * {@link Server#getLatency() latencies}.
      * </p>
      *
      * @see Comparator#compare
      */
     @Override
     public int compare(final Server o1, final Server o2) {
-        return Double.compare(o1.getAverageLatency(), o2.getAverageLatency());
+        return Double.compare(o1.getLatency(), o2.getLatency());
     }
 
 }
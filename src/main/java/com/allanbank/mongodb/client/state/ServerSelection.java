@@ -0,0 +1,264 @@
+/*
+ * #%L
+ * ServerSelection.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.allanbank.mongodb.client.state;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.allanbank.mongodb.ReadPreference;
+
+/**
+ * ServerSelection provides an immutable snapshot of the servers that can be
+ * used for a {@link ReadPreference} along with the latency CDF used to pick the
+ * server to try first.
+ * <p>
+ * The servers are held in two groups: the preferred servers and the fallback
+ * servers (e.g., the secondaries for a {@link ReadPreference#preferPrimary()
+ * primary preferred} read preference). Each group is ordered by latency with a
+ * server chosen at random, weighted by the CDF, moved to the front of the
+ * group. Every possible ordering is computed when the snapshot is created so
+ * that {@link #select()} only has to draw the random values.
+ * </p>
+ * <p>
+ * The {@link #selectLeastLoaded()} method uses the same orderings but instead
+ * of the latency CDF picks the server to try first based on the current load
+ * of two servers picked at random.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+/* package */final class ServerSelection {
+
+    /** The CDF for the fallback servers. */
+    private final double[] myFallbackCdf;
+
+    /** The fallback servers in latency order. */
+    private final Server[] myFallbackServers;
+
+    /** The generation of the {@link Cluster} state used for the snapshot. */
+    private final int myGeneration;
+
+    /** The maximum secondary lag used to filter the servers. */
+    private final long myMaxSecondaryLag;
+
+    /**
+     * The possible orderings of the servers. The ordering with the i'th
+     * preferred server and j'th fallback server first is at index
+     * {@code (i * myStride) + j}.
+     */
+    private final List<List<Server>> myOrderings;
+
+    /** The CDF for the preferred servers. */
+    private final double[] myPreferredCdf;
+
+    /** The preferred servers in latency order. */
+    private final Server[] myPreferredServers;
+
+    /** The number of orderings for each preferred server. */
+    private final int myStride;
+
+    /**
+     * Creates a new ServerSelection.
+     *
+     * @param generation
+     *            The generation of the {@link Cluster} state used for the
+     *            snapshot.
+     * @param maxSecondaryLag
+     *            The maximum secondary lag used to filter the servers.
+     * @param preferred
+     *            The preferred servers in latency order.
+     * @param preferredCdf
+     *            The CDF for the preferred servers.
+     * @param fallback
+     *            The fallback servers in latency order.
+     * @param fallbackCdf
+     *            The CDF for the fallback servers.
+     */
+    public ServerSelection(final int generation, final long maxSecondaryLag,
+            final List<Server> preferred, final double[] preferredCdf,
+            final List<Server> fallback, final double[] fallbackCdf) {
+        myGeneration = generation;
+        myMaxSecondaryLag = maxSecondaryLag;
+        myPreferredCdf = preferredCdf;
+        myFallbackCdf = fallbackCdf;
+        myPreferredServers = preferred.toArray(new Server[preferred.size()]);
+        myFallbackServers = fallback.toArray(new Server[fallback.size()]);
+        myStride = Math.max(1, fallback.size());
+
+        final int preferredCount = preferred.size();
+        final int fallbackCount = fallback.size();
+        final List<List<Server>> orderings = new ArrayList<List<Server>>(
+                preferredCount * myStride);
+        for (int i = 0; i < preferredCount; ++i) {
+            for (int j = 0; j < myStride; ++j) {
+                final Server[] ordering = new Server[preferredCount
+                        + fallbackCount];
+                preferred.toArray(ordering);
+                swap(ordering, 0, i);
+                for (int k = 0; k < fallbackCount; ++k) {
+                    ordering[preferredCount + k] = fallback.get(k);
+                }
+                if (0 < fallbackCount) {
+                    swap(ordering, preferredCount, preferredCount + j);
+                }
+
+                orderings.add(Collections.unmodifiableList(Arrays
+                        .asList(ordering)));
+            }
+        }
+        myOrderings = orderings;
+    }
+
+    /**
+     * Returns true if the snapshot was created from the current state of the
+     * {@link Cluster}.
+     *
+     * @param generation
+     *            The current generation of the {@link Cluster} state.
+     * @param maxSecondaryLag
+     *            The current maximum secondary lag.
+     * @return True if the snapshot is current.
+     */
+    public boolean isCurrent(final int generation, final long maxSecondaryLag) {
+        return (myGeneration == generation)
+                && (myMaxSecondaryLag == maxSecondaryLag);
+    }
+
+    /**
+     * Returns the servers in the order they should be tried. The returned list
+     * cannot be modified.
+     *
+     * @return The servers in the order they should be tried.
+     */
+    public List<Server> select() {
+        final int count = myOrderings.size();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        else if (count == 1) {
+            return myOrderings.get(0);
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int preferred = index(myPreferredCdf, random.nextDouble());
+        final int fallback = index(myFallbackCdf, random.nextDouble());
+
+        return myOrderings.get((preferred * myStride) + fallback);
+    }
+
+    /**
+     * Returns the servers in the order they should be tried using the
+     * "power of two choices" to pick the first server: two servers are picked
+     * at random and the one with the lower {@link Server#getLoad() load} is
+     * moved to the front. The same is done for the fallback servers. The
+     * returned list cannot be modified.
+     *
+     * @return The servers in the order they should be tried.
+     */
+    public List<Server> selectLeastLoaded() {
+        final int count = myOrderings.size();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        else if (count == 1) {
+            return myOrderings.get(0);
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int preferred = leastLoaded(myPreferredServers, random);
+        final int fallback = leastLoaded(myFallbackServers, random);
+
+        return myOrderings.get((preferred * myStride) + fallback);
+    }
+
+    /**
+     * Returns the index of the server selected by the random value.
+     *
+     * @param cdf
+     *            The CDF for the servers.
+     * @param random
+     *            The random value: {@code 0 <= random < 1}.
+     * @return The index of the selected server.
+     */
+    private int index(final double[] cdf, final double random) {
+        if (cdf.length <= 1) {
+            return 0;
+        }
+
+        int index = Arrays.binarySearch(cdf, random);
+
+        // Probably a negative index since not expecting an exact match.
+        if (index < 0) {
+            // Undo (-(insertion point) - 1)
+            index = Math.abs(index + 1);
+        }
+
+        return Math.min(cdf.length - 1, index);
+    }
+
+    /**
+     * Picks two distinct servers at random and returns the index of the one
+     * with the lower load.
+     *
+     * @param servers
+     *            The servers to pick from.
+     * @param random
+     *            The source of random values.
+     * @return The index of the selected server.
+     */
+    private int leastLoaded(final Server[] servers, final ThreadLocalRandom random) {
+        final int count = servers.length;
+        if (count <= 1) {
+            return 0;
+        }
+
+        final int first = random.nextInt(count);
+        int second = random.nextInt(count - 1);
+        if (first <= second) {
+            second += 1;
+        }
+
+        if (servers[second].getLoad() < servers[first].getLoad()) {
+            return second;
+        }
+        return first;
+    }
+
+    /**
+     * Swaps the two servers in the array.
+     *
+     * @param servers
+     *            The servers to update.
+     * @param i
+     *            The first index.
+     * @param j
+     *            The second index.
+     */
+    private void swap(final Server[] servers, final int i, final int j) {
+        final Server temp = servers[i];
+        servers[i] = servers[j];
+        servers[j] = temp;
+    }
+}
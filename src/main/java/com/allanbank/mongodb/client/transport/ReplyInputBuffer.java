@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * ReplyInputBuffer.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport;
+
+import java.io.IOException;
+
+import com.allanbank.mongodb.client.callback.StreamingReplyCallback;
+import com.allanbank.mongodb.client.message.Reply;
+
+/**
+ * ReplyInputBuffer provides a {@link TransportInputBuffer} for a reply where
+ * only the header has been read. The body of the reply is decoded when the
+ * reply is read which allows the documents to be streamed to a callback.
+ * <p>
+ * The reply is decoded from the transport's buffer and must be read before
+ * the {@link TransportResponseListener#response(TransportInputBuffer)} call
+ * returns.
+ * </p>
+ *
+ * @api.internal This interface is part of the driver's internal API. Users of
+ *               this API should advertise the explicit version of the driver
+ *               they are compatible with. Public and protected members may be
+ *               modified between non-bugfix releases (version numbers are
+ *               &lt;major&gt;.&lt;minor&gt;.&lt;bugfix&gt;).
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public interface ReplyInputBuffer
+        extends TransportInputBuffer {
+
+    /**
+     * Returns the id of the request the reply is for. This is available
+     * before the reply is read.
+     *
+     * @return The id of the request the reply is for.
+     */
+    public int getResponseToId();
+
+    /**
+     * Reads the reply from the buffer.
+     *
+     * @return The reply in the buffer.
+     * @throws IOException
+     *             On a failure reading the reply.
+     */
+    @Override
+    public Reply read() throws IOException;
+
+    /**
+     * Reads the reply from the buffer streaming the documents to the callback
+     * if it accepts them.
+     *
+     * @param callback
+     *            The callback to stream the documents to. May be
+     *            <code>null</code>.
+     * @return The reply in the buffer.
+     * @throws IOException
+     *             On a failure reading the reply.
+     */
+    public Reply read(StreamingReplyCallback callback) throws IOException;
+
+    /**
+     * Reads the reply from the buffer streaming the documents to the callback
+     * if it accepts them. The field names in the documents are looked up in,
+     * and learned by, the dictionary for the namespace the documents are read
+     * from.
+     *
+     * @param callback
+     *            The callback to stream the documents to. May be
+     *            <code>null</code>.
+     * @param database
+     *            The name of the database the documents are read from. May be
+     *            <code>null</code>.
+     * @param collection
+     *            The name of the collection the documents are read from. May
+     *            be <code>null</code>.
+     * @return The reply in the buffer.
+     * @throws IOException
+     *             On a failure reading the reply.
+     */
+    public Reply read(StreamingReplyCallback callback, String database,
+            String collection) throws IOException;
+}
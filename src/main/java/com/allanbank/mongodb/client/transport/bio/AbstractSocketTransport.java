@@ -124,6 +124,7 @@ public abstract class AbstractSocketTransport<OUT extends TransportOutputBuffer>
 
         myInput = mySocket.getInputStream();
         myBsonIn = new BsonInputStream(myInput, decoderCache);
+        myBsonIn.setRawDocuments(config.isRawDocumentsEnabled());
 
         // Careful with the size of the buffer here. Seems Java likes to call
         // madvise(..., MADV_DONTNEED) for buffers over a certain size.
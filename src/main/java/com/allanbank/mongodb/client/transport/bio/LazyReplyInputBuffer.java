@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * LazyReplyInputBuffer.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.bio;
+
+import java.io.IOException;
+
+import com.allanbank.mongodb.bson.io.BsonInputStream;
+import com.allanbank.mongodb.bson.io.FieldNameDictionary;
+import com.allanbank.mongodb.client.callback.StreamingReplyCallback;
+import com.allanbank.mongodb.client.message.Header;
+import com.allanbank.mongodb.client.message.Reply;
+import com.allanbank.mongodb.client.transport.ReplyInputBuffer;
+
+/**
+ * LazyReplyInputBuffer provides a transport buffer for a reply where only the
+ * header has been read. The body is decoded from the transport's stream the
+ * first time the reply is read.
+ * <p>
+ * The transport must call {@link #skipUnread()} once the listener returns so
+ * the stream is positioned at the next message even if the reply was not
+ * read.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class LazyReplyInputBuffer
+        implements ReplyInputBuffer {
+
+    /** The position in the stream of the end of the reply. */
+    private final long myEnd;
+
+    /** The header for the reply. */
+    private final Header myHeader;
+
+    /** The stream to read the reply's body from. */
+    private final BsonInputStream myIn;
+
+    /** The reply once it has been read. */
+    private Reply myReply;
+
+    /**
+     * Creates a new LazyReplyInputBuffer.
+     *
+     * @param header
+     *            The header for the reply.
+     * @param in
+     *            The stream to read the reply's body from.
+     */
+    public LazyReplyInputBuffer(final Header header, final BsonInputStream in) {
+        myHeader = header;
+        myIn = in;
+        myReply = null;
+        myEnd = in.getBytesRead() + (header.getLength() - Header.SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the response id from the reply's header.
+     * </p>
+     */
+    @Override
+    public int getResponseToId() {
+        return myHeader.getResponseId();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to read the complete reply.
+     * </p>
+     */
+    @Override
+    public Reply read() throws IOException {
+        return read(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to decode the reply the first time it is read. Later reads
+     * return the same reply.
+     * </p>
+     */
+    @Override
+    public Reply read(final StreamingReplyCallback callback)
+            throws IOException {
+        return read(callback, null, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to decode the reply the first time it is read using the
+     * stream's field name dictionary for the namespace. Later reads return the
+     * same reply.
+     * </p>
+     */
+    @Override
+    public Reply read(final StreamingReplyCallback callback,
+            final String database, final String collection)
+            throws IOException {
+        if (myReply == null) {
+            final FieldNameDictionary names = myIn.getFieldNames(database,
+                    collection);
+            if (names == null) {
+                myReply = new Reply(myHeader, myIn, callback);
+            }
+            else {
+                myIn.setFieldNames(names);
+                try {
+                    myReply = new Reply(myHeader, myIn, callback);
+                    names.replyRead();
+                }
+                finally {
+                    myIn.setFieldNames(null);
+                }
+            }
+        }
+        return myReply;
+    }
+
+    /**
+     * Skips any of the reply that has not been read from the stream.
+     *
+     * @throws IOException
+     *             On a failure skipping the remainder of the reply.
+     */
+    public void skipUnread() throws IOException {
+        final long remaining = myEnd - myIn.getBytesRead();
+        if (0 < remaining) {
+            myIn.skip(remaining);
+        }
+    }
+}
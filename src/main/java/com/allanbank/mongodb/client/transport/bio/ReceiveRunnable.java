@@ -42,6 +42,7 @@ import com.allanbank.mongodb.client.message.KillCursors;
 import com.allanbank.mongodb.client.message.Query;
 import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.client.message.Update;
+import com.allanbank.mongodb.client.transport.TransportInputBuffer;
 import com.allanbank.mongodb.client.transport.TransportResponseListener;
 import com.allanbank.mongodb.error.ConnectionLostException;
 import com.allanbank.mongodb.util.IOUtils;
@@ -75,6 +76,9 @@ public class ReceiveRunnable
     /** The listener for responses from the server. */
     private final TransportResponseListener myResponseListener;
 
+    /** If true then replies are decoded as the listener reads them. */
+    private final boolean myStreamingReplies;
+
     /** The transport. */
     private final AbstractSocketTransport<?> myTransport;
 
@@ -93,6 +97,7 @@ public class ReceiveRunnable
         myBsonIn = transport.getBsonIn();
         myResponseListener = transport.getResponseListener();
         myRemoteAddress = transport.getRemoteAddress();
+        myStreamingReplies = config.isStreamingRepliesEnabled();
     }
 
     /**
@@ -128,6 +133,9 @@ public class ReceiveRunnable
         finally {
             // Make sure the connection is closed completely.
             IOUtils.close(myTransport);
+
+            // No more reads. Return the stream's buffer to the pool.
+            IOUtils.close(myBsonIn);
         }
     }
 
@@ -156,12 +164,16 @@ public class ReceiveRunnable
 
     /**
      * Receives a single message from the connection.
+     * <p>
+     * If streaming replies are enabled then only the header of a reply is
+     * read and the reply is decoded when the listener reads the buffer.
+     * </p>
      *
-     * @return The {@link Message} received.
+     * @return The buffer for the message received.
      * @throws MongoDbException
      *             On an error receiving the message.
      */
-    protected Message doReceive() throws MongoDbException {
+    protected TransportInputBuffer doReceive() throws MongoDbException {
         try {
             int length;
             try {
@@ -187,6 +199,10 @@ public class ReceiveRunnable
             }
 
             final Header header = new Header(length, requestId, responseId, op);
+            if ((op == Operation.REPLY) && myStreamingReplies) {
+                return new LazyReplyInputBuffer(header, myBsonIn);
+            }
+
             Message message;
             switch (op) {
             case REPLY:
@@ -215,7 +231,7 @@ public class ReceiveRunnable
                 break;
             }
 
-            return message;
+            return (message != null) ? new MessageInputBuffer(message) : null;
         }
 
         catch (final IOException ioe) {
@@ -233,7 +249,7 @@ public class ReceiveRunnable
      */
     protected void doReceiveOne() {
 
-        final Message received = doReceive();
+        final TransportInputBuffer received = doReceive();
         if (received != null) {
             myIdleTicks = 0;
             handle(received);
@@ -253,10 +269,27 @@ public class ReceiveRunnable
      * Process a single reply.
      *
      * @param reply
-     *            The received reply.
+     *            The buffer for the received reply.
+     * @throws MongoDbException
+     *             On an error skipping the unread portion of the reply.
      */
-    protected void handle(final Message reply) {
-        myResponseListener.response(new MessageInputBuffer(reply));
+    protected void handle(final TransportInputBuffer reply)
+            throws MongoDbException {
+        myResponseListener.response(reply);
+
+        if (reply instanceof LazyReplyInputBuffer) {
+            try {
+                ((LazyReplyInputBuffer) reply).skipUnread();
+            }
+            catch (final IOException ioe) {
+                final MongoDbException error = new ConnectionLostException(ioe);
+
+                myTransport.shutdown(error,
+                        (ioe instanceof InterruptedIOException));
+
+                throw error;
+            }
+        }
     }
 
     /**
@@ -110,7 +110,7 @@ import com.allanbank.mongodb.client.transport.bio.ReceiveRunnable;
 
         myToSendQueue = new PendingMessageQueue(
                 config.getMaxPendingOperationsPerConnection(),
-                config.getLockType());
+                config.getWaitStrategy());
 
         final int localPort = mySocket.getLocalPort();
 
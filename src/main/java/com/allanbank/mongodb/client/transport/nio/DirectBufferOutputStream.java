@@ -0,0 +1,293 @@
+/*
+ * #%L
+ * DirectBufferOutputStream.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.nio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.allanbank.mongodb.bson.io.RandomAccessOutputStream;
+import com.allanbank.mongodb.bson.io.StringEncoderCache;
+
+/**
+ * DirectBufferOutputStream provides a {@link RandomAccessOutputStream} that
+ * stores the written bytes in a list of direct {@link ByteBuffer} segments
+ * leased from a {@link DirectBufferPool}.
+ * <p>
+ * The segments can be handed directly to a
+ * {@link java.nio.channels.GatheringByteChannel#write(ByteBuffer[])} via
+ * {@link #getBuffers()} avoiding the copies to an intermediate stream buffer
+ * and to the JDK's temporary direct buffer.
+ * </p>
+ * <p>
+ * Segments are only leased from the pool as bytes are written and all of the
+ * segments are returned to the pool when the stream is {@link #reset()}. A
+ * stream that is cached per thread does not pin a direct segment between
+ * messages.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+/* package */class DirectBufferOutputStream
+        extends RandomAccessOutputStream {
+
+    /** The mask for the offset within a segment. */
+    private static final int SEGMENT_MASK = DirectBufferPool.SEGMENT_SIZE - 1;
+
+    /** The shift for the index of a segment. */
+    private static final int SEGMENT_SHIFT = Integer
+            .numberOfTrailingZeros(DirectBufferPool.SEGMENT_SIZE);
+
+    /**
+     * The segment currently being written. In fill mode. <code>null</code>
+     * until the first byte is written.
+     */
+    private ByteBuffer myCurrentSegment;
+
+    /** The index of the segment currently being written. */
+    private int myCurrentSegmentIndex;
+
+    /** The pool to lease segments from. */
+    private final DirectBufferPool myPool;
+
+    /** The segments written so far. */
+    private final List<ByteBuffer> mySegments;
+
+    /** The number of bytes written to the stream. */
+    private long mySize;
+
+    /**
+     * Creates a new DirectBufferOutputStream.
+     *
+     * @param cache
+     *            The cache for encoding string.
+     * @param pool
+     *            The pool to lease segments from.
+     */
+    public DirectBufferOutputStream(final StringEncoderCache cache,
+            final DirectBufferPool pool) {
+        // The parent's heap buffers are never used.
+        super(cache, null, false);
+
+        myPool = pool;
+        mySegments = new ArrayList<ByteBuffer>();
+        myCurrentSegment = null;
+        myCurrentSegmentIndex = -1;
+        mySize = 0;
+    }
+
+    /**
+     * Returns the written segments ready to be written to a channel. Each
+     * returned buffer is a duplicate with its position at zero and its limit
+     * at the end of the written bytes.
+     *
+     * @return The written segments.
+     */
+    public ByteBuffer[] getBuffers() {
+        final ByteBuffer[] buffers = new ByteBuffer[myCurrentSegmentIndex + 1];
+        for (int i = 0; i < buffers.length; ++i) {
+            final ByteBuffer buffer = mySegments.get(i).duplicate();
+            buffer.flip();
+            buffers[i] = buffer;
+        }
+        return buffers;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the number of bytes written to the segments.
+     * </p>
+     */
+    @Override
+    public long getSize() {
+        return mySize;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return all of the segments to the pool.
+     * </p>
+     */
+    @Override
+    public void reset() {
+        for (final ByteBuffer segment : mySegments) {
+            myPool.release(segment);
+        }
+        mySegments.clear();
+
+        myCurrentSegment = null;
+        myCurrentSegmentIndex = -1;
+        mySize = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to copy the bytes from each segment.
+     * </p>
+     */
+    @Override
+    public byte[] toByteArray() {
+        final byte[] result = new byte[(int) mySize];
+
+        int offset = 0;
+        for (final ByteBuffer buffer : getBuffers()) {
+            final int length = buffer.remaining();
+            buffer.get(result, offset, length);
+            offset += length;
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to write to the current segment.
+     * </p>
+     */
+    @Override
+    public void write(final byte buffer[], final int offset, final int length) {
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        else if ((offset < 0) || (offset > buffer.length) || (length < 0)
+                || ((offset + length) > buffer.length)
+                || ((offset + length) < 0)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int wrote = 0;
+        while (wrote < length) {
+            if ((myCurrentSegment == null)
+                    || !myCurrentSegment.hasRemaining()) {
+                nextBuffer();
+            }
+
+            final int toWrite = Math.min(length - wrote,
+                    myCurrentSegment.remaining());
+
+            myCurrentSegment.put(buffer, offset + wrote, toWrite);
+
+            mySize += toWrite;
+            wrote += toWrite;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to write to the current segment.
+     * </p>
+     */
+    @Override
+    public void write(final int b) {
+        if ((myCurrentSegment == null) || !myCurrentSegment.hasRemaining()) {
+            nextBuffer();
+        }
+
+        myCurrentSegment.put((byte) b);
+        mySize += 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to re-write the bytes within the segments.
+     * </p>
+     */
+    @Override
+    public void writeAt(final long position, final byte buffer[],
+            final int offset, final int length) {
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        else if ((offset < 0) || (offset > buffer.length) || (length < 0)
+                || ((offset + length) > buffer.length)
+                || ((offset + length) < 0) || ((position + length) > getSize())) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        for (int i = 0; i < length; ++i) {
+            writeAt(position + i, buffer[offset + i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to re-write the byte within its segment.
+     * </p>
+     */
+    @Override
+    public void writeAt(final long position, final int b) {
+        final ByteBuffer segment = mySegments
+                .get((int) (position >> SEGMENT_SHIFT));
+
+        segment.put((int) (position & SEGMENT_MASK), (byte) b);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to copy the bytes from each segment to the stream. Callers
+     * should prefer to write the {@link #getBuffers() segments} directly to a
+     * channel.
+     * </p>
+     */
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+        final byte[] bytes = new byte[8192];
+        for (final ByteBuffer buffer : getBuffers()) {
+            while (buffer.hasRemaining()) {
+                final int length = Math.min(bytes.length, buffer.remaining());
+                buffer.get(bytes, 0, length);
+                out.write(bytes, 0, length);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to move to the next segment, leasing a new segment from the
+     * pool as needed.
+     * </p>
+     */
+    @Override
+    protected void nextBuffer() {
+        myCurrentSegmentIndex += 1;
+
+        if (myCurrentSegmentIndex < mySegments.size()) {
+            myCurrentSegment = mySegments.get(myCurrentSegmentIndex);
+        }
+        else {
+            myCurrentSegment = myPool.lease();
+            mySegments.add(myCurrentSegment);
+        }
+    }
+}
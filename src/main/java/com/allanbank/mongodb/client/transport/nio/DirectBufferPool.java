@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * DirectBufferPool.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DirectBufferPool provides a bounded pool of fixed size, direct
+ * {@link ByteBuffer} segments.
+ * <p>
+ * Direct buffers are expensive to allocate and are only reclaimed after a
+ * garbage collection so the segments for large messages are returned to the
+ * pool once the message has been sent. If the pool is full when a segment is
+ * released then the segment is simply dropped.
+ * </p>
+ * <p>
+ * Segments are leased and released for every message sent so the pool is
+ * lock-free.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+/* package */class DirectBufferPool {
+
+    /** The size of each segment. Must be a power of two. */
+    public static final int SEGMENT_SIZE = 64 * 1024;
+
+    /** The number of pooled segments. */
+    private final AtomicInteger myCount;
+
+    /** The maximum number of pooled segments. */
+    private final int myMaximum;
+
+    /** The pooled segments. */
+    private final Queue<ByteBuffer> mySegments;
+
+    /**
+     * Creates a new DirectBufferPool.
+     *
+     * @param maxPooledSegments
+     *            The maximum number of segments to hold in the pool.
+     */
+    public DirectBufferPool(final int maxPooledSegments) {
+        myMaximum = Math.max(1, maxPooledSegments);
+        mySegments = new ConcurrentLinkedQueue<ByteBuffer>();
+        myCount = new AtomicInteger(0);
+    }
+
+    /**
+     * Returns the number of segments currently held by the pool.
+     *
+     * @return The number of segments currently held by the pool.
+     */
+    public int getPooledCount() {
+        return myCount.get();
+    }
+
+    /**
+     * Leases a cleared, little-endian segment from the pool. If the pool is
+     * empty then a new segment is allocated.
+     *
+     * @return The leased segment.
+     */
+    public ByteBuffer lease() {
+        final ByteBuffer segment = mySegments.poll();
+        if (segment != null) {
+            myCount.decrementAndGet();
+            return segment;
+        }
+        return ByteBuffer.allocateDirect(SEGMENT_SIZE).order(
+                ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the segment to the pool.
+     *
+     * @param segment
+     *            The segment to return to the pool.
+     */
+    public void release(final ByteBuffer segment) {
+        segment.clear();
+        if (myCount.incrementAndGet() <= myMaximum) {
+            mySegments.offer(segment);
+        }
+        else {
+            myCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * #%L
+ * NioEventLoop.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.allanbank.mongodb.MongoDbException;
+import com.allanbank.mongodb.util.log.Log;
+import com.allanbank.mongodb.util.log.LogFactory;
+
+/**
+ * NioEventLoop provides the processing loop for a single {@link Selector}. A
+ * small number of event loops are shared by all of the {@link NioTransport}s
+ * created by a {@link NioTransportFactory}.
+ * <p>
+ * The event loop reads from each readable channel, finishes the writes that
+ * could not complete when the socket's send buffer was full once the channel
+ * becomes writable and periodically checks each transport for read timeouts.
+ * </p>
+ * <p>
+ * The factory {@link #stop() stops} the event loop once no transports are
+ * using it. Any transports still registered are closed and the selector is
+ * closed as the event loop's thread exits.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+/* package */class NioEventLoop
+        implements Runnable {
+
+    /** The logger for the event loop. */
+    private static final Log LOG = LogFactory.getLog(NioEventLoop.class);
+
+    /**
+     * The maximum time to block in a select. This also determines the
+     * resolution of the read timeout checks.
+     */
+    private static final long SELECT_TIMEOUT_MS = 100;
+
+    /** The event loop running on the current thread, if any. */
+    private static final ThreadLocal<NioEventLoop> ourEventLoop = new ThreadLocal<NioEventLoop>();
+
+    /**
+     * Returns true if the current thread is running any event loop. Event loop
+     * threads must never block waiting for a channel to become writable.
+     *
+     * @return True if the current thread is running any event loop.
+     */
+    public static boolean isEventLoopThread() {
+        return ourEventLoop.get() != null;
+    }
+
+    /** The factory that owns the event loop. */
+    private final NioTransportFactory myFactory;
+
+    /** Set to false when the event loop should stop. */
+    private volatile boolean myRunning;
+
+    /** The selector for the event loop. */
+    private final Selector mySelector;
+
+    /** The tasks to be run on the event loop's thread. */
+    private final Queue<Runnable> myTasks;
+
+    /** The thread running the event loop. */
+    private volatile Thread myThread;
+
+    /** The number of transports registered with the event loop. */
+    private final AtomicInteger myTransportCount;
+
+    /**
+     * Creates a new NioEventLoop.
+     *
+     * @param factory
+     *            The factory that owns the event loop.
+     * @throws IOException
+     *             On a failure to open the selector.
+     */
+    public NioEventLoop(final NioTransportFactory factory) throws IOException {
+        myFactory = factory;
+        mySelector = Selector.open();
+        myTasks = new ConcurrentLinkedQueue<Runnable>();
+        myTransportCount = new AtomicInteger(0);
+        myRunning = true;
+    }
+
+    /**
+     * Queues the task to be run on the event loop's thread.
+     *
+     * @param task
+     *            The task to run.
+     */
+    public void execute(final Runnable task) {
+        myTasks.add(task);
+        mySelector.wakeup();
+    }
+
+    /**
+     * Returns the number of transports registered with the event loop.
+     *
+     * @return The number of transports registered with the event loop.
+     */
+    public int getTransportCount() {
+        return myTransportCount.get();
+    }
+
+    /**
+     * Returns true if the current thread is the event loop's thread.
+     *
+     * @return True if the current thread is the event loop's thread.
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == myThread;
+    }
+
+    /**
+     * Reserves a slot in the event loop for a new transport. Each reservation
+     * is released via {@link #unregistered()}.
+     */
+    public void reserve() {
+        myTransportCount.incrementAndGet();
+    }
+
+    /**
+     * Registers the transport's channel with the event loop's selector for
+     * reads.
+     *
+     * @param transport
+     *            The transport to register.
+     */
+    public void register(final NioTransport transport) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    transport.registered(transport.getChannel().register(
+                            mySelector, SelectionKey.OP_READ, transport));
+                }
+                catch (final IOException error) {
+                    transport.registrationFailed(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to process the selector's events until the event loop is
+     * stopped or the thread is interrupted.
+     * </p>
+     */
+    @Override
+    public void run() {
+        myThread = Thread.currentThread();
+        ourEventLoop.set(this);
+
+        try {
+            long nextTimeoutCheck = System.nanoTime();
+            while (myRunning && !Thread.currentThread().isInterrupted()) {
+                try {
+                    mySelector.select(SELECT_TIMEOUT_MS);
+
+                    runTasks();
+                    processSelected();
+
+                    final long now = System.nanoTime();
+                    if (0 <= (now - nextTimeoutCheck)) {
+                        checkTimeouts(now);
+                        nextTimeoutCheck = now
+                                + TimeUnit.MILLISECONDS
+                                        .toNanos(SELECT_TIMEOUT_MS);
+                    }
+                }
+                catch (final IOException error) {
+                    LOG.warn(error, "I/O error in the selector's event loop.");
+                }
+                catch (final RuntimeException error) {
+                    LOG.warn(error,
+                            "Runtime error in the selector's event loop.");
+                }
+            }
+        }
+        finally {
+            shutdown();
+            ourEventLoop.remove();
+        }
+    }
+
+    /**
+     * Stops the event loop. The event loop's thread closes any remaining
+     * transports and the selector before it exits.
+     */
+    public void stop() {
+        myRunning = false;
+        mySelector.wakeup();
+    }
+
+    /**
+     * Notification that a transport has been closed, or failed to connect,
+     * and is no longer registered with the event loop.
+     */
+    public void unregistered() {
+        myTransportCount.decrementAndGet();
+        myFactory.unregistered();
+    }
+
+    /**
+     * Checks each registered transport for a read timeout.
+     *
+     * @param now
+     *            The current {@link System#nanoTime()}.
+     */
+    private void checkTimeouts(final long now) {
+        for (final SelectionKey key : mySelector.keys()) {
+            final NioTransport transport = (NioTransport) key.attachment();
+            if (key.isValid() && (transport != null)) {
+                transport.checkTimeout(now);
+            }
+        }
+    }
+
+    /**
+     * Processes the selected keys.
+     */
+    private void processSelected() {
+        final Iterator<SelectionKey> iter = mySelector.selectedKeys()
+                .iterator();
+        while (iter.hasNext()) {
+            final SelectionKey key = iter.next();
+            iter.remove();
+
+            final NioTransport transport = (NioTransport) key.attachment();
+            try {
+                if (key.isValid() && key.isWritable()) {
+                    transport.writable();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    transport.readable();
+                }
+            }
+            catch (final CancelledKeyException closed) {
+                // Transport closed by another thread. Nothing to do.
+                LOG.debug("Selection key cancelled for {}.", transport);
+            }
+        }
+    }
+
+    /**
+     * Runs all of the pending tasks.
+     */
+    private void runTasks() {
+        Runnable task = myTasks.poll();
+        while (task != null) {
+            task.run();
+            task = myTasks.poll();
+        }
+    }
+
+    /**
+     * Closes any transports still registered with the selector and then the
+     * selector.
+     */
+    private void shutdown() {
+        // Finish any pending registrations so those transports are closed too.
+        runTasks();
+
+        for (final SelectionKey key : mySelector.keys()) {
+            final NioTransport transport = (NioTransport) key.attachment();
+            if (transport != null) {
+                transport.close(new MongoDbException("Connection closed."));
+            }
+        }
+
+        // Run the clean up tasks queued by closing the transports.
+        runTasks();
+
+        try {
+            mySelector.close();
+        }
+        catch (final IOException error) {
+            LOG.info("Error closing the selector: {}", error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * NioOutputBuffer.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.allanbank.mongodb.bson.io.BufferingBsonOutputStream;
+import com.allanbank.mongodb.bson.io.StringEncoderCache;
+import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.callback.ReplyCallback;
+import com.allanbank.mongodb.client.transport.TransportOutputBuffer;
+
+/**
+ * NioOutputBuffer provides a output buffer that serializes all of the messages
+ * to a {@link BufferingBsonOutputStream} on the application's thread.
+ * <p>
+ * The messages are serialized directly into pooled, direct {@link ByteBuffer}
+ * segments that can be written to the channel with a single gathering write.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+/* package */class NioOutputBuffer
+        implements TransportOutputBuffer {
+    /** The buffer backing the stream. */
+    private final DirectBufferOutputStream myBuffer;
+
+    /** The stream to write to. */
+    private final BufferingBsonOutputStream myOutputStream;
+
+    /**
+     * Creates a new NioOutputBuffer.
+     *
+     * @param stringCache
+     *            The cache for strings.
+     * @param pool
+     *            The pool of direct buffer segments.
+     */
+    public NioOutputBuffer(final StringEncoderCache stringCache,
+            final DirectBufferPool pool) {
+        myBuffer = new DirectBufferOutputStream(stringCache, pool);
+        myOutputStream = new BufferingBsonOutputStream(myBuffer);
+    }
+
+    /**
+     * Clears the message buffer.
+     */
+    public void clear() {
+        myBuffer.reset();
+    }
+
+    /**
+     * Returns the buffered messages as a sequence of buffers ready to be
+     * written to a channel.
+     *
+     * @return The buffered messages.
+     */
+    public ByteBuffer[] getBuffers() {
+        return myBuffer.getBuffers();
+    }
+
+    /**
+     * Returns the number of bytes buffered.
+     *
+     * @return The number of bytes buffered.
+     */
+    public long getSize() {
+        return myBuffer.getSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to write the message to the internal buffer.
+     * </p>
+     *
+     * @see TransportOutputBuffer#write(int, Message, ReplyCallback)
+     */
+    @Override
+    public void write(final int messageId, final Message message,
+            final ReplyCallback callback) throws IOException {
+        message.write(messageId, myOutputStream);
+    }
+}
@@ -0,0 +1,1102 @@
+/*
+ * #%L
+ * NioTransport.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.allanbank.mongodb.MongoClientConfiguration;
+import com.allanbank.mongodb.MongoDbException;
+import com.allanbank.mongodb.bson.io.BsonInputStream;
+import com.allanbank.mongodb.bson.io.StringDecoderCache;
+import com.allanbank.mongodb.bson.io.StringEncoderCache;
+import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.Operation;
+import com.allanbank.mongodb.client.callback.Receiver;
+import com.allanbank.mongodb.client.message.Delete;
+import com.allanbank.mongodb.client.message.GetMore;
+import com.allanbank.mongodb.client.message.Header;
+import com.allanbank.mongodb.client.message.Insert;
+import com.allanbank.mongodb.client.message.KillCursors;
+import com.allanbank.mongodb.client.message.Query;
+import com.allanbank.mongodb.client.message.Reply;
+import com.allanbank.mongodb.client.message.Update;
+import com.allanbank.mongodb.client.state.Server;
+import com.allanbank.mongodb.client.transport.Transport;
+import com.allanbank.mongodb.client.transport.TransportResponseListener;
+import com.allanbank.mongodb.client.transport.bio.LazyReplyInputBuffer;
+import com.allanbank.mongodb.client.transport.bio.MessageInputBuffer;
+import com.allanbank.mongodb.error.ConnectionLostException;
+import com.allanbank.mongodb.util.IOUtils;
+import com.allanbank.mongodb.util.log.Log;
+import com.allanbank.mongodb.util.log.LogFactory;
+
+/**
+ * NioTransport provides a transport using a non-blocking
+ * {@link SocketChannel}. All reads are performed by the {@link NioEventLoop}
+ * the channel is registered with. Writes are performed directly on the
+ * sending thread and only involve the event loop when the socket's send
+ * buffer is full. In that case the unwritten bytes are queued and the event
+ * loop finishes the write once the channel becomes writable. Application
+ * threads wait for the queued bytes to be written but an event loop's thread
+ * never waits.
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+/* package */class NioTransport
+        implements Transport<NioOutputBuffer>, Receiver {
+
+    /**
+     * The size of the read and write buffers. See the comments in the
+     * {@link com.allanbank.mongodb.client.transport.bio.AbstractSocketTransport}
+     * constructor for the rationale for the size.
+     */
+    public static final int BUFFER_SIZE = 32 * 1024;
+
+    /**
+     * The largest message we will accept from the server. This is larger than
+     * any legal message and is only used to detect a corrupt stream.
+     */
+    public static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    /** The maximum number of reads to perform for a single readable event. */
+    private static final int MAX_READS_PER_EVENT = 16;
+
+    /** The time to wait for the pending writes before re-checking. */
+    private static final long WRITABLE_WAIT_NS = TimeUnit.MILLISECONDS
+            .toNanos(100);
+
+    /** The logger for the transport. */
+    private static final Log LOG = LogFactory.getLog(NioTransport.class);
+
+    /**
+     * The buffers used each connection. Each buffer is shared by all
+     * connections but there can be up to 1 buffer per application thread.
+     */
+    private final ThreadLocal<Reference<NioOutputBuffer>> myBuffers;
+
+    /** The BSON stream to de-serialize each received message. */
+    private final BsonInputStream myBsonIn;
+
+    /** The pool of direct buffer segments for serializing messages. */
+    private final DirectBufferPool myBufferPool;
+
+    /** The channel for the connection. */
+    private final SocketChannel myChannel;
+
+    /** The configuration for the client. */
+    private final MongoClientConfiguration myConfig;
+
+    /** The cache for strings we write. */
+    private final StringEncoderCache myEncoderCache;
+
+    /** The event loop the channel is registered with. */
+    private final NioEventLoop myEventLoop;
+
+    /** The stream providing the bytes for each received message. */
+    private final FrameInputStream myFrameIn;
+
+    /** The number of sequential read timeouts without receiving a message. */
+    private int myIdleTicks;
+
+    /** The key for the channel's registration with the event loop. */
+    private volatile SelectionKey myKey;
+
+    /** The last time ({@link System#nanoTime()}) data was read. */
+    private long myLastReadNanos;
+
+    /** Holds if the connection is open. */
+    private final AtomicBoolean myOpen;
+
+    /**
+     * The bytes that could not be written without blocking, in the order they
+     * must be written. Guarded by the write lock.
+     */
+    private final Deque<ByteBuffer> myPendingWrites;
+
+    /** The buffer for reads from the channel. In fill mode. */
+    private ByteBuffer myReadBuffer;
+
+    /** The position of the first byte in the read buffer not yet processed. */
+    private int myReadPosition;
+
+    /** The read timeout in nanoseconds. Zero for no timeout. */
+    private final long myReadTimeoutNanos;
+
+    /** The remote address for the channel. */
+    private final InetSocketAddress myRemoteAddress;
+
+    /** The listener for responses from the server. */
+    private final TransportResponseListener myResponseListener;
+
+    /** If true then replies are decoded as the listener reads them. */
+    private final boolean myStreamingReplies;
+
+    /** The lock used to wait for the pending writes to complete. */
+    private final ReentrantLock myWritableLock;
+
+    /** The condition signaled when the pending writes complete. */
+    private final Condition myWritableCondition;
+
+    /** True while there are pending writes. */
+    private volatile boolean myWritesPending;
+
+    /**
+     * The direct buffer used to coalesce small messages into a single write
+     * to the channel. In fill mode.
+     */
+    private final ByteBuffer myWriteBuffer;
+
+    /** The lock serializing writes to the channel. */
+    private final ReentrantLock myWriteLock;
+
+    /**
+     * Creates a new NioTransport.
+     *
+     * @param server
+     *            The server to connect to.
+     * @param config
+     *            The clients configuration.
+     * @param encoderCache
+     *            The cache for the encoding of strings.
+     * @param decoderCache
+     *            The cache for the decoding of strings.
+     * @param responseListener
+     *            The listener for responses from the server.
+     * @param buffers
+     *            The per-thread transport buffers.
+     * @param bufferPool
+     *            The pool of direct buffer segments for serializing messages.
+     * @param eventLoop
+     *            The event loop to register the channel with.
+     * @throws IOException
+     *             On a failure to create the connection to the server.
+     */
+    public NioTransport(final Server server,
+            final MongoClientConfiguration config,
+            final StringEncoderCache encoderCache,
+            final StringDecoderCache decoderCache,
+            final TransportResponseListener responseListener,
+            final ThreadLocal<Reference<NioOutputBuffer>> buffers,
+            final DirectBufferPool bufferPool, final NioEventLoop eventLoop)
+            throws IOException {
+        myConfig = config;
+        myEncoderCache = encoderCache;
+        myResponseListener = responseListener;
+        myBuffers = buffers;
+        myBufferPool = bufferPool;
+        myEventLoop = eventLoop;
+
+        myOpen = new AtomicBoolean(false);
+        myWriteLock = new ReentrantLock();
+        myWritableLock = new ReentrantLock();
+        myWritableCondition = myWritableLock.newCondition();
+        myPendingWrites = new ArrayDeque<ByteBuffer>();
+        myWritesPending = false;
+
+        myReadTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config
+                .getReadTimeout());
+
+        myReadBuffer = allocate(BUFFER_SIZE);
+        myReadPosition = 0;
+        myWriteBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        myFrameIn = new FrameInputStream();
+        myBsonIn = new BsonInputStream(myFrameIn, decoderCache);
+        myBsonIn.setRawDocuments(config.isRawDocumentsEnabled());
+        myStreamingReplies = config.isStreamingRepliesEnabled();
+
+        myChannel = openChannel(server, config);
+        myRemoteAddress = (InetSocketAddress) myChannel.socket()
+                .getRemoteSocketAddress();
+
+        myOpen.set(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to close the channel.
+     * </p>
+     */
+    @Override
+    public void close() throws IOException {
+        close(new MongoDbException("Connection closed."));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the calling thread's {@link NioOutputBuffer}.
+     * </p>
+     */
+    @Override
+    public NioOutputBuffer createSendBuffer(final int size) {
+        final Reference<NioOutputBuffer> bufferRef = myBuffers.get();
+        NioOutputBuffer buffer = (bufferRef != null) ? bufferRef.get() : null;
+        if (buffer == null) {
+            buffer = new NioOutputBuffer(myEncoderCache, myBufferPool);
+
+            myBuffers.set(new SoftReference<NioOutputBuffer>(buffer));
+        }
+        return buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to write any buffered data to the channel.
+     * </p>
+     */
+    @Override
+    public void flush() throws IOException {
+        myWriteLock.lock();
+        try {
+            drainWriteBuffer();
+        }
+        finally {
+            myWriteLock.unlock();
+        }
+        awaitPendingWrites();
+    }
+
+    /**
+     * Returns true if the channel is currently open.
+     *
+     * @return True if the channel is currently open.
+     */
+    public boolean isOpen() {
+        return myOpen.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to write the buffered message to the channel. Small messages
+     * are copied to the write buffer to be coalesced with other messages.
+     * Larger messages are written, along with any pending bytes in the write
+     * buffer, directly from the message's direct buffer segments via a single
+     * gathering write.
+     * </p>
+     */
+    @Override
+    public void send(final NioOutputBuffer buffer) throws IOException,
+            InterruptedIOException {
+        myWriteLock.lock();
+        try {
+            final ByteBuffer[] segments = buffer.getBuffers();
+            if (buffer.getSize() <= myWriteBuffer.remaining()) {
+                for (final ByteBuffer segment : segments) {
+                    myWriteBuffer.put(segment);
+                }
+            }
+            else {
+                final ByteBuffer[] toWrite = new ByteBuffer[segments.length + 1];
+                System.arraycopy(segments, 0, toWrite, 1, segments.length);
+
+                myWriteBuffer.flip();
+                toWrite[0] = myWriteBuffer;
+                try {
+                    write(toWrite);
+                }
+                finally {
+                    myWriteBuffer.clear();
+                }
+            }
+        }
+        finally {
+            myWriteLock.unlock();
+            buffer.clear();
+        }
+        awaitPendingWrites();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to register the channel with the event loop.
+     * </p>
+     */
+    @Override
+    public void start() {
+        myLastReadNanos = System.nanoTime();
+        myEventLoop.register(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return the channel's information.
+     * </p>
+     */
+    @Override
+    public String toString() {
+        return myChannel.socket().getLocalPort() + "-->" + myRemoteAddress;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If currently on the event loop's thread then flushes any pending
+     * messages, without blocking, and tries to process any received messages.
+     * </p>
+     */
+    @Override
+    public void tryReceive() {
+        if (myEventLoop.inEventLoop() && isOpen()) {
+            try {
+                flush();
+            }
+            catch (final IOException ignore) {
+                LOG.info("Error while flushing from the receive thread.",
+                        ignore);
+            }
+            if (!processFrames()) {
+                readable();
+            }
+        }
+    }
+
+    /**
+     * Checks if the read timeout has expired. If the timeout expires while in
+     * the middle of receiving a message then the connection is closed.
+     * Otherwise the timeout counts as an idle tick for the connection.
+     * <p>
+     * Only called from the event loop's thread.
+     * </p>
+     *
+     * @param now
+     *            The current {@link System#nanoTime()}.
+     */
+    /* package */void checkTimeout(final long now) {
+        if ((0 < myReadTimeoutNanos)
+                && (myReadTimeoutNanos <= (now - myLastReadNanos))) {
+            myLastReadNanos = now;
+
+            if (myReadPosition < myReadBuffer.position()) {
+                // Bad - Only timeout between messages.
+                close(new ConnectionLostException(new IOException(
+                        new SocketTimeoutException("Read timed out"))));
+            }
+            else {
+                myIdleTicks += 1;
+                if (myConfig.getMaxIdleTickCount() <= myIdleTicks) {
+                    close(new ConnectionLostException(
+                            "Connection closed due to idle."));
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the transport.
+     *
+     * @param error
+     *            The error triggering the close.
+     */
+    /* package */void close(final MongoDbException error) {
+        if (myOpen.compareAndSet(true, false)) {
+            final SelectionKey key = myKey;
+            if (key != null) {
+                key.cancel();
+            }
+
+            try {
+                // Mark the connection closed before the server can see the
+                // disconnect.
+                myResponseListener.closed(error);
+            }
+            finally {
+                try {
+                    myChannel.close();
+                }
+                catch (final IOException ignore) {
+                    LOG.info("Error closing the channel: {}",
+                            ignore.getMessage());
+                }
+
+                // Wake up any blocked writers.
+                signalWritable();
+
+                // Return the read buffer to the pool once the event loop can
+                // no longer be in the middle of a read.
+                myEventLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        IOUtils.close(myBsonIn);
+                    }
+                });
+
+                myEventLoop.unregistered();
+            }
+        }
+    }
+
+    /**
+     * Returns the channel for the transport.
+     *
+     * @return The channel for the transport.
+     */
+    /* package */SocketChannel getChannel() {
+        return myChannel;
+    }
+
+    /**
+     * Reads all of the available data from the channel and processes each
+     * complete message.
+     * <p>
+     * Only called from the event loop's thread.
+     * </p>
+     */
+    /* package */void readable() {
+        try {
+            for (int i = 0; (i < MAX_READS_PER_EVENT) && isOpen(); ++i) {
+                ensureReadCapacity();
+
+                final int read = myChannel.read(myReadBuffer);
+                if (read < 0) {
+                    close(new ConnectionLostException(new EOFException(
+                            "Remote connection closed: " + myRemoteAddress)));
+                    return;
+                }
+                else if (read == 0) {
+                    return;
+                }
+
+                myLastReadNanos = System.nanoTime();
+                processFrames();
+            }
+        }
+        catch (final IOException error) {
+            if (isOpen()) {
+                LOG.warn(error, "Error reading a message: {}",
+                        error.getMessage());
+                close(new ConnectionLostException(error));
+            }
+        }
+    }
+
+    /**
+     * Notification that the channel has been registered with the event loop.
+     *
+     * @param key
+     *            The key for the channel's registration.
+     */
+    /* package */void registered(final SelectionKey key) {
+        myKey = key;
+        if (!isOpen()) {
+            key.cancel();
+        }
+        else if (myWritesPending) {
+            // Written before the registration completed.
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Notification that the channel could not be registered with the event
+     * loop.
+     *
+     * @param error
+     *            The error registering the channel.
+     */
+    /* package */void registrationFailed(final IOException error) {
+        close(new ConnectionLostException(error));
+    }
+
+    /**
+     * Notification that the channel is writable. Writes as many of the pending
+     * bytes as possible without blocking.
+     * <p>
+     * Only called from the event loop's thread.
+     * </p>
+     */
+    /* package */void writable() {
+        myWriteLock.lock();
+        try {
+            writePending();
+            if (!myWritesPending) {
+                final SelectionKey key = myKey;
+                if ((key != null) && key.isValid()) {
+                    key.interestOps(key.interestOps()
+                            & ~SelectionKey.OP_WRITE);
+                }
+            }
+        }
+        catch (final IOException error) {
+            if (isOpen()) {
+                LOG.warn(error, "Error writing a message: {}",
+                        error.getMessage());
+                close(new ConnectionLostException(error));
+            }
+        }
+        finally {
+            myWriteLock.unlock();
+        }
+
+        if (!myWritesPending) {
+            signalWritable();
+        }
+    }
+
+    /**
+     * Allocates a new buffer with little-endian byte order.
+     *
+     * @param size
+     *            The size of the buffer.
+     * @return The new buffer.
+     */
+    private ByteBuffer allocate(final int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Waits for the pending writes to complete. An event loop's thread never
+     * waits. The event loop finishes the writes once the channel becomes
+     * writable.
+     *
+     * @throws IOException
+     *             If the channel is closed while waiting.
+     */
+    private void awaitPendingWrites() throws IOException {
+        if (!myWritesPending || NioEventLoop.isEventLoopThread()) {
+            return;
+        }
+
+        myWritableLock.lock();
+        try {
+            while (myWritesPending && isOpen()) {
+                myWritableCondition.awaitNanos(WRITABLE_WAIT_NS);
+            }
+        }
+        catch (final InterruptedException interrupted) {
+            throw new InterruptedIOException(interrupted.getMessage());
+        }
+        finally {
+            myWritableLock.unlock();
+        }
+
+        if (!isOpen()) {
+            throw new IOException("Connection closed: " + this);
+        }
+    }
+
+    /**
+     * Writes the contents of the write buffer to the channel. The caller must
+     * hold the write lock.
+     *
+     * @throws IOException
+     *             On a failure writing to the channel.
+     */
+    private void drainWriteBuffer() throws IOException {
+        if (0 < myWriteBuffer.position()) {
+            myWriteBuffer.flip();
+            try {
+                write(myWriteBuffer);
+            }
+            finally {
+                myWriteBuffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds writes to the channel's interest set so the event loop is notified
+     * when the channel becomes writable.
+     */
+    private void enableWritable() {
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                final SelectionKey key = myKey;
+                if ((key != null) && key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            }
+        };
+
+        if (myEventLoop.inEventLoop()) {
+            task.run();
+        }
+        else {
+            myEventLoop.execute(task);
+        }
+    }
+
+    /**
+     * Makes sure there is room in the read buffer for the next read. This may
+     * compact or grow the buffer.
+     *
+     * @throws IOException
+     *             If the next message's length is not valid.
+     */
+    private void ensureReadCapacity() throws IOException {
+        if (myReadBuffer.hasRemaining()) {
+            return;
+        }
+
+        final int pending = myReadBuffer.position() - myReadPosition;
+        int needed = myReadBuffer.capacity();
+        if (4 <= pending) {
+            needed = Math.max(needed, readLength(myReadPosition));
+        }
+        if (needed == pending) {
+            // Full message is already here... Make room for the next.
+            needed += BUFFER_SIZE;
+        }
+
+        if (needed <= myReadBuffer.capacity()) {
+            // Compact in place.
+            final byte[] array = myReadBuffer.array();
+            System.arraycopy(array, myReadPosition, array, 0, pending);
+            myReadBuffer.position(pending);
+        }
+        else {
+            final ByteBuffer larger = allocate(needed);
+            larger.put(myReadBuffer.array(), myReadPosition, pending);
+            myReadBuffer = larger;
+        }
+        myReadPosition = 0;
+    }
+
+    /**
+     * Tries to open a connection to the server.
+     *
+     * @param server
+     *            The server to open the connection to.
+     * @param config
+     *            The configuration for attempting to open the connection.
+     * @return The opened {@link SocketChannel}.
+     * @throws IOException
+     *             On a failure opening a connection to the server.
+     */
+    private SocketChannel openChannel(final Server server,
+            final MongoClientConfiguration config) throws IOException {
+        IOException last = null;
+        SocketChannel channel = null;
+        for (final InetSocketAddress address : server.getAddresses()) {
+            try {
+                channel = SocketChannel.open();
+
+                final Socket socket = channel.socket();
+                socket.connect(address, config.getConnectTimeout());
+                socket.setKeepAlive(config.isUsingSoKeepalive());
+                socket.setTcpNoDelay(true);
+                channel.configureBlocking(false);
+
+                // Let the server know the working connection.
+                server.connectionOpened(address);
+
+                last = null;
+                break;
+            }
+            catch (final IOException error) {
+                last = error;
+                try {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                }
+                catch (final IOException ignore) {
+                    LOG.info(
+                            "Could not close the defunct channel connection: {}",
+                            channel);
+                }
+            }
+        }
+        if (last != null) {
+            server.connectFailed();
+            throw last;
+        }
+
+        return channel;
+    }
+
+    /**
+     * Processes each complete message in the read buffer.
+     * <p>
+     * This method may be re-entered via {@link #tryReceive()} while a message
+     * is being handled so all state is kept in the transport's fields and
+     * updated before each message is handed off.
+     * </p>
+     *
+     * @return True if at least one message was processed.
+     */
+    private boolean processFrames() {
+        boolean processed = false;
+        try {
+            while (isOpen()
+                    && (4 <= (myReadBuffer.position() - myReadPosition))) {
+                final int start = myReadPosition;
+                final int length = readLength(start);
+                if ((myReadBuffer.position() - start) < length) {
+                    break;
+                }
+
+                myReadPosition += length;
+                processed = true;
+
+                if (myStreamingReplies
+                        && (myReadBuffer.getInt(start + 12) == Operation.REPLY
+                                .getCode())) {
+                    receiveReply(myReadBuffer.array(), start, length);
+                    continue;
+                }
+
+                final Message message = decode(myReadBuffer.array(), start,
+                        length);
+                if (message != null) {
+                    myIdleTicks = 0;
+                    myResponseListener.response(new MessageInputBuffer(
+                            message));
+                }
+            }
+        }
+        catch (final IOException error) {
+            if (isOpen()) {
+                LOG.warn(error, "Error reading a message: {}",
+                        error.getMessage());
+                close(new ConnectionLostException(error));
+            }
+        }
+        catch (final MongoDbException error) {
+            if (isOpen()) {
+                LOG.warn(error, "Error reading a message: {}",
+                        error.getMessage());
+                close(new ConnectionLostException(error));
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * Decodes a single message.
+     *
+     * @param array
+     *            The array containing the message.
+     * @param offset
+     *            The offset of the message in the array.
+     * @param length
+     *            The length of the message.
+     * @return The decoded message.
+     * @throws IOException
+     *             On a failure decoding the message.
+     */
+    private Message decode(final byte[] array, final int offset,
+            final int length) throws IOException {
+        myFrameIn.reset(array, offset + 4, length - 4);
+        try {
+            final int requestId = myBsonIn.readInt();
+            final int responseId = myBsonIn.readInt();
+            final int opCode = myBsonIn.readInt();
+
+            final Operation op = Operation.fromCode(opCode);
+            if (op == null) {
+                // Huh? Dazed and confused
+                throw new StreamCorruptedException(
+                        "Unexpected operation read '" + opCode + "'.");
+            }
+
+            final Header header = new Header(length, requestId, responseId, op);
+            Message message;
+            switch (op) {
+            case REPLY:
+                message = new Reply(header, myBsonIn);
+                break;
+            case QUERY:
+                message = new Query(header, myBsonIn);
+                break;
+            case UPDATE:
+                message = new Update(myBsonIn);
+                break;
+            case INSERT:
+                message = new Insert(header, myBsonIn);
+                break;
+            case GET_MORE:
+                message = new GetMore(myBsonIn);
+                break;
+            case DELETE:
+                message = new Delete(myBsonIn);
+                break;
+            case KILL_CURSORS:
+                message = new KillCursors(myBsonIn);
+                break;
+            default:
+                message = null;
+                break;
+            }
+
+            return message;
+        }
+        finally {
+            // Discard anything left over in the frame.
+            myBsonIn.skip(myBsonIn.available());
+        }
+    }
+
+    /**
+     * Hands a reply to the listener after reading only the header. The body
+     * of the reply is decoded from the frame when the listener reads the
+     * buffer.
+     *
+     * @param array
+     *            The array containing the reply.
+     * @param offset
+     *            The offset of the reply in the array.
+     * @param length
+     *            The length of the reply.
+     * @throws IOException
+     *             On a failure reading the reply's header.
+     */
+    private void receiveReply(final byte[] array, final int offset,
+            final int length) throws IOException {
+        myFrameIn.reset(array, offset + 4, length - 4);
+        try {
+            final int requestId = myBsonIn.readInt();
+            final int responseId = myBsonIn.readInt();
+            myBsonIn.readInt(); // The operation code.
+
+            final Header header = new Header(length, requestId, responseId,
+                    Operation.REPLY);
+
+            myIdleTicks = 0;
+            myResponseListener.response(new LazyReplyInputBuffer(header,
+                    myBsonIn));
+        }
+        finally {
+            // Discard anything the listener did not read.
+            myBsonIn.skip(myBsonIn.available());
+        }
+    }
+
+    /**
+     * Reads and validates the length of the message starting at the offset
+     * in the read buffer.
+     *
+     * @param offset
+     *            The offset of the message.
+     * @return The length of the message.
+     * @throws StreamCorruptedException
+     *             If the length is not valid.
+     */
+    private int readLength(final int offset) throws StreamCorruptedException {
+        final int length = myReadBuffer.getInt(offset);
+        if ((length < Header.SIZE) || (MAX_MESSAGE_SIZE < length)) {
+            throw new StreamCorruptedException("Invalid message length '"
+                    + length + "'.");
+        }
+        return length;
+    }
+
+    /**
+     * Signals any threads waiting for the channel to become writable.
+     */
+    private void signalWritable() {
+        myWritableLock.lock();
+        try {
+            myWritableCondition.signalAll();
+        }
+        finally {
+            myWritableLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the buffers to the channel via gathering writes without blocking.
+     * Any bytes that cannot be written, because there are already pending
+     * writes or the socket's send buffer is full, are copied to the pending
+     * writes and the event loop is asked to finish the write once the channel
+     * becomes writable. The caller must hold the write lock.
+     *
+     * @param buffers
+     *            The buffers to write.
+     * @throws IOException
+     *             On a failure writing to the channel.
+     */
+    private void write(final ByteBuffer... buffers) throws IOException {
+        if (myPendingWrites.isEmpty()) {
+            int offset = 0;
+            while (offset < buffers.length) {
+                if (!buffers[offset].hasRemaining()) {
+                    offset += 1;
+                }
+                else if (myChannel.write(buffers, offset, buffers.length
+                        - offset) == 0) {
+                    break;
+                }
+            }
+        }
+
+        for (final ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                final ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+                copy.put(buffer);
+                copy.flip();
+                myPendingWrites.addLast(copy);
+            }
+        }
+
+        if (!myWritesPending && !myPendingWrites.isEmpty()) {
+            myWritesPending = true;
+            enableWritable();
+        }
+    }
+
+    /**
+     * Writes as many of the pending bytes as possible without blocking. The
+     * caller must hold the write lock.
+     *
+     * @throws IOException
+     *             On a failure writing to the channel.
+     */
+    private void writePending() throws IOException {
+        while (!myPendingWrites.isEmpty()) {
+            final ByteBuffer buffer = myPendingWrites.peekFirst();
+            myChannel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return;
+            }
+            myPendingWrites.removeFirst();
+        }
+        myWritesPending = false;
+    }
+
+    /**
+     * FrameInputStream provides a resettable stream over the bytes of a
+     * single received message.
+     *
+     * @api.no This class is <b>NOT</b> part of the drivers API. This class may
+     *         be mutated in incompatible ways between any two releases of the
+     *         driver.
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    /* package */static final class FrameInputStream
+            extends InputStream {
+
+        /** The bytes for the frame. */
+        private byte[] myBytes;
+
+        /** The limit for the frame in the bytes. */
+        private int myLimit;
+
+        /** The position of the next byte to read. */
+        private int myPosition;
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to return the number of bytes remaining in the frame.
+         * </p>
+         */
+        @Override
+        public int available() {
+            return myLimit - myPosition;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to read from the frame.
+         * </p>
+         */
+        @Override
+        public int read() {
+            if (myPosition < myLimit) {
+                return myBytes[myPosition++] & 0xFF;
+            }
+            return -1;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to read from the frame.
+         * </p>
+         */
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+
+            final int count = Math.min(len, myLimit - myPosition);
+            if (count <= 0) {
+                return -1;
+            }
+
+            System.arraycopy(myBytes, myPosition, b, off, count);
+            myPosition += count;
+
+            return count;
+        }
+
+        /**
+         * Resets the stream to read a new frame.
+         *
+         * @param bytes
+         *            The bytes for the frame.
+         * @param offset
+         *            The offset of the frame in the bytes.
+         * @param length
+         *            The length of the frame.
+         */
+        public void reset(final byte[] bytes, final int offset,
+                final int length) {
+            myBytes = bytes;
+            myPosition = offset;
+            myLimit = offset + length;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to skip within the frame.
+         * </p>
+         */
+        @Override
+        public long skip(final long n) {
+            final int count = (int) Math.max(0,
+                    Math.min(n, myLimit - myPosition));
+            myPosition += count;
+            return count;
+        }
+    }
+}
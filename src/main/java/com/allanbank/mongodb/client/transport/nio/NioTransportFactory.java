@@ -0,0 +1,234 @@
+/*
+ * #%L
+ * NioTransportFactory.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.Reference;
+
+import javax.net.SocketFactory;
+
+import com.allanbank.mongodb.MongoClientConfiguration;
+import com.allanbank.mongodb.bson.io.StringDecoderCache;
+import com.allanbank.mongodb.bson.io.StringEncoderCache;
+import com.allanbank.mongodb.client.state.Server;
+import com.allanbank.mongodb.client.transport.Transport;
+import com.allanbank.mongodb.client.transport.TransportFactory;
+import com.allanbank.mongodb.client.transport.TransportResponseListener;
+import com.allanbank.mongodb.client.transport.bio.one.OneThreadTransportFactory;
+
+/**
+ * NioTransportFactory provides factory to create connections to MongoDB via
+ * non-blocking {@link java.nio.channels.SocketChannel SocketChannels}
+ * serviced by a small, fixed pool of selector threads.
+ * <p>
+ * Non-blocking channels cannot be created by a {@link SocketFactory}. If the
+ * configuration contains a custom {@link SocketFactory} (e.g., for SSL or Unix
+ * domain sockets) then the factory falls back to creating
+ * {@link com.allanbank.mongodb.client.transport.bio.one.OneThreadTransport}s.
+ * </p>
+ * <p>
+ * The selector threads are started, using the configuration's
+ * {@link java.util.concurrent.ThreadFactory ThreadFactory}, when the first
+ * transport is created. They are stopped, and their selectors closed, when the
+ * last transport is closed or the factory is {@link #close() closed}. The next
+ * transport starts a new set of selector threads.
+ * </p>
+ *
+ * @api.no This class is <b>NOT</b> part of the drivers API. This class may be
+ *         mutated in incompatible ways between any two releases of the driver.
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class NioTransportFactory
+        implements TransportFactory, Closeable {
+
+    /**
+     * The maximum number of direct buffer segments to pool. Enough to hold a
+     * single maximum sized (16MB) document.
+     */
+    public static final int MAX_POOLED_SEGMENTS = (16 * 1024 * 1024)
+            / DirectBufferPool.SEGMENT_SIZE;
+
+    /** The pool of direct buffer segments shared by all transports. */
+    private final DirectBufferPool myBufferPool;
+
+    /**
+     * The buffers used each connection. Each buffer is shared by all
+     * connections but there can be up to 1 buffer per application thread.
+     */
+    private final ThreadLocal<Reference<NioOutputBuffer>> myBuffers;
+
+    /** The number of event loops (selector threads) to use. */
+    private final int myEventLoopCount;
+
+    /**
+     * The event loops. Lazily created on the first transport and discarded
+     * once the last transport is closed. Guarded by this.
+     */
+    private NioEventLoop[] myEventLoops;
+
+    /** The factory for transports when a custom socket factory is used. */
+    private final OneThreadTransportFactory myFallbackFactory;
+
+    /** The number of open transports using the event loops. Guarded by this. */
+    private int myTransportCount;
+
+    /**
+     * Creates a new NioTransportFactory with one event loop per available
+     * processor.
+     */
+    public NioTransportFactory() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new NioTransportFactory.
+     *
+     * @param eventLoopCount
+     *            The number of event loops (selector threads) to use.
+     */
+    public NioTransportFactory(final int eventLoopCount) {
+        myEventLoopCount = Math.max(1, eventLoopCount);
+        myBuffers = new ThreadLocal<Reference<NioOutputBuffer>>();
+        myBufferPool = new DirectBufferPool(MAX_POOLED_SEGMENTS);
+        myFallbackFactory = new OneThreadTransportFactory();
+        myTransportCount = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to stop the event loops. Any open transports are closed.
+     * </p>
+     */
+    @Override
+    public synchronized void close() {
+        stopEventLoops();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return a {@link NioTransport} registered with the least
+     * loaded event loop.
+     * </p>
+     */
+    @Override
+    public Transport<?> createTransport(final Server server,
+            final MongoClientConfiguration config,
+            final StringEncoderCache encoderCache,
+            final StringDecoderCache decoderCache,
+            final TransportResponseListener responseListener)
+            throws IOException {
+
+        if (config.getSocketFactory().getClass() != SocketFactory.getDefault()
+                .getClass()) {
+            return myFallbackFactory.createTransport(server, config,
+                    encoderCache, decoderCache, responseListener);
+        }
+
+        final NioEventLoop loop = selectEventLoop(config);
+        try {
+            return new NioTransport(server, config, encoderCache,
+                    decoderCache, responseListener, myBuffers, myBufferPool,
+                    loop);
+        }
+        catch (final IOException error) {
+            loop.unregistered();
+            throw error;
+        }
+    }
+
+    /**
+     * Returns the number of event loops (selector threads) used by the
+     * factory.
+     *
+     * @return The number of event loops used by the factory.
+     */
+    public int getEventLoopCount() {
+        return myEventLoopCount;
+    }
+
+    /**
+     * Notification that a transport that {@link NioEventLoop#reserve()
+     * reserved} an event loop has been closed, or failed to connect. Stops the
+     * event loops once the last transport is gone.
+     */
+    /* package */synchronized void unregistered() {
+        myTransportCount -= 1;
+        if (myTransportCount <= 0) {
+            myTransportCount = 0;
+            stopEventLoops();
+        }
+    }
+
+    /**
+     * Returns the event loop with the fewest registered transports, starting
+     * the event loops if needed. The returned event loop has been
+     * {@link NioEventLoop#reserve() reserved} for the new transport.
+     *
+     * @param config
+     *            The configuration for the client.
+     * @return The event loop for the next transport.
+     * @throws IOException
+     *             On a failure to create an event loop.
+     */
+    private synchronized NioEventLoop selectEventLoop(
+            final MongoClientConfiguration config) throws IOException {
+        if (myEventLoops == null) {
+            final NioEventLoop[] loops = new NioEventLoop[myEventLoopCount];
+            for (int i = 0; i < loops.length; ++i) {
+                loops[i] = new NioEventLoop(this);
+
+                final Thread thread = config.getThreadFactory().newThread(
+                        loops[i]);
+                thread.setDaemon(true);
+                thread.setName("MongoDB NIO Selector-" + i);
+                thread.start();
+            }
+            myEventLoops = loops;
+        }
+
+        NioEventLoop best = myEventLoops[0];
+        for (final NioEventLoop loop : myEventLoops) {
+            if (loop.getTransportCount() < best.getTransportCount()) {
+                best = loop;
+            }
+        }
+        best.reserve();
+        myTransportCount += 1;
+
+        return best;
+    }
+
+    /**
+     * Stops the event loops, if running. The caller must hold the lock on this
+     * factory.
+     */
+    private void stopEventLoops() {
+        if (myEventLoops != null) {
+            for (final NioEventLoop loop : myEventLoops) {
+                loop.stop();
+            }
+            myEventLoops = null;
+        }
+    }
+}
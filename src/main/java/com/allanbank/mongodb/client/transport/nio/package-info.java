@@ -0,0 +1,44 @@
+/*
+ * #%L
+ * package-info.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The transport implementation that uses non-blocking I/O
+ * {@link java.nio.channels.SocketChannel SocketChannels} and a small, fixed
+ * pool of selector threads shared by every connection.
+ * <p>
+ * Each selector thread services the reads for all of the connections
+ * registered with it. Once a complete message has been received it is
+ * de-serialized on the selector thread and handed to the
+ * {@link com.allanbank.mongodb.client.transport.TransportResponseListener}
+ * within a
+ * {@link com.allanbank.mongodb.client.transport.bio.MessageInputBuffer}.
+ * </p>
+ * <p>
+ * There is no dedicated send thread. The
+ * {@link com.allanbank.mongodb.client.transport.nio.NioOutputBuffer}
+ * serializes the message on the application's thread directly into pooled,
+ * direct {@link java.nio.ByteBuffer} segments and the send becomes a single
+ * gathering write of the segments to the channel. The sender only waits on the
+ * selector thread when the socket's send buffer is full.
+ * </p>
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+package com.allanbank.mongodb.client.transport.nio;
@@ -1039,6 +1039,19 @@ public class MongoClientConfigurationTest {
         assertEquals(LockType.LOW_LATENCY_SPIN, config.getLockType());
     }
 
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#MongoClientConfiguration(String)} .
+     */
+    @Test
+    public void testMongoUriWithWaitStrategy() {
+        final MongoClientConfiguration config = new MongoClientConfiguration(
+                "mongodb://foo/db?waitStrategy=park_with_backoff");
+
+        assertSame(StandardWaitStrategy.PARK_WITH_BACKOFF,
+                config.getWaitStrategy());
+    }
+
     /**
      * Test method for
      * {@link MongoClientConfiguration#MongoClientConfiguration(String)} .
@@ -1112,6 +1125,52 @@ public class MongoClientConfigurationTest {
         assertNull(readConfig.getExecutor());
     }
 
+    /**
+     * Test method for {@link MongoClientConfiguration} serialization with a
+     * {@link WaitStrategy}.
+     *
+     * @throws IOException
+     *             On a failure reading or writing the config.
+     * @throws ClassNotFoundException
+     *             On a failure reading the config.
+     */
+    @Test
+    public void testSerializationWithWaitStrategy() throws IOException,
+            ClassNotFoundException {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        config.setWaitStrategy(StandardWaitStrategy.PARK_WITH_BACKOFF);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ObjectOutputStream oout = new ObjectOutputStream(out);
+        oout.writeObject(config);
+        oout.close();
+
+        final ByteArrayInputStream in = new ByteArrayInputStream(
+                out.toByteArray());
+        final ObjectInputStream oin = new ObjectInputStream(in);
+
+        final MongoClientConfiguration readConfig = (MongoClientConfiguration) oin
+                .readObject();
+
+        assertSame(StandardWaitStrategy.PARK_WITH_BACKOFF,
+                readConfig.getWaitStrategy());
+    }
+
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setAsyncConnectionGrowthEnabled(boolean)}
+     * .
+     */
+    @Test
+    public void testSetAsyncConnectionGrowthEnabled() {
+
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertFalse(config.isAsyncConnectionGrowthEnabled());
+        config.setAsyncConnectionGrowthEnabled(true);
+        assertTrue(config.isAsyncConnectionGrowthEnabled());
+    }
+
     /**
      * Test method for
      * {@link MongoClientConfiguration#setAutoDiscoverServers(boolean)}.
@@ -1126,6 +1185,20 @@ public class MongoClientConfigurationTest {
         assertFalse(config.isAutoDiscoverServers());
     }
 
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setConnectionWarmUpEnabled(boolean)}.
+     */
+    @Test
+    public void testSetConnectionWarmUpEnabled() {
+
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertFalse(config.isConnectionWarmUpEnabled());
+        config.setConnectionWarmUpEnabled(true);
+        assertTrue(config.isConnectionWarmUpEnabled());
+    }
+
     /**
      * Test method for
      * {@link MongoClientConfiguration#setConnectionModel(ConnectionModel)}.
@@ -1238,6 +1311,25 @@ public class MongoClientConfigurationTest {
         assertEquals(LockType.MUTEX, config.getLockType());
     }
 
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setLatencyPercentile(double)}.
+     */
+    @Test
+    public void testSetLatencyPercentile() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertEquals(0.0, config.getLatencyPercentile(), 0.0001);
+        config.setLatencyPercentile(99.0);
+        assertEquals(99.0, config.getLatencyPercentile(), 0.0001);
+        assertEquals(99.0,
+                new MongoClientConfiguration(config).getLatencyPercentile(),
+                0.0001);
+        assertEquals(50.0, new MongoClientConfiguration(
+                "mongodb://foo/db?latencyPercentile=50")
+                .getLatencyPercentile(), 0.0001);
+    }
+
     /**
      * Test method for
      * {@link MongoClientConfiguration#setLogMessagesEnabled(boolean)}.
@@ -1346,6 +1438,24 @@ public class MongoClientConfigurationTest {
         assertEquals(Level.INFO.intValue(), config.getMetricsLogLevel());
     }
 
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setRawDocumentsEnabled(boolean)} .
+     */
+    @Test
+    public void testSetRawDocumentsEnabled() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertFalse(config.isRawDocumentsEnabled());
+        config.setRawDocumentsEnabled(true);
+        assertTrue(config.isRawDocumentsEnabled());
+        assertTrue(new MongoClientConfiguration(config)
+                .isRawDocumentsEnabled());
+        assertTrue(new MongoClientConfiguration(
+                "mongodb://foo/db?rawDocumentsEnabled=true")
+                .isRawDocumentsEnabled());
+    }
+
     /**
      * Test method for {@link MongoClientConfiguration#setReadTimeout(int)}.
      */
@@ -1375,6 +1485,84 @@ public class MongoClientConfigurationTest {
         assertEquals(0, config.getReconnectTimeout());
     }
 
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setReplyDispatchQueueSize(int)} .
+     */
+    @Test
+    public void testSetReplyDispatchQueueSize() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertEquals(1024, config.getReplyDispatchQueueSize());
+        config.setReplyDispatchQueueSize(16);
+        assertEquals(16, config.getReplyDispatchQueueSize());
+        assertEquals(16,
+                new MongoClientConfiguration(config).getReplyDispatchQueueSize());
+        assertEquals(32, new MongoClientConfiguration(
+                "mongodb://foo/db?replyDispatchQueueSize=32")
+                .getReplyDispatchQueueSize());
+    }
+
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setReplyDispatchThreads(int)} .
+     */
+    @Test
+    public void testSetReplyDispatchThreads() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertEquals(0, config.getReplyDispatchThreads());
+        config.setReplyDispatchThreads(4);
+        assertEquals(4, config.getReplyDispatchThreads());
+        assertEquals(4,
+                new MongoClientConfiguration(config).getReplyDispatchThreads());
+        assertEquals(2, new MongoClientConfiguration(
+                "mongodb://foo/db?replyDispatchThreads=2")
+                .getReplyDispatchThreads());
+    }
+
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setServerSelectionStrategy(ServerSelectionStrategy)}
+     * .
+     */
+    @Test
+    public void testSetServerSelectionStrategy() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertEquals(ServerSelectionStrategy.LATENCY,
+                config.getServerSelectionStrategy());
+        config.setServerSelectionStrategy(ServerSelectionStrategy.POWER_OF_TWO_CHOICES);
+        assertEquals(ServerSelectionStrategy.POWER_OF_TWO_CHOICES,
+                config.getServerSelectionStrategy());
+        assertEquals(ServerSelectionStrategy.POWER_OF_TWO_CHOICES,
+                new MongoClientConfiguration(config)
+                        .getServerSelectionStrategy());
+        assertEquals(
+                ServerSelectionStrategy.POWER_OF_TWO_CHOICES,
+                new MongoClientConfiguration(
+                        "mongodb://foo/db?serverSelectionStrategy=POWER_OF_TWO_CHOICES")
+                        .getServerSelectionStrategy());
+    }
+
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setSlowOperationThreshold(int)}.
+     */
+    @Test
+    public void testSetSlowOperationThreshold() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertEquals(0, config.getSlowOperationThreshold());
+        config.setSlowOperationThreshold(250);
+        assertEquals(250, config.getSlowOperationThreshold());
+        assertEquals(250,
+                new MongoClientConfiguration(config).getSlowOperationThreshold());
+        assertEquals(100, new MongoClientConfiguration(
+                "mongodb://foo/db?slowOperationThreshold=100")
+                .getSlowOperationThreshold());
+    }
+
     /**
      * Test method for
      * {@link MongoClientConfiguration#setServers(java.util.List)}.
@@ -1412,6 +1600,24 @@ public class MongoClientConfigurationTest {
         assertSame(SocketFactory.getDefault(), config.getSocketFactory());
     }
 
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setStreamingRepliesEnabled(boolean)}.
+     */
+    @Test
+    public void testSetStreamingRepliesEnabled() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        assertFalse(config.isStreamingRepliesEnabled());
+        config.setStreamingRepliesEnabled(true);
+        assertTrue(config.isStreamingRepliesEnabled());
+        assertTrue(new MongoClientConfiguration(config)
+                .isStreamingRepliesEnabled());
+        assertTrue(new MongoClientConfiguration(
+                "mongodb://foo/db?streamingRepliesEnabled=true")
+                .isStreamingRepliesEnabled());
+    }
+
     /**
      * Test method for
      * {@link MongoClientConfiguration#setThreadFactory(java.util.concurrent.ThreadFactory)}
@@ -1441,4 +1647,26 @@ public class MongoClientConfigurationTest {
         assertFalse(config.isUsingSoKeepalive());
     }
 
+    /**
+     * Test method for
+     * {@link MongoClientConfiguration#setWaitStrategy(WaitStrategy)} .
+     */
+    @Test
+    public void testSetWaitStrategy() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+
+        // Default follows the lock type.
+        assertSame(StandardWaitStrategy.BLOCKING, config.getWaitStrategy());
+        config.setLockType(LockType.LOW_LATENCY_SPIN);
+        assertSame(StandardWaitStrategy.LOW_LATENCY_SPIN,
+                config.getWaitStrategy());
+
+        config.setWaitStrategy(StandardWaitStrategy.YIELD);
+        assertSame(StandardWaitStrategy.YIELD, config.getWaitStrategy());
+
+        config.setWaitStrategy(null);
+        assertSame(StandardWaitStrategy.LOW_LATENCY_SPIN,
+                config.getWaitStrategy());
+    }
+
 }
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * WaitStrategyEditorTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * WaitStrategyEditorTest provides tests for the {@link WaitStrategyEditor}
+ * class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class WaitStrategyEditorTest {
+
+    /**
+     * Test method for {@link WaitStrategyEditor#setAsText(String)}.
+     */
+    @Test
+    public void testSetClassName() {
+        final WaitStrategyEditor editor = new WaitStrategyEditor();
+
+        editor.setAsText(TestWaitStrategy.class.getName());
+        assertThat(editor.getValue(), instanceOf(TestWaitStrategy.class));
+    }
+
+    /**
+     * Test method for {@link WaitStrategyEditor#setAsText(String)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetNotAWaitStrategy() {
+        final WaitStrategyEditor editor = new WaitStrategyEditor();
+
+        editor.setAsText(String.class.getName());
+    }
+
+    /**
+     * Test method for {@link WaitStrategyEditor#setAsText(String)}.
+     */
+    @Test
+    public void testSetStandard() {
+        final WaitStrategyEditor editor = new WaitStrategyEditor();
+
+        for (final StandardWaitStrategy strategy : StandardWaitStrategy
+                .values()) {
+            editor.setAsText(" " + strategy.name().toLowerCase() + " ");
+            assertThat(editor.getValue(), is((Object) strategy));
+        }
+    }
+
+    /**
+     * Test method for {@link WaitStrategyEditor#setAsText(String)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetUnknown() {
+        final WaitStrategyEditor editor = new WaitStrategyEditor();
+
+        editor.setAsText("sleepy");
+    }
+
+    /**
+     * TestWaitStrategy provides a simple strategy for the test.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    public static class TestWaitStrategy
+            implements WaitStrategy {
+
+        /** The serialization version for the class. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to always block.
+         * </p>
+         */
+        @Override
+        public boolean idle(final int attempt, final long waitStartNanos) {
+            return false;
+        }
+    }
+}
@@ -26,8 +26,14 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
@@ -139,6 +145,125 @@ public class ObjectIdTest {
         assertEquals(new ObjectId(0x4e9d87aa, 0x5825b60b637815a6L), id);
     }
 
+    /**
+     * Test method for {@link ObjectId#ObjectId()}.
+     */
+    @Test
+    public void testObjectIdGenerated() {
+        final long before = TimeUnit.MILLISECONDS.toSeconds(System
+                .currentTimeMillis());
+        final ObjectId first = new ObjectId();
+        final ObjectId second = new ObjectId();
+        final long after = TimeUnit.MILLISECONDS.toSeconds(System
+                .currentTimeMillis());
+
+        assertTrue(before <= first.getTimestamp());
+        assertTrue(second.getTimestamp() <= after);
+        assertEquals(ObjectId.MACHINE_ID, first.getMachineId() & ~0xFFFFFFL);
+        assertEquals(ObjectId.MACHINE_ID, second.getMachineId() & ~0xFFFFFFL);
+        assertFalse(first.equals(second));
+    }
+
+    /**
+     * Test method for {@link ObjectId#ObjectId()} generating ids from many
+     * threads at once.
+     *
+     * @throws InterruptedException
+     *             On a failure waiting for the threads.
+     */
+    @Test
+    public void testObjectIdGeneratedConcurrently() throws InterruptedException {
+        final int threadCount = 32;
+        final int idsPerThread = 20000;
+
+        final Set<ObjectId> ids = Collections
+                .newSetFromMap(new ConcurrentHashMap<ObjectId, Boolean>(
+                        threadCount * idsPerThread));
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final List<Thread> threads = new ArrayList<Thread>(threadCount);
+        for (int i = 0; i < threadCount; ++i) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (final InterruptedException e) {
+                        failure.compareAndSet(null, e.toString());
+                        return;
+                    }
+
+                    ObjectId previous = null;
+                    for (int j = 0; j < idsPerThread; ++j) {
+                        final ObjectId id = new ObjectId();
+                        if (!ids.add(id)) {
+                            failure.compareAndSet(null, "Duplicate: " + id);
+                        }
+                        if (previous != null) {
+                            // Ids from one thread never go backwards. The
+                            // counter may only wrap.
+                            final int step = (id.getCounterField() - previous
+                                    .getCounterField()) & 0xFFFFFF;
+                            if ((id.getTimestamp() < previous.getTimestamp())
+                                    || (step == 0)
+                                    || (step > (threadCount * idsPerThread * 2))) {
+                                failure.compareAndSet(null, "Out of order: "
+                                        + previous + " then " + id);
+                            }
+                        }
+                        previous = id;
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            assertFalse(thread.isAlive());
+        }
+
+        assertEquals(null, failure.get());
+        assertEquals(threadCount * idsPerThread, ids.size());
+    }
+
+    /**
+     * Test that the threads generating ids reserve distinct blocks of the
+     * counter.
+     *
+     * @throws InterruptedException
+     *             On a failure waiting for the threads.
+     */
+    @Test
+    public void testObjectIdGeneratedReservesBlocks()
+            throws InterruptedException {
+        final ObjectId[] other = new ObjectId[ObjectId.COUNTER_BLOCK_SIZE];
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < other.length; ++i) {
+                    other[i] = new ObjectId();
+                }
+            }
+        });
+
+        final ObjectId mine = new ObjectId();
+        thread.start();
+        thread.join(TimeUnit.MINUTES.toMillis(1));
+        assertFalse(thread.isAlive());
+
+        // A new thread fills one block exactly.
+        final int first = other[0].getCounterField();
+        for (int i = 0; i < other.length; ++i) {
+            assertEquals((first + i) & 0xFFFFFF, other[i].getCounterField());
+            assertFalse(mine.equals(other[i]));
+        }
+    }
+
     /**
      * Test Parsing a ObjectId(..) from a hex string that is not Hex.
      */
@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * CompactDocumentTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.Element;
+import com.allanbank.mongodb.bson.NumericElement;
+import com.allanbank.mongodb.bson.builder.BuilderFactory;
+import com.allanbank.mongodb.bson.builder.DocumentBuilder;
+import com.allanbank.mongodb.bson.element.IntegerElement;
+import com.allanbank.mongodb.bson.element.ObjectId;
+import com.allanbank.mongodb.bson.element.StringElement;
+
+/**
+ * CompactDocumentTest provides tests for the {@link CompactDocument} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class CompactDocumentTest {
+
+    /**
+     * Test method for {@link CompactDocument#CompactDocument}.
+     */
+    @Test
+    public void testConstructor() {
+        final Document source = sample();
+        final CompactDocument doc = new CompactDocument(source);
+
+        assertEquals(source, doc);
+        assertEquals(doc, source);
+        assertEquals(source.hashCode(), doc.hashCode());
+        assertEquals(source.size(), doc.size());
+        assertEquals(source.getElements(), doc.getElements());
+        assertEquals(source.toString(), doc.toString());
+
+        // Names are shared.
+        assertSame("int".intern(), doc.getElements().get(0).getName());
+    }
+
+    /**
+     * Test method for {@link CompactDocument#CompactDocument} with an empty
+     * document.
+     */
+    @Test
+    public void testConstructEmptyDocument() {
+        final CompactDocument doc = new CompactDocument(BuilderFactory.start());
+
+        assertEquals(0, doc.getElements().size());
+        assertEquals(5, doc.size());
+        assertFalse(doc.contains("a"));
+        assertNull(doc.get("a"));
+        assertFalse(doc.iterator().hasNext());
+    }
+
+    /**
+     * Test method for {@link CompactDocument#contains(String)} and
+     * {@link CompactDocument#get(String)}.
+     */
+    @Test
+    public void testGet() {
+        final Document source = sample();
+        final CompactDocument doc = new CompactDocument(source);
+
+        for (final Element element : source) {
+            assertTrue(doc.contains(element.getName()));
+            assertEquals(element, doc.get(element.getName()));
+        }
+        assertFalse(doc.contains("missing"));
+        assertNull(doc.get("missing"));
+
+        assertEquals(new IntegerElement("int", 1),
+                doc.get(NumericElement.class, "int"));
+        assertNull(doc.get(StringElement.class, "int"));
+        assertEquals(source.findFirst("sub", "a"), doc.findFirst("sub", "a"));
+    }
+
+    /**
+     * Test method for {@link CompactDocument#get(String)} with duplicate
+     * names.
+     */
+    @Test
+    public void testGetDuplicateNames() {
+        final Document source = new RootDocument(new IntegerElement("a", 1),
+                new IntegerElement("a", 2));
+        final CompactDocument doc = new CompactDocument(source);
+
+        assertEquals(source.get("a"), doc.get("a"));
+        assertEquals(2, doc.getInt("a", 0));
+        assertEquals(source.getElements(), doc.getElements());
+    }
+
+    /**
+     * Test method for the typed accessors.
+     */
+    @Test
+    public void testGetTyped() {
+        final CompactDocument doc = new CompactDocument(sample());
+
+        assertEquals(1, doc.getInt("int", -1));
+        assertEquals(1L, doc.getLong("int", -1));
+        assertEquals(1.0, doc.getDouble("int", -1), 0.0);
+
+        assertEquals((int) Long.MAX_VALUE, doc.getInt("long", -1));
+        assertEquals(Long.MAX_VALUE, doc.getLong("long", -1));
+
+        assertEquals(2, doc.getInt("double", -1));
+        assertEquals(2L, doc.getLong("double", -1));
+        assertEquals(2.5, doc.getDouble("double", -1), 0.0);
+
+        assertTrue(doc.getBoolean("boolean", false));
+        assertEquals("value", doc.getString("string", null));
+        assertEquals(12345L, doc.getTime("timestamp", -1));
+
+        // Wrong types and missing.
+        assertEquals(-1, doc.getInt("string", -1));
+        assertEquals(-1L, doc.getLong("boolean", -1));
+        assertEquals(-1.0, doc.getDouble("null", -1), 0.0);
+        assertFalse(doc.getBoolean("int", false));
+        assertNull(doc.getString("int", null));
+        assertEquals(-1L, doc.getTime("missing", -1));
+    }
+
+    /**
+     * Test method for {@link CompactDocument#iterator()}.
+     */
+    @Test
+    public void testIterator() {
+        final Document source = sample();
+        final CompactDocument doc = new CompactDocument(source);
+
+        final Iterator<Element> expected = source.iterator();
+        final Iterator<Element> iter = doc.iterator();
+        while (expected.hasNext()) {
+            assertTrue(iter.hasNext());
+            assertEquals(expected.next(), iter.next());
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    /**
+     * Test method for {@link CompactDocument} with many elements.
+     */
+    @Test
+    public void testManyElements() {
+        final DocumentBuilder builder = BuilderFactory.start();
+        for (int i = 0; i < 100; ++i) {
+            builder.add("f" + i, i);
+        }
+        final Document source = builder.build();
+        final CompactDocument doc = new CompactDocument(source);
+
+        assertEquals(source, doc);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i, doc.getInt("f" + i, -1));
+        }
+    }
+
+    /**
+     * Test serializing and deserializing the document.
+     *
+     * @throws IOException
+     *             On a failure to serialize the document.
+     * @throws ClassNotFoundException
+     *             On a failure to deserialize the document.
+     */
+    @Test
+    public void testSerialization() throws IOException,
+            ClassNotFoundException {
+        final CompactDocument doc = new CompactDocument(sample());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ObjectOutputStream oout = new ObjectOutputStream(out);
+        oout.writeObject(doc);
+        oout.close();
+
+        final ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(out.toByteArray()));
+        final Object read = in.readObject();
+
+        assertEquals(doc, read);
+        assertEquals(doc.size(), ((Document) read).size());
+        assertEquals(1, ((CompactDocument) read).getInt("int", -1));
+    }
+
+    /**
+     * Creates a document with each of the packed types and a few that are
+     * not.
+     *
+     * @return The sample document.
+     */
+    private Document sample() {
+        final DocumentBuilder builder = BuilderFactory.start();
+        builder.add("int", 1);
+        builder.add("long", Long.MAX_VALUE);
+        builder.add("double", 2.5);
+        builder.add("boolean", true);
+        builder.add("timestamp", new Date(12345L));
+        builder.addMongoTimestamp("mongoTimestamp", 0x0102030405060708L);
+        builder.addNull("null");
+        builder.add("string", "value");
+        builder.add("_id", new ObjectId());
+        builder.push("sub").add("a", 1);
+        builder.pushArray("array").add(1).add("b");
+        builder.addBinary("binary", new byte[] { 1, 2, 3 });
+        return builder.build();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * DocumentTemplateTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.impl;
+
+import static com.allanbank.mongodb.bson.builder.BuilderFactory.a;
+import static com.allanbank.mongodb.bson.builder.BuilderFactory.d;
+import static com.allanbank.mongodb.bson.builder.BuilderFactory.e;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.ElementType;
+import com.allanbank.mongodb.bson.element.ObjectId;
+import com.allanbank.mongodb.bson.io.BsonOutputStream;
+
+/**
+ * DocumentTemplateTest provides tests for the {@link DocumentTemplate} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class DocumentTemplateTest {
+
+    /**
+     * Test method for {@link DocumentTemplate#bind(Object...)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testBind() throws IOException {
+        final ObjectId id = new ObjectId();
+        final Date now = new Date();
+
+        final DocumentTemplate template = new DocumentTemplate(d(
+                e("_id", new ObjectId()), e("b", false), e("d", 0.0),
+                e("i", 0), e("l", 0L), e("t", new Date(0)), e("other", "x")),
+                "_id", "b", "d", "i", "l", "t");
+
+        assertThat(template.getParameterNames(),
+                contains("_id", "b", "d", "i", "l", "t"));
+        assertThat(template.getParameterTypes(), contains(
+                ElementType.OBJECT_ID, ElementType.BOOLEAN, ElementType.DOUBLE,
+                ElementType.INTEGER, ElementType.LONG,
+                ElementType.UTC_TIMESTAMP));
+
+        final RawDocument bound = template.bind(id, Boolean.TRUE,
+                Double.valueOf(1.5), Integer.valueOf(-2), Long.valueOf(3),
+                now);
+
+        final Document expected = d(e("_id", id), e("b", true), e("d", 1.5),
+                e("i", -2), e("l", 3L), e("t", now), e("other", "x")).build();
+        assertArrayEquals(encode(expected), encode(bound));
+        assertThat(bound, is(expected));
+        assertThat(bound.get("i").getValueAsObject(),
+                is((Object) Integer.valueOf(-2)));
+    }
+
+    /**
+     * Test method for {@link DocumentTemplate#bind(Object...)} with
+     * parameters that change the length of the enclosing documents.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testBindStrings() throws IOException {
+        final DocumentTemplate template = new DocumentTemplate(d(
+                e("a", "abc"),
+                e("b", d(e("$gt", 1), e("$lt", "m"))),
+                e("$or", a(d(e("c", "x")), d(e("c", 1L)))),
+                e("z", "end")), "a", "b.$gt", "b.$lt", "$or.0.c", "$or.1.c");
+
+        for (final String value : new String[] { "", "abc", "a longer value",
+                "é中" }) {
+            final RawDocument bound = template.bind(value, Integer.valueOf(7),
+                    value + value, value, Long.valueOf(9));
+
+            final Document expected = d(e("a", value),
+                    e("b", d(e("$gt", 7), e("$lt", value + value))),
+                    e("$or", a(d(e("c", value)), d(e("c", 9L)))),
+                    e("z", "end")).build();
+            assertArrayEquals(encode(expected), encode(bound));
+
+            // The index of the elements is shifted.
+            assertThat(bound.get("z").getValueAsString(), is("end"));
+            assertThat(bound.get("$or"), is(expected.get("$or")));
+            assertThat(bound, is(expected));
+        }
+    }
+
+    /**
+     * Test method for {@link DocumentTemplate#bind(Object...)} with the wrong
+     * values.
+     */
+    @Test
+    public void testBindWithBadValues() {
+        final DocumentTemplate template = new DocumentTemplate(d(e("i", 0),
+                e("s", "")), "i", "s");
+
+        bindFails(template, Integer.valueOf(1));
+        bindFails(template, Integer.valueOf(1), "a", "b");
+        bindFails(template, Long.valueOf(1), "a");
+        bindFails(template, Integer.valueOf(1), null);
+        bindFails(template, "a", Integer.valueOf(1));
+    }
+
+    /**
+     * Test method for {@link DocumentTemplate#DocumentTemplate}.
+     */
+    @Test
+    public void testConstructorWithBadParameters() {
+        final Document doc = d(e("a", 1), e("b", d(e("c", 2))),
+                e("n", (Object) null)).build();
+
+        try {
+            new DocumentTemplate(doc, "c");
+            fail("Should have failed to find the parameter.");
+        }
+        catch (final IllegalArgumentException good) {
+            // Good.
+        }
+        try {
+            new DocumentTemplate(doc, "a", "a");
+            fail("Should have failed on the repeated parameter.");
+        }
+        catch (final IllegalArgumentException good) {
+            // Good.
+        }
+        try {
+            new DocumentTemplate(doc, "b");
+            fail("Should have failed on the document parameter.");
+        }
+        catch (final IllegalArgumentException good) {
+            // Good.
+        }
+        try {
+            new DocumentTemplate(doc, "n");
+            fail("Should have failed on the null parameter.");
+        }
+        catch (final IllegalArgumentException good) {
+            // Good.
+        }
+
+        // No parameters is just a copy.
+        final DocumentTemplate template = new DocumentTemplate(doc);
+        assertThat(template.bind(), is(doc));
+    }
+
+    /**
+     * Verifies the bind fails.
+     *
+     * @param template
+     *            The template to bind.
+     * @param values
+     *            The values to bind.
+     */
+    private void bindFails(final DocumentTemplate template,
+            final Object... values) {
+        try {
+            template.bind(values);
+            fail("Should have failed to bind the values.");
+        }
+        catch (final IllegalArgumentException good) {
+            // Good.
+        }
+    }
+
+    /**
+     * Encodes the document.
+     *
+     * @param document
+     *            The document to encode.
+     * @return The encoded document.
+     * @throws IOException
+     *             On a failure to encode the document.
+     */
+    private byte[] encode(final Document document) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BsonOutputStream(bytes).writeDocument(document);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * #%L
+ * RawDocumentTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.impl;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.Element;
+import com.allanbank.mongodb.bson.builder.BuilderFactory;
+import com.allanbank.mongodb.bson.builder.DocumentBuilder;
+import com.allanbank.mongodb.bson.element.ObjectId;
+import com.allanbank.mongodb.bson.io.BsonInputStream;
+import com.allanbank.mongodb.bson.io.BsonOutputStream;
+import com.allanbank.mongodb.bson.io.BufferingBsonOutputStream;
+import com.allanbank.mongodb.bson.io.StringDecoderCache;
+
+/**
+ * RawDocumentTest provides tests for the {@link RawDocument} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class RawDocumentTest {
+
+    /**
+     * Creates a document with one of each element type.
+     *
+     * @return The document.
+     */
+    @SuppressWarnings("deprecation")
+    private static Document createDocument() {
+        final DocumentBuilder builder = BuilderFactory.start();
+        builder.add("_id", new ObjectId());
+        builder.addBinary("binary", new byte[] { 1, 2, 3 });
+        builder.addBoolean("boolean", true);
+        builder.addDBPointer("dbPointer", "db", "collection", new ObjectId());
+        builder.addDouble("double", 1.5);
+        builder.addInteger("int", 1);
+        builder.addJavaScript("js", "function() {}");
+        builder.addJavaScript("jsWithScope", "function() {}", BuilderFactory
+                .start().add("a", 1));
+        builder.addLong("long", 2L);
+        builder.addMaxKey("max");
+        builder.addMinKey("min");
+        builder.addMongoTimestamp("mongoTimestamp", 3L);
+        builder.addNull("null");
+        builder.addRegularExpression("regex", "a.*b", "i");
+        builder.addString("string", "value");
+        builder.addSymbol("symbol", "sym");
+        builder.add("date", new Date(4L));
+        builder.addUuid("uuid", UUID.randomUUID());
+        builder.add("élève", "non-ASCII name");
+        builder.push("doc").add("a", 1).add("b", "c");
+        builder.pushArray("array").add(1).add("two").push().add("three", 3);
+
+        return builder.build();
+    }
+
+    /**
+     * Encodes the document.
+     *
+     * @param document
+     *            The document to encode.
+     * @return The encoded document.
+     * @throws IOException
+     *             On a failure encoding the document.
+     */
+    private static byte[] encode(final Document document) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BsonOutputStream(bytes).writeDocument(document);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Test method for {@link RawDocument#contains(String)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testContains() throws IOException {
+        final Document document = createDocument();
+        final RawDocument raw = new RawDocument(encode(document),
+                new StringDecoderCache());
+
+        for (final Element element : document) {
+            assertThat(element.getName(), raw.contains(element.getName()),
+                    is(true));
+        }
+        assertThat(raw.contains("in"), is(false));
+        assertThat(raw.contains("intx"), is(false));
+        assertThat(raw.contains("él"), is(false));
+        assertThat(raw.contains("a\u0000b"), is(false));
+        assertThat(raw.contains(""), is(false));
+    }
+
+    /**
+     * Test method for {@link RawDocument#RawDocument(byte[], StringDecoderCache)}
+     * .
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testCorruptDocumentsRejected() throws IOException {
+        final byte[] bytes = encode(createDocument());
+
+        // Wrong length.
+        final byte[] shorter = Arrays.copyOf(bytes, bytes.length - 1);
+        assertCorrupt(shorter);
+
+        // Missing terminal null.
+        final byte[] noNull = bytes.clone();
+        noNull[noNull.length - 1] = 1;
+        assertCorrupt(noNull);
+
+        // Element length past the end of the document.
+        final byte[] longString = encode(BuilderFactory.start()
+                .add("s", "value").build());
+        longString[7] = 0x7F;
+        assertCorrupt(longString);
+
+        // Unknown element type.
+        final byte[] badType = longString.clone();
+        badType[4] = 0x60;
+        assertCorrupt(badType);
+    }
+
+    /**
+     * Test method for {@link RawDocument#get(String)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testGet() throws IOException {
+        final Document document = createDocument();
+        final RawDocument raw = new RawDocument(encode(document),
+                new StringDecoderCache());
+
+        for (final Element element : document) {
+            assertThat(raw.get(element.getName()), is(element));
+        }
+        assertThat(raw.get("not_there"), nullValue());
+
+        // Again, once decoded.
+        assertThat(raw.getElements(), is(document.getElements()));
+        for (final Element element : document) {
+            assertThat(raw.get(element.getName()), is(element));
+        }
+        assertThat(raw.get("not_there"), nullValue());
+    }
+
+    /**
+     * Test method for {@link RawDocument#getElements()}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testGetElements() throws IOException {
+        final Document document = createDocument();
+        final byte[] bytes = encode(document);
+        final RawDocument raw = new RawDocument(bytes,
+                new StringDecoderCache());
+
+        assertThat(raw.size(), is((long) bytes.length));
+        assertThat(raw.getElements(), is(document.getElements()));
+        assertThat(raw.equals(document), is(true));
+        assertThat(document.equals(raw), is(true));
+        assertThat(raw.hashCode(), is(document.hashCode()));
+        assertThat(raw.toString(), is(document.toString()));
+        assertThat(
+                raw.equals(new RawDocument(bytes.clone(),
+                        new StringDecoderCache())), is(true));
+    }
+
+    /**
+     * Test method for {@link BsonInputStream#setRawDocuments(boolean)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testReadRawDocument() throws IOException {
+        final Document document = createDocument();
+        final byte[] bytes = encode(document);
+
+        final ByteArrayOutputStream twice = new ByteArrayOutputStream();
+        twice.write(bytes);
+        twice.write(bytes);
+
+        final BsonInputStream in = new BsonInputStream(
+                new ByteArrayInputStream(twice.toByteArray()));
+        assertThat(in.isRawDocuments(), is(false));
+        in.setRawDocuments(true);
+        assertThat(in.isRawDocuments(), is(true));
+
+        final Document first = in.readDocument();
+        final Document second = in.readDocument();
+
+        assertThat(first, instanceOf(RawDocument.class));
+        assertThat(second, instanceOf(RawDocument.class));
+        assertThat(first, is(document));
+        assertThat(second, is(document));
+        assertThat(in.getBytesRead(), is((long) twice.size()));
+        in.close();
+    }
+
+    /**
+     * Test for serialization of a {@link RawDocument}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     * @throws ClassNotFoundException
+     *             On a test failure.
+     */
+    @Test
+    public void testSerialization() throws IOException,
+            ClassNotFoundException {
+        final Document document = createDocument();
+        final RawDocument raw = new RawDocument(encode(document),
+                new StringDecoderCache());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ObjectOutputStream oout = new ObjectOutputStream(out);
+        oout.writeObject(raw);
+        oout.close();
+
+        final ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(out.toByteArray()));
+        final Object read = in.readObject();
+
+        assertThat(read, instanceOf(RawDocument.class));
+        assertThat(((RawDocument) read).get("string"), is(document
+                .get("string")));
+        assertThat(read, is((Object) raw));
+    }
+
+    /**
+     * Test method for {@link RawDocument#writeTo}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testWrite() throws IOException {
+        final byte[] bytes = encode(createDocument());
+        final RawDocument raw = new RawDocument(bytes,
+                new StringDecoderCache());
+
+        assertArrayEquals(bytes, encode(raw));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BufferingBsonOutputStream bout = new BufferingBsonOutputStream(
+                out);
+        assertThat(bout.write(raw), is((long) bytes.length));
+        bout.close();
+        assertArrayEquals(bytes, out.toByteArray());
+
+        // Nested raw documents are re-encoded.
+        final Document outer = BuilderFactory.start().add("raw", raw).build();
+        assertThat(outer.get("raw").size(), is(bytes.length + 5L));
+    }
+
+    /**
+     * Asserts the bytes are rejected as a document.
+     *
+     * @param bytes
+     *            The corrupt document.
+     */
+    private void assertCorrupt(final byte[] bytes) {
+        try {
+            new RawDocument(bytes, new StringDecoderCache());
+            throw new AssertionError("Should have rejected the document.");
+        }
+        catch (final StreamCorruptedException expected) {
+            // Good.
+        }
+    }
+}
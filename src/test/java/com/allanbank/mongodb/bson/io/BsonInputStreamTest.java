@@ -23,6 +23,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -104,6 +105,45 @@ public class BsonInputStreamTest {
         reader.close();
     }
 
+    /**
+     * Test method for {@link BsonInputStream#close()}.
+     *
+     * @throws IOException
+     *             On a failure reading the test document.
+     */
+    @Test
+    public void testCloseReleasesBuffer() throws IOException {
+
+        final Document seed = BuilderFactory.start().add("a", 1).build();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BsonOutputStream bout = new BsonOutputStream(out);
+
+        bout.writeDocument(seed);
+
+        final BufferPool pool = BufferPool.getDefault();
+        final BsonInputStream reader = new BsonInputStream(
+                new ByteArrayInputStream(out.toByteArray()),
+                BufferPool.MIN_SIZE_CLASS);
+
+        assertEquals(seed, reader.readDocument());
+
+        reader.close();
+        // A second close must not release the buffer again.
+        reader.close();
+
+        // The released buffer is the next one leased on this thread.
+        final long hits = pool.getHitCount();
+        final byte[] first = pool.lease(BufferPool.MIN_SIZE_CLASS);
+        assertEquals(hits + 1, pool.getHitCount());
+
+        final byte[] second = pool.lease(BufferPool.MIN_SIZE_CLASS);
+        assertNotSame(first, second);
+
+        pool.release(second);
+        pool.release(first);
+    }
+
     /**
      * Test method for {@link BsonInputStream#readDocument()}.
      *
@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * BufferPoolTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.io;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * BufferPoolTest provides tests for the {@link BufferPool} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class BufferPoolTest {
+
+    /**
+     * Test method for {@link BufferPool#lease(int)}.
+     */
+    @Test
+    public void testLeaseRoundsUpToSizeClass() {
+        final BufferPool pool = new BufferPool();
+
+        assertThat(pool.lease(1).length, is(BufferPool.MIN_SIZE_CLASS));
+        assertThat(pool.lease(BufferPool.MIN_SIZE_CLASS).length,
+                is(BufferPool.MIN_SIZE_CLASS));
+        assertThat(pool.lease(BufferPool.MIN_SIZE_CLASS + 1).length,
+                is(2 * BufferPool.MIN_SIZE_CLASS));
+        assertThat(pool.lease(BufferPool.MAX_SIZE_CLASS).length,
+                is(BufferPool.MAX_SIZE_CLASS));
+        assertThat(pool.lease(BufferPool.MAX_SIZE_CLASS + 1).length,
+                is(BufferPool.MAX_SIZE_CLASS + 1));
+
+        assertThat(pool.getHitCount(), is(0L));
+        assertThat(pool.getMissCount(), is(5L));
+    }
+
+    /**
+     * Test method for {@link BufferPool#release(byte[])}.
+     */
+    @Test
+    public void testReleaseIgnoresOddSizes() {
+        final BufferPool pool = new BufferPool();
+
+        final byte[] odd = new byte[BufferPool.MIN_SIZE_CLASS + 1];
+        pool.release(odd);
+        final byte[] large = new byte[BufferPool.MAX_SIZE_CLASS * 2];
+        pool.release(large);
+
+        assertThat(pool.lease(BufferPool.MIN_SIZE_CLASS + 1),
+                not(sameInstance(odd)));
+        assertThat(pool.lease(BufferPool.MAX_SIZE_CLASS * 2),
+                not(sameInstance(large)));
+        assertThat(pool.getHitCount(), is(0L));
+    }
+
+    /**
+     * Test method for {@link BufferPool#release(byte[])}.
+     */
+    @Test
+    public void testReleaseReusedByThread() {
+        final BufferPool pool = new BufferPool();
+
+        final byte[] buffer = pool.lease(100);
+        pool.release(buffer);
+
+        assertThat(pool.lease(100), sameInstance(buffer));
+        assertThat(pool.getHitCount(), is(1L));
+        assertThat(pool.getMissCount(), is(1L));
+    }
+
+    /**
+     * Test method for {@link BufferPool#release(byte[])}.
+     *
+     * @throws InterruptedException
+     *             On a failure to join the other thread.
+     */
+    @Test
+    public void testReleaseSharedViaDepot() throws InterruptedException {
+        final BufferPool pool = new BufferPool();
+
+        // Large buffers skip the thread's magazine.
+        final int size = BufferPool.MAX_SIZE_CLASS;
+        final byte[] buffer = pool.lease(size);
+        pool.release(buffer);
+
+        final AtomicReference<byte[]> leased = new AtomicReference<byte[]>();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                leased.set(pool.lease(size));
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertThat(leased.get(), sameInstance(buffer));
+        assertThat(pool.getHitCount(), is(1L));
+    }
+
+    /**
+     * Test method for {@link BufferPool#release(byte[])}.
+     */
+    @Test
+    public void testReleaseSpillsToDepot() {
+        final BufferPool pool = new BufferPool();
+
+        final byte[][] buffers = new byte[10][];
+        for (int i = 0; i < buffers.length; ++i) {
+            buffers[i] = pool.lease(1);
+        }
+        for (final byte[] buffer : buffers) {
+            pool.release(buffer);
+        }
+        for (int i = 0; i < buffers.length; ++i) {
+            pool.lease(1);
+        }
+
+        assertThat(pool.getHitCount(), is(10L));
+        assertThat(pool.getMissCount(), is(10L));
+    }
+
+    /**
+     * Test method for {@link BufferPool#sizeClass(int)}.
+     */
+    @Test
+    public void testSizeClass() {
+        assertThat(BufferPool.sizeClass(0), is(0));
+        assertThat(BufferPool.sizeClass(BufferPool.MIN_SIZE_CLASS), is(0));
+        assertThat(BufferPool.sizeClass(BufferPool.MIN_SIZE_CLASS + 1), is(1));
+        assertThat(BufferPool.sizeClass(BufferPool.MIN_SIZE_CLASS * 2), is(1));
+        assertThat(BufferPool.sizeClass(BufferPool.MAX_SIZE_CLASS), is(9));
+        assertThat(BufferPool.sizeClass(BufferPool.MAX_SIZE_CLASS + 1), is(-1));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * FieldNameDictionaryTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.io;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.Element;
+import com.allanbank.mongodb.bson.builder.BuilderFactory;
+import com.allanbank.mongodb.bson.builder.DocumentBuilder;
+
+/**
+ * FieldNameDictionaryTest provides tests for the {@link FieldNameDictionary}
+ * class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class FieldNameDictionaryTest {
+
+    /**
+     * Test method for {@link FieldNameDictionary#find(byte[], int, int)}.
+     */
+    @Test
+    public void testFind() {
+        final FieldNameDictionary dictionary = new FieldNameDictionary();
+
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 60; ++i) {
+            names.add("field_" + i);
+        }
+        for (final String name : names) {
+            final byte[] bytes = encode(name, 3);
+            dictionary.learn(name, bytes, 3, bytes.length - 3);
+        }
+
+        // Still learning.
+        final byte[] probe = encode("field_1", 0);
+        assertThat(dictionary.isLearning(), is(true));
+        assertThat(dictionary.find(probe, 0, probe.length), nullValue());
+
+        for (int i = 0; i < FieldNameDictionary.LEARNING_REPLIES; ++i) {
+            dictionary.replyRead();
+        }
+        assertThat(dictionary.isLearning(), is(false));
+        assertThat(dictionary.getNames().size(), is(names.size()));
+
+        // Every name is found as the learned instance.
+        for (final String name : names) {
+            final byte[] bytes = encode(name, 5);
+            assertThat(dictionary.find(bytes, 5, bytes.length - 5),
+                    sameInstance(name));
+        }
+
+        // Misses.
+        byte[] bytes = encode("field_60", 0);
+        assertThat(dictionary.find(bytes, 0, bytes.length), nullValue());
+        bytes = encode("field_", 0);
+        assertThat(dictionary.find(bytes, 0, bytes.length), nullValue());
+        bytes = encode("other", 0);
+        assertThat(dictionary.find(bytes, 0, bytes.length), nullValue());
+
+        // No more learning.
+        dictionary.learn("other", bytes, 0, bytes.length);
+        assertThat(dictionary.find(bytes, 0, bytes.length), nullValue());
+    }
+
+    /**
+     * Test method for {@link FieldNameDictionary#find(byte[], int, int)}.
+     */
+    @Test
+    public void testFindEmpty() {
+        final FieldNameDictionary dictionary = new FieldNameDictionary();
+        for (int i = 0; i < FieldNameDictionary.LEARNING_REPLIES; ++i) {
+            dictionary.replyRead();
+        }
+
+        final byte[] bytes = encode("a", 0);
+        assertThat(dictionary.isLearning(), is(false));
+        assertThat(dictionary.find(bytes, 0, bytes.length), nullValue());
+    }
+
+    /**
+     * Test method for {@link FieldNameDictionary#learn}.
+     */
+    @Test
+    public void testLearnSkipsDuplicatesAndLongNames() {
+        final FieldNameDictionary dictionary = new FieldNameDictionary();
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < FieldNameDictionary.MAX_NAME_LENGTH; ++i) {
+            builder.append('x');
+        }
+        final String longName = builder.toString();
+
+        byte[] bytes = encode("a", 0);
+        dictionary.learn("a", bytes, 0, bytes.length);
+        dictionary.learn("a", bytes, 0, bytes.length);
+        bytes = encode(longName, 0);
+        dictionary.learn(longName, bytes, 0, bytes.length);
+        bytes = encode("", 0);
+        dictionary.learn("", bytes, 0, bytes.length);
+
+        assertThat(dictionary.getNames(), contains("a"));
+    }
+
+    /**
+     * Test method for {@link BsonInputStream#setFieldNames}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testReadDocumentsWithDictionary() throws IOException {
+        final StringDecoderCache cache = new StringDecoderCache();
+        final FieldNameDictionary dictionary = cache.getFieldNames("db",
+                "collection");
+        assertThat(cache.getFieldNames("db", "collection"),
+                sameInstance(dictionary));
+
+        final DocumentBuilder builder = BuilderFactory.start();
+        for (int i = 0; i < 40; ++i) {
+            builder.add("a_field_name_longer_than_the_string_cache_" + i, i);
+        }
+        final Document doc = builder.build();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BsonOutputStream bout = new BsonOutputStream(out);
+        for (int i = 0; i < (FieldNameDictionary.LEARNING_REPLIES + 2); ++i) {
+            bout.writeDocument(doc);
+        }
+
+        final BsonInputStream in = new BsonInputStream(
+                new ByteArrayInputStream(out.toByteArray()), cache);
+        in.setFieldNames(dictionary);
+
+        final List<Document> read = new ArrayList<Document>();
+        for (int i = 0; i < (FieldNameDictionary.LEARNING_REPLIES + 2); ++i) {
+            read.add(in.readDocument());
+            dictionary.replyRead();
+
+            assertThat(read.get(i), is(doc));
+        }
+        in.setFieldNames(null);
+        in.close();
+
+        // After learning the names are shared.
+        final Document last = read.get(read.size() - 1);
+        final Document previous = read.get(read.size() - 2);
+        final List<Element> lastElements = last.getElements();
+        final List<Element> previousElements = previous.getElements();
+        for (int i = 0; i < lastElements.size(); ++i) {
+            assertThat(lastElements.get(i).getName(),
+                    sameInstance(previousElements.get(i).getName()));
+        }
+
+        // Disabled with the cache.
+        cache.setMaxCacheLength(0);
+        assertThat(cache.getFieldNames("db", "collection"), nullValue());
+    }
+
+    /**
+     * Encodes the string as a cstring after some padding.
+     *
+     * @param name
+     *            The string to encode.
+     * @param padding
+     *            The number of bytes before the string.
+     * @return The encoded string.
+     */
+    private byte[] encode(final String name, final int padding) {
+        final byte[] utf8 = name.getBytes(BsonInputStream.UTF8);
+        final byte[] bytes = new byte[padding + utf8.length + 1];
+        System.arraycopy(utf8, 0, bytes, padding, utf8.length);
+        return bytes;
+    }
+}
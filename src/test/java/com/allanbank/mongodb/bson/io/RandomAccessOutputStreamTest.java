@@ -109,6 +109,47 @@ public class RandomAccessOutputStreamTest {
                 new byte[0], finalOut.toByteArray());
     }
 
+    /**
+     * Test method for {@link RandomAccessOutputStream#reset()}.
+     */
+    @Test
+    public void testResetReleasesBuffersToPool() {
+        final BufferPool pool = new BufferPool();
+        final RandomAccessOutputStream stream = new RandomAccessOutputStream(
+                new StringEncoderCache(), pool);
+
+        stream.write(new byte[BufferPool.MIN_SIZE_CLASS * 3]);
+        assertEquals(0, pool.getHitCount());
+        assertEquals(3, pool.getMissCount());
+
+        stream.reset();
+        stream.write(new byte[BufferPool.MIN_SIZE_CLASS * 3]);
+        assertEquals(2, pool.getHitCount());
+        assertEquals(3, pool.getMissCount());
+    }
+
+    /**
+     * Test method for {@link RandomAccessOutputStream#toByteArray()}.
+     *
+     * @throws IOException
+     *             On a failure writing the test results.
+     */
+    @Test
+    public void testToByteArray() throws IOException {
+        assertArrayEquals(new byte[0], myTestStream.toByteArray());
+
+        // Span a few buffers.
+        final Random rand = new Random(System.currentTimeMillis());
+        for (int i = 0; i < ((3 * 8192) + 17); ++i) {
+            myTestStream.write(rand.nextInt(256));
+        }
+
+        final ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        myTestStream.writeTo(bOut);
+
+        assertArrayEquals(bOut.toByteArray(), myTestStream.toByteArray());
+    }
+
     /**
      * Test method for {@link RandomAccessOutputStream#writeAt(long, byte[])}.
      *
@@ -252,4 +252,81 @@ public class StringDecoderCacheTest {
         // Now the new entry should be in the cache.
         assertThat(cache.find(extra, 0, extra.length), is("a"));
     }
+
+    /**
+     * Test method for {@link StringDecoderCache#rebuildCache()}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testRebuildFollowsChangeInUse() throws IOException {
+        final StringDecoderCache cache = new StringDecoderCache();
+        cache.setMaxCacheEntries(1);
+
+        final byte[] ab = new byte[] { 'a', 'b', 0 };
+        final byte[] cd = new byte[] { 'c', 'd', 0 };
+
+        for (int i = 0; i < (AbstractStringCache.BUFFER_SIZE * 10); ++i) {
+            cache.used("ab", ab, 0, ab.length);
+        }
+        cache.rebuildCache();
+        final String result = cache.find(ab, 0, ab.length);
+        assertThat(result, is("ab"));
+        assertThat(cache.find(cd, 0, cd.length), nullValue());
+
+        // Rebuild with nothing new keeps the same entries.
+        cache.rebuildCache();
+        assertThat(cache.find(ab, 0, ab.length), sameInstance(result));
+
+        // Switch to using a different string. The old uses age out.
+        for (int i = 0; i < 10; ++i) {
+            for (int j = 0; j < (AbstractStringCache.BUFFER_SIZE * 10); ++j) {
+                cache.used("cd", cd, 0, cd.length);
+            }
+            cache.rebuildCache();
+        }
+        assertThat(cache.find(cd, 0, cd.length), is("cd"));
+        assertThat(cache.find(ab, 0, ab.length), nullValue());
+    }
+
+    /**
+     * Test method for {@link StringDecoderCache#used}.
+     *
+     * @throws Exception
+     *             On a test failure.
+     */
+    @Test
+    public void testUsedFromMultipleThreads() throws Exception {
+        final StringDecoderCache cache = new StringDecoderCache();
+        cache.setMaxCacheEntries(26);
+
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int iteration = 0; iteration < AbstractStringCache.MAX_MULTIPLIER; ++iteration) {
+                        for (int j = 'a'; j <= 'z'; ++j) {
+                            final byte[] data = new byte[] { 'x', (byte) j, 0 };
+                            cache.used("x" + ((char) j), data, 0,
+                                    data.length);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // Pick up any stragglers.
+        cache.rebuildCache();
+
+        for (int j = 'a'; j <= 'z'; ++j) {
+            final byte[] data = new byte[] { 'x', (byte) j, 0 };
+            assertThat(cache.find(data, 0, data.length), is("x" + ((char) j)));
+        }
+    }
 }
@@ -0,0 +1,375 @@
+/*
+ * #%L
+ * JsonBsonParserTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.bson.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.builder.BuilderFactory;
+import com.allanbank.mongodb.bson.builder.DocumentBuilder;
+import com.allanbank.mongodb.bson.impl.RawDocument;
+import com.allanbank.mongodb.bson.io.BufferingBsonOutputStream;
+import com.allanbank.mongodb.bson.io.RandomAccessOutputStream;
+import com.allanbank.mongodb.error.JsonParseException;
+
+/**
+ * JsonBsonParserTest provides tests for the {@link JsonBsonParser} class. The
+ * encoding of each document is compared to the encoding of the document from
+ * the {@link JsonParser}.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class JsonBsonParserTest {
+
+    /** Documents that both parsers accept. */
+    private static final String[] VALID = new String[] {
+            "{}",
+            "{ a : 1 }",
+            "{ 'a' : 1, \"b\" : 2 }",
+            "{ a : -1, b : 0, c : -0, d : 2147483647, e : 2147483648 }",
+            "{ a : -2147483648, b : -2147483649, c : 9223372036854775807 }",
+            "{ a : 1.5, b : -1.5, c : 1e3, d : 1E-3, e : 1.5e+3, f : 0.0 }",
+            "{ a : 'b', b : \"c\", c : '', d : \"\" }",
+            "{ a : 'it\"s', b : \"it's\" }",
+            "{ a : 'a\\nb', b : \"q\\\"q\", c : 'x\\'y', d : '\\\\' }",
+            "{ a : '\\u0041\\u00e9', b : '\\\\u0041', c : '\u00e9\u20ac' }",
+            "{ \\u0061b : 1 }",
+            "{ a : true, b : false, c : null }",
+            "{ a : b, c : symbol, d : true1, e : $x, f : _y }",
+            "{ $set : { a : 1 }, $inc : { b : 1 } }",
+            "{ a : { b : { c : { d : [ 1, [ 2, [ 3 ] ], {} ] } } } }",
+            "{ a : [], b : [ {}, [], 'c', 1, 2.0, true, null ] }",
+            "{ a : { '$date' : 1 }, b : { \"$oid\" : 'x' } }",
+            "{ a : BinData(0, 'VVU='), b : BinData(2, 'VVU='), "
+                    + "c : BinData(128, '') }",
+            "{ a : HexData(0, 'cafe'), b : HexData(5, 'CAFEBABE') }",
+            "{ a : { $binary : 'VVU=', $type : 0 } }",
+            "{ a : { $binary : 'VVU=', $type : '0x02' } }",
+            "{ a : { $type : '80', $binary : 'VVU=' } }",
+            "{ a : { $type : 3, $binary : '' } }",
+            "{ a : ISODate('2012-07-14T01:00:00.000') }",
+            "{ a : ISODate('2012-07-14T01:00:00.000-0500'), "
+                    + "b : ISODate('2012-07-14 01:00'), "
+                    + "c : ISODate('2012-07-14') }",
+            "{ a : { $date : '2012-07-14T01:00:00.000' } }",
+            "{ a : { $date : 1234567890 }, b : { $date : -1 } }",
+            "{ a : MaxKey, b : MaxKey(), c : MinKey, d : MinKey() }",
+            "{ a : { $maxKey : 1 }, b : { $minKey : 1 } }",
+            "{ a : NumberLong('123456789'), b : NumberLong('-1') }",
+            "{ a : ObjectId('4e9d87aa5825b60b637815a6') }",
+            "{ a : { $oid : '4e9d87aa5825b60b637815a6' } }",
+            "{ a : Timestamp(1000, 1), b : Timestamp(-1, -1) }",
+            "{ a : { $timestamp : { t : 2000, i : 3 } } }",
+            "{ a : { $timestamp : { 'i' : 3, \"t\" : 2000 } } }",
+            "{ a : { $regex : 'cat' }, b : { $regex : 'cat', $options : 'i' } }",
+            "{ a : { $options : 'mI', $regex : '^a.*' } }",
+            "{ a : { $regex : 'a', $options : 'xusmli' } }",
+            "{ a : DBPointer('db', 'coll', "
+                    + "ObjectId('4e9d87aa5825b60b637815a6')) }",
+            "{ a : [ BinData(0, 'VVU='), { $binary : 'VVU=', $type : 0 }, "
+                    + "HexData(0, 'cafe'), ISODate('2012-07-14'), "
+                    + "{ $date : 1 }, MaxKey, MinKey(), NumberLong('1'), "
+                    + "ObjectId('4e9d87aa5825b60b637815a6'), "
+                    + "{ $oid : '4e9d87aa5825b60b637815a6' }, "
+                    + "Timestamp(1, 2), { $timestamp : { t : 1, i : 2 } }, "
+                    + "{ $regex : 'a', $options : 'm' }, "
+                    + "{ $maxKey : 1 }, { $minKey : 1 }, "
+                    + "DBPointer('db', 'coll', "
+                    + "ObjectId('4e9d87aa5825b60b637815a6')) ] }",
+            "// leading comment\n{ /* a */ a /* b */ : /* c */ 1 // d\n }",
+            "/* multi\n * line\n **/ { a : 1 }",
+            "\t\r\n\f { \r\n a \t : \r 1 \n } ",
+            "{ a : 1 } trailing content is not read",
+            "{ a : 1 } { b : 2 }" };
+
+    /** Documents that both parsers reject. */
+    private static final String[] INVALID = new String[] { "", "   ", "a",
+            "[ 1 ]", "{", "{ a }", "{ a : }", "{ a : 1, }", "{ a : 1 b : 2 }",
+            "{ a : [ 1, ] }", "{ a : [ 1 2 ] }", "{ 1 : 1 }", "{ true : 1 }",
+            "{ ObjectId : 1 }", "{ $date : 1 }", "{ a : $date }",
+            "{ a : 01 }", "{ a : 1. }", "{ a : .5 }", "{ a : - }",
+            "{ a : +1 }", "{ a : 1e }", "{ a : 0x1F }",
+            "{ a : 99999999999999999999 }", "{ a : 'b }", "{ a : 'b\nc' }",
+            "{ a : \"b }", "{ a : 'b' /* }", "{ a : 'b' / }",
+            "{ a : { b : 1, $date : 1 } }", "{ a : { $date : 1.5 } }",
+            "{ a : { $date : 'yesterday' } }", "{ a : { $date : 1, b : 2 } }",
+            "{ a : { $oid : 1 } }", "{ a : { $oid : 'xyz' } }",
+            "{ a : { $binary : 'VVU=' } }",
+            "{ a : { $binary : 'VVU=', $date : 0 } }",
+            "{ a : { $binary : '!!!!', $type : 0 } }",
+            "{ a : { $binary : 'VVU=', $type : 'zz' } }",
+            "{ a : { $timestamp : { t : 1, x : 2 } } }",
+            "{ a : { $timestamp : { t : 1 } } }",
+            "{ a : { $regex : 'a', $options : 'm', c : 1 } }",
+            "{ a : { $regex : 'a', $options : 'b' } }",
+            "{ a : { $maxKey : 'a' } }", "{ a : BinData(0) }",
+            "{ a : BinData('0', 'VVU=') }", "{ a : HexData(0, 'xyz') }",
+            "{ a : ISODate(1) }", "{ a : ISODate('x') }",
+            "{ a : NumberLong(1) }", "{ a : NumberLong('x') }",
+            "{ a : ObjectId() }", "{ a : ObjectId('abc') }",
+            "{ a : Timestamp(1) }", "{ a : Timestamp('1', 2) }",
+            "{ a : MaxKey( }", "{ a : DBPointer('db', 'coll', 'id') }",
+            "{ a : '\\u00zz' }", "{ a : # }" };
+
+    /**
+     * Test method for {@link JsonBsonParser#parse(RandomAccessOutputStream)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testParse() throws IOException {
+        for (final String json : VALID) {
+            final byte[] expected = encode(Json.parse(json));
+
+            assertArrayEquals(json, expected, parse(new StringReader(json)));
+            assertArrayEquals(json, expected, parse(new OneCharReader(json)));
+        }
+    }
+
+    /**
+     * Test method for {@link JsonBsonParser#parse(RandomAccessOutputStream)}.
+     */
+    @Test
+    public void testParseInvalid() {
+        for (final String json : INVALID) {
+            try {
+                parse(new StringReader(json));
+                fail("Should have failed to parse: " + json);
+            }
+            catch (final JsonParseException good) {
+                // Good.
+            }
+
+            try {
+                Json.parse(json);
+                fail("JsonParser should have failed to parse: " + json);
+            }
+            catch (final JsonParseException good) {
+                // Good.
+            }
+            catch (final Error good) {
+                // Good - Lexical error.
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link JsonBsonParser#parse(RandomAccessOutputStream)}.
+     */
+    @Test
+    public void testParseInvalidReportsLocation() {
+        try {
+            parse(new StringReader("{ a : 1,\n  b : 1. }"));
+            fail("Should have failed to parse.");
+        }
+        catch (final JsonParseException good) {
+            assertEquals(2, good.getLine());
+            assertEquals(7, good.getColumn());
+        }
+
+        try {
+            parse(new StringReader("{ a : 1,\r\n  1 : 1 }"));
+            fail("Should have failed to parse.");
+        }
+        catch (final JsonParseException good) {
+            assertEquals(2, good.getLine());
+            assertEquals(3, good.getColumn());
+        }
+    }
+
+    /**
+     * Test method for {@link JsonBsonParser#parse(RandomAccessOutputStream)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testParseLargeDocument() throws IOException {
+        final StringBuilder json = new StringBuilder();
+        final DocumentBuilder builder = BuilderFactory.start();
+        json.append("{");
+        for (int i = 0; i < 2000; ++i) {
+            if (i != 0) {
+                json.append(',');
+            }
+            // Put escapes across the read buffer boundaries.
+            json.append("field_").append(i).append(" : '\\u0041")
+                    .append(i).append("'");
+            builder.add("field_" + i, "A" + i);
+        }
+        json.append("}");
+
+        final byte[] expected = encode(builder.build());
+        assertArrayEquals(expected,
+                parse(new StringReader(json.toString())));
+        assertArrayEquals(expected,
+                parse(new OneCharReader(json.toString())));
+    }
+
+    /**
+     * Test method for {@link JsonBsonParser#parse(RandomAccessOutputStream)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testParseResourceDocument() throws IOException {
+        final InputStream in = getClass().getResourceAsStream("test_doc.js");
+        final Reader r = new InputStreamReader(in, "UTF-8");
+
+        final RawDocument raw = Json.parseRaw(r);
+
+        final InputStream in2 = getClass().getResourceAsStream("test_doc.js");
+        final Document expected = Json.parse(new InputStreamReader(in2,
+                "UTF-8"));
+
+        assertEquals(expected, raw);
+        assertArrayEquals(encode(expected), encode(raw));
+    }
+
+    /**
+     * Test method for {@link Json#parse(Reader, BufferingBsonOutputStream)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testParseToStream() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BufferingBsonOutputStream bOut = new BufferingBsonOutputStream(
+                out);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final BufferingBsonOutputStream bExpected = new BufferingBsonOutputStream(
+                expected);
+
+        for (final String json : new String[] { "{ a : 1 }", "{ b : 'c' }",
+                "{ d : [ 1, { $regex : 'e', $options : 'xMi' } ] }" }) {
+            final long size = Json.parse(new StringReader(json), bOut);
+
+            assertEquals(bExpected.write(Json.parse(json)), size);
+        }
+        bOut.flushBuffer();
+
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    /**
+     * Encodes the document.
+     *
+     * @param doc
+     *            The document to encode.
+     * @return The encoded document.
+     * @throws IOException
+     *             On a failure to encode the document.
+     */
+    private byte[] encode(final Document doc) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BufferingBsonOutputStream bOut = new BufferingBsonOutputStream(
+                out);
+        bOut.write(doc);
+        bOut.close();
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Parses the JSON document with the {@link JsonBsonParser}.
+     *
+     * @param reader
+     *            The source of the document.
+     * @return The encoded document.
+     * @throws JsonParseException
+     *             On a failure to parse the document.
+     */
+    private byte[] parse(final Reader reader) throws JsonParseException {
+        final RandomAccessOutputStream out = new RandomAccessOutputStream();
+        final long size = new JsonBsonParser(reader).parse(out);
+
+        assertEquals(out.getSize(), size);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * OneCharReader provides a reader that returns a single character from
+     * each read.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static final class OneCharReader
+            extends Reader {
+
+        /** The position of the next character. */
+        private int myPosition;
+
+        /** The text to read. */
+        private final String myText;
+
+        /**
+         * Creates a new OneCharReader.
+         *
+         * @param text
+         *            The text to read.
+         */
+        public OneCharReader(final String text) {
+            myText = text;
+            myPosition = 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            // Nothing.
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to return a single character.
+         * </p>
+         */
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) {
+            if (myText.length() <= myPosition) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            cbuf[off] = myText.charAt(myPosition++);
+            return 1;
+        }
+    }
+}
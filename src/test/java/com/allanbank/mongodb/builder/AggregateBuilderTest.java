@@ -474,6 +474,28 @@ public class AggregateBuilderTest
         assertFalse(iter.hasNext());
     }
 
+    /**
+     * Test method for {@link Aggregate.Builder#readAhead(int)}.
+     */
+    @Test
+    public void testReadAhead() {
+        final Aggregate.Builder b = new Aggregate.Builder();
+
+        b.readAhead(3);
+
+        Aggregate a = b.build();
+
+        assertThat(a.isUseCursor(), is(true));
+        assertThat(a.getReadAhead(), is(3));
+
+        b.reset();
+
+        a = b.build();
+
+        assertThat(a.isUseCursor(), is(false));
+        assertThat(a.getReadAhead(), is(1));
+    }
+
     /**
      * Test method for
      * {@link Aggregate.Builder#redact(DocumentAssignable, RedactOption, RedactOption)}
@@ -131,6 +131,7 @@ public class FindTest {
         assertEquals(-1L, request.getMaximumDocumentsToScan());
         assertNull(request.getMaximumRange());
         assertNull(request.getMinimumRange());
+        assertEquals(1, request.getReadAhead());
 
         assertEquals(request.getQuery(), request.toQueryRequest(false));
         assertEquals(
@@ -490,6 +491,26 @@ public class FindTest {
         assertEquals(Find.ALL, request.toQueryRequest(false));
     }
 
+    /**
+     * Test method for {@link Find#getReadAhead()}.
+     */
+    @Test
+    public void testFindWithReadAhead() {
+        final Find.Builder builder = new Find.Builder();
+        builder.setReadAhead(4);
+
+        Find request = builder.build();
+        assertEquals(4, request.getReadAhead());
+
+        builder.readAhead(2);
+        request = builder.build();
+        assertEquals(2, request.getReadAhead());
+
+        builder.reset();
+        request = builder.build();
+        assertEquals(1, request.getReadAhead());
+    }
+
     /**
      * Test method for {@link Find#Find}.
      *
@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * PreparedFindTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.builder;
+
+import static com.allanbank.mongodb.builder.QueryBuilder.where;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.allanbank.mongodb.ReadPreference;
+import com.allanbank.mongodb.bson.impl.RawDocument;
+import com.allanbank.mongodb.bson.io.BsonOutputStream;
+import com.allanbank.mongodb.client.message.Query;
+
+/**
+ * PreparedFindTest provides tests for the {@link PreparedFind} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class PreparedFindTest {
+
+    /**
+     * Test method for {@link PreparedFind#bind(Object...)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testBind() throws IOException {
+        final Find.Builder findBuilder = Find.builder()
+                .query(where("user").equals("").and("age").greaterThan(0))
+                .projection("user").limit(10).batchSize(5).skip(2)
+                .readPreference(ReadPreference.SECONDARY).partialOk();
+
+        final PreparedFind prepared = PreparedFind.builder()
+                .find(findBuilder).parameters("user").parameters("age.$gt")
+                .build();
+        assertThat(prepared.getParameterNames(), contains("user", "age.$gt"));
+        assertThat(prepared.getFind().getQuery(),
+                is(findBuilder.build().getQuery()));
+
+        final Find bound = prepared.bind("bob", Integer.valueOf(21));
+        final Find expected = findBuilder.query(
+                where("user").equals("bob").and("age").greaterThan(21))
+                .build();
+
+        assertThat(bound.getQuery(), instanceOf(RawDocument.class));
+        assertThat(bound.getQuery(), is(expected.getQuery()));
+        assertThat(bound.getProjection(), is(expected.getProjection()));
+        assertThat(bound.getLimit(), is(10));
+        assertThat(bound.getBatchSize(), is(5));
+        assertThat(bound.getNumberToSkip(), is(2));
+        assertThat(bound.isPartialOk(), is(true));
+        assertThat(bound.getReadPreference(),
+                sameInstance(ReadPreference.SECONDARY));
+
+        // The messages are the same on the wire.
+        assertArrayEquals(encode(expected), encode(bound));
+    }
+
+    /**
+     * Test method for {@link PreparedFind.Builder#build()}.
+     */
+    @Test
+    public void testBuildWithMissingParameter() {
+        final PreparedFind.Builder builder = PreparedFind.builder()
+                .find(Find.builder().query(where("a").equals(1)))
+                .parameters("b");
+        try {
+            builder.build();
+            fail("Should have failed to find the parameter.");
+        }
+        catch (final IllegalArgumentException good) {
+            // Good.
+        }
+
+        builder.setParameters("a");
+        assertThat(builder.build().getParameterNames(), contains("a"));
+
+        builder.reset();
+        assertThat(builder.build().getFind().getQuery(), is(Find.ALL));
+        assertThat(builder.build().getParameterNames().isEmpty(), is(true));
+    }
+
+    /**
+     * Encodes the query message for the find.
+     *
+     * @param find
+     *            The find to encode.
+     * @return The encoded message.
+     * @throws IOException
+     *             On a failure to encode the message.
+     */
+    private byte[] encode(final Find find) throws IOException {
+        final Query message = new Query("db", "c", find.toQueryRequest(false),
+                find.getProjection(), find.getBatchSize(), find.getLimit(),
+                find.getNumberToSkip(), false, find.getReadPreference(),
+                false, false, false, find.isPartialOk());
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BsonOutputStream out = new BsonOutputStream(bytes);
+        message.write(1, out);
+
+        assertThat(bytes.size(), is(message.size()));
+        return bytes.toByteArray();
+    }
+}
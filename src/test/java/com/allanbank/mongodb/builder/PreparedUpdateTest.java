@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * PreparedUpdateTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.builder;
+
+import static com.allanbank.mongodb.bson.builder.BuilderFactory.d;
+import static com.allanbank.mongodb.bson.builder.BuilderFactory.e;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.allanbank.mongodb.MongoCollection;
+import com.allanbank.mongodb.bson.impl.RawDocument;
+import com.allanbank.mongodb.builder.write.UpdateOperation;
+
+/**
+ * PreparedUpdateTest provides tests for the {@link PreparedUpdate} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class PreparedUpdateTest {
+
+    /**
+     * Test method for {@link PreparedUpdate#bind(Object...)}.
+     */
+    @Test
+    public void testBind() {
+        final PreparedUpdate prepared = PreparedUpdate.builder()
+                .query(d(e("_id", 0), e("v", 0L))).queryParameters("_id")
+                .queryParameters("v")
+                .update(d(e("$set", d(e("name", ""), e("v", 0L)))))
+                .updateParameters("$set.name", "$set.v").multiUpdate()
+                .upsert().build();
+
+        assertThat(prepared.getParameterNames(),
+                contains("_id", "v", "$set.name", "$set.v"));
+        assertThat(prepared.isMultiUpdate(), is(true));
+        assertThat(prepared.isUpsert(), is(true));
+
+        final UpdateOperation update = prepared.bind(Integer.valueOf(42),
+                Long.valueOf(1), "bob", Long.valueOf(2));
+
+        assertThat(update.getQuery(), instanceOf(RawDocument.class));
+        assertThat(update.getQuery(), is(d(e("_id", 42), e("v", 1L)).build()));
+        assertThat(update.getUpdate(), instanceOf(RawDocument.class));
+        assertThat(update.getUpdate(),
+                is(d(e("$set", d(e("name", "bob"), e("v", 2L)))).build()));
+        assertThat(update.isMultiUpdate(), is(true));
+        assertThat(update.isUpsert(), is(true));
+
+        try {
+            prepared.bind(Integer.valueOf(42), Long.valueOf(1), "bob");
+            fail("Should have failed with too few values.");
+        }
+        catch (final IllegalArgumentException good) {
+            // Good.
+        }
+    }
+
+    /**
+     * Test method for {@link PreparedUpdate.Builder}.
+     */
+    @Test
+    public void testBuilder() {
+        final PreparedUpdate.Builder builder = PreparedUpdate.builder()
+                .setQuery(d(e("a", 1))).setQueryParameters("a")
+                .setUpdate(d(e("$inc", d(e("b", 1))))).setUpdateParameters()
+                .multiUpdate(false).upsert(false);
+
+        PreparedUpdate prepared = builder.build();
+        assertThat(prepared.getParameterNames(), contains("a"));
+        assertThat(prepared.isMultiUpdate(), is(false));
+        assertThat(prepared.isUpsert(), is(false));
+        assertThat(prepared.bind(Integer.valueOf(2)).getUpdate(),
+                is(d(e("$inc", d(e("b", 1)))).build()));
+
+        builder.setQueryParameters("b");
+        try {
+            builder.build();
+            fail("Should have failed to find the parameter.");
+        }
+        catch (final IllegalArgumentException good) {
+            // Good.
+        }
+
+        builder.reset();
+        prepared = builder.build();
+        assertThat(prepared.getParameterNames().isEmpty(), is(true));
+        assertThat(prepared.bind().getQuery(), is(MongoCollection.ALL));
+        assertThat(prepared.bind().getUpdate(), is(MongoCollection.ALL));
+    }
+}
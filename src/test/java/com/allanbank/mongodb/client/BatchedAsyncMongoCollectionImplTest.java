@@ -34,13 +34,19 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -53,7 +59,9 @@ import com.allanbank.mongodb.Version;
 import com.allanbank.mongodb.bson.Document;
 import com.allanbank.mongodb.bson.DocumentAssignable;
 import com.allanbank.mongodb.bson.builder.BuilderFactory;
+import com.allanbank.mongodb.bson.element.ArrayElement;
 import com.allanbank.mongodb.bson.element.ObjectId;
+import com.allanbank.mongodb.client.callback.ReplyCallback;
 import com.allanbank.mongodb.client.message.BatchedWriteCommand;
 import com.allanbank.mongodb.client.message.Command;
 import com.allanbank.mongodb.client.message.Delete;
@@ -110,6 +118,139 @@ public class BatchedAsyncMongoCollectionImplTest {
         myTestInstance = null;
     }
 
+    /**
+     * Test method for
+     * {@link BatchedAsyncMongoCollectionImpl#setAutoFlush(boolean)}.
+     *
+     * @throws Exception
+     *             On a test failure.
+     */
+    @Test
+    public void testAutoFlush() throws Exception {
+        final AtomicInteger sends = new AtomicInteger();
+        final AtomicInteger documents = new AtomicInteger();
+        final BatchedAsyncMongoCollectionImpl collection = autoFlushCollection(
+                10, sends, documents);
+        collection.setAutoFlush(true);
+        assertThat(collection.isAutoFlush(), is(true));
+
+        final Document doc = BuilderFactory.start().add("_id", 1).build();
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 25; ++i) {
+            futures.add(collection.insertAsync(doc));
+        }
+
+        // Flushed at 10 and 20 pending documents.
+        assertThat(sends.get(), is(2));
+        assertThat(documents.get(), is(20));
+        for (int i = 0; i < 20; ++i) {
+            assertThat(futures.get(i).get(), is(1));
+        }
+
+        collection.close();
+        assertThat(sends.get(), is(3));
+        assertThat(documents.get(), is(25));
+        for (final Future<Integer> future : futures) {
+            assertThat(future.get(), is(1));
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link BatchedAsyncMongoCollectionImpl#setAutoFlush(boolean)} with many
+     * producer threads.
+     *
+     * @throws Exception
+     *             On a test failure.
+     */
+    @Test
+    public void testAutoFlushFromManyThreads() throws Exception {
+        final int threadCount = 8;
+        final int insertsPerThread = 250;
+
+        final AtomicInteger sends = new AtomicInteger();
+        final AtomicInteger documents = new AtomicInteger();
+        final BatchedAsyncMongoCollectionImpl collection = autoFlushCollection(
+                10, sends, documents);
+        collection.setAutoFlush(true);
+
+        final Document doc = BuilderFactory.start().add("_id", 1).build();
+        final List<Future<Integer>> futures = Collections
+                .synchronizedList(new ArrayList<Future<Integer>>());
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; ++i) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < insertsPerThread; ++j) {
+                        futures.add(collection.insertAsync(doc));
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            assertThat(thread.isAlive(), is(false));
+        }
+
+        collection.flush();
+
+        assertThat(documents.get(), is(threadCount * insertsPerThread));
+        assertThat(futures.size(), is(threadCount * insertsPerThread));
+        for (final Future<Integer> future : futures) {
+            assertThat(future.get(), is(1));
+        }
+        // Must have auto-flushed along the way.
+        assertThat(sends.get() > 1, is(true));
+    }
+
+    /**
+     * Test method for
+     * {@link BatchedAsyncMongoCollectionImpl#setMaxFlushDelay(long, TimeUnit)}
+     * .
+     *
+     * @throws Exception
+     *             On a test failure.
+     */
+    @Test
+    public void testMaxFlushDelay() throws Exception {
+        final AtomicInteger sends = new AtomicInteger();
+        final AtomicInteger documents = new AtomicInteger();
+        final BatchedAsyncMongoCollectionImpl collection = autoFlushCollection(
+                1000, sends, documents);
+        collection.setMaxFlushDelay(50, TimeUnit.MILLISECONDS);
+        assertThat(collection.getMaxFlushDelay(TimeUnit.MILLISECONDS),
+                is(50L));
+
+        try {
+            final Document doc = BuilderFactory.start().add("_id", 1).build();
+            final Future<Integer> future1 = collection.insertAsync(doc);
+            final Future<Integer> future2 = collection.insertAsync(doc);
+
+            // No explicit flush.
+            assertThat(future1.get(10, TimeUnit.SECONDS), is(1));
+            assertThat(future2.get(10, TimeUnit.SECONDS), is(1));
+            assertThat(documents.get(), is(2));
+
+            // Stop the deadline flushes.
+            collection.setMaxFlushDelay(0, TimeUnit.MILLISECONDS);
+            final Future<Integer> future3 = collection.insertAsync(doc);
+            try {
+                future3.get(250, TimeUnit.MILLISECONDS);
+                fail("Should not have flushed without a deadline.");
+            }
+            catch (final TimeoutException good) {
+                // Good.
+            }
+        }
+        finally {
+            collection.close();
+        }
+        assertThat(documents.get(), is(3));
+    }
+
     /**
      * Test method for {@link BatchedAsyncMongoCollectionImpl#cancel()}.
      *
@@ -798,6 +939,62 @@ public class BatchedAsyncMongoCollectionImplTest {
         assertThat(future3.get(), is(2L));
     }
 
+    /**
+     * Creates a collection around nice mocks that reply to each batched insert
+     * command with the number of documents in the command.
+     *
+     * @param maxOperations
+     *            The maximum number of operations in a batched write.
+     * @param sends
+     *            Counts the messages sent.
+     * @param documents
+     *            Counts the documents inserted.
+     * @return The collection.
+     */
+    private BatchedAsyncMongoCollectionImpl autoFlushCollection(
+            final int maxOperations, final AtomicInteger sends,
+            final AtomicInteger documents) {
+        final Client client = EasyMock.createNiceMock(SerialClientImpl.class);
+        final MongoDatabase database = EasyMock
+                .createNiceMock(MongoDatabase.class);
+        final ClusterStats stats = EasyMock.createNiceMock(ClusterStats.class);
+
+        expect(client.getConfig()).andReturn(new MongoClientConfiguration())
+                .anyTimes();
+        expect(client.getClusterStats()).andReturn(stats).anyTimes();
+        expect(database.getName()).andReturn("test").anyTimes();
+        expect(database.getDurability()).andReturn(Durability.ACK).anyTimes();
+        expect(stats.getServerVersionRange()).andReturn(
+                VersionRange.range(Version.VERSION_2_6, Version.VERSION_2_6))
+                .anyTimes();
+        expect(stats.getSmallestMaxBsonObjectSize()).andReturn(
+                (long) Client.MAX_DOCUMENT_SIZE).anyTimes();
+        expect(stats.getSmallestMaxBatchedWriteOperations()).andReturn(
+                maxOperations).anyTimes();
+
+        client.send(anyObject(Message.class), anyObject(ReplyCallback.class));
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                final Object[] args = EasyMock.getCurrentArguments();
+                final Command command = (Command) args[0];
+                final int count = command.getCommand()
+                        .get(ArrayElement.class, "documents").getEntries()
+                        .size();
+
+                sends.incrementAndGet();
+                documents.addAndGet(count);
+                ((ReplyCallback) args[1]).callback(reply(BuilderFactory
+                        .start().addInteger("n", count).build()));
+                return null;
+            }
+        }).anyTimes();
+
+        EasyMock.replay(client, database, stats);
+
+        return new BatchedAsyncMongoCollectionImpl(client, database, "test");
+    }
+
     /**
      * Performs a {@link EasyMock#replay(Object...)} on the provided mocks and
      * the {@link #myMockClient} and {@link #myMockDatabase} objects.
@@ -30,6 +30,7 @@ import static org.easymock.EasyMock.expectLastCall;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
@@ -42,10 +43,15 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.easymock.Capture;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -53,6 +59,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.allanbank.mongodb.Durability;
+import com.allanbank.mongodb.ListenableFuture;
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoCursorControl;
 import com.allanbank.mongodb.MongoDbException;
@@ -1517,6 +1524,72 @@ public class ClientImplTest {
         verify(mockConnection, mockConnection2);
     }
 
+    /**
+     * Test method for {@link ClientImpl#send} .
+     *
+     * @throws IOException
+     *             On a failure setting up the test.
+     * @throws InterruptedException
+     *             On a failure waiting for the background connection.
+     */
+    @SuppressWarnings("boxing")
+    @Test
+    public void testSendMessageCreatesSecondConnectionInBackground()
+            throws IOException, InterruptedException {
+        final Message message = new Command("db", Command.COMMAND_COLLECTION,
+                BuilderFactory.start().build());
+
+        myConfig.setMaxConnectionCount(2);
+        myConfig.setAsyncConnectionGrowthEnabled(true);
+
+        final Connection mockConnection = createMock(Connection.class);
+        final Connection mockConnection2 = createMock(Connection.class);
+        final CountDownLatch connecting = new CountDownLatch(1);
+
+        expect(myMockConnectionFactory.connect()).andReturn(mockConnection);
+        mockConnection
+                .addPropertyChangeListener(anyObject(PropertyChangeListener.class));
+        expectLastCall();
+        mockConnection.send(message, null);
+        expectLastCall().times(2);
+
+        expect(mockConnection.isAvailable()).andReturn(true).anyTimes();
+        expect(mockConnection.getPendingCount()).andReturn(1).anyTimes();
+
+        // The second connection is slow to connect.
+        expect(myMockConnectionFactory.connect()).andAnswer(
+                new IAnswer<Connection>() {
+                    @Override
+                    public Connection answer() throws Throwable {
+                        connecting.await(10, TimeUnit.SECONDS);
+                        return mockConnection2;
+                    }
+                });
+        mockConnection2
+                .addPropertyChangeListener(anyObject(PropertyChangeListener.class));
+        expectLastCall();
+
+        replay(mockConnection, mockConnection2);
+
+        myTestInstance.send(message, null);
+
+        // Should not block on the second connection.
+        myTestInstance.send(message, null);
+        assertEquals(1, myTestInstance.getConnectionCount());
+
+        connecting.countDown();
+
+        final long deadline = System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(10);
+        while ((myTestInstance.getConnectionCount() < 2)
+                && (System.currentTimeMillis() < deadline)) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(2, myTestInstance.getConnectionCount());
+
+        verify(mockConnection, mockConnection2);
+    }
+
     /**
      * Test method for {@link ClientImpl#send} .
      *
@@ -1914,6 +1987,112 @@ public class ClientImplTest {
         EasyMock.makeThreadSafe(myMockConnectionFactory, true);
     }
 
+    /**
+     * Test method for {@link ClientImpl#warmUp()}.
+     *
+     * @throws Exception
+     *             On a failure setting up the test.
+     */
+    @Test
+    public void testWarmUp() throws Exception {
+        myConfig.setMinConnectionCount(2);
+        myConfig.setMaxConnectionCount(3);
+
+        final Connection mockConnection = createMock(Connection.class);
+        final Connection mockConnection2 = createMock(Connection.class);
+
+        expect(myMockConnectionFactory.connect()).andReturn(mockConnection);
+        expect(myMockConnectionFactory.connect()).andReturn(mockConnection2);
+        mockConnection
+                .addPropertyChangeListener(anyObject(PropertyChangeListener.class));
+        expectLastCall();
+        mockConnection2
+                .addPropertyChangeListener(anyObject(PropertyChangeListener.class));
+        expectLastCall();
+
+        replay(mockConnection, mockConnection2);
+
+        final ListenableFuture<Integer> future = myTestInstance.warmUp();
+        assertEquals(Integer.valueOf(2), future.get(10, TimeUnit.SECONDS));
+        assertEquals(2, myTestInstance.getConnectionCount());
+
+        // Already warm.
+        final ListenableFuture<Integer> again = myTestInstance.warmUp();
+        assertTrue(again.isDone());
+        assertEquals(Integer.valueOf(2), again.get());
+
+        verify(mockConnection, mockConnection2);
+    }
+
+    /**
+     * Test method for {@link ClientImpl#warmUp()}.
+     *
+     * @throws Exception
+     *             On a failure setting up the test.
+     */
+    @Test
+    public void testWarmUpBoundsThreads() throws Exception {
+        final int count = 10;
+        final AtomicInteger threads = new AtomicInteger(0);
+        myConfig.setMinConnectionCount(count);
+        myConfig.setMaxConnectionCount(count);
+        myConfig.setThreadFactory(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                threads.incrementAndGet();
+                return new Thread(runnable);
+            }
+        });
+
+        final Connection mockConnection = createMock(Connection.class);
+
+        expect(myMockConnectionFactory.connect()).andReturn(mockConnection)
+                .times(count);
+        mockConnection
+                .addPropertyChangeListener(anyObject(PropertyChangeListener.class));
+        expectLastCall().times(count);
+
+        makeThreadSafe(mockConnection);
+        replay(mockConnection);
+
+        final ListenableFuture<Integer> future = myTestInstance.warmUp();
+        assertEquals(Integer.valueOf(count), future.get(10, TimeUnit.SECONDS));
+        assertEquals(count, myTestInstance.getConnectionCount());
+        assertThat(threads.get(),
+                lessThanOrEqualTo(ClientImpl.MAX_WARM_UP_THREADS));
+
+        verify(mockConnection);
+    }
+
+    /**
+     * Test method for {@link ClientImpl#warmUp()}.
+     *
+     * @throws Exception
+     *             On a failure setting up the test.
+     */
+    @Test
+    public void testWarmUpFails() throws Exception {
+        myConfig.setMinConnectionCount(1);
+
+        expect(myMockConnectionFactory.connect()).andThrow(
+                new IOException("Injected"));
+
+        replay();
+
+        final ListenableFuture<Integer> future = myTestInstance.warmUp();
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Should have failed to warm up.");
+        }
+        catch (final ExecutionException expected) {
+            assertThat(expected.getCause(),
+                    instanceOf(CannotConnectException.class));
+        }
+        assertEquals(0, myTestInstance.getConnectionCount());
+
+        verify();
+    }
+
     /**
      * Performs a {@link EasyMock#replay(Object...)} on the provided mocks and
      * the {@link #myMockConnectionFactory} object.
@@ -381,6 +381,22 @@ public class MongoClientImplTest {
         verify(mockCallback);
     }
 
+    /**
+     * Test method for {@link MongoClientImpl#warmUp()}.
+     */
+    @Test
+    public void testWarmUp() {
+        final FutureCallback<Integer> future = new FutureCallback<Integer>();
+
+        expect(myMockClient.warmUp()).andReturn(future);
+
+        replay();
+
+        assertSame(future, myTestInstance.warmUp());
+
+        verify();
+    }
+
     /**
      * Performs a {@link EasyMock#replay(Object...)} on the provided mocks and
      * the {@link #myMockClient} object.
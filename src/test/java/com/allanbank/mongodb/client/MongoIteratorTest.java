@@ -22,6 +22,7 @@ package com.allanbank.mongodb.client;
 
 import static com.allanbank.mongodb.client.connection.CallbackReply.cb;
 import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createStrictMock;
 import static org.easymock.EasyMock.expectLastCall;
@@ -45,6 +46,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.easymock.Capture;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -438,8 +441,8 @@ public class MongoIteratorTest {
         final Client mockClient = createMock(Client.class);
         final Reply reply = new Reply(0, 10, 0, myDocs, false, false, false,
                 false);
-        mockClient.send(anyObject(GetMore.class),
-                anyObject(ReplyCallback.class));
+        final Capture<ReplyCallback> callback = new Capture<ReplyCallback>();
+        mockClient.send(anyObject(GetMore.class), capture(callback));
         expectLastCall();
         mockClient.send(anyObject(KillCursors.class),
                 isNull(ReplyCallback.class));
@@ -469,9 +472,13 @@ public class MongoIteratorTest {
         catch (final RuntimeException good) {
             assertThat(good.getMessage(), containsString("Interrupted"));
         }
+        assertEquals(1L, iter.getBlockedCount());
 
         iter.close();
 
+        // The cursor is killed once the outstanding request completes.
+        callback.getValue().callback(reply);
+
         verify(mockClient);
     }
 
@@ -574,6 +581,76 @@ public class MongoIteratorTest {
         verify(mockClient);
     }
 
+    /**
+     * Test method for {@link MongoIteratorImpl#close()}.
+     */
+    @Test
+    public void testCloseWithReadAheadInFlight() {
+        final Client mockClient = createStrictMock(Client.class);
+        final Reply reply = new Reply(0, 10, 0, myDocs, false, false, false,
+                false);
+        final Reply reply2 = new Reply(0, 11, 0, myDocs, false, false, false,
+                false);
+        final Capture<ReplyCallback> callback = new Capture<ReplyCallback>();
+        final Capture<KillCursors> kill = new Capture<KillCursors>();
+
+        mockClient.send(anyObject(GetMore.class), capture(callback));
+        expectLastCall();
+
+        replay(mockClient);
+
+        final MongoIteratorImpl iter = new MongoIteratorImpl(myQuery,
+                mockClient, myAddress, reply);
+        iter.setReadAhead(3);
+        assertTrue(iter.hasNext());
+        assertTrue(callback.hasCaptured());
+
+        // The kill waits for the outstanding request.
+        iter.close();
+        verify(mockClient);
+
+        reset(mockClient);
+        mockClient.send(capture(kill), isNull(ReplyCallback.class));
+        expectLastCall();
+        replay(mockClient);
+
+        // Uses the cursor id from the outstanding request's reply.
+        callback.getValue().callback(reply2);
+
+        verify(mockClient);
+        assertThat(kill.getValue().getCursorIds(), is(new long[] { 11 }));
+    }
+
+    /**
+     * Test method for {@link MongoIteratorImpl#close()}.
+     */
+    @Test
+    public void testCloseWithReadAheadInFlightExhausted() {
+        final Client mockClient = createStrictMock(Client.class);
+        final Reply reply = new Reply(0, 10, 0, myDocs, false, false, false,
+                false);
+        final Reply reply2 = new Reply(0, 0, 0, myDocs, false, false, false,
+                false);
+        final Capture<ReplyCallback> callback = new Capture<ReplyCallback>();
+
+        mockClient.send(anyObject(GetMore.class), capture(callback));
+        expectLastCall();
+
+        replay(mockClient);
+
+        final MongoIteratorImpl iter = new MongoIteratorImpl(myQuery,
+                mockClient, myAddress, reply);
+        iter.setReadAhead(3);
+        assertTrue(iter.hasNext());
+
+        iter.close();
+
+        // The reply exhausted the cursor so there is nothing to kill.
+        callback.getValue().callback(reply2);
+
+        verify(mockClient);
+    }
+
     /**
      * Test method for {@link MongoIteratorImpl#nextBatchSize()}.
      */
@@ -685,6 +762,133 @@ public class MongoIteratorTest {
         verify(mockClient);
     }
 
+    /**
+     * Test method for {@link MongoIteratorImpl#setReadAhead(int)} .
+     */
+    @Test
+    public void testReadAhead() {
+        final Client mockClient = createStrictMock(Client.class);
+        final Reply reply = new Reply(0, 10, 0, myDocs, false, false, false,
+                false);
+        final Reply reply2 = new Reply(0, 10, 0, myDocs, false, false, false,
+                false);
+        final Reply reply3 = new Reply(0, 0, 0, myDocs, false, false, false,
+                false);
+
+        mockClient.send(anyObject(GetMore.class), cb(reply2));
+        expectLastCall();
+        mockClient.send(anyObject(GetMore.class), cb(reply2));
+        expectLastCall();
+        mockClient.send(anyObject(GetMore.class), cb(reply3));
+        expectLastCall();
+
+        replay(mockClient);
+
+        final MongoIteratorImpl iter = new MongoIteratorImpl(myQuery,
+                mockClient, myAddress, reply);
+        iter.setReadAhead(3);
+        assertEquals(3, iter.getReadAhead());
+
+        // All of the batches are requested as each reply is received.
+        assertTrue(iter.hasNext());
+        verify(mockClient);
+
+        int count = 0;
+        while (iter.hasNext()) {
+            assertSame(myDocs.get(count % myDocs.size()), iter.next());
+            count += 1;
+        }
+        assertEquals(4 * myDocs.size(), count);
+        assertEquals(0L, iter.getBlockedCount());
+
+        iter.close();
+
+        verify(mockClient);
+    }
+
+    /**
+     * Test method for {@link MongoIteratorImpl#setReadAheadByteLimit(long)} .
+     */
+    @Test
+    public void testReadAheadByteLimit() {
+        final Client mockClient = createStrictMock(Client.class);
+        final Reply reply = new Reply(0, 10, 0, myDocs, false, false, false,
+                false);
+        final Reply reply2 = new Reply(0, 10, 0, myDocs, false, false, false,
+                false);
+        final Reply reply3 = new Reply(0, 0, 0, myDocs, false, false, false,
+                false);
+
+        mockClient.send(anyObject(GetMore.class), cb(reply2));
+        expectLastCall();
+
+        replay(mockClient);
+
+        final MongoIteratorImpl iter = new MongoIteratorImpl(myQuery,
+                mockClient, myAddress, reply);
+        assertEquals(MongoIteratorImpl.DEFAULT_READ_AHEAD_BYTE_LIMIT,
+                iter.getReadAheadByteLimit());
+        iter.setReadAhead(3);
+        iter.setReadAheadByteLimit(reply2.size());
+
+        // Only one batch requested since it fills the byte limit.
+        assertTrue(iter.hasNext());
+        verify(mockClient);
+
+        reset(mockClient);
+        mockClient.send(anyObject(GetMore.class), cb(reply3));
+        expectLastCall();
+        replay(mockClient);
+
+        int count = 0;
+        while (iter.hasNext()) {
+            assertSame(myDocs.get(count % myDocs.size()), iter.next());
+            count += 1;
+        }
+        assertEquals(3 * myDocs.size(), count);
+
+        iter.close();
+
+        verify(mockClient);
+    }
+
+    /**
+     * Test method for {@link MongoIteratorImpl#setReadAhead(int)} .
+     */
+    @Test
+    public void testReadAheadNotUsedWithLimit() {
+        myQuery = new Query("db", "c", myDocs.get(0), myDocs.get(0), 5, 100,
+                0, false, ReadPreference.PRIMARY, false, false, false, false);
+
+        final Client mockClient = createStrictMock(Client.class);
+        final Reply reply = new Reply(0, 10, 0, myDocs, false, false, false,
+                false);
+        final Reply reply2 = new Reply(0, 10, 0, myDocs, false, false, false,
+                false);
+
+        mockClient.send(anyObject(GetMore.class), cb(reply2));
+        expectLastCall();
+
+        replay(mockClient);
+
+        final MongoIteratorImpl iter = new MongoIteratorImpl(myQuery,
+                mockClient, myAddress, reply);
+        iter.setReadAhead(3);
+
+        assertTrue(iter.hasNext());
+        verify(mockClient);
+
+        reset(mockClient);
+        mockClient.send(anyObject(KillCursors.class),
+                isNull(ReplyCallback.class));
+        expectLastCall();
+        replay(mockClient);
+
+        iter.close();
+
+        verify(mockClient);
+    }
+
     /**
      * Test method for {@link MongoIteratorImpl#remove()}.
      */
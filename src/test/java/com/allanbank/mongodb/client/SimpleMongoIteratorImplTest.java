@@ -86,6 +86,21 @@ public class SimpleMongoIteratorImplTest {
         testInstance.close();
     }
 
+    /**
+     * Test method for {@link SimpleMongoIteratorImpl#getBlockedCount()}.
+     */
+    @Test
+    public void testGetBlockedCount() {
+        final SimpleMongoIteratorImpl<Document> testInstance = new SimpleMongoIteratorImpl<Document>(
+                Collections.singletonList((Document) EmptyDocument.INSTANCE));
+
+        // Never waits. Already in memory.
+        testInstance.next();
+        assertThat(testInstance.getBlockedCount(), is(0L));
+
+        testInstance.close();
+    }
+
     /**
      * Test method for {@link SimpleMongoIteratorImpl#hasNext()}.
      */
@@ -147,6 +162,21 @@ public class SimpleMongoIteratorImplTest {
         testInstance.close();
     }
 
+    /**
+     * Test method for {@link SimpleMongoIteratorImpl#setReadAhead(int)}.
+     */
+    @Test
+    public void testSetReadAhead() {
+        final SimpleMongoIteratorImpl<Document> testInstance = new SimpleMongoIteratorImpl<Document>(
+                Collections.singletonList((Document) EmptyDocument.INSTANCE));
+
+        // No need for batches. Already in memory.
+        testInstance.setReadAhead(10);
+        assertThat(testInstance.getReadAhead(), is(0));
+
+        testInstance.close();
+    }
+
     /**
      * Test method for {@link SimpleMongoIteratorImpl#stop()}.
      */
@@ -118,6 +118,35 @@ public class CursorCallbackTest {
         verify(mockCallback);
     }
 
+    /**
+     * Test method for {@link CursorCallback#setReadAhead(int)} .
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testConvertReplyWithReadAhead() {
+        final Query q = new Query("db", "c", BuilderFactory.start().build(),
+                null, 0, 0, 0, false, ReadPreference.PRIMARY, false, false,
+                false, false);
+        final Reply reply = reply();
+
+        final Callback<MongoIterator<Document>> mockCallback = createMock(Callback.class);
+
+        replay(mockCallback);
+
+        final CursorCallback callback = new CursorCallback(null, q, false,
+                mockCallback);
+        assertEquals(1, callback.getReadAhead());
+        callback.setReadAhead(4);
+        assertEquals(4, callback.getReadAhead());
+
+        callback.setAddress("server");
+        final MongoIteratorImpl mIter = (MongoIteratorImpl) callback
+                .convert(reply);
+        assertEquals(4, mIter.getReadAhead());
+
+        verify(mockCallback);
+    }
+
     /**
      * Test method for {@link CursorCallback#getAddress()} and
      * {@link CursorCallback#setAddress}.
@@ -31,8 +31,10 @@ import static org.easymock.EasyMock.verify;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -643,6 +645,138 @@ public class CursorStreamingCallbackTest {
         verify(mockClient, mockCallback);
     }
 
+    /**
+     * Test method for {@link CursorStreamingCallback#startStreaming(long, int)}
+     * after the stream has been closed.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testStreamAfterClose() {
+
+        final Client mockClient = createMock(Client.class);
+        final StreamCallback<Document> mockCallback = createMock(StreamCallback.class);
+
+        final CursorStreamingCallback qsCallback = new CursorStreamingCallback(
+                mockClient, myQuery, false, mockCallback);
+
+        mockClient.send(anyObject(KillCursors.class),
+                isNull(ReplyCallback.class));
+        expectLastCall();
+
+        replay(mockClient, mockCallback);
+
+        qsCallback.setAddress(myAddress);
+        qsCallback.close();
+        stream(qsCallback, 10);
+
+        verify(mockClient, mockCallback);
+    }
+
+    /**
+     * Test method for {@link CursorStreamingCallback} streaming the first and
+     * second batch.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testStreamAskForMore() {
+
+        final Client mockClient = createMock(Client.class);
+        final StreamCallback<Document> mockCallback = createMock(StreamCallback.class);
+
+        final CursorStreamingCallback qsCallback = new CursorStreamingCallback(
+                mockClient, myQuery, false, mockCallback);
+
+        mockClient.send(anyObject(GetMore.class), eq(qsCallback));
+        expectLastCall();
+        for (final Document doc : myDocs) {
+            mockCallback.callback(doc);
+            expectLastCall();
+        }
+        for (final Document doc : myDocs) {
+            mockCallback.callback(doc);
+            expectLastCall();
+        }
+        mockCallback.done();
+        expectLastCall();
+
+        replay(mockClient, mockCallback);
+
+        qsCallback.setAddress(myAddress);
+        stream(qsCallback, 10);
+        stream(qsCallback, 0);
+
+        verify(mockClient, mockCallback);
+    }
+
+    /**
+     * Test method for {@link CursorStreamingCallback#startStreaming(long, int)}
+     * for replies that are not streamed.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testStreamNotAccepted() {
+
+        final Client mockClient = createMock(Client.class);
+        final StreamCallback<Document> mockCallback = createMock(StreamCallback.class);
+
+        replay(mockClient, mockCallback);
+
+        CursorStreamingCallback qsCallback = new CursorStreamingCallback(
+                mockClient, myQuery, false, mockCallback);
+
+        // No address yet.
+        assertFalse(qsCallback.startStreaming(0, myDocs.size()));
+
+        // Single documents may be errors.
+        qsCallback.setAddress(myAddress);
+        assertFalse(qsCallback.startStreaming(0, 1));
+
+        // Commands are translated.
+        qsCallback = new CursorStreamingCallback(mockClient, myQuery, true,
+                mockCallback);
+        qsCallback.setAddress(myAddress);
+        assertFalse(qsCallback.startStreaming(0, myDocs.size()));
+
+        verify(mockClient, mockCallback);
+    }
+
+    /**
+     * Test method for {@link CursorStreamingCallback} streaming more documents
+     * than the limit.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testStreamOverLimit() {
+        final int batchSize = 5;
+        final int limit = 4;
+        myQuery = new Query("db", "c", myDocs.get(0), myDocs.get(0), batchSize,
+                limit, 0, false, ReadPreference.PRIMARY, false, false, false,
+                false);
+
+        final Client mockClient = createMock(Client.class);
+        final StreamCallback<Document> mockCallback = createMock(StreamCallback.class);
+
+        final CursorStreamingCallback qsCallback = new CursorStreamingCallback(
+                mockClient, myQuery, false, mockCallback);
+
+        mockClient.send(anyObject(KillCursors.class),
+                isNull(ReplyCallback.class));
+        expectLastCall();
+        for (int i = 0; i < limit; ++i) {
+            mockCallback.callback(myDocs.get(i));
+            expectLastCall();
+        }
+        mockCallback.done();
+        expectLastCall();
+
+        replay(mockClient, mockCallback);
+
+        qsCallback.setAddress(myAddress);
+        stream(qsCallback, 10);
+
+        verify(mockClient, mockCallback);
+    }
+
     /**
      * Test method for {@link CursorStreamingCallback} getting all of the
      * documents in one batch.
@@ -761,4 +895,25 @@ public class CursorStreamingCallbackTest {
 
         verify(mockClient, mockCallback);
     }
+
+    /**
+     * Streams the test documents to the callback.
+     *
+     * @param callback
+     *            The callback to stream the documents to.
+     * @param cursorId
+     *            The cursor id for the reply.
+     */
+    private void stream(final CursorStreamingCallback callback,
+            final long cursorId) {
+        assertTrue(callback.startStreaming(cursorId, myDocs.size()));
+        try {
+            for (final Document doc : myDocs) {
+                callback.streamed(doc);
+            }
+        }
+        finally {
+            callback.finishStreaming();
+        }
+    }
 }
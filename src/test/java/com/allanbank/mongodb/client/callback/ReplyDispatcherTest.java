@@ -0,0 +1,334 @@
+/*
+ * #%L
+ * ReplyDispatcherTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.callback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.client.message.Reply;
+
+/**
+ * ReplyDispatcherTest provides tests for the {@link ReplyDispatcher} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class ReplyDispatcherTest {
+
+    /** The dispatcher being tested. */
+    private ReplyDispatcher myDispatcher;
+
+    /**
+     * Cleans up the test dispatcher.
+     */
+    @After
+    public void tearDown() {
+        if (myDispatcher != null) {
+            myDispatcher.close();
+            myDispatcher = null;
+        }
+    }
+
+    /**
+     * Test method for {@link ReplyDispatcher#close()}.
+     */
+    @Test
+    public void testClose() {
+        myDispatcher = new ReplyDispatcher(1, 8,
+                Executors.defaultThreadFactory());
+        myDispatcher.close();
+
+        final RecordingCallback callback = new RecordingCallback(0);
+        assertFalse(myDispatcher.dispatch(callback, reply(1)));
+        assertFalse(myDispatcher.dispatch(callback, new Throwable()));
+    }
+
+    /**
+     * Test method for
+     * {@link ReplyDispatcher#dispatch(ReplyCallback, Reply)}.
+     *
+     * @throws InterruptedException
+     *             On a failure to wait for the callbacks.
+     */
+    @Test
+    public void testDispatch() throws InterruptedException {
+        final int count = 500;
+
+        myDispatcher = new ReplyDispatcher(4, 16,
+                Executors.defaultThreadFactory());
+        assertEquals(4, myDispatcher.getStripeCount());
+
+        final List<RecordingCallback> callbacks = new ArrayList<RecordingCallback>();
+        for (int i = 0; i < 10; ++i) {
+            callbacks.add(new RecordingCallback(count));
+        }
+
+        for (int i = 0; i < count; ++i) {
+            for (final RecordingCallback callback : callbacks) {
+                // Retry until the stripe has room to keep the order.
+                while (!myDispatcher.dispatch(callback, reply(i))) {
+                    Thread.yield();
+                }
+            }
+        }
+
+        for (final RecordingCallback callback : callbacks) {
+            assertTrue(callback.await());
+
+            // Ordering is preserved for each callback.
+            assertEquals(count, callback.getReplies().size());
+            for (int i = 0; i < count; ++i) {
+                assertEquals(i, callback.getReplies().get(i).getResponseToId());
+            }
+        }
+
+        assertEquals(0, myDispatcher.getQueueDepth());
+        assertTrue(myDispatcher.getMaxQueueDepth() <= 16);
+        assertEquals(10L * count, myDispatcher.getDispatchedCount());
+        assertTrue(0 <= myDispatcher
+                .getAverageDispatchLatency(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Test method for
+     * {@link ReplyDispatcher#dispatch(ReplyCallback, Reply)}.
+     *
+     * @throws InterruptedException
+     *             On a failure to wait for the callbacks.
+     */
+    @Test
+    public void testDispatchFromDispatchThread() throws InterruptedException {
+        myDispatcher = new ReplyDispatcher(1, 8,
+                Executors.defaultThreadFactory());
+
+        final RecordingCallback nested = new RecordingCallback(1);
+        final RecordingCallback callback = new RecordingCallback(1) {
+            @Override
+            public void callback(final Reply result) {
+                // Same stripe - must not wait on itself.
+                nested.myDispatched = myDispatcher.dispatch(nested, result);
+                super.callback(result);
+            }
+        };
+
+        assertTrue(myDispatcher.dispatch(callback, reply(1)));
+        assertTrue(callback.await());
+
+        // Queued on the stripe without waiting and delivered after.
+        assertTrue(nested.await());
+        assertTrue(nested.myDispatched);
+        assertEquals(2, myDispatcher.getDispatchedCount());
+    }
+
+    /**
+     * Test method for
+     * {@link ReplyDispatcher#dispatch(ReplyCallback, Throwable)}.
+     *
+     * @throws InterruptedException
+     *             On a failure to wait for the callbacks.
+     */
+    @Test
+    public void testDispatchError() throws InterruptedException {
+        myDispatcher = new ReplyDispatcher(2, 8,
+                Executors.defaultThreadFactory());
+
+        final Throwable thrown = new Throwable();
+        final RecordingCallback callback = new RecordingCallback(1);
+
+        assertTrue(myDispatcher.dispatch(callback, thrown));
+        assertTrue(callback.await());
+        assertSame(thrown, callback.getError());
+        assertTrue(callback.getReplies().isEmpty());
+    }
+
+    /**
+     * Test method for
+     * {@link ReplyDispatcher#dispatch(ReplyCallback, Reply)}.
+     *
+     * @throws InterruptedException
+     *             On a failure to wait for the callbacks.
+     */
+    @Test
+    public void testDispatchWhenFull() throws InterruptedException {
+        myDispatcher = new ReplyDispatcher(1, 1,
+                Executors.defaultThreadFactory());
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingCallback callback = new RecordingCallback(2) {
+            @Override
+            public void callback(final Reply result) {
+                started.countDown();
+                try {
+                    release.await();
+                }
+                catch (final InterruptedException e) {
+                    // Fall through.
+                }
+                super.callback(result);
+            }
+        };
+
+        try {
+            // First is being delivered. Second is queued.
+            assertTrue(myDispatcher.dispatch(callback, reply(1)));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertTrue(myDispatcher.dispatch(callback, reply(2)));
+            assertEquals(1, myDispatcher.getQueueDepth());
+
+            // The third is rejected without waiting.
+            final long start = System.nanoTime();
+            assertFalse(myDispatcher.dispatch(callback, reply(3)));
+            assertFalse(myDispatcher.dispatch(callback, new Throwable()));
+            final long waited = TimeUnit.NANOSECONDS.toMillis(System
+                    .nanoTime() - start);
+            assertTrue(waited < 500);
+            assertEquals(1, myDispatcher.getQueueDepth());
+            assertEquals(2, myDispatcher.getRejectedCount());
+        }
+        finally {
+            release.countDown();
+        }
+
+        // The queued replies are still delivered in order.
+        assertTrue(callback.await());
+        assertEquals(2, callback.getReplies().size());
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(i + 1, callback.getReplies().get(i)
+                    .getResponseToId());
+        }
+        assertEquals(1, myDispatcher.getMaxQueueDepth());
+    }
+
+    /**
+     * Creates a reply with the response id.
+     *
+     * @param id
+     *            The response id.
+     * @return The reply.
+     */
+    private Reply reply(final int id) {
+        return new Reply(id, 0, 0, Collections.<Document> emptyList(), false,
+                false, false, false);
+    }
+
+    /**
+     * RecordingCallback provides a callback to record the replies.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static class RecordingCallback
+            implements ReplyCallback {
+
+        /** Set by the test if a nested dispatch was accepted. */
+        protected volatile boolean myDispatched = true;
+
+        /** The latch counting down the expected replies. */
+        private final CountDownLatch myDone;
+
+        /** The error received. */
+        private volatile Throwable myError;
+
+        /** The replies received. */
+        private final List<Reply> myReplies = Collections
+                .synchronizedList(new ArrayList<Reply>());
+
+        /**
+         * Creates a new RecordingCallback.
+         *
+         * @param expected
+         *            The number of replies or errors expected.
+         */
+        public RecordingCallback(final int expected) {
+            myDone = new CountDownLatch(expected);
+        }
+
+        /**
+         * Waits for the expected replies.
+         *
+         * @return True if the replies were received.
+         * @throws InterruptedException
+         *             On a failure to wait.
+         */
+        public boolean await() throws InterruptedException {
+            return myDone.await(10, TimeUnit.SECONDS);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void callback(final Reply result) {
+            myReplies.add(result);
+            myDone.countDown();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void exception(final Throwable thrown) {
+            myError = thrown;
+            myDone.countDown();
+        }
+
+        /**
+         * Returns the error received.
+         *
+         * @return The error received.
+         */
+        public Throwable getError() {
+            return myError;
+        }
+
+        /**
+         * Returns the replies received.
+         *
+         * @return The replies received.
+         */
+        public List<Reply> getReplies() {
+            return myReplies;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Overridden to return false.
+         * </p>
+         */
+        @Override
+        public boolean isLightWeight() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * #%L
+ * ScramKeyCacheTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.connection.auth;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.security.sasl.SaslException;
+
+import org.junit.Test;
+
+/**
+ * ScramKeyCacheTest provides tests for the {@link ScramKeyCache} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class ScramKeyCacheTest {
+
+    /** The UTF-8 encoding. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Test method for {@link ScramKeyCache#abandon(byte[])}.
+     *
+     * @throws SaslException
+     *             On a test failure.
+     * @throws InterruptedException
+     *             On a test failure.
+     */
+    @Test
+    public void testAbandonWakesWaiter() throws SaslException,
+            InterruptedException {
+        final ScramKeyCache cache = new ScramKeyCache(2);
+        final byte[] lookupKey = cache.lookupKey("user",
+                "pencil".getBytes(UTF_8), new byte[] { 1, 2, 3 }, 4096);
+
+        // This thread derives the keys.
+        assertThat(cache.find(lookupKey, new byte[20], new byte[20]),
+                is(false));
+
+        final AtomicBoolean found = new AtomicBoolean(true);
+        final Thread waiter = startFind(cache, lookupKey, new byte[20],
+                new byte[20], found);
+
+        cache.abandon(lookupKey);
+        waiter.join(TimeUnit.SECONDS.toMillis(10));
+
+        // The waiter now derives the keys.
+        assertThat(waiter.isAlive(), is(false));
+        assertThat(found.get(), is(false));
+        assertThat(cache.getMissCount(), is(2L));
+    }
+
+    /**
+     * Test method for {@link ScramKeyCache#find(byte[], byte[], byte[])}.
+     *
+     * @throws SaslException
+     *             On a test failure.
+     */
+    @Test
+    public void testFindAndPut() throws SaslException {
+        final ScramKeyCache cache = new ScramKeyCache(2);
+
+        final byte[] salt = new byte[] { 1, 2, 3 };
+        final byte[] lookupKey = cache.lookupKey("user",
+                "pencil".getBytes(UTF_8), salt, 4096);
+        final byte[] clientKey = new byte[20];
+        final byte[] serverKey = new byte[20];
+
+        assertThat(cache.find(lookupKey, clientKey, serverKey), is(false));
+        assertThat(cache.getMissCount(), is(1L));
+
+        final byte[] derivedClient = key(1);
+        final byte[] derivedServer = key(2);
+        cache.put(lookupKey, derivedClient, derivedServer, 1000);
+
+        // Copies are stored.
+        derivedClient[0] = 0;
+        assertThat(cache.find(lookupKey, clientKey, serverKey), is(true));
+        assertArrayEquals(key(1), clientKey);
+        assertArrayEquals(key(2), serverKey);
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getDerivationNanos(), is(1000L));
+
+        // Wrong sized arrays are a miss.
+        assertThat(cache.find(lookupKey, new byte[32], serverKey), is(false));
+
+        cache.clear();
+        assertThat(cache.size(), is(0));
+        assertThat(cache.find(lookupKey, clientKey, serverKey), is(false));
+    }
+
+    /**
+     * Test method for {@link ScramKeyCache#find(byte[], byte[], byte[])}
+     * waiting for another thread to derive the keys.
+     *
+     * @throws SaslException
+     *             On a test failure.
+     * @throws InterruptedException
+     *             On a test failure.
+     */
+    @Test
+    public void testFindWaitsForDerivation() throws SaslException,
+            InterruptedException {
+        final ScramKeyCache cache = new ScramKeyCache(2);
+        final byte[] lookupKey = cache.lookupKey("user",
+                "pencil".getBytes(UTF_8), new byte[] { 1, 2, 3 }, 4096);
+
+        // This thread derives the keys.
+        assertThat(cache.find(lookupKey, new byte[20], new byte[20]),
+                is(false));
+
+        final byte[] clientKey = new byte[20];
+        final byte[] serverKey = new byte[20];
+        final AtomicBoolean found = new AtomicBoolean(false);
+        final Thread waiter = startFind(cache, lookupKey, clientKey,
+                serverKey, found);
+
+        cache.put(lookupKey, key(1), key(2), 1000);
+        waiter.join(TimeUnit.SECONDS.toMillis(10));
+
+        // The waiter used the derived keys.
+        assertThat(waiter.isAlive(), is(false));
+        assertThat(found.get(), is(true));
+        assertArrayEquals(key(1), clientKey);
+        assertArrayEquals(key(2), serverKey);
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(1L));
+    }
+
+    /**
+     * Test method for {@link ScramKeyCache#getDefault()}.
+     */
+    @Test
+    public void testGetDefault() {
+        assertThat(ScramKeyCache.getDefault(),
+                sameInstance(ScramKeyCache.getDefault()));
+        assertThat(ScramKeyCache.getDefault().getMaxEntries(),
+                is(ScramKeyCache.DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * Test method for {@link ScramKeyCache#lookupKey}.
+     *
+     * @throws SaslException
+     *             On a test failure.
+     */
+    @Test
+    public void testLookupKey() throws SaslException {
+        final ScramKeyCache cache = new ScramKeyCache(2);
+        final byte[] password = "pencil".getBytes(UTF_8);
+        final byte[] salt = new byte[] { 1, 2, 3 };
+
+        final byte[] key = cache.lookupKey("user", password, salt, 4096);
+        assertArrayEquals(key, cache.lookupKey("user", password, salt, 4096));
+
+        assertThat(cache.lookupKey("user", password, salt, 4097),
+                not(key));
+        assertThat(cache.lookupKey("user2", password, salt, 4096),
+                not(key));
+        assertThat(cache.lookupKey("user", "pencil2".getBytes(UTF_8), salt,
+                4096), not(key));
+        assertThat(cache.lookupKey("user", password, new byte[] { 1, 2 },
+                4096), not(key));
+
+        // Each cache has its own secret.
+        assertThat(new ScramKeyCache(2).lookupKey("user", password, salt,
+                4096), not(key));
+    }
+
+    /**
+     * Test method for {@link ScramKeyCache#put} evicting the least recently
+     * used keys.
+     *
+     * @throws SaslException
+     *             On a test failure.
+     */
+    @Test
+    public void testPutEvicts() throws SaslException {
+        final ScramKeyCache cache = new ScramKeyCache(2);
+        final byte[] salt = new byte[] { 1, 2, 3 };
+        final byte[] key1 = cache.lookupKey("user1", salt, salt, 1);
+        final byte[] key2 = cache.lookupKey("user2", salt, salt, 1);
+        final byte[] key3 = cache.lookupKey("user3", salt, salt, 1);
+        final byte[] clientKey = new byte[20];
+        final byte[] serverKey = new byte[20];
+
+        cache.put(key1, key(1), key(1), 0);
+        cache.put(key2, key(2), key(2), 0);
+        // Touch 1 so 2 is the eldest.
+        assertThat(cache.find(key1, clientKey, serverKey), is(true));
+        cache.put(key3, key(3), key(3), 0);
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.find(key1, clientKey, serverKey), is(true));
+        assertThat(cache.find(key2, clientKey, serverKey), is(false));
+        assertThat(cache.find(key3, clientKey, serverKey), is(true));
+
+        // Disabled.
+        final ScramKeyCache disabled = new ScramKeyCache(0);
+        disabled.put(key1, key(1), key(1), 10);
+        assertThat(disabled.size(), is(0));
+        assertThat(disabled.getDerivationNanos(), is(10L));
+    }
+
+    /**
+     * Starts a thread to find the keys and waits for it to block waiting for
+     * the keys to be derived.
+     *
+     * @param cache
+     *            The cache to find the keys in.
+     * @param lookupKey
+     *            The lookup key.
+     * @param clientKey
+     *            The array for the client key.
+     * @param serverKey
+     *            The array for the server key.
+     * @param found
+     *            Set to the result of the find.
+     * @return The started thread.
+     * @throws InterruptedException
+     *             On a failure waiting for the thread to block.
+     */
+    private Thread startFind(final ScramKeyCache cache,
+            final byte[] lookupKey, final byte[] clientKey,
+            final byte[] serverKey, final AtomicBoolean found)
+            throws InterruptedException {
+        final Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                found.set(cache.find(lookupKey, clientKey, serverKey));
+            }
+        };
+        waiter.start();
+
+        final long deadline = System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(10);
+        while ((waiter.getState() != Thread.State.WAITING)
+                && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(5);
+        }
+        assertThat(waiter.getState(), is(Thread.State.WAITING));
+
+        return waiter;
+    }
+
+    /**
+     * Creates a 20 byte key filled with the value.
+     *
+     * @param value
+     *            The value for the key.
+     * @return The key.
+     */
+    private byte[] key(final int value) {
+        final byte[] key = new byte[20];
+        for (int i = 0; i < key.length; ++i) {
+            key[i] = (byte) (value + i);
+        }
+        return key;
+    }
+}
@@ -182,6 +182,52 @@ public class ScramSaslClientTest {
                         + "p=v0X8v3Bz2T0CJGbJQyF0X+HI4Ts="));
     }
 
+    /**
+     * Test method for {@link ScramSaslClient#createProof(byte[])} using the
+     * cached keys.
+     *
+     * @throws SaslException
+     *             On a test failure.
+     */
+    @Test
+    public void testCreateProofUsesKeyCache() throws SaslException {
+        final ScramKeyCache cache = new ScramKeyCache(4);
+        final byte[] challenge = ("r=fyko+d2lbbFgONRv9qkxdawL"
+                + "3rfcNHYJY1ZVvWVs7j,s=QSXCR+Q6sek8bf92,i=4096")
+                .getBytes(ScramSaslClient.UTF_8);
+        final String expectedProof = "c=biws,r=fyko+d2lbbFgONRv9qkxdawL"
+                + "3rfcNHYJY1ZVvWVs7j,p=v0X8v3Bz2T0CJGbJQyF0X+HI4Ts=";
+
+        for (int i = 0; i < 3; ++i) {
+            final ScramSaslClient client = new TestRfcScramSaslClient(
+                    new TestHandler("user", "pencil"), cache);
+
+            client.evaluateChallenge(null);
+            final byte[] proof = client.evaluateChallenge(challenge);
+            assertThat(new String(proof, ScramSaslClient.UTF_8),
+                    is(expectedProof));
+
+            // The server signature is computed from the cached server key.
+            client.evaluateChallenge("v=rmF9pqV8S7suAoZWja4dJRkFsKQ="
+                    .getBytes(ScramSaslClient.UTF_8));
+            assertThat(client.isComplete(), is(true));
+        }
+
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(2L));
+        assertThat(cache.size(), is(1));
+
+        // A different password is not found.
+        final ScramSaslClient client = new TestRfcScramSaslClient(
+                new TestHandler("user", "pencil2"), cache);
+        client.evaluateChallenge(null);
+        final byte[] proof = client.evaluateChallenge(challenge);
+        assertThat(new String(proof, ScramSaslClient.UTF_8),
+                not(expectedProof));
+        assertThat(cache.getMissCount(), is(2L));
+        assertThat(cache.size(), is(2));
+    }
+
     /**
      * Test method for {@link ScramSaslClient#createProof(byte[])}.
      *
@@ -1061,6 +1107,19 @@ public class ScramSaslClientTest {
             super(callbackHandler);
         }
 
+        /**
+         * Creates a new TestRfcScramSaslClient.
+         *
+         * @param callbackHandler
+         *            The handler for the user name and password.
+         * @param keyCache
+         *            The cache of the derived keys.
+         */
+        protected TestRfcScramSaslClient(final CallbackHandler callbackHandler,
+                final ScramKeyCache keyCache) {
+            super(callbackHandler, keyCache);
+        }
+
         /**
          * {@inheritDoc}
          * <p>
@@ -42,6 +42,9 @@ import org.junit.Test;
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoDbException;
 import com.allanbank.mongodb.ReadPreference;
+import com.allanbank.mongodb.ServerSelectionStrategy;
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.builder.BuilderFactory;
 import com.allanbank.mongodb.builder.Find;
 import com.allanbank.mongodb.client.ClusterType;
 import com.allanbank.mongodb.client.Message;
@@ -297,6 +300,85 @@ public class ShardedConnectionTest {
         verify(mockConnection, mockSelector, mockFactory);
     }
 
+    /**
+     * Test method for
+     * {@link ShardedConnection#findPotentialKeys(Message, Message)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testFindPotentialKeysPowerOfTwoChoices() throws IOException {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        config.setServerSelectionStrategy(ServerSelectionStrategy.POWER_OF_TWO_CHOICES);
+        final Cluster cluster = new Cluster(config, ClusterType.SHARDED);
+        final Server server = cluster.add("localhost:27017");
+        final Server other = cluster.add("localhost:27018");
+
+        final Document isMaster = BuilderFactory.start().add("ismaster", true)
+                .build();
+        server.update(isMaster);
+        other.update(isMaster);
+        server.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        other.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(10));
+
+        // Stall the main server.
+        for (int i = 0; i < 10; ++i) {
+            server.requestSent();
+        }
+
+        final Message msg1 = new Command("db", "coll", Find.ALL);
+
+        final Connection mockConnection = createMock(Connection.class);
+        final Connection mockConnection2 = createMock(Connection.class);
+        final ServerSelector mockSelector = createMock(ServerSelector.class);
+        final ProxiedConnectionFactory mockFactory = createMock(ProxiedConnectionFactory.class);
+
+        final Capture<PropertyChangeListener> listener = new Capture<PropertyChangeListener>();
+        final Capture<PropertyChangeListener> listener2 = new Capture<PropertyChangeListener>();
+
+        mockConnection.addPropertyChangeListener(capture(listener));
+        expectLastCall();
+
+        expect(mockFactory.connect(other, config)).andReturn(mockConnection2);
+        mockConnection2.addPropertyChangeListener(capture(listener2));
+        expectLastCall();
+
+        replay(mockConnection, mockConnection2, mockSelector, mockFactory);
+
+        final ShardedConnection conn = new ShardedConnection(mockConnection,
+                server, cluster, mockSelector, mockFactory, config);
+
+        // Only connected servers are chosen.
+        List<Server> servers = conn.findPotentialKeys(msg1, null);
+        assertThat(servers.size(), is(1));
+        assertThat(servers.get(0), is(server));
+
+        assertThat(conn.connect(other), is(mockConnection2));
+
+        servers = conn.findPotentialKeys(msg1, null);
+        assertThat(servers.size(), is(2));
+        assertThat(servers.get(0), is(other));
+        assertThat(servers.get(1), is(server));
+
+        verify(mockConnection, mockConnection2, mockSelector, mockFactory);
+
+        // For close.
+        reset(mockConnection, mockConnection2, mockSelector, mockFactory);
+        mockConnection.removePropertyChangeListener(listener.getValue());
+        expectLastCall();
+        mockConnection2.removePropertyChangeListener(listener2.getValue());
+        expectLastCall();
+        mockConnection.close();
+        expectLastCall();
+        mockConnection2.close();
+        expectLastCall();
+
+        replay(mockConnection, mockConnection2, mockSelector, mockFactory);
+        conn.close();
+        verify(mockConnection, mockConnection2, mockSelector, mockFactory);
+    }
+
     /**
      * Test method for
      * {@link ShardedConnection#findPotentialKeys(Message, Message)}.
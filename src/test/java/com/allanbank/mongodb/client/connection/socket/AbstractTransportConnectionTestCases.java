@@ -33,6 +33,7 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -54,10 +55,15 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -75,6 +81,7 @@ import com.allanbank.mongodb.Callback;
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.MongoDbException;
 import com.allanbank.mongodb.ReadPreference;
+import com.allanbank.mongodb.StreamCallback;
 import com.allanbank.mongodb.Version;
 import com.allanbank.mongodb.bson.Document;
 import com.allanbank.mongodb.bson.builder.BuilderFactory;
@@ -91,6 +98,8 @@ import com.allanbank.mongodb.client.MockSocketServer;
 import com.allanbank.mongodb.client.Operation;
 import com.allanbank.mongodb.client.PoisonMessage;
 import com.allanbank.mongodb.client.VersionRange;
+import com.allanbank.mongodb.client.callback.CursorStreamingCallback;
+import com.allanbank.mongodb.client.callback.ReplyDispatcher;
 import com.allanbank.mongodb.client.callback.FutureReplyCallback;
 import com.allanbank.mongodb.client.connection.Connection;
 import com.allanbank.mongodb.client.connection.SocketConnectionListener;
@@ -164,6 +173,9 @@ public abstract class AbstractTransportConnectionTestCases {
     /** The collector for the connection metrics. */
     protected ConnectionMetricsCollector myCollector;
 
+    /** The dispatcher for the test connection's callbacks. May be null. */
+    protected ReplyDispatcher myDispatcher = null;
+
     /** The test connection. */
     protected TransportConnection myTestConnection = null;
 
@@ -194,6 +206,10 @@ public abstract class AbstractTransportConnectionTestCases {
         if (myTestConnection != null) {
             myTestConnection.close();
         }
+        if (myDispatcher != null) {
+            myDispatcher.close();
+            myDispatcher = null;
+        }
         myCollector = null;
         myTestServer = null;
         ourServer.clear();
@@ -255,9 +271,11 @@ public abstract class AbstractTransportConnectionTestCases {
      *
      * @throws IOException
      *             On a failure connecting to the Mock MongoDB server.
+     * @throws InterruptedException
+     *             On a failure waiting for the threads to close.
      */
     @Test
-    public void testClose() throws IOException {
+    public void testClose() throws IOException, InterruptedException {
 
         final MongoClientConfiguration config = new MongoClientConfiguration();
         config.setReadTimeout(100);
@@ -267,24 +285,14 @@ public abstract class AbstractTransportConnectionTestCases {
         assertTrue("Should have connected to the server.",
                 ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
 
-        final Thread[] threads = new Thread[Thread.activeCount()];
-        Thread.enumerate(threads);
-
-        Thread receive = null;
-        for (final Thread t : threads) {
-            if (t.getName().contains("<--")) {
-                assertNull("Found 2 receive threads: " + t.getName(), receive);
-                receive = t;
-            }
-        }
-        assertNotNull("Did not find the receive thread", receive);
+        final Thread receive = findReceiveThread();
 
         myTestConnection.close();
 
         assertTrue("Should have disconnected from the server.",
                 ourServer.waitForDisconnect(TimeUnit.SECONDS.toMillis(10)));
 
-        assertFalse("Receive thread should have died.", receive.isAlive());
+        assertReceiveThreadDied(receive, 0);
         assertFalse("Connection should be closed.", myTestConnection.isOpen());
         assertThat(myTestConnection.isAvailable(), is(false));
     }
@@ -1533,6 +1541,11 @@ public abstract class AbstractTransportConnectionTestCases {
                 Collections.singletonList(doc), false, false, false, false);
 
         assertEquals("Did not receive the expected reply.", expected, reply);
+
+        // The server tracks the request.
+        assertThat(myTestServer.getPendingRequests(), is(0));
+        assertThat(myTestServer.getRequestLatency() < Double.MAX_VALUE,
+                is(true));
     }
 
     /**
@@ -1678,17 +1691,7 @@ public abstract class AbstractTransportConnectionTestCases {
         assertTrue("Should have connected to the server.",
                 ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
 
-        final Thread[] threads = new Thread[Thread.activeCount()];
-        Thread.enumerate(threads);
-
-        Thread receive = null;
-        for (final Thread t : threads) {
-            if (t.getName().contains("<--")) {
-                assertNull("Found 2 receive threads: " + t.getName(), receive);
-                receive = t;
-            }
-        }
-        assertNotNull("Did not find the receive thread", receive);
+        final Thread receive = findReceiveThread();
 
         final FutureReplyCallback future = new FutureReplyCallback();
         final GetLastError error = new GetLastError("fo", false, false, 0, 0);
@@ -1713,7 +1716,7 @@ public abstract class AbstractTransportConnectionTestCases {
         Thread.sleep(100);
 
         assertTrue(myTestConnection.isIdle());
-        assertFalse("Receive thread should have died.", receive.isAlive());
+        assertReceiveThreadDied(receive, 0);
         assertFalse(myTestConnection.isOpen());
         assertEquals(0, myTestConnection.getPendingCount());
     }
@@ -1904,6 +1907,238 @@ public abstract class AbstractTransportConnectionTestCases {
         }
     }
 
+    /**
+     * Test method for {@link TransportConnection} streaming the documents from
+     * a reply.
+     *
+     * @throws IOException
+     *             On a failure connecting to the Mock MongoDB server.
+     * @throws InterruptedException
+     *             On a failure waiting for a reply.
+     */
+    @Test
+    public void testReadStreamingReply() throws IOException,
+            InterruptedException {
+        final DocumentBuilder builder = BuilderFactory.start();
+        final List<Document> docs = new ArrayList<Document>();
+        docs.add(builder.reset().add("a", 1).build());
+        docs.add(builder.reset().add("a", 2).build());
+        docs.add(builder.reset().add("a", 3).build());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Reply reply = new Reply(1, 0, 0, docs, false, false, false,
+                false);
+        reply.write(0, new BsonOutputStream(out));
+        ourServer.setReplies(Arrays.asList(out.toByteArray()));
+
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        config.setStreamingRepliesEnabled(true);
+        connect(config);
+
+        assertTrue("Should have connected to the server.",
+                ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
+
+        final List<Document> received = new ArrayList<Document>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final StreamCallback<Document> results = new StreamCallback<Document>() {
+            @Override
+            public void callback(final Document result) {
+                received.add(result);
+            }
+
+            @Override
+            public void done() {
+                done.countDown();
+            }
+
+            @Override
+            public void exception(final Throwable thrown) {
+                fail(thrown.getMessage());
+            }
+        };
+
+        final Client mockClient = createMock(Client.class);
+        replay(mockClient);
+
+        final Query query = new Query("db", "c", builder.reset().build(),
+                builder.build(), 0, 0, 0, false, ReadPreference.PRIMARY, false, false,
+                false, false);
+        myTestConnection.send(query, new CursorStreamingCallback(mockClient,
+                query, false, results));
+
+        assertTrue("Should receive the request after flush.",
+                ourServer.waitForRequest(1, TimeUnit.SECONDS.toMillis(10)));
+        assertTrue("Should have streamed the documents.",
+                done.await(60, TimeUnit.SECONDS));
+
+        assertThat(received, is(docs));
+
+        verify(mockClient);
+    }
+
+    /**
+     * Test method for {@link TransportConnection} not streaming the documents
+     * from a reply on the receive thread when there is a dispatcher.
+     *
+     * @throws IOException
+     *             On a failure connecting to the Mock MongoDB server.
+     * @throws InterruptedException
+     *             On a failure waiting for a reply.
+     */
+    @Test
+    public void testReadStreamingReplyWithDispatcher() throws IOException,
+            InterruptedException {
+        final DocumentBuilder builder = BuilderFactory.start();
+        final List<Document> docs = new ArrayList<Document>();
+        docs.add(builder.reset().add("a", 1).build());
+        docs.add(builder.reset().add("a", 2).build());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Reply reply = new Reply(1, 0, 0, docs, false, false, false,
+                false);
+        reply.write(0, new BsonOutputStream(out));
+        ourServer.setReplies(Arrays.asList(out.toByteArray()));
+
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        config.setStreamingRepliesEnabled(true);
+        myDispatcher = new ReplyDispatcher(1, 16,
+                Executors.defaultThreadFactory());
+        connect(config);
+
+        assertTrue("Should have connected to the server.",
+                ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
+
+        final List<Document> received = new ArrayList<Document>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final StreamCallback<Document> results = new StreamCallback<Document>() {
+            @Override
+            public void callback(final Document result) {
+                threads.add(Thread.currentThread());
+                received.add(result);
+            }
+
+            @Override
+            public void done() {
+                done.countDown();
+            }
+
+            @Override
+            public void exception(final Throwable thrown) {
+                fail(thrown.getMessage());
+            }
+        };
+
+        final Client mockClient = createMock(Client.class);
+        replay(mockClient);
+
+        final Query query = new Query("db", "c", builder.reset().build(),
+                builder.build(), 0, 0, 0, false, ReadPreference.PRIMARY, false, false,
+                false, false);
+        myTestConnection.send(query, new CursorStreamingCallback(mockClient,
+                query, false, results));
+
+        assertTrue("Should receive the request after flush.",
+                ourServer.waitForRequest(1, TimeUnit.SECONDS.toMillis(10)));
+        assertTrue("Should have received the documents.",
+                done.await(60, TimeUnit.SECONDS));
+
+        assertThat(received, is(docs));
+        assertEquals(1L, myDispatcher.getDispatchedCount());
+        for (final Thread thread : threads) {
+            assertThat(thread.getName(),
+                    startsWith("MongoDB Reply Dispatcher"));
+        }
+
+        verify(mockClient);
+    }
+
+    /**
+     * Test method for {@link TransportConnection} not streaming the documents
+     * from a reply on the receive thread when there is an executor.
+     *
+     * @throws IOException
+     *             On a failure connecting to the Mock MongoDB server.
+     * @throws InterruptedException
+     *             On a failure waiting for a reply.
+     */
+    @Test
+    public void testReadStreamingReplyWithExecutor() throws IOException,
+            InterruptedException {
+        final DocumentBuilder builder = BuilderFactory.start();
+        final List<Document> docs = new ArrayList<Document>();
+        docs.add(builder.reset().add("a", 1).build());
+        docs.add(builder.reset().add("a", 2).build());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Reply reply = new Reply(1, 0, 0, docs, false, false, false,
+                false);
+        reply.write(0, new BsonOutputStream(out));
+        ourServer.setReplies(Arrays.asList(out.toByteArray()));
+
+        final ExecutorService executor = Executors
+                .newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(runnable, "Test Executor");
+                    }
+                });
+        try {
+            final MongoClientConfiguration config = new MongoClientConfiguration();
+            config.setStreamingRepliesEnabled(true);
+            config.setExecutor(executor);
+            connect(config);
+
+            assertTrue("Should have connected to the server.",
+                    ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
+
+            final List<Document> received = new ArrayList<Document>();
+            final List<Thread> threads = new ArrayList<Thread>();
+            final CountDownLatch done = new CountDownLatch(1);
+            final StreamCallback<Document> results = new StreamCallback<Document>() {
+                @Override
+                public void callback(final Document result) {
+                    threads.add(Thread.currentThread());
+                    received.add(result);
+                }
+
+                @Override
+                public void done() {
+                    done.countDown();
+                }
+
+                @Override
+                public void exception(final Throwable thrown) {
+                    fail(thrown.getMessage());
+                }
+            };
+
+            final Client mockClient = createMock(Client.class);
+            replay(mockClient);
+
+            final Query query = new Query("db", "c", builder.reset().build(),
+                    builder.build(), 0, 0, 0, false, ReadPreference.PRIMARY,
+                    false, false, false, false);
+            myTestConnection.send(query, new CursorStreamingCallback(
+                    mockClient, query, false, results));
+
+            assertTrue("Should receive the request after flush.",
+                    ourServer.waitForRequest(1, TimeUnit.SECONDS.toMillis(10)));
+            assertTrue("Should have received the documents.",
+                    done.await(60, TimeUnit.SECONDS));
+
+            assertThat(received, is(docs));
+            for (final Thread thread : threads) {
+                assertThat(thread.getName(), is("Test Executor"));
+            }
+
+            verify(mockClient);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Test method for {@link TransportConnection}.
      *
@@ -2170,6 +2405,9 @@ public abstract class AbstractTransportConnectionTestCases {
         final List<Document> results = Collections.emptyList();
         myTestConnection.reply(new Reply(1, 1, 1, results, false, false, false,
                 false), message);
+
+        assertThat(myTestServer.getRequestLatency() < Double.MAX_VALUE,
+                is(true));
     }
 
     /**
@@ -2251,24 +2489,13 @@ public abstract class AbstractTransportConnectionTestCases {
         assertTrue("Should have connected to the server.",
                 ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
 
-        final Thread[] threads = new Thread[Thread.activeCount()];
-        Thread.enumerate(threads);
-        Thread receive = null;
-        for (final Thread t : threads) {
-            if (t.getName().contains("<--")) {
-                assertNull("Found 2 receive threads: " + t.getName(), receive);
-                receive = t;
-            }
-        }
-        assertNotNull("Did not find the receive thread", receive);
+        final Thread receive = findReceiveThread();
 
         myTestConnection.send(new PoisonMessage(new OutOfMemoryError(
                 "injected error")), null);
 
         // Receive should see the disconnect first.
-        receive.join(TimeUnit.SECONDS.toMillis(30));
-
-        assertFalse("Receive thread should have died.", receive.isAlive());
+        assertReceiveThreadDied(receive, TimeUnit.SECONDS.toMillis(30));
         assertFalse("Connection should be closed.", myTestConnection.isOpen());
 
         // // myTestConnection = null;
@@ -2292,24 +2519,13 @@ public abstract class AbstractTransportConnectionTestCases {
         assertTrue("Should have connected to the server.",
                 ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
 
-        final Thread[] threads = new Thread[Thread.activeCount()];
-        Thread.enumerate(threads);
-        Thread receive = null;
-        for (final Thread t : threads) {
-            if (t.getName().contains("<--")) {
-                assertNull("Found 2 receive threads: " + t.getName(), receive);
-                receive = t;
-            }
-        }
-        assertNotNull("Did not find the receive thread", receive);
+        final Thread receive = findReceiveThread();
 
         myTestConnection.send(new PoisonMessage(new IOException(
                 "injected error")), null);
 
         // Receive should see the disconnect first.
-        receive.join(TimeUnit.SECONDS.toMillis(30));
-
-        assertFalse("Receive thread should have died.", receive.isAlive());
+        assertReceiveThreadDied(receive, TimeUnit.SECONDS.toMillis(30));
         assertFalse("Connection should be closed.", myTestConnection.isOpen());
 
         // myTestConnection = null;
@@ -2334,24 +2550,13 @@ public abstract class AbstractTransportConnectionTestCases {
         assertTrue("Should have connected to the server.",
                 ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
 
-        final Thread[] threads = new Thread[Thread.activeCount()];
-        Thread.enumerate(threads);
-        Thread receive = null;
-        for (final Thread t : threads) {
-            if (t.getName().contains("<--")) {
-                assertNull("Found 2 receive threads: " + t.getName(), receive);
-                receive = t;
-            }
-        }
-        assertNotNull("Did not find the receive thread", receive);
+        final Thread receive = findReceiveThread();
 
         myTestConnection.send(new PoisonMessage(new MongoDbException(
                 "injected error")), null);
 
         // Receive should see the disconnect first.
-        receive.join(TimeUnit.SECONDS.toMillis(30));
-
-        assertFalse("Receive thread should have died.", receive.isAlive());
+        assertReceiveThreadDied(receive, TimeUnit.SECONDS.toMillis(30));
         assertFalse("Connection should be closed.", myTestConnection.isOpen());
 
         // myTestConnection = null;
@@ -2375,26 +2580,12 @@ public abstract class AbstractTransportConnectionTestCases {
         assertTrue("Should have connected to the server.",
                 ourServer.waitForClient(TimeUnit.SECONDS.toMillis(10)));
 
-        final Thread[] threads = new Thread[Thread.activeCount()];
-        Thread.enumerate(threads);
-
-        Thread receive = null;
-        for (final Thread t : threads) {
-            if (t.getName().contains("<--")) {
-                assertNull("Found 2 receive threads: " + t.getName(), receive);
-                receive = t;
-            }
-        }
-        assertNotNull("Did not find the receive thread", receive);
+        final Thread receive = findReceiveThread();
 
         assertTrue(ourServer.disconnectClient());
 
         // Receive should see the disconnect first.
-        receive.join(TimeUnit.SECONDS.toMillis(600));
-
-        assertFalse(
-                "Receive thread should have died: " + receive.getStackTrace(),
-                receive.isAlive());
+        assertReceiveThreadDied(receive, TimeUnit.SECONDS.toMillis(600));
         assertFalse("Connection should be closed.", myTestConnection.isOpen());
 
         // myTestConnection = null;
@@ -3111,6 +3302,49 @@ public abstract class AbstractTransportConnectionTestCases {
 
     }
 
+    /**
+     * Asserts that the receive thread located via {@link #findReceiveThread()}
+     * has died.
+     *
+     * @param receive
+     *            The receive thread.
+     * @param waitMillis
+     *            The number of milliseconds to wait for the thread to die. If
+     *            zero then the thread must have already died.
+     * @throws InterruptedException
+     *             On a failure waiting for the thread to die.
+     */
+    protected void assertReceiveThreadDied(final Thread receive,
+            final long waitMillis) throws InterruptedException {
+        if (0 < waitMillis) {
+            receive.join(waitMillis);
+        }
+
+        assertFalse("Receive thread should have died: "
+                + Arrays.toString(receive.getStackTrace()), receive.isAlive());
+    }
+
+    /**
+     * Locates the thread receiving replies for the {@link #myTestConnection}.
+     *
+     * @return The receive thread.
+     */
+    protected Thread findReceiveThread() {
+        final Thread[] threads = new Thread[Thread.activeCount()];
+        Thread.enumerate(threads);
+
+        Thread receive = null;
+        for (final Thread t : threads) {
+            if ((t != null) && t.getName().contains("<--")) {
+                assertNull("Found 2 receive threads: " + t.getName(), receive);
+                receive = t;
+            }
+        }
+        assertNotNull("Did not find the receive thread", receive);
+
+        return receive;
+    }
+
     /**
      * Creates the {@link TransportConnection}.
      *
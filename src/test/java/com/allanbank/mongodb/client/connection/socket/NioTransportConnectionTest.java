@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * NioTransportConnectionTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.allanbank.mongodb.client.connection.socket;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+
+import com.allanbank.mongodb.MongoClientConfiguration;
+import com.allanbank.mongodb.bson.io.StringDecoderCache;
+import com.allanbank.mongodb.bson.io.StringEncoderCache;
+import com.allanbank.mongodb.client.state.Server;
+import com.allanbank.mongodb.client.transport.Transport;
+import com.allanbank.mongodb.client.transport.TransportFactory;
+import com.allanbank.mongodb.client.transport.TransportOutputBuffer;
+import com.allanbank.mongodb.client.transport.nio.NioTransportFactory;
+
+/**
+ * AbstractTransportConnectionTestCases provides tests for the
+ * {@link TransportConnection} class when using the
+ * {@link NioTransportFactory}.
+ *
+ * @copyright 2011-2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class NioTransportConnectionTest
+        extends AbstractTransportConnectionTestCases {
+
+    /** The time to wait for the selector thread to stop. */
+    private static final long SELECTOR_STOP_MILLIS = 10000;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to wait for the connection to close. The selector thread
+     * stops, asynchronously, once the factory's last transport is closed.
+     * </p>
+     */
+    @Override
+    protected void assertReceiveThreadDied(final Thread receive,
+            final long waitMillis) throws InterruptedException {
+        if (0 < waitMillis) {
+            myTestConnection.waitForClosed((int) waitMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        assertFalse("Connection should be closed.", myTestConnection.isOpen());
+
+        receive.join(Math.max(waitMillis, SELECTOR_STOP_MILLIS));
+        assertFalse("Selector thread should have stopped.", receive.isAlive());
+    }
+
+    /**
+     * Creates the {@link TransportConnection} using a
+     * {@link NioTransportFactory}.
+     *
+     * @param server
+     *            The server to connect to.
+     * @param config
+     *            The configuration for the connection.
+     * @throws SocketException
+     *             On a failure connecting.
+     * @throws IOException
+     *             On a failure talking to the server.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void connect(final Server server,
+            final MongoClientConfiguration config) throws SocketException,
+            IOException {
+        myTestConnection = new TransportConnection(server, config, myCollector,
+                myDispatcher);
+
+        final TransportFactory factory = new NioTransportFactory();
+        final Transport<TransportOutputBuffer> transport = (Transport<TransportOutputBuffer>) factory
+                .createTransport(server, config, new StringEncoderCache(),
+                        new StringDecoderCache(), myTestConnection);
+
+        myTestConnection.setTransport(transport);
+        myTestConnection.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to locate the shared selector thread.
+     * </p>
+     */
+    @Override
+    protected Thread findReceiveThread() {
+        final Thread[] threads = new Thread[Thread.activeCount()];
+        Thread.enumerate(threads);
+
+        Thread receive = null;
+        for (final Thread t : threads) {
+            if ((t != null) && t.getName().startsWith("MongoDB NIO Selector")) {
+                receive = t;
+            }
+        }
+        assertNotNull("Did not find the selector thread", receive);
+
+        return receive;
+    }
+}
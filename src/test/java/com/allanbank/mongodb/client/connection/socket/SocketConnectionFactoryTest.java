@@ -23,6 +23,8 @@ package com.allanbank.mongodb.client.connection.socket;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -106,6 +108,25 @@ public class SocketConnectionFactoryTest {
 
     }
 
+    /**
+     * Test method for {@link SocketConnectionFactory#getDispatcher()}.
+     */
+    @Test
+    public void testGetDispatcher() {
+        final InetSocketAddress addr = ourServer.getInetSocketAddress();
+        final MongoClientConfiguration config = new MongoClientConfiguration(
+                addr);
+
+        myTestFactory = new SocketConnectionFactory(config);
+        assertNull(myTestFactory.getDispatcher());
+        myTestFactory.close();
+
+        config.setReplyDispatchThreads(2);
+        myTestFactory = new SocketConnectionFactory(config);
+        assertNotNull(myTestFactory.getDispatcher());
+        assertEquals(2, myTestFactory.getDispatcher().getStripeCount());
+    }
+
     /**
      * Test method for {@link SocketConnectionFactory#connect()} .
      *
@@ -59,7 +59,8 @@ public class TwoThreadTransportConnectionTest
     protected void connect(final Server server,
             final MongoClientConfiguration config) throws SocketException,
             IOException {
-        myTestConnection = new TransportConnection(server, config, myCollector);
+        myTestConnection = new TransportConnection(server, config, myCollector,
+                myDispatcher);
 
         final TransportFactory factory = new TwoThreadTransportFactory();
         final Transport<TransportOutputBuffer> transport = (Transport<TransportOutputBuffer>) factory
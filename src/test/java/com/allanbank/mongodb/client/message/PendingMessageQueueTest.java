@@ -33,6 +33,7 @@ import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 
 import com.allanbank.mongodb.LockType;
+import com.allanbank.mongodb.StandardWaitStrategy;
 import com.allanbank.mongodb.client.Message;
 import com.allanbank.mongodb.client.callback.ReplyCallback;
 
@@ -1197,6 +1198,53 @@ public class PendingMessageQueueTest {
         cThread.join(TimeUnit.SECONDS.toMillis(30));
     }
 
+    /**
+     * Test method for a single producer and fast consumer using each of the
+     * {@link StandardWaitStrategy wait strategies}.
+     *
+     * @throws InterruptedException
+     *             On a failure waiting for the test.
+     */
+    @Test
+    public void testSingleProducerFastConsumerWithWaitStrategies()
+            throws InterruptedException {
+
+        final int count = 20000;
+
+        for (final StandardWaitStrategy strategy : StandardWaitStrategy
+                .values()) {
+            final PendingMessageQueue queue = new PendingMessageQueue(256,
+                    strategy);
+
+            final FastProducer producer = new FastProducer(queue, count);
+            final FastConsumer consumer = new FastConsumer(queue);
+
+            final Thread pThread = new Thread(producer);
+            final Thread cThread = new Thread(consumer);
+
+            cThread.start();
+            pThread.start();
+
+            pThread.join(TimeUnit.SECONDS.toMillis(30));
+
+            assertFalse(strategy.name(), pThread.isAlive());
+
+            final long deadline = System.currentTimeMillis()
+                    + TimeUnit.SECONDS.toMillis(30);
+            while ((System.currentTimeMillis() < deadline)
+                    && (consumer.getCount() < count)) {
+                Thread.sleep(5);
+            }
+
+            // Interrupts must stop the consumer even if it never blocks.
+            cThread.interrupt();
+            cThread.join(TimeUnit.SECONDS.toMillis(30));
+
+            assertFalse(strategy.name(), cThread.isAlive());
+            assertEquals(strategy.name(), count, consumer.getCount());
+        }
+    }
+
     /**
      * Test method for {@link PendingMessageQueue#take} .
      */
@@ -88,6 +88,59 @@ public class PendingMessageTest {
         verify(mockMessage, mockCallback);
     }
 
+    /**
+     * Test method for the stage time stamps of a {@link PendingMessage}.
+     *
+     * @throws InterruptedException
+     *             If the test fails to sleep.
+     */
+    @Test
+    public void testStages() throws InterruptedException {
+        final PendingMessage pm = new PendingMessage();
+
+        assertEquals(0L, pm.getSerializeNanos());
+        assertEquals(0L, pm.getQueueNanos());
+        assertEquals(0L, pm.getNetworkNanos());
+        assertEquals(0L, pm.getDecodeNanos());
+        assertEquals(0L, pm.getCallbackNanos());
+
+        pm.set(1, null, null);
+        TimeUnit.MILLISECONDS.sleep(1);
+        pm.timestampSerialized();
+        TimeUnit.MILLISECONDS.sleep(1);
+        pm.timestampSent();
+
+        // Copied into and out of the queue.
+        final PendingMessage copy = new PendingMessage();
+        copy.set(pm);
+        TimeUnit.MILLISECONDS.sleep(1);
+        copy.timestampReceived(System.nanoTime());
+        TimeUnit.MILLISECONDS.sleep(1);
+        final long decoded = copy.timestampDecoded();
+        TimeUnit.MILLISECONDS.sleep(1);
+        final long completed = copy.timestampCompleted();
+
+        final long oneMs = TimeUnit.MILLISECONDS.toNanos(1);
+        assertTrue(oneMs <= copy.getSerializeNanos());
+        assertTrue(oneMs <= copy.getQueueNanos());
+        assertTrue(oneMs <= copy.getNetworkNanos());
+        assertTrue(oneMs <= copy.getDecodeNanos());
+        assertEquals(completed - decoded, copy.getCallbackNanos());
+
+        // The latency stops at the decode.
+        assertEquals(copy.latency(), copy.getSerializeNanos()
+                + copy.getQueueNanos() + copy.getNetworkNanos()
+                + copy.getDecodeNanos());
+
+        // Reset by the set and clear.
+        copy.set(2, null, null);
+        assertEquals(0L, copy.getSerializeNanos());
+        assertEquals(0L, copy.getCallbackNanos());
+        pm.clear();
+        assertEquals(0L, pm.getQueueNanos());
+        assertEquals(0L, pm.latency());
+    }
+
     /**
      * Test method for {@link PendingMessage#timestampNow()} and
      * {@link PendingMessage#latency()}.
@@ -42,6 +42,7 @@ import com.allanbank.mongodb.bson.io.BsonInputStream;
 import com.allanbank.mongodb.bson.io.BsonOutputStream;
 import com.allanbank.mongodb.client.Message;
 import com.allanbank.mongodb.client.Operation;
+import com.allanbank.mongodb.client.callback.StreamingReplyCallback;
 
 /**
  * ReplyTest provides tests for the {@link Reply} message.
@@ -220,6 +221,52 @@ public class ReplyTest {
         }
     }
 
+    /**
+     * Test method for
+     * {@link Reply#Reply(Header, BsonInputStream, StreamingReplyCallback)}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testReplyHeaderBsonInputStreamStreaming() throws IOException {
+        final List<Document> docs = new ArrayList<Document>();
+        docs.add(BuilderFactory.start().addInteger("1", 1).build());
+        docs.add(BuilderFactory.start().addInteger("1", 2).build());
+        docs.add(BuilderFactory.start().addInteger("1", 3).build());
+
+        for (final boolean queryFailed : new boolean[] { false, true }) {
+            final Reply message = new Reply(1, 1234, 0, docs, false, false,
+                    queryFailed, false);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            message.write(1, new BsonOutputStream(out));
+
+            final BsonInputStream bIn = new BsonInputStream(
+                    new ByteArrayInputStream(out.toByteArray()));
+            final Header header = new Header(bIn);
+
+            final StreamingCollector collector = new StreamingCollector();
+            final Reply read = new Reply(header, bIn, collector);
+
+            assertThat(bIn.available(), is(0));
+            assertThat(read.getCursorId(), is(1234L));
+            if (queryFailed) {
+                // Failures are never streamed.
+                assertFalse(read.isStreamed());
+                assertThat(read, is(message));
+                assertThat(collector.myStarted, is(false));
+            }
+            else {
+                assertTrue(read.isStreamed());
+                assertThat(read.getResults().size(), is(0));
+                assertThat(read.size(), is(out.size()));
+                assertThat(collector.myStarted, is(true));
+                assertThat(collector.myDocuments, is(docs));
+                assertThat(collector.myFinished, is(true));
+            }
+        }
+    }
+
     /**
      * Test method for
      * {@link Reply#Reply(int, long, int, List, boolean, boolean, boolean, boolean)}
@@ -373,4 +420,62 @@ public class ReplyTest {
         message.validateSize(-1);
     }
 
+
+    /**
+     * StreamingCollector provides a {@link StreamingReplyCallback} that
+     * collects the streamed documents.
+     *
+     * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+     */
+    private static final class StreamingCollector
+            implements StreamingReplyCallback {
+
+        /** The streamed documents. */
+        protected final List<Document> myDocuments = new ArrayList<Document>();
+
+        /** True once the streaming has finished. */
+        protected boolean myFinished = false;
+
+        /** True once the streaming has started. */
+        protected boolean myStarted = false;
+
+        /**
+         * Creates a new StreamingCollector.
+         */
+        public StreamingCollector() {
+            super();
+        }
+
+        @Override
+        public void callback(final Reply result) {
+            // Nothing.
+        }
+
+        @Override
+        public void exception(final Throwable thrown) {
+            // Nothing.
+        }
+
+        @Override
+        public void finishStreaming() {
+            myFinished = true;
+        }
+
+        @Override
+        public boolean isLightWeight() {
+            return true;
+        }
+
+        @Override
+        public boolean startStreaming(final long cursorId,
+                final int documentCount) {
+            myStarted = true;
+            return true;
+        }
+
+        @Override
+        public void streamed(final Document document) {
+            myDocuments.add(document);
+        }
+    }
 }
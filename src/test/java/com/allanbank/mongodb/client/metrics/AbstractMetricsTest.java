@@ -28,15 +28,18 @@ import static org.hamcrest.Matchers.both;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
 
 /**
@@ -83,6 +86,15 @@ public class AbstractMetricsTest {
                 both(greaterThan(0.9)).and(lessThan(1.1)));
         assertThat(metrics.getTotalLatencyNanos(),
                 is(TimeUnit.MILLISECONDS.toNanos(1) << 1));
+        assertThat(metrics.getLatencyHistogram().getCount(), is(2L));
+        assertThat(metrics.getLatencyP50Millis(), both(greaterThan(0.9))
+                .and(lessThan(1.1)));
+        assertThat(metrics.getLatencyP90Millis(), both(greaterThan(0.9))
+                .and(lessThan(1.1)));
+        assertThat(metrics.getLatencyP99Millis(), both(greaterThan(0.9))
+                .and(lessThan(1.1)));
+        assertThat(metrics.getLatencyP999Millis(), both(greaterThan(0.9))
+                .and(lessThan(1.1)));
 
         metrics.close();
 
@@ -95,10 +107,93 @@ public class AbstractMetricsTest {
         assertThat(Double.isNaN(metrics.getRecentAverageLatencyMillis()),
                 is(true));
         assertThat(metrics.getTotalLatencyNanos(), is(0L));
+        assertThat(metrics.getLatencyHistogram().getCount(), is(0L));
+        assertThat(Double.isNaN(metrics.getLatencyP50Millis()), is(true));
 
         verify(mockSentMessage, mockReply);
     }
 
+    /**
+     * Test method for {@link AbstractMetrics#getRecentAverageLatencyMillis()}
+     * catching up with the messages received since the last read.
+     */
+    @Test
+    public void testRecentAverageLatency() {
+        final TestMetrics metrics = new TestMetrics();
+
+        final Message mockSentMessage = createMock(Message.class);
+        final Reply mockReply = createMock(Reply.class);
+
+        expect(mockReply.size()).andReturn(202).anyTimes();
+
+        replay(mockSentMessage, mockReply);
+
+        metrics.receive(null, 0L, mockSentMessage, mockReply,
+                TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(metrics.getRecentAverageLatencyMillis(),
+                both(greaterThan(0.99)).and(lessThan(1.01)));
+
+        // Same as adding each of the 1000 samples to the average.
+        for (int i = 0; i < 1000; ++i) {
+            metrics.receive(null, 0L, mockSentMessage, mockReply,
+                    TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        assertThat(metrics.getRecentAverageLatencyMillis(),
+                both(greaterThan(2.72)).and(lessThan(2.74)));
+
+        // No new messages. No change.
+        assertThat(metrics.getRecentAverageLatencyMillis(),
+                both(greaterThan(2.72)).and(lessThan(2.74)));
+
+        metrics.close();
+
+        verify(mockSentMessage, mockReply);
+    }
+
+    /**
+     * Test method for {@link AbstractMetrics#stages(String, PendingMessage)}.
+     *
+     * @throws InterruptedException
+     *             If the test fails to sleep.
+     */
+    @Test
+    public void testStages() throws InterruptedException {
+        final TestMetrics metrics = new TestMetrics();
+
+        assertThat(metrics.getStageLatencyHistogram(MessageStage.NETWORK),
+                nullValue());
+        Map<String, Double> p50 = metrics.getStageLatencyMillis(50.0);
+        assertThat(p50.size(), is(MessageStage.values().length));
+        assertThat(Double.isNaN(p50.get("network").doubleValue()), is(true));
+
+        final PendingMessage pending = new PendingMessage();
+        pending.set(1, null, null);
+        pending.timestampSerialized();
+        pending.timestampSent();
+        TimeUnit.MILLISECONDS.sleep(2);
+        pending.timestampReceived(System.nanoTime());
+        pending.timestampDecoded();
+        pending.timestampCompleted();
+
+        metrics.stages("server", pending);
+        metrics.stages("server", pending);
+
+        for (final MessageStage stage : MessageStage.values()) {
+            assertThat(metrics.getStageLatencyHistogram(stage).getCount(),
+                    is(2L));
+        }
+        p50 = metrics.getStageLatencyMillis(50.0);
+        assertThat(p50.get("network"), greaterThan(Double.valueOf(1.9)));
+        assertThat(p50.get("serialize"), lessThan(Double.valueOf(1.9)));
+
+        metrics.close();
+
+        assertThat(metrics.getStageLatencyHistogram(MessageStage.NETWORK)
+                .getCount(), is(0L));
+        p50 = metrics.getStageLatencyMillis(50.0);
+        assertThat(Double.isNaN(p50.get("network").doubleValue()), is(true));
+    }
+
     /**
      * Test method for {@link AbstractMetrics#toString()}.
      */
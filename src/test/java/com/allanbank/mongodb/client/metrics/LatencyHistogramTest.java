@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * LatencyHistogramTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.metrics;
+
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * LatencyHistogramTest provides tests for the {@link LatencyHistogram} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Test method for {@link LatencyHistogram#bucket(long)} and
+     * {@link LatencyHistogram#bucketValue(int)}.
+     */
+    @Test
+    public void testBucket() {
+        // Exact for small values.
+        for (int i = 0; i < LatencyHistogram.SUB_BUCKETS; ++i) {
+            assertThat(LatencyHistogram.bucket(i), is(i));
+            assertThat(LatencyHistogram.bucketValue(i), is((long) i));
+        }
+        assertThat(LatencyHistogram.bucket(-1), is(0));
+
+        // Buckets increase and the value is within the relative error.
+        final Random random = new Random(1234);
+        int previous = 0;
+        final long limit = TimeUnit.SECONDS.toNanos(60);
+        for (long value = 1; value < limit; value += 1 + (value >> 4)) {
+            final int bucket = LatencyHistogram.bucket(value);
+            assertThat(bucket, greaterThanOrEqualTo(previous));
+            previous = bucket;
+
+            final long reported = LatencyHistogram.bucketValue(bucket);
+            final double error = Math.abs(reported - value)
+                    / (double) Math.max(1, value);
+            assertThat(error,
+                    lessThanOrEqualTo(1.0 / LatencyHistogram.SUB_BUCKETS));
+
+            final long other = value + random.nextInt(3);
+            if (LatencyHistogram.bucket(other) == bucket) {
+                assertThat(LatencyHistogram.bucketValue(bucket), is(reported));
+            }
+        }
+
+        // Very large latencies go in the last bucket.
+        assertThat(LatencyHistogram.bucket(Long.MAX_VALUE),
+                is(LatencyHistogram.bucket(TimeUnit.DAYS.toNanos(1))));
+    }
+
+    /**
+     * Test method for {@link LatencyHistogram#getPercentileNanos(double)}.
+     */
+    @Test
+    public void testGetPercentile() {
+        final LatencyHistogram histogram = new LatencyHistogram(2);
+        assertThat(histogram.getPercentileNanos(50), is(-1L));
+        assertThat(Double.isNaN(histogram.getPercentileMillis(50)), is(true));
+
+        // 1..1000 microseconds.
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.getCount(), is(1000L));
+        assertPercentile(histogram, 50, 500);
+        assertPercentile(histogram, 90, 900);
+        assertPercentile(histogram, 99, 990);
+        assertPercentile(histogram, 99.9, 999);
+        assertPercentile(histogram, 100, 1000);
+        assertPercentile(histogram, 0, 1);
+
+        histogram.reset();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getPercentileNanos(50), is(-1L));
+    }
+
+    /**
+     * Test method for {@link LatencyHistogram#merge(LatencyHistogram)}.
+     */
+    @Test
+    public void testMerge() {
+        final LatencyHistogram fast = new LatencyHistogram();
+        final LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 90; ++i) {
+            fast.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        for (int i = 0; i < 10; ++i) {
+            slow.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        final LatencyHistogram merged = new LatencyHistogram();
+        merged.merge(fast);
+        merged.merge(slow);
+
+        assertThat(merged.getCount(), is(100L));
+        assertPercentile(merged, 90, 100);
+        assertPercentile(merged, 91, 10000);
+
+        // Sources are not changed.
+        assertThat(fast.getCount(), is(90L));
+        assertThat(slow.getCount(), is(10L));
+    }
+
+    /**
+     * Test method for {@link LatencyHistogram#record(long)} from many threads.
+     *
+     * @throws InterruptedException
+     *             On a failure to wait for the threads.
+     */
+    @Test
+    public void testRecordFromManyThreads() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram(4);
+        final int threadCount = 8;
+        final int recordsPerThread = 100000;
+
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; ++i) {
+            final long latency = TimeUnit.MICROSECONDS.toNanos(i + 1);
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < recordsPerThread; ++j) {
+                        histogram.record(latency);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            assertThat(thread.isAlive(), is(false));
+        }
+
+        assertThat(histogram.getCount(),
+                is((long) threadCount * recordsPerThread));
+        long total = 0;
+        for (final long count : histogram.getCounts()) {
+            total += count;
+        }
+        assertThat(total, is((long) threadCount * recordsPerThread));
+        assertPercentile(histogram, 50, 4);
+    }
+
+    /**
+     * Asserts the percentile is within the histogram's error of the expected
+     * number of microseconds.
+     *
+     * @param histogram
+     *            The histogram to check.
+     * @param percentile
+     *            The percentile.
+     * @param expectedMicros
+     *            The expected value in microseconds.
+     */
+    private void assertPercentile(final LatencyHistogram histogram,
+            final double percentile, final long expectedMicros) {
+        final double expected = TimeUnit.MICROSECONDS.toNanos(expectedMicros);
+        final double error = expected / LatencyHistogram.SUB_BUCKETS;
+
+        assertThat((double) histogram.getPercentileNanos(percentile),
+                both(greaterThanOrEqualTo(expected - error)).and(
+                        lessThanOrEqualTo(expected + error)));
+    }
+}
@@ -26,6 +26,7 @@ import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.PrintWriter;
@@ -35,7 +36,9 @@ import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.message.PendingMessage;
 import com.allanbank.mongodb.client.message.Reply;
+import com.allanbank.mongodb.client.metrics.MessageStage;
 import com.allanbank.mongodb.client.metrics.MongoMessageListener;
 
 /**
@@ -100,6 +103,34 @@ public class BasicConnectionMetricsTest {
         verify(mockSentMessage, mockListener);
     }
 
+    /**
+     * Test method for
+     * {@link BasicConnectionMetrics#stages(String, PendingMessage)} .
+     */
+    @Test
+    public void testStages() {
+        final PendingMessage pending = new PendingMessage();
+        final MongoMessageListener mockListener = createMock(MongoMessageListener.class);
+
+        final BasicConnectionMetrics metrics = new BasicConnectionMetrics(
+                mockListener);
+
+        mockListener.stages("server", pending);
+        expectLastCall();
+
+        replay(mockListener);
+
+        metrics.stages("server", pending);
+
+        // Not kept for each connection.
+        assertThat(metrics.getStageLatencyHistogram(MessageStage.NETWORK),
+                nullValue());
+
+        metrics.close();
+
+        verify(mockListener);
+    }
+
     /**
      * Test method for {@link BasicConnectionMetrics#writeTo(PrintWriter)}.
      */
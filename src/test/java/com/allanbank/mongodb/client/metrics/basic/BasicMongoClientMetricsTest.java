@@ -21,23 +21,35 @@
 package com.allanbank.mongodb.client.metrics.basic;
 
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 
 import java.io.PrintWriter;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import com.allanbank.mongodb.MongoClientConfiguration;
+import com.allanbank.mongodb.bson.io.BufferPool;
+import com.allanbank.mongodb.client.connection.auth.ScramKeyCache;
 import com.allanbank.mongodb.client.Message;
+import com.allanbank.mongodb.client.ClusterType;
+import com.allanbank.mongodb.client.callback.ReplyDispatcher;
+import com.allanbank.mongodb.client.connection.proxy.ProxiedConnectionFactory;
 import com.allanbank.mongodb.client.message.Reply;
 import com.allanbank.mongodb.client.metrics.MongoMessageListener;
 import com.allanbank.mongodb.client.metrics.NoOpMongoMessageListener;
+import com.allanbank.mongodb.client.state.Cluster;
+import com.allanbank.mongodb.client.state.ClusterPinger;
 
 /**
  * BasicMongoClientMetricsTest provides tests for the
@@ -47,6 +59,119 @@ import com.allanbank.mongodb.client.metrics.NoOpMongoMessageListener;
  */
 public class BasicMongoClientMetricsTest {
 
+    /**
+     * Test method for {@link BasicMongoClientMetrics#getBufferPoolHitCount()}
+     * and {@link BasicMongoClientMetrics#getBufferPoolMissCount()}.
+     */
+    @Test
+    public void testBufferPoolCounts() {
+        final BasicMongoClientMetrics metrics = new BasicMongoClientMetrics();
+
+        final BufferPool pool = BufferPool.getDefault();
+        final long misses = metrics.getBufferPoolMissCount();
+
+        final byte[] buffer = pool.lease(BufferPool.MAX_SIZE_CLASS + 1);
+        pool.release(buffer);
+
+        // Other threads may be using the pool.
+        assertThat(metrics.getBufferPoolMissCount(),
+                greaterThanOrEqualTo(Long.valueOf(misses + 1)));
+        assertThat(metrics.getBufferPoolHitCount(),
+                lessThanOrEqualTo(Long.valueOf(pool.getHitCount())));
+
+        metrics.close();
+    }
+
+    /**
+     * Test method for
+     * {@link BasicMongoClientMetrics#setPinger(ClusterPinger)}.
+     */
+    @Test
+    public void testPingerMetrics() {
+        final BasicMongoClientMetrics metrics = new BasicMongoClientMetrics();
+
+        assertThat(metrics.getPingBackoffServerCount(), is(0));
+        assertThat(metrics.getPingCount(), is(0L));
+        assertThat(metrics.getPingFailedCount(), is(0L));
+        assertThat(metrics.getPingFastCount(), is(0L));
+        assertThat(metrics.getPingSweepIntervalMillis(), is(0L));
+
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        final ClusterPinger pinger = new ClusterPinger(new Cluster(config,
+                ClusterType.REPLICA_SET),
+                createNiceMock(ProxiedConnectionFactory.class), config);
+        pinger.setIntervalUnits(TimeUnit.SECONDS);
+        pinger.setPingSweepInterval(30);
+
+        metrics.setPinger(pinger);
+
+        assertThat(metrics.getPingBackoffServerCount(), is(0));
+        assertThat(metrics.getPingCount(), is(pinger.getPingCount()));
+        assertThat(metrics.getPingFailedCount(),
+                is(pinger.getFailedPingCount()));
+        assertThat(metrics.getPingFastCount(), is(pinger.getFastPingCount()));
+        assertThat(metrics.getPingSweepIntervalMillis(),
+                is(TimeUnit.SECONDS.toMillis(30)));
+
+        metrics.setPinger(null);
+        assertThat(metrics.getPingSweepIntervalMillis(), is(0L));
+
+        metrics.close();
+    }
+
+    /**
+     * Test method for
+     * {@link BasicMongoClientMetrics#setReplyDispatcher(ReplyDispatcher)}.
+     */
+    @Test
+    public void testReplyDispatcherMetrics() {
+        final BasicMongoClientMetrics metrics = new BasicMongoClientMetrics();
+
+        assertThat(metrics.getReplyDispatchQueueDepth(), is(0));
+        assertThat(metrics.getReplyDispatchRejectedCount(), is(0L));
+        assertThat(metrics.getReplyDispatchAverageLatencyNanos(), is(0.0D));
+
+        final ReplyDispatcher dispatcher = new ReplyDispatcher(1, 1,
+                Executors.defaultThreadFactory());
+        try {
+            metrics.setReplyDispatcher(dispatcher);
+
+            assertThat(metrics.getReplyDispatchQueueDepth(),
+                    is(dispatcher.getQueueDepth()));
+            assertThat(metrics.getReplyDispatchRejectedCount(),
+                    is(dispatcher.getRejectedCount()));
+            assertThat(metrics.getReplyDispatchAverageLatencyNanos(),
+                    is(dispatcher
+                            .getAverageDispatchLatency(TimeUnit.NANOSECONDS)));
+        }
+        finally {
+            dispatcher.close();
+            metrics.close();
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link BasicMongoClientMetrics#getScramKeyCacheHitCount()},
+     * {@link BasicMongoClientMetrics#getScramKeyCacheMissCount()} and
+     * {@link BasicMongoClientMetrics#getScramKeyDerivationNanos()}.
+     */
+    @Test
+    public void testScramKeyCacheCounts() {
+        final BasicMongoClientMetrics metrics = new BasicMongoClientMetrics();
+        final ScramKeyCache cache = ScramKeyCache.getDefault();
+
+        // Other threads may be authenticating.
+        assertThat(metrics.getScramKeyCacheHitCount(),
+                lessThanOrEqualTo(Long.valueOf(cache.getHitCount())));
+        assertThat(metrics.getScramKeyCacheMissCount(),
+                lessThanOrEqualTo(Long.valueOf(cache.getMissCount())));
+        assertThat(metrics.getScramKeyDerivationNanos(),
+                lessThanOrEqualTo(Long.valueOf(cache.getDerivationNanos())));
+
+        metrics.close();
+    }
+
     /**
      * Test method for
      * {@link BasicMongoClientMetrics#connectionClosed(MongoMessageListener)}.
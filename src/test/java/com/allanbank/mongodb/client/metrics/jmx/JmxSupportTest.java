@@ -33,6 +33,9 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
 import javax.management.JMException;
@@ -43,6 +46,7 @@ import org.easymock.Capture;
 import org.junit.Test;
 
 import com.allanbank.mongodb.client.metrics.AbstractMetrics;
+import com.allanbank.mongodb.client.metrics.basic.BasicMongoClientMetrics;
 
 /**
  * JmxSupportTest provides tests for the {@link JmxSupport} class.
@@ -90,6 +94,41 @@ public class JmxSupportTest {
         assertThat(bean, instanceOf(MetricsMXBeanProxy.class));
     }
 
+    /**
+     * Test method for
+     * {@link JmxSupport#register(AbstractMetrics, String, String)} with the
+     * client's metrics.
+     *
+     * @throws JMException
+     *             On a test failure.
+     * @throws UnsupportedEncodingException
+     *             On a failure creating the MBean's name.
+     */
+    @Test
+    public void testRegisterClientMetrics() throws JMException,
+            UnsupportedEncodingException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final BasicMongoClientMetrics metrics = new BasicMongoClientMetrics();
+
+        final JmxSupport support = new JmxSupport(server);
+
+        support.register(metrics, "MongoClient", "test");
+        try {
+            final ObjectName name = support.createName("MongoClient", "test");
+
+            assertThat(server.getAttribute(name, "ReplyDispatchQueueDepth"),
+                    is((Object) Integer.valueOf(0)));
+            assertThat(server.getAttribute(name, "BufferPoolHitCount"),
+                    instanceOf(Long.class));
+            assertThat(server.getAttribute(name, "MessageSentCount"),
+                    is((Object) Long.valueOf(0)));
+        }
+        finally {
+            support.unregister("MongoClient", "test");
+            metrics.close();
+        }
+    }
+
     /**
      * Test method for
      * {@link JmxSupport#register(AbstractMetrics, String, String)}.
@@ -27,6 +27,9 @@ import static org.easymock.EasyMock.verify;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.Collections;
+import java.util.Map;
+
 import org.junit.Test;
 
 import com.allanbank.mongodb.client.metrics.AbstractMetrics;
@@ -71,6 +74,74 @@ public class MetricsMXBeanProxyTest {
         verify(mockMetrics);
     }
 
+    /**
+     * Test method for {@link MetricsMXBeanProxy#getLatencyP50Millis()}.
+     */
+    @Test
+    public void testGetLatencyP50Millis() {
+        final AbstractMetrics mockMetrics = createMock(AbstractMetrics.class);
+
+        expect(mockMetrics.getLatencyP50Millis()).andReturn(1.5);
+
+        replay(mockMetrics);
+
+        assertThat(new MetricsMXBeanProxy(mockMetrics).getLatencyP50Millis(),
+                is(1.5));
+
+        verify(mockMetrics);
+    }
+
+    /**
+     * Test method for {@link MetricsMXBeanProxy#getLatencyP90Millis()}.
+     */
+    @Test
+    public void testGetLatencyP90Millis() {
+        final AbstractMetrics mockMetrics = createMock(AbstractMetrics.class);
+
+        expect(mockMetrics.getLatencyP90Millis()).andReturn(2.5);
+
+        replay(mockMetrics);
+
+        assertThat(new MetricsMXBeanProxy(mockMetrics).getLatencyP90Millis(),
+                is(2.5));
+
+        verify(mockMetrics);
+    }
+
+    /**
+     * Test method for {@link MetricsMXBeanProxy#getLatencyP99Millis()}.
+     */
+    @Test
+    public void testGetLatencyP99Millis() {
+        final AbstractMetrics mockMetrics = createMock(AbstractMetrics.class);
+
+        expect(mockMetrics.getLatencyP99Millis()).andReturn(3.5);
+
+        replay(mockMetrics);
+
+        assertThat(new MetricsMXBeanProxy(mockMetrics).getLatencyP99Millis(),
+                is(3.5));
+
+        verify(mockMetrics);
+    }
+
+    /**
+     * Test method for {@link MetricsMXBeanProxy#getLatencyP999Millis()}.
+     */
+    @Test
+    public void testGetLatencyP999Millis() {
+        final AbstractMetrics mockMetrics = createMock(AbstractMetrics.class);
+
+        expect(mockMetrics.getLatencyP999Millis()).andReturn(4.5);
+
+        replay(mockMetrics);
+
+        assertThat(new MetricsMXBeanProxy(mockMetrics).getLatencyP999Millis(),
+                is(4.5));
+
+        verify(mockMetrics);
+    }
+
     /**
      * Test method for {@link MetricsMXBeanProxy#getMessageReceivedBytes()}.
      */
@@ -152,6 +223,46 @@ public class MetricsMXBeanProxyTest {
         verify(mockMetrics);
     }
 
+    /**
+     * Test method for {@link MetricsMXBeanProxy#getStageLatencyP50Millis()}.
+     */
+    @Test
+    public void testGetStageLatencyP50Millis() {
+        final AbstractMetrics mockMetrics = createMock(AbstractMetrics.class);
+        final Map<String, Double> latencies = Collections.singletonMap(
+                "network", Double.valueOf(1.5));
+
+        expect(mockMetrics.getStageLatencyMillis(50.0)).andReturn(latencies);
+
+        replay(mockMetrics);
+
+        assertThat(
+                new MetricsMXBeanProxy(mockMetrics).getStageLatencyP50Millis(),
+                is(latencies));
+
+        verify(mockMetrics);
+    }
+
+    /**
+     * Test method for {@link MetricsMXBeanProxy#getStageLatencyP99Millis()}.
+     */
+    @Test
+    public void testGetStageLatencyP99Millis() {
+        final AbstractMetrics mockMetrics = createMock(AbstractMetrics.class);
+        final Map<String, Double> latencies = Collections.singletonMap(
+                "network", Double.valueOf(4.5));
+
+        expect(mockMetrics.getStageLatencyMillis(99.0)).andReturn(latencies);
+
+        replay(mockMetrics);
+
+        assertThat(
+                new MetricsMXBeanProxy(mockMetrics).getStageLatencyP99Millis(),
+                is(latencies));
+
+        verify(mockMetrics);
+    }
+
     /**
      * Test method for {@link MetricsMXBeanProxy#getTotalLatencyNanos()}.
      */
@@ -61,6 +61,58 @@ public class NoOpMongoClientMetricsTest {
         clientMetrics.close();
     }
 
+    /**
+     * Test method for {@link NoOpMongoClientMetrics#getBufferPoolHitCount()}
+     * and {@link NoOpMongoClientMetrics#getBufferPoolMissCount()}.
+     */
+    @Test
+    public void testGetBufferPoolCounts() {
+        final NoOpMongoClientMetrics clientMetrics = new NoOpMongoClientMetrics();
+
+        assertThat(clientMetrics.getBufferPoolHitCount(), is(0L));
+        assertThat(clientMetrics.getBufferPoolMissCount(), is(0L));
+
+        // For Closeable.
+        clientMetrics.close();
+    }
+
+    /**
+     * Test method for {@link NoOpMongoClientMetrics#getPingCount()} and the
+     * other ping metrics.
+     */
+    @Test
+    public void testGetPingMetrics() {
+        final NoOpMongoClientMetrics clientMetrics = new NoOpMongoClientMetrics();
+
+        clientMetrics.setPinger(null);
+
+        assertThat(clientMetrics.getPingBackoffServerCount(), is(0));
+        assertThat(clientMetrics.getPingCount(), is(0L));
+        assertThat(clientMetrics.getPingFailedCount(), is(0L));
+        assertThat(clientMetrics.getPingFastCount(), is(0L));
+        assertThat(clientMetrics.getPingSweepIntervalMillis(), is(0L));
+
+        // For Closeable.
+        clientMetrics.close();
+    }
+
+    /**
+     * Test method for {@link NoOpMongoClientMetrics#getScramKeyCacheHitCount()}
+     * , {@link NoOpMongoClientMetrics#getScramKeyCacheMissCount()} and
+     * {@link NoOpMongoClientMetrics#getScramKeyDerivationNanos()}.
+     */
+    @Test
+    public void testGetScramKeyCacheCounts() {
+        final NoOpMongoClientMetrics clientMetrics = new NoOpMongoClientMetrics();
+
+        assertThat(clientMetrics.getScramKeyCacheHitCount(), is(0L));
+        assertThat(clientMetrics.getScramKeyCacheMissCount(), is(0L));
+        assertThat(clientMetrics.getScramKeyDerivationNanos(), is(0L));
+
+        // For Closeable.
+        clientMetrics.close();
+    }
+
     /**
      * Test method for {@link NoOpMongoClientMetrics#newConnection(String)}.
      */
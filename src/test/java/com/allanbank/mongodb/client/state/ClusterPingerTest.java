@@ -33,6 +33,7 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.hamcrest.Matchers.both;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -638,6 +639,207 @@ public class ClusterPingerTest {
                 both(greaterThan(0.0)).and(lessThan(100.0)));
     }
 
+    /**
+     * Test method for {@link ClusterPinger#run()}.
+     *
+     * @throws IOException
+     *             On a failure setting up the mocks.
+     * @throws InterruptedException
+     *             On a failure to sleep.
+     */
+    @Test
+    public void testRunNoPrimary() throws IOException, InterruptedException {
+
+        final DocumentBuilder reply = BuilderFactory.start();
+        reply.add("ismaster", false);
+        reply.add("secondary", true);
+
+        final String address = "localhost:27017";
+
+        final Cluster cluster = new Cluster(new MongoClientConfiguration(),
+                ClusterType.REPLICA_SET);
+        final Server state = cluster.add(address);
+
+        final Connection mockConnection = createMock(Connection.class);
+        final ProxiedConnectionFactory mockFactory = createMock(ProxiedConnectionFactory.class);
+
+        makeThreadSafe(mockConnection, true);
+        makeThreadSafe(mockFactory, true);
+
+        expect(
+                mockFactory.connect(eq(state),
+                        anyObject(MongoClientConfiguration.class))).andReturn(
+                mockConnection);
+        mockConnection.send(anyObject(IsMaster.class), cb(reply));
+        expectLastCall();
+        mockConnection.send(anyObject(ReplicaSetStatus.class),
+                cbAndClose(reply));
+        expectLastCall();
+        mockConnection.shutdown(true);
+        expectLastCall();
+
+        replay(mockConnection, mockFactory);
+
+        myPinger = new ClusterPinger(cluster, mockFactory,
+                new MongoClientConfiguration());
+        myPinger.setIntervalUnits(TimeUnit.HOURS);
+        myPinger.setPingSweepInterval(1);
+
+        // No primary so pinged well before the hour is up.
+        final Thread t = new Thread(myPinger);
+        t.start();
+        t.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(t.isAlive());
+
+        verify(mockConnection, mockFactory);
+
+        assertThat(state.getState(), is(Server.State.READ_ONLY));
+        assertThat(myPinger.getPingCount(), is(1L));
+        assertThat(myPinger.getFastPingCount(), is(1L));
+        assertThat(myPinger.getFailedPingCount(), is(0L));
+    }
+
+    /**
+     * Test method for {@link ClusterPinger#run()}.
+     *
+     * @throws IOException
+     *             On a failure setting up the mocks.
+     * @throws InterruptedException
+     *             On a failure to sleep.
+     */
+    @Test
+    public void testRunReprobeAfterFailure() throws IOException,
+            InterruptedException {
+
+        final DocumentBuilder reply = BuilderFactory.start();
+        reply.add("ismaster", true);
+
+        final String address = "localhost:27017";
+
+        final Cluster cluster = new Cluster(new MongoClientConfiguration(),
+                ClusterType.STAND_ALONE);
+        final Server state = cluster.add(address);
+
+        final Connection mockConnection = createMock(Connection.class);
+        final ProxiedConnectionFactory mockFactory = createMock(ProxiedConnectionFactory.class);
+
+        makeThreadSafe(mockConnection, true);
+        makeThreadSafe(mockFactory, true);
+
+        expect(
+                mockFactory.connect(eq(state),
+                        anyObject(MongoClientConfiguration.class))).andReturn(
+                mockConnection);
+        mockConnection.send(anyObject(IsMaster.class), cbAndClose(reply));
+        expectLastCall();
+        mockConnection.shutdown(true);
+        expectLastCall();
+
+        replay(mockConnection, mockFactory);
+
+        myPinger = new ClusterPinger(cluster, mockFactory,
+                new MongoClientConfiguration());
+        myPinger.setIntervalUnits(TimeUnit.HOURS);
+        myPinger.setPingSweepInterval(1);
+
+        final Thread t = new Thread(myPinger);
+        t.start();
+
+        // Wait for the pinger to schedule the server.
+        long now = System.currentTimeMillis();
+        final long deadline = now + TimeUnit.SECONDS.toMillis(10);
+        while ((now < deadline)
+                && (myPinger.getNextPingDelay(state, TimeUnit.MINUTES) < 30)) {
+            Thread.sleep(10);
+            now = System.currentTimeMillis();
+        }
+
+        // Failure re-pings the server soon.
+        state.connectFailed();
+        assertThat(myPinger.getNextPingDelay(state, TimeUnit.MILLISECONDS),
+                lessThan(ClusterPinger.REPROBE_DELAY_MILLIS + 1));
+        assertThat(myPinger.getBackoffServerCount(), is(1));
+
+        t.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(t.isAlive());
+
+        verify(mockConnection, mockFactory);
+
+        assertThat(state.getState(), is(Server.State.WRITABLE));
+        assertThat(myPinger.getPingCount(), is(1L));
+        assertThat(myPinger.getFastPingCount(), is(1L));
+        assertThat(myPinger.getFailedPingCount(), is(1L));
+    }
+
+    /**
+     * Test method for {@link ClusterPinger#run()}.
+     *
+     * @throws IOException
+     *             On a failure setting up the mocks.
+     * @throws InterruptedException
+     *             On a failure to sleep.
+     */
+    @Test
+    public void testRunNoResponseWithLongInterval() throws IOException,
+            InterruptedException {
+
+        final String address = "localhost:27017";
+
+        final Cluster cluster = new Cluster(new MongoClientConfiguration(),
+                ClusterType.STAND_ALONE);
+        final Server state = cluster.add(address);
+
+        final Connection mockConnection = createMock(Connection.class);
+        final ProxiedConnectionFactory mockFactory = createMock(ProxiedConnectionFactory.class);
+
+        makeThreadSafe(mockConnection, true);
+        makeThreadSafe(mockFactory, true);
+
+        // The server never replies to the ping.
+        expect(
+                mockFactory.connect(eq(state),
+                        anyObject(MongoClientConfiguration.class))).andReturn(
+                mockConnection).anyTimes();
+        mockConnection.send(anyObject(IsMaster.class),
+                anyObject(ReplyCallback.class));
+        expectLastCall().anyTimes();
+        mockConnection.shutdown(true);
+        expectLastCall().anyTimes();
+
+        replay(mockConnection, mockFactory);
+
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        config.setConnectTimeout(100);
+
+        myPinger = new ClusterPinger(cluster, mockFactory, config);
+        myPinger.setIntervalUnits(TimeUnit.HOURS);
+        myPinger.setPingSweepInterval(1);
+        myPinger.start();
+
+        // Wait for the pinger to schedule the server and then ping it.
+        long now = System.currentTimeMillis();
+        long deadline = now + TimeUnit.SECONDS.toMillis(10);
+        while ((now < deadline)
+                && (myPinger.getNextPingDelay(state, TimeUnit.MINUTES) < 30)) {
+            Thread.sleep(10);
+            now = System.currentTimeMillis();
+        }
+        myPinger.wakeUp();
+
+        // The ping times out well before the hour is up.
+        final long start = System.currentTimeMillis();
+        now = start;
+        deadline = now + TimeUnit.SECONDS.toMillis(30);
+        while ((now < deadline) && (myPinger.getFailedPingCount() == 0)) {
+            Thread.sleep(10);
+            now = System.currentTimeMillis();
+        }
+        myPinger.stop();
+
+        assertThat(myPinger.getFailedPingCount(), greaterThan(0L));
+        assertThat(now - start, lessThan(TimeUnit.SECONDS.toMillis(15)));
+    }
+
     /**
      * Test method for {@link ClusterPinger#run()}.
      *
@@ -50,6 +50,7 @@ import org.junit.Test;
 
 import com.allanbank.mongodb.MongoClientConfiguration;
 import com.allanbank.mongodb.ReadPreference;
+import com.allanbank.mongodb.ServerSelectionStrategy;
 import com.allanbank.mongodb.bson.Document;
 import com.allanbank.mongodb.bson.builder.ArrayBuilder;
 import com.allanbank.mongodb.bson.builder.BuilderFactory;
@@ -485,6 +486,137 @@ public class ClusterTest {
                         .server("localhost:27020")));
     }
 
+    /**
+     * Test method for {@link Cluster#findCandidateServers}.
+     */
+    @Test
+    public void testFindCandidateServersLatencyPercentile() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        config.setLatencyPercentile(99.0);
+        myState = new Cluster(config, ClusterType.REPLICA_SET);
+        final Server s1 = myState.add("localhost:27017");
+        final Server s2 = myState.add("localhost:27018");
+
+        // The pings say s1 is faster.
+        s1.updateAverageLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        s2.updateAverageLatency(TimeUnit.MILLISECONDS.toNanos(10));
+
+        s1.update(SECONDARY_UPDATE);
+        s2.update(SECONDARY_UPDATE);
+
+        List<Server> servers = myState
+                .findCandidateServers(ReadPreference.SECONDARY);
+        assertEquals(Arrays.asList(s1, s2),
+                new LatencyServerSelector(myState, false).pickServers());
+        assertEquals(2, servers.size());
+
+        // The replies say s1 is slow.
+        s1.updateRequestLatency(TimeUnit.SECONDS.toNanos(1));
+        s2.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertEquals(Arrays.asList(s2, s1),
+                new LatencyServerSelector(myState, false).pickServers());
+
+        // Mostly route to s2.
+        int s2First = 0;
+        for (int i = 0; i < 1000; ++i) {
+            servers = myState.findCandidateServers(ReadPreference.SECONDARY);
+            if (servers.get(0) == s2) {
+                s2First += 1;
+            }
+        }
+        assertTrue("s2 should be first most of the time: " + s2First,
+                900 < s2First);
+    }
+
+    /**
+     * Test method for {@link Cluster#findCandidateServers}.
+     */
+    @Test
+    public void testFindCandidateServersPowerOfTwoChoices() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        config.setServerSelectionStrategy(ServerSelectionStrategy.POWER_OF_TWO_CHOICES);
+        myState = new Cluster(config, ClusterType.REPLICA_SET);
+        final Server s1 = myState.add("localhost:27017");
+        final Server s2 = myState.add("localhost:27018");
+
+        s1.updateAverageLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        s2.updateAverageLatency(TimeUnit.MILLISECONDS.toNanos(10));
+
+        s1.update(SECONDARY_UPDATE);
+        s2.update(SECONDARY_UPDATE);
+
+        // The lower latency wins with no requests outstanding.
+        for (int i = 0; i < 100; ++i) {
+            assertSame(s1,
+                    myState.findCandidateServers(ReadPreference.SECONDARY)
+                            .get(0));
+        }
+
+        // Stall the lower latency server.
+        for (int i = 0; i < 20; ++i) {
+            s1.requestSent();
+        }
+        for (int i = 0; i < 100; ++i) {
+            assertSame(s2,
+                    myState.findCandidateServers(ReadPreference.SECONDARY)
+                            .get(0));
+        }
+    }
+
+    /**
+     * Test method for {@link Cluster#findCandidateServers}.
+     */
+    @Test
+    public void testFindCandidateServersUsesSnapshot() {
+        final MongoClientConfiguration config = new MongoClientConfiguration();
+        myState = new Cluster(config, ClusterType.STAND_ALONE);
+        final Server s1 = myState.add("localhost:27017");
+        final Server s2 = myState.add("localhost:27018");
+
+        s1.updateAverageLatency(1);
+        s2.updateAverageLatency(10);
+
+        s1.update(PRIMARY_UPDATE);
+        s2.update(SECONDARY_UPDATE);
+
+        // Same snapshot until something changes.
+        final List<Server> primary = myState
+                .findCandidateServers(ReadPreference.PRIMARY);
+        assertEquals(Collections.singletonList(s1), primary);
+        assertSame(primary, myState.findCandidateServers(ReadPreference.PRIMARY));
+
+        // State change.
+        s2.update(PRIMARY_UPDATE);
+        assertEquals(
+                new HashSet<Server>(Arrays.asList(s1, s2)),
+                new HashSet<Server>(myState
+                        .findCandidateServers(ReadPreference.PRIMARY)));
+
+        // Tag change.
+        s1.update(myBuilder.reset().add("tags", F_TAGS).build());
+        assertEquals(Collections.singletonList(s1),
+                myState.findCandidateServers(ReadPreference.closest(F_TAGS)));
+
+        // Lag change.
+        s2.update(SECONDARY_UPDATE);
+        final long now = System.currentTimeMillis();
+        myBuilder.reset().add("myState", Server.SECONDARY_STATE);
+        final ArrayBuilder members = myBuilder.pushArray("members");
+        members.push().add("name", s1.getCanonicalName())
+                .add("optimeDate", new Date(now));
+        members.push()
+                .add("name", s2.getCanonicalName())
+                .add("optimeDate", new Date(now - TimeUnit.HOURS.toMillis(1)));
+        s2.update(myBuilder.build());
+        assertEquals(Collections.emptyList(),
+                myState.findCandidateServers(ReadPreference.secondary()));
+
+        config.setMaxSecondaryLag(TimeUnit.HOURS.toMillis(2));
+        assertEquals(Collections.singletonList(s2),
+                myState.findCandidateServers(ReadPreference.secondary()));
+    }
+
     /**
      * Test method for {@link Cluster#get(java.lang.String)}.
      */
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * LatencyWindowTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.state;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * LatencyWindowTest provides tests for the {@link LatencyWindow} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class LatencyWindowTest {
+
+    /** The length of the window for the tests. */
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    /** The length of each slot in the window for the tests. */
+    private static final long SLOT = WINDOW / LatencyWindow.SLOT_COUNT;
+
+    /**
+     * Test method for {@link LatencyWindow#percentile(double, long)}.
+     */
+    @Test
+    public void testPercentile() {
+        final LatencyWindow window = new LatencyWindow(WINDOW);
+        final long now = 12345 * SLOT;
+
+        // 90 fast and 10 slow samples.
+        for (int i = 0; i < 90; ++i) {
+            window.record(TimeUnit.MILLISECONDS.toNanos(1), now);
+        }
+        for (int i = 0; i < 10; ++i) {
+            window.record(TimeUnit.MILLISECONDS.toNanos(100), now);
+        }
+
+        // Within a bin of the actual value.
+        assertThat(window.percentile(50, now),
+                closeTo(1.0, 1.0 * LatencyWindow.BIN_RATIO));
+        assertThat(window.percentile(90, now),
+                closeTo(1.0, 1.0 * LatencyWindow.BIN_RATIO));
+        assertThat(window.percentile(99, now),
+                closeTo(100.0, 100.0 * LatencyWindow.BIN_RATIO));
+        assertThat(window.percentile(100, now),
+                closeTo(100.0, 100.0 * LatencyWindow.BIN_RATIO));
+    }
+
+    /**
+     * Test method for {@link LatencyWindow#percentile(double, long)}.
+     */
+    @Test
+    public void testPercentileEmpty() {
+        final LatencyWindow window = new LatencyWindow(WINDOW);
+
+        assertThat(window.percentile(50, System.nanoTime()),
+                is(Double.MAX_VALUE));
+    }
+
+    /**
+     * Test method for {@link LatencyWindow#percentile(double, long)}.
+     */
+    @Test
+    public void testPercentileExtremes() {
+        final LatencyWindow window = new LatencyWindow(WINDOW);
+        final long now = 0;
+
+        window.record(0, now);
+        window.record(TimeUnit.HOURS.toNanos(1), now);
+
+        assertThat(window.percentile(50, now), closeTo(0.0, 0.01));
+        assertThat(window.percentile(100, now) > 10000.0, is(true));
+    }
+
+    /**
+     * Test method for {@link LatencyWindow#record(long, long)}.
+     */
+    @Test
+    public void testRecordAgesOutSamples() {
+        final LatencyWindow window = new LatencyWindow(WINDOW);
+        final long start = -7 * SLOT; // nanoTime() can be negative.
+
+        assertThat(window.record(TimeUnit.MILLISECONDS.toNanos(100), start),
+                is(true));
+        assertThat(window.record(TimeUnit.MILLISECONDS.toNanos(100), start),
+                is(false));
+
+        // Still in the window.
+        long now = start + WINDOW - 1;
+        assertThat(window.record(TimeUnit.MILLISECONDS.toNanos(1), now),
+                is(true));
+        assertThat(window.percentile(99, now),
+                closeTo(100.0, 100.0 * LatencyWindow.BIN_RATIO));
+
+        // The slow samples have aged out.
+        now = start + WINDOW;
+        assertThat(window.percentile(99, now),
+                closeTo(1.0, 1.0 * LatencyWindow.BIN_RATIO));
+
+        // Reusing the slot clears the old samples.
+        assertThat(window.record(TimeUnit.MILLISECONDS.toNanos(1), now),
+                is(true));
+        assertThat(window.percentile(99, now),
+                closeTo(1.0, 1.0 * LatencyWindow.BIN_RATIO));
+
+        // A late sample for a reused slot is dropped.
+        assertThat(window.record(TimeUnit.MILLISECONDS.toNanos(100), start),
+                is(false));
+        assertThat(window.percentile(99, now),
+                closeTo(1.0, 1.0 * LatencyWindow.BIN_RATIO));
+
+        // Everything ages out.
+        assertThat(window.percentile(99, now + (2 * WINDOW)),
+                is(Double.MAX_VALUE));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * ServerSelectionTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2014 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.allanbank.mongodb.client.state;
+
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * ServerSelectionTest provides tests for the {@link ServerSelection} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class ServerSelectionTest {
+
+    /**
+     * Test method for {@link ServerSelection#isCurrent(int, long)}.
+     */
+    @Test
+    public void testIsCurrent() {
+        final List<Server> empty = Collections.emptyList();
+        final ServerSelection selection = new ServerSelection(3, 1000L, empty,
+                new double[0], empty, new double[0]);
+
+        assertTrue(selection.isCurrent(3, 1000L));
+        assertFalse(selection.isCurrent(4, 1000L));
+        assertFalse(selection.isCurrent(3, 2000L));
+    }
+
+    /**
+     * Test method for {@link ServerSelection#select()}.
+     */
+    @Test
+    public void testSelect() {
+        final Server a = new Server(new InetSocketAddress("a", 27017));
+        final Server b = new Server(new InetSocketAddress("b", 27017));
+        final Server c = new Server(new InetSocketAddress("c", 27017));
+        final Server d = new Server(new InetSocketAddress("d", 27017));
+
+        final ServerSelection selection = new ServerSelection(1, 1000L,
+                Arrays.asList(a, b), new double[] { 0.5, 1.0 }, Arrays.asList(
+                        c, d), new double[] { 0.75, 1.0 });
+
+        boolean sawA = false;
+        boolean sawB = false;
+        for (int i = 0; i < 1000; ++i) {
+            final List<Server> servers = selection.select();
+
+            assertThat(servers.size(), is(4));
+            assertThat(servers.get(0), anyOf(sameInstance(a), sameInstance(b)));
+            assertThat(servers.get(1), anyOf(sameInstance(a), sameInstance(b)));
+            assertThat(servers.get(2), anyOf(sameInstance(c), sameInstance(d)));
+            assertThat(servers.get(3), anyOf(sameInstance(c), sameInstance(d)));
+
+            sawA |= (servers.get(0) == a);
+            sawB |= (servers.get(0) == b);
+        }
+        assertTrue(sawA);
+        assertTrue(sawB);
+    }
+
+    /**
+     * Test method for {@link ServerSelection#selectLeastLoaded()}.
+     */
+    @Test
+    public void testSelectLeastLoaded() {
+        final Server a = new Server(new InetSocketAddress("a", 27017));
+        final Server b = new Server(new InetSocketAddress("b", 27017));
+        final Server c = new Server(new InetSocketAddress("c", 27017));
+        final Server d = new Server(new InetSocketAddress("d", 27017));
+        final Server e = new Server(new InetSocketAddress("e", 27017));
+
+        for (final Server server : Arrays.asList(a, b, c, d, e)) {
+            server.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        // Stall 'c' and 'e'.
+        c.updateRequestLatency(TimeUnit.SECONDS.toNanos(30));
+        for (int i = 0; i < 10; ++i) {
+            c.requestSent();
+            e.requestSent();
+        }
+
+        final ServerSelection selection = new ServerSelection(1, 1000L,
+                Arrays.asList(a, b, c), new double[] { 0.3, 0.6, 1.0 },
+                Arrays.asList(d, e), new double[] { 0.5, 1.0 });
+
+        boolean sawA = false;
+        boolean sawB = false;
+        for (int i = 0; i < 1000; ++i) {
+            final List<Server> servers = selection.selectLeastLoaded();
+
+            assertThat(servers.size(), is(5));
+            assertThat(servers.get(0), anyOf(sameInstance(a), sameInstance(b)));
+            assertThat(servers.get(3), sameInstance(d));
+
+            sawA |= (servers.get(0) == a);
+            sawB |= (servers.get(0) == b);
+        }
+        assertTrue(sawA);
+        assertTrue(sawB);
+    }
+
+    /**
+     * Test method for {@link ServerSelection#selectLeastLoaded()}.
+     */
+    @Test
+    public void testSelectLeastLoadedEmpty() {
+        final List<Server> empty = Collections.emptyList();
+        final ServerSelection selection = new ServerSelection(1, 1000L, empty,
+                new double[0], empty, new double[0]);
+
+        assertThat(selection.selectLeastLoaded().isEmpty(), is(true));
+    }
+
+    /**
+     * Test method for {@link ServerSelection#select()}.
+     */
+    @Test
+    public void testSelectEmpty() {
+        final List<Server> empty = Collections.emptyList();
+        final ServerSelection selection = new ServerSelection(1, 1000L, empty,
+                new double[0], empty, new double[0]);
+
+        assertThat(selection.select().isEmpty(), is(true));
+    }
+
+    /**
+     * Test method for {@link ServerSelection#select()}.
+     */
+    @Test
+    public void testSelectSingle() {
+        final Server a = new Server(new InetSocketAddress("a", 27017));
+        final ServerSelection selection = new ServerSelection(1, 1000L,
+                Collections.singletonList(a), new double[] { 1.0 },
+                Collections.<Server> emptyList(), new double[0]);
+
+        final List<Server> servers = selection.select();
+        assertThat(servers, is(Collections.singletonList(a)));
+        assertThat(selection.select(), sameInstance(servers));
+    }
+}
@@ -20,14 +20,23 @@
 
 package com.allanbank.mongodb.client.state;
 
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
 
+import org.easymock.Capture;
 import org.junit.Test;
 
 import com.allanbank.mongodb.Version;
@@ -59,6 +68,133 @@ public class ServerTest {
         assertEquals(15, server.getAverageLatency(), 1.0);
     }
 
+    /**
+     * Test method for {@link Server#getLoad()}.
+     */
+    @Test
+    public void testGetLoad() {
+        final Server server = new Server(new InetSocketAddress("foo", 27017));
+
+        // Unknown latency.
+        assertEquals(Double.MAX_VALUE, server.getLoad(), 0.001);
+
+        // Falls back to the average latency.
+        server.updateAverageLatency(10000000);
+        assertEquals(11.0, server.getLoad(), 0.1);
+
+        // Recent latency.
+        server.updateRequestLatency(20000000);
+        assertEquals(21.0, server.getLoad(), 0.1);
+
+        // Pending requests.
+        server.requestSent();
+        server.requestSent();
+        assertThat(server.getPendingRequests(), is(2));
+        assertEquals(63.0, server.getLoad(), 0.1);
+
+        server.requestCompleted();
+        server.requestCompleted();
+        assertThat(server.getPendingRequests(), is(0));
+        assertEquals(21.0, server.getLoad(), 0.1);
+    }
+
+    /**
+     * Test method for {@link Server#getLatency()}.
+     */
+    @Test
+    public void testGetLatencyWithPercentile() {
+        final Server server = new Server(new InetSocketAddress("foo", 27017),
+                99.0D);
+
+        assertEquals(Double.MAX_VALUE, server.getLatency(), 0.001);
+        assertEquals(Double.MAX_VALUE, server.getLatencyPercentile(50),
+                0.001);
+
+        // Falls back to the average latency.
+        server.updateAverageLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(1.0, server.getLatency(), 0.001);
+
+        // Routes on the 99th percentile of the replies.
+        for (int i = 0; i < 90; ++i) {
+            server.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        for (int i = 0; i < 10; ++i) {
+            server.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(1.0, server.getLatencyPercentile(50), 0.25);
+        assertEquals(100.0, server.getLatencyPercentile(99), 25.0);
+
+        // The percentile is only recomputed once per time slot but the first
+        // reply seeds the value.
+        final double latency = server.getLatency();
+        assertThat(latency < 125.0, is(true));
+
+        // The average latency does not change the routing latency.
+        server.updateAverageLatency(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(latency, server.getLatency(), 0.001);
+    }
+
+    /**
+     * Test method for {@link Server#getLatency()}.
+     */
+    @Test
+    public void testGetLatencyWithPercentileFallsBackOnceWindowEmpty() {
+        final Server server = new Server(new InetSocketAddress("foo", 27017),
+                99.0D);
+
+        server.updateAverageLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        server.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(100.0, server.getLatency(), 25.0);
+
+        // Still replies in the window.
+        server.expireWindowLatency(System.nanoTime());
+        assertEquals(100.0, server.getLatency(), 25.0);
+
+        // All of the replies have aged out.
+        server.expireWindowLatency(System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(Server.LATENCY_WINDOW_SECONDS * 2));
+        assertEquals(10.0, server.getLatency(), 0.001);
+
+        // The next reply re-seeds the window's percentile.
+        server.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(100.0, server.getLatency(), 25.0);
+    }
+
+    /**
+     * Test method for {@link Server#getLatency()}.
+     */
+    @Test
+    public void testGetLatencyWithoutPercentile() {
+        final Server server = new Server(new InetSocketAddress("foo", 27017));
+
+        server.updateAverageLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        server.updateRequestLatency(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertEquals(10.0, server.getLatency(), 0.001);
+        assertEquals(Double.MAX_VALUE, server.getLatencyPercentile(50),
+                0.001);
+    }
+
+    /**
+     * Test method for {@link Server#getRequestLatency()}.
+     */
+    @Test
+    public void testGetRequestLatency() {
+
+        final Server server = new Server(new InetSocketAddress("foo", 27017));
+
+        assertEquals(Double.MAX_VALUE, server.getRequestLatency(), 0.001);
+        server.updateRequestLatency(10000000);
+        assertEquals(10.0, server.getRequestLatency(), 0.1);
+        for (int i = 0; i < Server.REQUEST_DECAY_SAMPLES * 5; ++i) {
+            server.updateRequestLatency(15000000);
+        }
+        assertEquals(15, server.getRequestLatency(), 0.1);
+
+        // The long running average is not changed.
+        assertEquals(Double.MAX_VALUE, server.getAverageLatency(), 0.001);
+    }
+
     /**
      * Test method for {@link Server#isWritable()}.
      */
@@ -205,6 +341,36 @@ public class ServerTest {
         assertThat(server.getMaxBsonObjectSize(), is(654321));
     }
 
+    /**
+     * Test method for {@link Server#getLatencyBucket()}.
+     */
+    @Test
+    public void testLatencyBucketEvents() {
+        final Server server = new Server(new InetSocketAddress("foo", 27017));
+        assertThat(server.getLatencyBucket(), is(Integer.MAX_VALUE));
+
+        final PropertyChangeListener mockListener = createMock(PropertyChangeListener.class);
+        final Capture<PropertyChangeEvent> event = new Capture<PropertyChangeEvent>();
+        mockListener.propertyChange(capture(event));
+        expectLastCall().times(2); // Seconds behind and latency bucket.
+
+        replay(mockListener);
+
+        server.addListener(mockListener);
+
+        // First sample changes the bucket.
+        server.updateAverageLatency(10000000);
+        // Small change does not.
+        server.updateAverageLatency(10000001);
+
+        verify(mockListener);
+
+        assertThat(event.getValue().getPropertyName(),
+                is(Server.LATENCY_BUCKET_PROP));
+        assertThat(event.getValue().getNewValue(),
+                is((Object) Integer.valueOf(server.getLatencyBucket())));
+    }
+
     /**
      * Test method for {@link Server#getTags()}.
      */
@@ -489,6 +489,46 @@ public abstract class AbstractTransportTestCases {
         assertThat(inMessage, is(outMessage));
     }
 
+    /**
+     * Test that the transport can handle sending and receiving an
+     * {@link Insert} that is much larger than the transport's buffers.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testSendAndReceiveLargeInsert() throws IOException {
+        final int messageId = 100;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BsonOutputStream bsonOut = new BsonOutputStream(out);
+
+        final byte[] bytes = new byte[300 * 1024];
+        Arrays.fill(bytes, (byte) 0x5A);
+        final Message outMessage = new Insert("db", "collection",
+                Arrays.asList(d(e("a", bytes)).build(),
+                        d(e("b", bytes)).build()), false);
+        outMessage.write(messageId, bsonOut);
+
+        ourMockServer.setReplies(Arrays.asList(out.toByteArray()));
+
+        connect();
+        assertThat(ourMockServer.waitForClient(SECONDS.toMillis(5)), is(true));
+
+        final TransportOutputBuffer outBuffer = myTestTransport
+                .createSendBuffer(0);
+        outBuffer.write(messageId, outMessage, null);
+        myTestTransport.send(outBuffer);
+        myTestTransport.flush();
+        assertThat(ourMockServer.waitForRequest(1, 10, SECONDS), is(true));
+        assertThat(ourMockServer.getRequests().get(0), is(out.toByteArray()));
+
+        myListener.waitForResponse(10, SECONDS);
+        assertThat(myListener.getResponses(), hasSize(1));
+        final TransportInputBuffer inBuffer = myListener.getResponses().get(0);
+        final Message inMessage = inBuffer.read();
+        assertThat(inMessage, is(outMessage));
+    }
+
     /**
      * Test that the transport can handle sending and receiving a
      * {@link KillCursors}.
@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * DirectBufferOutputStreamTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.nio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.allanbank.mongodb.bson.io.StringEncoderCache;
+
+/**
+ * DirectBufferOutputStreamTest provides tests for the
+ * {@link DirectBufferOutputStream} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class DirectBufferOutputStreamTest {
+
+    /** The pool for the stream's segments. */
+    private DirectBufferPool myPool;
+
+    /** The stream being tested. */
+    private DirectBufferOutputStream myTestStream;
+
+    /**
+     * Creates the stream to test.
+     */
+    @Before
+    public void setUp() {
+        myPool = new DirectBufferPool(4);
+        myTestStream = new DirectBufferOutputStream(new StringEncoderCache(),
+                myPool);
+    }
+
+    /**
+     * Test method for {@link DirectBufferOutputStream#getBuffers()}.
+     */
+    @Test
+    public void testGetBuffersAcrossSegments() {
+        final byte[] bytes = new byte[(DirectBufferPool.SEGMENT_SIZE * 2) + 17];
+        new Random(1).nextBytes(bytes);
+
+        myTestStream.write(bytes[0]);
+        myTestStream.write(bytes, 1, bytes.length - 1);
+
+        assertEquals(bytes.length, myTestStream.getSize());
+
+        final ByteBuffer[] buffers = myTestStream.getBuffers();
+        assertEquals(3, buffers.length);
+        assertTrue(buffers[0].isDirect());
+
+        assertArrayEquals(bytes, toArray(buffers));
+
+        // Calling again returns fresh views.
+        assertArrayEquals(bytes, toArray(myTestStream.getBuffers()));
+    }
+
+    /**
+     * Test method for {@link DirectBufferOutputStream#reset()}.
+     */
+    @Test
+    public void testResetReturnsSegmentsToPool() {
+        final byte[] bytes = new byte[(DirectBufferPool.SEGMENT_SIZE * 3) + 1];
+
+        // No segment is leased until something is written.
+        assertEquals(0, myTestStream.getBuffers().length);
+
+        myTestStream.write(bytes);
+        assertEquals(4, myTestStream.getBuffers().length);
+        assertEquals(0, myPool.getPooledCount());
+
+        myTestStream.reset();
+        assertEquals(0, myTestStream.getSize());
+        assertEquals(0, myTestStream.getBuffers().length);
+        assertEquals(4, myPool.getPooledCount());
+
+        // Growing again re-uses the pooled segments.
+        myTestStream.write(bytes);
+        assertEquals(0, myPool.getPooledCount());
+    }
+
+    /**
+     * Test method for {@link DirectBufferOutputStream#toByteArray()}.
+     */
+    @Test
+    public void testToByteArray() {
+        final byte[] bytes = new byte[DirectBufferPool.SEGMENT_SIZE + 17];
+        new Random(2).nextBytes(bytes);
+
+        assertEquals(0, myTestStream.toByteArray().length);
+
+        myTestStream.write(bytes);
+
+        assertArrayEquals(bytes, myTestStream.toByteArray());
+
+        myTestStream.reset();
+        myTestStream.writeInt(0x04030201);
+
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 },
+                myTestStream.toByteArray());
+    }
+
+    /**
+     * Test method for {@link DirectBufferOutputStream#writeIntAt(long, int)}.
+     */
+    @Test
+    public void testWriteIntAtAcrossSegmentBoundary() {
+        final long position = DirectBufferPool.SEGMENT_SIZE - 2;
+
+        myTestStream.write(new byte[(int) position]);
+        myTestStream.writeInt(0);
+        myTestStream.writeIntAt(position, 0x04030201);
+
+        final byte[] bytes = toArray(myTestStream.getBuffers());
+        assertEquals(1, bytes[(int) position]);
+        assertEquals(2, bytes[(int) position + 1]);
+        assertEquals(3, bytes[(int) position + 2]);
+        assertEquals(4, bytes[(int) position + 3]);
+    }
+
+    /**
+     * Test method for {@link DirectBufferOutputStream#writeTo}.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testWriteTo() throws IOException {
+        myTestStream.writeString("hello");
+        myTestStream.writeLong(1234567890123L);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        myTestStream.writeTo(out);
+
+        assertArrayEquals(toArray(myTestStream.getBuffers()),
+                out.toByteArray());
+        assertEquals(myTestStream.getSize(), out.size());
+    }
+
+    /**
+     * Copies the contents of the buffers into a single array.
+     *
+     * @param buffers
+     *            The buffers to copy.
+     * @return The contents of the buffers.
+     */
+    private byte[] toArray(final ByteBuffer[] buffers) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer.get());
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * #%L
+ * NioTransportTest.java - mongodb-async-driver - Allanbank Consulting, Inc.
+ * %%
+ * Copyright (C) 2011 - 2015 Allanbank Consulting, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package com.allanbank.mongodb.client.transport.nio;
+
+import static com.allanbank.mongodb.bson.builder.BuilderFactory.d;
+import static com.allanbank.mongodb.bson.builder.BuilderFactory.e;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.allanbank.mongodb.MongoClientConfiguration;
+import com.allanbank.mongodb.MongoDbException;
+import com.allanbank.mongodb.bson.Document;
+import com.allanbank.mongodb.bson.io.BsonOutputStream;
+import com.allanbank.mongodb.client.ClusterType;
+import com.allanbank.mongodb.client.message.Insert;
+import com.allanbank.mongodb.client.message.Reply;
+import com.allanbank.mongodb.client.state.Cluster;
+import com.allanbank.mongodb.client.state.Server;
+import com.allanbank.mongodb.client.transport.AbstractTransportTestCases;
+import com.allanbank.mongodb.client.transport.TestTransportResponseListener;
+import com.allanbank.mongodb.client.transport.Transport;
+import com.allanbank.mongodb.client.transport.TransportFactory;
+import com.allanbank.mongodb.client.transport.TransportInputBuffer;
+import com.allanbank.mongodb.client.transport.TransportOutputBuffer;
+import com.allanbank.mongodb.client.transport.TransportResponseListener;
+import com.allanbank.mongodb.util.IOUtils;
+
+/**
+ * NioTransportTest provides tests for the {@link NioTransport} class.
+ *
+ * @copyright 2015, Allanbank Consulting, Inc., All Rights Reserved
+ */
+public class NioTransportTest
+        extends AbstractTransportTestCases {
+
+    /**
+     * Test that the selector threads stop when the last transport is closed
+     * and that a later transport starts new selector threads.
+     *
+     * @throws IOException
+     *             On a test failure.
+     * @throws InterruptedException
+     *             On a failure waiting for the selector threads.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEventLoopsStopWhenClosed() throws IOException,
+            InterruptedException {
+        final List<Thread> threads = Collections
+                .synchronizedList(new ArrayList<Thread>());
+        myConfig.setThreadFactory(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                threads.add(thread);
+                return thread;
+            }
+        });
+
+        final NioTransportFactory factory = new NioTransportFactory(1);
+        try {
+            final TestTransportResponseListener listener = new TestTransportResponseListener();
+            final Transport<?> first = factory.createTransport(myServer,
+                    myConfig, ourEncoderCache, ourDecoderCache, listener);
+            first.start();
+            assertThat(ourMockServer.waitForClient(10, SECONDS), is(true));
+            assertThat(threads, hasSize(1));
+
+            // Closing the last transport stops the selector thread.
+            first.close();
+            threads.get(0).join(SECONDS.toMillis(10));
+            assertThat(threads.get(0).isAlive(), is(false));
+            assertThat(listener.getCloses(), hasSize(1));
+            assertThat(ourMockServer.waitForDisconnect(10, SECONDS), is(true));
+
+            // The next transport starts a new selector thread.
+            myTestTransport = (Transport<TransportOutputBuffer>) factory
+                    .createTransport(myServer, myConfig, ourEncoderCache,
+                            ourDecoderCache, myListener);
+            myTestTransport.start();
+            assertThat(ourMockServer.waitForClient(10, SECONDS), is(true));
+            assertThat(threads, hasSize(2));
+        }
+        finally {
+            factory.close();
+        }
+
+        // Closing the factory closes the transport and stops the thread.
+        threads.get(1).join(SECONDS.toMillis(10));
+        assertThat(threads.get(1).isAlive(), is(false));
+        myListener.waitForClose(10, SECONDS);
+        assertThat(myListener.getCloses(), hasSize(1));
+    }
+
+    /**
+     * Test that the listener is notified the transport is closed before the
+     * channel is closed so that the connection is never seen as open after the
+     * server sees the disconnect.
+     *
+     * @throws IOException
+     *             On a test failure.
+     */
+    @Test
+    public void testListenerNotifiedBeforeChannelCloses() throws IOException {
+        final AtomicReference<NioTransport> transport = new AtomicReference<NioTransport>();
+        final AtomicReference<Boolean> channelOpen = new AtomicReference<Boolean>();
+        final TransportResponseListener listener = new TransportResponseListener() {
+            @Override
+            public void closed(final MongoDbException error) {
+                channelOpen.set(Boolean.valueOf(transport.get().getChannel()
+                        .isOpen()));
+                myListener.closed(error);
+            }
+
+            @Override
+            public void response(final TransportInputBuffer buffer) {
+                myListener.response(buffer);
+            }
+        };
+
+        final NioTransportFactory factory = new NioTransportFactory(1);
+        try {
+            transport.set((NioTransport) factory.createTransport(myServer,
+                    myConfig, ourEncoderCache, ourDecoderCache, listener));
+            transport.get().start();
+            assertThat(ourMockServer.waitForClient(10, SECONDS), is(true));
+
+            transport.get().close();
+
+            assertThat(channelOpen.get(), is(Boolean.TRUE));
+            assertThat(transport.get().getChannel().isOpen(), is(false));
+            assertThat(ourMockServer.waitForDisconnect(10, SECONDS), is(true));
+        }
+        finally {
+            factory.close();
+        }
+    }
+
+    /**
+     * Test that a send from the event loop's thread does not block when the
+     * server is not reading and the write completes once it does.
+     *
+     * @throws IOException
+     *             On a test failure.
+     * @throws InterruptedException
+     *             On a failure waiting for the send.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSendFromEventLoopDoesNotBlock() throws IOException,
+            InterruptedException {
+        final List<Document> docs = new ArrayList<Document>();
+        final byte[] bytes = new byte[256 * 1024];
+        for (int i = 0; i < 32; ++i) {
+            docs.add(d(e("a", bytes)).build());
+        }
+        final Insert insert = new Insert("db", "collection", docs, false);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        insert.write(2, new BsonOutputStream(out));
+        final byte[] expected = out.toByteArray();
+
+        out.reset();
+        new Reply(1, 0, 0, Collections.<Document> emptyList(), false, false,
+                false, false).write(1, new BsonOutputStream(out));
+        final byte[] reply = out.toByteArray();
+
+        final ServerSocket serverSocket = new ServerSocket();
+        Socket socket = null;
+        try {
+            serverSocket.setReceiveBufferSize(4096);
+            serverSocket.bind(new InetSocketAddress("localhost", 0));
+
+            final InetSocketAddress address = new InetSocketAddress(
+                    "localhost", serverSocket.getLocalPort());
+            final MongoClientConfiguration config = new MongoClientConfiguration(
+                    address);
+            final Server server = new Cluster(config, ClusterType.STAND_ALONE)
+                    .add(address);
+
+            // Sends the insert from the event loop when the reply arrives.
+            final AtomicReference<Transport<TransportOutputBuffer>> transport = new AtomicReference<Transport<TransportOutputBuffer>>();
+            final AtomicLong elapsed = new AtomicLong(Long.MAX_VALUE);
+            final CountDownLatch sent = new CountDownLatch(1);
+            final TransportResponseListener listener = new TransportResponseListener() {
+                @Override
+                public void closed(final MongoDbException error) {
+                    myListener.closed(error);
+                }
+
+                @Override
+                public void response(final TransportInputBuffer buffer) {
+                    final long start = System.nanoTime();
+                    try {
+                        final TransportOutputBuffer outBuffer = transport
+                                .get().createSendBuffer(0);
+                        outBuffer.write(2, insert, null);
+                        transport.get().send(outBuffer);
+                        transport.get().flush();
+                    }
+                    catch (final IOException error) {
+                        throw new MongoDbException(error);
+                    }
+                    elapsed.set(System.nanoTime() - start);
+                    sent.countDown();
+                }
+            };
+
+            transport.set((Transport<TransportOutputBuffer>) createFactory()
+                    .createTransport(server, config, ourEncoderCache,
+                            ourDecoderCache, listener));
+            myTestTransport = transport.get();
+            myTestTransport.start();
+
+            socket = serverSocket.accept();
+            socket.getOutputStream().write(reply);
+            socket.getOutputStream().flush();
+
+            // The server is not reading so the write cannot complete.
+            assertThat(sent.await(10, SECONDS), is(true));
+            assertThat(elapsed.get(), lessThan(SECONDS.toNanos(1)));
+
+            // Now read and the event loop finishes the write.
+            socket.setSoTimeout((int) SECONDS.toMillis(10));
+            final byte[] received = new byte[expected.length];
+            new DataInputStream(socket.getInputStream()).readFully(received);
+            assertArrayEquals(expected, received);
+        }
+        finally {
+            IOUtils.close(socket);
+            IOUtils.close(serverSocket);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Overridden to return a {@link NioTransportFactory}.
+     * </p>
+     */
+    @Override
+    protected TransportFactory createFactory() {
+        return new NioTransportFactory();
+    }
+}